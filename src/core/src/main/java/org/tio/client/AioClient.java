@@ -2,29 +2,24 @@ package org.tio.client;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.StandardSocketOptions;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousSocketChannel;
-import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.tio.client.intf.ClientAioHandler;
-import org.tio.core.Aio;
-import org.tio.core.ChannelContext;
-import org.tio.core.ChannelStat;
 import org.tio.core.Node;
-import org.tio.core.SetWithLock;
+import org.tio.core.TaskExecutorMode;
 import org.tio.core.intf.Packet;
+import org.tio.core.threadpool.EventLoopGroup;
 import org.tio.core.threadpool.SynThreadPoolExecutor;
+import org.tio.core.timer.intf.Timeout;
+import org.tio.core.timer.intf.TimerTask;
 import org.tio.core.utils.SystemTimer;
 
 /**
@@ -56,8 +51,8 @@ public class AioClient<SessionContext, P extends Packet, R> {
 		//		ExecutorService groupExecutor = clientGroupContext.getGroupExecutor();
 		this.channelGroup = AsynchronousChannelGroup.withThreadPool(clientGroupContext.getGroupExecutor());
 
-		startHeartbeatTask();
-		startReconnTask();
+		clientGroupContext.setAioClient(this);
+		startStatLogTask();
 	}
 
 	/**
@@ -155,10 +150,20 @@ public class AioClient<SessionContext, P extends Packet, R> {
 		SynThreadPoolExecutor tioExecutor = clientGroupContext.getTioExecutor();
 		groupExecutor.shutdown();
 		tioExecutor.shutdown();
+		EventLoopGroup eventLoopGroup = null;
+		if (clientGroupContext.getTaskExecutorMode() == TaskExecutorMode.EVENT_LOOP) {
+			eventLoopGroup = clientGroupContext.getEventLoopGroup();
+			eventLoopGroup.shutdown();
+		}
 		clientGroupContext.setStopped(true);
+		clientGroupContext.stopTimer();
+		clientGroupContext.stopFlushScheduler();
 		try {
 			ret = ret && groupExecutor.awaitTermination(6000, TimeUnit.SECONDS);
 			ret = ret && tioExecutor.awaitTermination(6000, TimeUnit.SECONDS);
+			if (eventLoopGroup != null) {
+				ret = ret && eventLoopGroup.awaitTermination(6000, TimeUnit.SECONDS);
+			}
 		} catch (InterruptedException e) {
 			log.error(e.getLocalizedMessage(), e);
 		}
@@ -211,9 +216,7 @@ public class AioClient<SessionContext, P extends Packet, R> {
 			log.error("{}, open 耗时:{} ms", channelContext, iv);
 		}
 
-		asynchronousSocketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
-		asynchronousSocketChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-		asynchronousSocketChannel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+		clientGroupContext.getSocketOptionProfile().applyTo(asynchronousSocketChannel);
 
 		InetSocketAddress bind = null;
 		if (bindPort != null && bindPort > 0) {
@@ -290,73 +293,34 @@ public class AioClient<SessionContext, P extends Packet, R> {
 	}
 
 	/**
-	 * 定时任务：发心跳
+	 * 定时打印统计信息<br>
+	 * 心跳包的发送由ClientGroupContext.createIdleTimerTask()中的空闲检测负责，不再定时扫描所有连接
 	 * @author: tanyaowu
 	 *
 	 */
-	private void startHeartbeatTask() {
-		final ClientGroupStat clientGroupStat = clientGroupContext.getClientGroupStat();
-		final ClientAioHandler<SessionContext, P, R> aioHandler = clientGroupContext.getClientAioHandler();
+	private void startStatLogTask() {
+		final long heartbeatTimeout = clientGroupContext.getHeartbeatTimeout();
+		if (heartbeatTimeout <= 0) {
+			log.warn("用户取消了框架层面的心跳定时发送功能，请用户自己去完成心跳机制");
+			return;
+		}
 
+		final ClientGroupStat clientGroupStat = clientGroupContext.getClientGroupStat();
 		final String id = clientGroupContext.getId();
-		new Thread(new Runnable() {
+		clientGroupContext.getTimer().newTimeout(new TimerTask() {
 			@Override
-			public void run() {
-				while (!clientGroupContext.isStopped()) {
-					final long heartbeatTimeout = clientGroupContext.getHeartbeatTimeout();
-					if (heartbeatTimeout <= 0) {
-						log.warn("用户取消了框架层面的心跳定时发送功能，请用户自己去完成心跳机制");
-						break;
-					}
-					ReadLock readLock = null;
-					try {
-						SetWithLock<ChannelContext<SessionContext, P, R>> setWithLock = clientGroupContext.connecteds.getSetWithLock();
-						readLock = setWithLock.getLock().readLock();
-						readLock.lock();
-						Set<ChannelContext<SessionContext, P, R>> set = setWithLock.getObj();
-						long currtime = SystemTimer.currentTimeMillis();
-						for (ChannelContext<SessionContext, P, R> entry : set) {
-							ClientChannelContext<SessionContext, P, R> channelContext = (ClientChannelContext<SessionContext, P, R>) entry;
-							if (channelContext.isClosed() || channelContext.isRemoved()) {
-								continue;
-							}
-
-							ChannelStat stat = channelContext.getStat();
-							long timeLatestReceivedMsg = stat.getLatestTimeOfReceivedPacket();
-							long timeLatestSentMsg = stat.getLatestTimeOfSentPacket();
-							long compareTime = Math.max(timeLatestReceivedMsg, timeLatestSentMsg);
-							long interval = (currtime - compareTime);
-							if (interval >= heartbeatTimeout / 2) {
-								P packet = aioHandler.heartbeatPacket();
-								if (packet != null) {
-									log.info("{}发送心跳包", channelContext.toString());
-									Aio.send(channelContext, packet);
-								}
-							}
-						}
-						if (log.isInfoEnabled()) {
-							log.info("[{}]: curr:{}, closed:{}, received:({}p)({}b), handled:{}, sent:({}p)({}b)", id, set.size(), clientGroupStat.getClosed().get(),
-									clientGroupStat.getReceivedPacket().get(), clientGroupStat.getReceivedBytes().get(), clientGroupStat.getHandledPacket().get(),
-									clientGroupStat.getSentPacket().get(), clientGroupStat.getSentBytes().get());
-						}
-
-					} catch (Throwable e) {
-						log.error("", e);
-					} finally {
-						try {
-							if (readLock != null) {
-								readLock.unlock();
-							}
-							Thread.sleep(heartbeatTimeout / 4);
-						} catch (Exception e) {
-							log.error(e.toString(), e);
-						} finally {
-
-						}
-					}
+			public void run(Timeout timeout) throws Exception {
+				if (clientGroupContext.isStopped()) {
+					return;
 				}
+				if (log.isInfoEnabled()) {
+					log.info("[{}]: curr:{}, closed:{}, received:({}p)({}b), handled:{}, sent:({}p)({}b)", id, clientGroupContext.connecteds.getSetWithLock().getObj().size(),
+							clientGroupStat.getClosed().sum(), clientGroupStat.getReceivedPacket().sum(), clientGroupStat.getReceivedBytes().sum(),
+							clientGroupStat.getHandledPacket().sum(), clientGroupStat.getSentPacket().sum(), clientGroupStat.getSentBytes().sum());
+				}
+				clientGroupContext.getTimer().newTimeout(this, heartbeatTimeout / 4, TimeUnit.MILLISECONDS);
 			}
-		}, "tio-timer-heartbeat" + id).start();
+		}, heartbeatTimeout / 4, TimeUnit.MILLISECONDS);
 	}
 
 	private static class ReconnRunnable<SessionContext, P extends Packet, R> implements Runnable {
@@ -413,65 +377,28 @@ public class AioClient<SessionContext, P extends Packet, R> {
 	}
 
 	/**
-	 * 启动重连任务
-	 * 
+	 * 把连接放到时间轮中，reconnConf.getInterval()毫秒后重连
+	 * @param channelContext
 	 *
 	 * @author: tanyaowu
 	 *
 	 */
-	private void startReconnTask() {
+	void scheduleReconnect(final ClientChannelContext<SessionContext, P, R> channelContext) {
 		final ReconnConf<SessionContext, P, R> reconnConf = clientGroupContext.getReconnConf();
-		if (reconnConf == null || reconnConf.getInterval() <= 0) {
+		if (reconnConf == null || reconnConf.getInterval() <= 0 || clientGroupContext.isStopped()) {
 			return;
 		}
 
-		final String id = clientGroupContext.getId();
-		Thread thread = new Thread(new Runnable() {
+		clientGroupContext.getTimer().newTimeout(new TimerTask() {
 			@Override
-			public void run() {
-				while (!clientGroupContext.isStopped()) {
-					//log.info("准备重连");
-					LinkedBlockingQueue<ChannelContext<SessionContext, P, R>> queue = reconnConf.getQueue();
-					ClientChannelContext<SessionContext, P, R> channelContext = null;
-					try {
-						channelContext = (ClientChannelContext<SessionContext, P, R>) queue.take();
-					} catch (InterruptedException e1) {
-						log.error(e1.toString(), e1);
-					}
-					if (channelContext == null) {
-						continue;
-						//						return;
-					}
-
-					if (channelContext.isRemoved()) //已经删除的，不需要重新再连
-					{
-						continue;
-					}
-
-					long currtime = SystemTimer.currentTimeMillis();
-					long timeInReconnQueue = channelContext.getStat().getTimeInReconnQueue();
-					long sleeptime = reconnConf.getInterval() - (currtime - timeInReconnQueue);
-					//log.info("sleeptime:{}, closetime:{}", sleeptime, timeInReconnQueue);
-					if (sleeptime > 0) {
-						try {
-							Thread.sleep(sleeptime);
-						} catch (InterruptedException e) {
-							log.error(e.toString(), e);
-						}
-					}
-
-					if (channelContext.isRemoved() || !channelContext.isClosed()) //已经删除的和已经连上的，不需要重新再连
-					{
-						continue;
-					}
-					ReconnRunnable<SessionContext, P, R> runnable = new ReconnRunnable<SessionContext, P, R>(channelContext, AioClient.this);
-					reconnConf.getThreadPoolExecutor().execute(runnable);
+			public void run(Timeout timeout) throws Exception {
+				if (channelContext.isRemoved() || !channelContext.isClosed()) //已经删除的和已经连上的，不需要重新再连
+				{
+					return;
 				}
+				ReconnRunnable<SessionContext, P, R> runnable = new ReconnRunnable<SessionContext, P, R>(channelContext, AioClient.this);
+				reconnConf.getThreadPoolExecutor().execute(runnable);
 			}
-		});
-		thread.setName("tio-timer-reconnect-" + id);
-		thread.setDaemon(true);
-		thread.start();
-
+		}, reconnConf.getInterval(), TimeUnit.MILLISECONDS);
 	}
 }
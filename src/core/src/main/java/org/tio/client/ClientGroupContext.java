@@ -4,11 +4,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tio.client.intf.ClientAioHandler;
 import org.tio.client.intf.ClientAioListener;
+import org.tio.core.Aio;
+import org.tio.core.ChannelContext;
 import org.tio.core.GroupContext;
+import org.tio.core.SocketOptionProfile;
 import org.tio.core.intf.AioHandler;
 import org.tio.core.intf.AioListener;
 import org.tio.core.intf.Packet;
 import org.tio.core.stat.GroupStat;
+import org.tio.core.task.IdleTimerTask;
 
 /**
  * 
@@ -26,6 +30,8 @@ public class ClientGroupContext<SessionContext, P extends Packet, R> extends Gro
 
 	private ConnectionCompletionHandler<SessionContext, P, R> connectionCompletionHandler = new ConnectionCompletionHandler<>();
 
+	private AioClient<SessionContext, P, R> aioClient = null;
+
 	/**
 	 * 不重连
 	 * @param aioHandler
@@ -45,6 +51,7 @@ public class ClientGroupContext<SessionContext, P extends Packet, R> extends Gro
 	 */
 	public ClientGroupContext(ClientAioHandler<SessionContext, P, R> aioHandler, ClientAioListener<SessionContext, P, R> aioListener, ReconnConf<SessionContext, P, R> reconnConf) {
 		super();
+		this.socketOptionProfile = SocketOptionProfile.client();
 
 		this.setClientAioHandler(aioHandler);
 		this.setClientAioListener(aioListener);
@@ -133,6 +140,39 @@ public class ClientGroupContext<SessionContext, P extends Packet, R> extends Gro
 		return this.getClientAioListener();
 	}
 
+	/**
+	 * 空闲超过heartbeatTimeout/2就发心跳包
+	 * @see org.tio.core.GroupContext#createIdleTimerTask(org.tio.core.ChannelContext)
+	 */
+	@Override
+	protected IdleTimerTask<SessionContext, P, R> createIdleTimerTask(ChannelContext<SessionContext, P, R> channelContext) {
+		return new IdleTimerTask<SessionContext, P, R>(channelContext, heartbeatTimeout / 2) {
+			@Override
+			protected boolean onIdle(long interval) {
+				P packet = clientAioHandler.heartbeatPacket();
+				if (packet != null) {
+					log.info("{}发送心跳包", this.channelContext.toString());
+					Aio.send(this.channelContext, packet);
+				}
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * @return the aioClient
+	 */
+	public AioClient<SessionContext, P, R> getAioClient() {
+		return aioClient;
+	}
+
+	/**
+	 * @param aioClient the aioClient to set
+	 */
+	void setAioClient(AioClient<SessionContext, P, R> aioClient) {
+		this.aioClient = aioClient;
+	}
+
 	/**
 	 * @param reconnConf the reconnConf to set
 	 */
@@ -1,6 +1,5 @@
 package org.tio.client;
 
-import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.CompletionHandler;
 
@@ -65,11 +64,7 @@ public class ConnectionCompletionHandler<SessionContext, P extends Packet, R> im
 			if (throwable == null) {
 				if (isReconnect) {
 					channelContext.setAsynchronousSocketChannel(asynchronousSocketChannel);
-					//				channelContext.getDecodeRunnable().setCanceled(false);
-					channelContext.getHandlerRunnable().setCanceled(false);
-					//		channelContext.getHandlerRunnableHighPrior().setCanceled(false);
-					channelContext.getSendRunnable().setCanceled(false);
-					//		channelContext.getSendRunnableHighPrior().setCanceled(false);
+					channelContext.setTasksCanceled(false);
 
 					clientGroupContext.closeds.remove(channelContext);
 				} else {
@@ -88,12 +83,10 @@ public class ConnectionCompletionHandler<SessionContext, P extends Packet, R> im
 				attachment.setChannelContext(channelContext);
 
 				clientGroupContext.connecteds.add(channelContext);
+				clientGroupContext.startIdleCheck(channelContext);
 
 				ReadCompletionHandler<SessionContext, P, R> readCompletionHandler = channelContext.getReadCompletionHandler();
-				ByteBuffer readByteBuffer = readCompletionHandler.getReadByteBuffer();//ByteBuffer.allocateDirect(channelContext.getGroupContext().getReadBufferSize());
-				readByteBuffer.position(0);
-				readByteBuffer.limit(readByteBuffer.capacity());
-				asynchronousSocketChannel.read(readByteBuffer, readByteBuffer, readCompletionHandler);
+				readCompletionHandler.read();
 
 				log.info("connected to {}", serverNode);
 				if (isConnected && !isReconnect) {
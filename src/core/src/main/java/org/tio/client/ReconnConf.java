@@ -29,8 +29,6 @@ public class ReconnConf<SessionContext, P extends Packet, R> {
 	 */
 	private int retryCount = 0;
 
-	LinkedBlockingQueue<ChannelContext<SessionContext, P, R>> queue = new LinkedBlockingQueue<ChannelContext<SessionContext, P, R>>();
-
 	//用来重连的线程池
 	private ThreadPoolExecutor threadPoolExecutor = null;
 
@@ -88,7 +86,10 @@ public class ReconnConf<SessionContext, P extends Packet, R> {
 			if (reconnConf.getRetryCount() <= 0 || reconnConf.getRetryCount() >= clientChannelContext.getReconnCount()) {
 				if (putIfTrue) {
 					clientChannelContext.getStat().setTimeInReconnQueue(SystemTimer.currentTimeMillis());
-					reconnConf.getQueue().add(clientChannelContext);
+					AioClient<SessionContext, P, R> aioClient = clientGroupContext.getAioClient();
+					if (aioClient != null) {
+						aioClient.scheduleReconnect(clientChannelContext);
+					}
 				}
 				return true;
 			} else {
@@ -114,13 +115,6 @@ public class ReconnConf<SessionContext, P extends Packet, R> {
 		this.interval = interval;
 	}
 
-	/**
-	 * @return the queue
-	 */
-	public LinkedBlockingQueue<ChannelContext<SessionContext, P, R>> getQueue() {
-		return queue;
-	}
-
 	/**
 	 * @return the retryCount
 	 */
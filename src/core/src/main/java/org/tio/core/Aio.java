@@ -1,17 +1,27 @@
 package org.tio.core;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tio.core.intf.AioHandler;
+import org.tio.core.intf.EncodeVariantAware;
 import org.tio.core.intf.Packet;
 import org.tio.core.intf.PacketWithMeta;
-import org.tio.core.maintain.ChannelContextMapWithLock;
+import org.tio.core.maintain.PendingRequests;
 import org.tio.core.task.SendRunnable;
 import org.tio.core.utils.ThreadUtils;
 import org.tio.core.utils.page.Page;
@@ -134,7 +144,7 @@ public abstract class Aio {
 	}
 
 	/**
-	 * 根据userid获取ChannelContext
+	 * 根据userid获取ChannelContext，用户有多个连接时返回其中任意一个
 	 * @param groupContext
 	 * @param userid
 	 * @return
@@ -145,6 +155,17 @@ public abstract class Aio {
 		return groupContext.users.find(userid);
 	}
 
+	/**
+	 * 根据userid获取该用户的所有ChannelContext(多端登录)
+	 * @param groupContext
+	 * @param userid
+	 * @return 只读，用户不在线时返回空列表
+	 */
+	public static <SessionContext, P extends Packet, R> List<ChannelContext<SessionContext, P, R>> getChannelContextsByUserid(
+			GroupContext<SessionContext, P, R> groupContext, String userid) {
+		return groupContext.users.findAll(userid);
+	}
+
 	/**
 	 * 获取一个组的所有客户端
 	 * @param groupContext
@@ -157,6 +178,16 @@ public abstract class Aio {
 		return groupContext.groups.clients(group);
 	}
 
+	/**
+	 * 获取一个组的客户端数量，O(1)
+	 * @param groupContext
+	 * @param group
+	 * @return
+	 */
+	public static <SessionContext, P extends Packet, R> int getGroupSize(GroupContext<SessionContext, P, R> groupContext, String group) {
+		return groupContext.groups.size(group);
+	}
+
 	/**
 	 * 
 	 * @param groupContext
@@ -267,6 +298,21 @@ public abstract class Aio {
 		send(channelContext, packet, null, null);
 	}
 
+	/**
+	 * 打开了合并写时，把该连接已经调用发送的消息马上写出去，不再等待
+	 * @param channelContext
+	 */
+	public static <SessionContext, P extends Packet, R> void flush(ChannelContext<SessionContext, P, R> channelContext) {
+		if (channelContext == null || channelContext.isClosed() || channelContext.isRemoved()) {
+			return;
+		}
+		ChannelOutboundBuffer<SessionContext, P, R> outboundBuffer = channelContext.getOutboundBuffer();
+		//还在发送队列中没编码的，由SendRunnable编码后马上写
+		outboundBuffer.requestFlush();
+		outboundBuffer.flush();
+		channelContext.getSendRunnable().execute();
+	}
+
 	/**
 	 * 
 	 * @param channelContext
@@ -278,6 +324,20 @@ public abstract class Aio {
 	 */
 	private static <SessionContext, P extends Packet, R> Boolean send(final ChannelContext<SessionContext, P, R> channelContext, final P packet, CountDownLatch countDownLatch,
 			PacketSendMode packetSendMode) {
+		return send(channelContext, packet, countDownLatch, packetSendMode, null);
+	}
+
+	/**
+	 * 
+	 * @param channelContext
+	 * @param packet
+	 * @param countDownLatch
+	 * @param packetSendMode
+	 * @param preEncodedByteBuffer 群发时预先编码好的只读数据，可以为null
+	 * @return
+	 */
+	private static <SessionContext, P extends Packet, R> Boolean send(final ChannelContext<SessionContext, P, R> channelContext, final P packet, CountDownLatch countDownLatch,
+			PacketSendMode packetSendMode, ByteBuffer preEncodedByteBuffer) {
 		try {
 			if (channelContext == null || channelContext.isClosed() || channelContext.isRemoved()) {
 				if (countDownLatch != null) {
@@ -294,10 +354,10 @@ public abstract class Aio {
 			SendRunnable<SessionContext, P, R> sendRunnable = channelContext.getSendRunnable();
 			PacketWithMeta<P> packetWithMeta = null;
 			boolean isAdded = false;
-			if (countDownLatch == null) {
+			if (countDownLatch == null && preEncodedByteBuffer == null) {
 				isAdded = sendRunnable.addMsg(packet);
 			} else {
-				packetWithMeta = new PacketWithMeta<>(packet, countDownLatch);
+				packetWithMeta = new PacketWithMeta<>(packet, countDownLatch, preEncodedByteBuffer);
 				isAdded = sendRunnable.addMsg(packetWithMeta);
 			}
 
@@ -309,7 +369,7 @@ public abstract class Aio {
 			}
 
 			//SynThreadPoolExecutor synThreadPoolExecutor = channelContext.getGroupContext().getGroupExecutor();
-			channelContext.getGroupContext().getTioExecutor().execute(sendRunnable);
+			sendRunnable.execute();
 
 			if (isSingleBlock) {
 				long timeout = 10;
@@ -478,6 +538,21 @@ public abstract class Aio {
 	 */
 	private static <SessionContext, P extends Packet, R> Boolean sendToSet(GroupContext<SessionContext, P, R> groupContext,
 			ObjWithLock<Set<ChannelContext<SessionContext, P, R>>> setWithLock, P packet, ChannelContextFilter<SessionContext, P, R> channelContextFilter, boolean isBlock) {
+		//群发期间不持有集合的锁，加入/离开不会被群发卡住
+		return sendToList(groupContext, snapshot(setWithLock), packet, channelContextFilter, isBlock);
+	}
+
+	/**
+	 * 发消息到一组ChannelContext
+	 * @param groupContext
+	 * @param set 调用者不能再修改
+	 * @param packet
+	 * @param channelContextFilter
+	 * @param isBlock
+	 */
+	@SuppressWarnings("unchecked")
+	private static <SessionContext, P extends Packet, R> Boolean sendToList(GroupContext<SessionContext, P, R> groupContext,
+			List<ChannelContext<SessionContext, P, R>> set, P packet, ChannelContextFilter<SessionContext, P, R> channelContextFilter, boolean isBlock) {
 		//		if (isBlock)
 		//		{
 		//			try
@@ -489,18 +564,22 @@ public abstract class Aio {
 		//			}
 		//		}
 
-		Lock lock = setWithLock.getLock().readLock();
-		boolean releasedLock = false;
 		try {
-			lock.lock();
-			Set<ChannelContext<SessionContext, P, R>> set = setWithLock.getObj();
 			if (set.size() == 0) {
 				log.debug("集合为空");
 				return false;
 			}
+			AioHandler<SessionContext, P, R> aioHandler = groupContext.getAioHandler();
+			EncodeVariantAware<SessionContext, P, R> encodeVariantAware = null;
+
+			//编码变体key -> 编码结果，每种变体只编码一次
+			Map<Object, ByteBuffer> encodedVariants = null;
 			if (!groupContext.isEncodeCareWithChannelContext()) {
-				ByteBuffer byteBuffer = groupContext.getAioHandler().encode(packet, groupContext, null);
+				ByteBuffer byteBuffer = aioHandler.encode(packet, groupContext, null);
 				packet.setPreEncodedByteBuffer(byteBuffer);
+			} else if (aioHandler instanceof EncodeVariantAware) {
+				encodeVariantAware = (EncodeVariantAware<SessionContext, P, R>) aioHandler;
+				encodedVariants = new HashMap<>(4);
 			}
 
 			CountDownLatch countDownLatch = null;
@@ -519,16 +598,26 @@ public abstract class Aio {
 					}
 				}
 
+				ByteBuffer preEncodedByteBuffer = null;
+				if (encodeVariantAware != null) {
+					Object variantKey = encodeVariantAware.getEncodeVariantKey(channelContext);
+					if (variantKey != null) {
+						preEncodedByteBuffer = encodedVariants.get(variantKey);
+						if (preEncodedByteBuffer == null) {
+							preEncodedByteBuffer = aioHandler.encode(packet, groupContext, channelContext).asReadOnlyBuffer();
+							encodedVariants.put(variantKey, preEncodedByteBuffer);
+						}
+					}
+				}
+
 				sendCount++;
 				if (isBlock) {
 					channelContext.traceBlockPacket(SynPacketAction.BEFORE_WAIT, packet, countDownLatch, null);
-					send(channelContext, packet, countDownLatch, PacketSendMode.GROUP_BLOCK);
+					send(channelContext, packet, countDownLatch, PacketSendMode.GROUP_BLOCK, preEncodedByteBuffer);
 				} else {
-					send(channelContext, packet, null, null);
+					send(channelContext, packet, null, null, preEncodedByteBuffer);
 				}
 			}
-			lock.unlock();
-			releasedLock = true;
 
 			if (sendCount == 0) {
 				return false;
@@ -540,7 +629,7 @@ public abstract class Aio {
 					timeout = timeout < 10 ? 10 : timeout;
 					boolean awaitFlag = countDownLatch.await(timeout, TimeUnit.SECONDS);
 					if (!awaitFlag) {
-						log.error("同步群发超时, size:{}, timeout:{}, packet:{}", setWithLock.getObj().size(), timeout, packet.logstr());
+						log.error("同步群发超时, size:{}, timeout:{}, packet:{}", set.size(), timeout, packet.logstr());
 						return false;
 					} else {
 						return true;
@@ -562,9 +651,24 @@ public abstract class Aio {
 			//			{
 			//				org.tio.core.GroupContext.SYN_SEND_SEMAPHORE.release();
 			//			}
-			if (!releasedLock) {
-				lock.unlock();
-			}
+		}
+	}
+
+	/**
+	 * 获取集合的快照，SnapshotSet直接使用其缓存的快照，其它集合在读锁内拷贝一份
+	 * @param setWithLock
+	 * @return
+	 */
+	private static <T> List<T> snapshot(ObjWithLock<Set<T>> setWithLock) {
+		if (setWithLock instanceof SnapshotSet) {
+			return ((SnapshotSet<T>) setWithLock).snapshot();
+		}
+		Lock lock = setWithLock.getLock().readLock();
+		try {
+			lock.lock();
+			return new ArrayList<T>(setWithLock.getObj());
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -588,13 +692,13 @@ public abstract class Aio {
 	 * @author: tanyaowu
 	 */
 	private static <SessionContext, P extends Packet, R> Boolean sendToUser(GroupContext<SessionContext, P, R> groupContext, String userid, P packet, boolean isBlock) {
-		ChannelContext<SessionContext, P, R> channelContext = groupContext.users.find(userid);
-		if (isBlock) {
-			return bSend(channelContext, packet);
-		} else {
-			send(channelContext, packet);
-			return null;
+		List<ChannelContext<SessionContext, P, R>> list = groupContext.users.findAll(userid);
+		if (list.size() == 0) {
+			log.info("用户[{}]不在线", userid);
+			return false;
 		}
+		//多端登录时，每个连接都发一份
+		return sendToList(groupContext, list, packet, null, isBlock);
 	}
 
 	/**
@@ -688,49 +792,60 @@ public abstract class Aio {
 	/**
 	 * 发送并等待响应.<br>
 	 * 注意：<br>
-	 * 1、参数packet的synSeq不为空且大于0（null、等于小于0都不行）<br>
+	 * 1、参数packet的synSeq小于等于0时，框架会自动分配一个<br>
 	 * 2、对端收到此消息后，需要回一条synSeq一样的消息<br>
 	 * 3、对于同步发送，框架层面并不会帮应用去调用handler.handler(packet, channelContext)方法，应用需要自己去处理响应的消息包，参考：groupContext.getAioHandler().handler(packet, channelContext);<br>
+	 * 4、本方法就是阻塞等待request()返回的future，不想占用线程请直接用request()<br>
 	 * 
 	 * @param channelContext
 	 * @param packet
 	 * @param timeout
-	 * @return
+	 * @return 超时或失败时返回null
 	 * @author: tanyaowu
 	 */
-	@SuppressWarnings("finally")
 	public static <SessionContext, P extends Packet, R> P synSend(ChannelContext<SessionContext, P, R> channelContext, P packet, long timeout) {
-		Integer synSeq = packet.getSynSeq();
-		if (synSeq == null || synSeq <= 0) {
-			throw new RuntimeException("synSeq必须大于0");
-		}
-
-		ChannelContextMapWithLock<SessionContext, P, R> waitingResps = channelContext.getGroupContext().getWaitingResps();
 		try {
-			waitingResps.put(synSeq, packet);
-
-			synchronized (packet) {
-				send(channelContext, packet);
-				try {
-					packet.wait(timeout);
-				} catch (InterruptedException e) {
-					log.error(e.toString(), e);
-				}
-			}
-		} catch (Exception e) {
-			log.error(e.toString(), e);
-		} finally {
-			P respPacket = waitingResps.remove(synSeq);
-			if (respPacket == null) {
-				log.error("respPacket == null,{}", channelContext);
-				return null;
-			}
-			if (respPacket == packet) {
+			return request(channelContext, packet, timeout).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof TimeoutException) {
 				log.error("同步发送超时,{}", channelContext);
-				return null;
+			} else {
+				log.error(e.toString(), e);
 			}
-			return respPacket;
+			return null;
+		} catch (InterruptedException e) {
+			log.error(e.toString(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * 异步请求：发送packet，对方回复synSeq相同的包时，返回的CompletableFuture完成<br>
+	 * 不阻塞调用线程，一个连接上可以同时有大量在途请求；超时由时间轮处理，超时后future以TimeoutException结束，连接关闭时以IOException结束<br>
+	 * 注意：future在handler线程(或时间轮线程)中完成，后续耗时的处理请用thenXxxAsync()
+	 * @param channelContext
+	 * @param packet synSeq<=0时自动分配
+	 * @param timeout 超时时间(毫秒)
+	 * @return
+	 */
+	public static <SessionContext, P extends Packet, R> CompletableFuture<P> request(ChannelContext<SessionContext, P, R> channelContext, P packet, long timeout) {
+		PendingRequests<SessionContext, P, R> pendingRequests = channelContext.getPendingRequests();
+		int synSeq = packet.getSynSeq();
+		if (synSeq <= 0) {
+			synSeq = pendingRequests.nextSynSeq();
+			packet.setSynSeq(synSeq);
+		}
+
+		CompletableFuture<P> future = pendingRequests.add(synSeq, timeout);
+		if (future.isDone()) {
+			return future;
+		}
+
+		Boolean isSent = send(channelContext, packet, null, null);
+		if (Boolean.FALSE.equals(isSent)) {
+			pendingRequests.fail(synSeq, new IOException(channelContext + " 发送失败, synSeq:" + synSeq));
 		}
+		return future;
 	}
 
 	/**
@@ -2,26 +2,27 @@ package org.tio.core;
 
 import java.io.IOException;
 import java.nio.channels.AsynchronousSocketChannel;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 import org.tio.core.intf.Packet;
 import org.tio.core.intf.PacketWithMeta;
+import org.tio.core.maintain.MaintainUtils;
+import org.tio.core.maintain.PendingRequests;
 import org.tio.core.task.DecodeRunnable;
 import org.tio.core.task.HandlerRunnable;
 import org.tio.core.task.SendRunnable;
-import org.tio.json.Json;
+import org.tio.core.timer.intf.Timeout;
+import org.tio.core.utils.IdGenerator;
+import org.tio.monitor.PacketRateLimiter;
 
-import com.xiaoleilu.hutool.date.DatePattern;
-import com.xiaoleilu.hutool.date.DateTime;
 
 public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	private static Logger log = LoggerFactory.getLogger(ChannelContext.class);
@@ -36,18 +37,72 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 
 	private GroupContext<SessionContext, P, R> groupContext = null;
 
-	private DecodeRunnable<SessionContext, P, R> decodeRunnable = null;
+	/**
+	 * 以下几个任务和closeLock都在第一次用到时才创建，连接风暴时(例如负载均衡切换后)构造ChannelContext的开销更小
+	 */
+	private volatile DecodeRunnable<SessionContext, P, R> decodeRunnable = null;
+
+	private volatile HandlerRunnable<SessionContext, P, R> handlerRunnable = null;
 
-	private HandlerRunnable<SessionContext, P, R> handlerRunnable = null;
+	private volatile SendRunnable<SessionContext, P, R> sendRunnable = null;
 
-	private SendRunnable<SessionContext, P, R> sendRunnable = null;
-	private ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+	private volatile ReentrantReadWriteLock closeLock = null;
+
+	/**
+	 * 业务处理和发送任务使用的executor，在setGroupContext()时选定
+	 */
+	private Executor taskExecutor = null;
+
+	/**
+	 * 业务处理和发送任务是否已取消，后创建的任务也按这个值初始化
+	 */
+	private boolean tasksCanceled = false;
 	private ReadCompletionHandler<SessionContext, P, R> readCompletionHandler = null;//new ReadCompletionHandler<>(this);
 	private WriteCompletionHandler<SessionContext, P, R> writeCompletionHandler = null;//new WriteCompletionHandler<>(this);
 
+	/**
+	 * 发送缓冲链
+	 */
+	private ChannelOutboundBuffer<SessionContext, P, R> outboundBuffer = null;
+
+	/**
+	 * 是否可写，待发送的数据超过高水位时为false，降到低水位时恢复为true
+	 */
+	private final AtomicBoolean writable = new AtomicBoolean(true);
+
+	/**
+	 * 发送队列的高低水位，为null时使用GroupContext的配置
+	 */
+	private WriteBufferWaterMark writeBufferWaterMark = null;
+
+	/**
+	 * 超过高水位时的处理策略，为null时使用GroupContext的配置
+	 */
+	private OverflowPolicy overflowPolicy = null;
+
+	/**
+	 * OverflowPolicy.BLOCK时最多阻塞多久(单位: 毫秒)，为null时使用GroupContext的配置
+	 */
+	private Long overflowBlockTimeout = null;
+
+	/**
+	 * 等待响应的请求，第一次Aio.request()时创建
+	 */
+	private volatile PendingRequests<SessionContext, P, R> pendingRequests = null;
+
+	/**
+	 * 空闲检测在时间轮中的句柄
+	 */
+	private volatile Timeout idleTimeout = null;
+
+	/**
+	 * 这个连接的收包令牌桶，由PacketRateLimiter创建，只在解码线程中访问
+	 */
+	private PacketRateLimiter.ChannelBuckets rateLimitBuckets = null;
+
 	private int reconnCount = 0;//连续重连次数，连接成功后，此值会被重置0
 
-	private String userid;
+	private volatile String userid;
 
 	private boolean isWaitingClose = false;
 
@@ -62,7 +117,15 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 
 	private SessionContext sessionContext;
 
-	private String id = null;
+	/**
+	 * id，由IdGenerator生成
+	 */
+	private final long longId = IdGenerator.DEFAULT.next();
+
+	/**
+	 * id的字符串形式，第一次调用getId()时生成
+	 */
+	private volatile String id = null;
 
 	private Node clientNode;
 
@@ -78,12 +141,22 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	 */
 	public ChannelContext(GroupContext<SessionContext, P, R> groupContext, AsynchronousSocketChannel asynchronousSocketChannel) {
 		super();
-		id = java.util.UUID.randomUUID().toString();
-		groupContext.ids.bind(this);
-		this.setGroupContext(groupContext);
-		this.setAsynchronousSocketChannel(asynchronousSocketChannel);
-		this.readCompletionHandler = new ReadCompletionHandler<>(this);
-		this.writeCompletionHandler = new WriteCompletionHandler<>(this);
+		try {
+			groupContext.ids.bind(this);
+			this.setGroupContext(groupContext);
+			this.setAsynchronousSocketChannel(asynchronousSocketChannel);
+			this.readCompletionHandler = new ReadCompletionHandler<>(this);
+			this.writeCompletionHandler = new WriteCompletionHandler<>(this);
+			this.outboundBuffer = new ChannelOutboundBuffer<>(this);
+		} catch (RuntimeException | Error e) {
+			//调用方拿不到这个半成品，已经登记到groupContext中的部分只能在这里撤掉，否则会一直留在connections、ids等里面
+			try {
+				MaintainUtils.unregister(groupContext, this);
+			} catch (Throwable e1) {
+				e.addSuppressed(e1);
+			}
+			throw e;
+		}
 	}
 
 	/**
@@ -118,7 +191,19 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	 * @return the id
 	 */
 	public String getId() {
-		return id;
+		String ret = id;
+		if (ret == null) {
+			ret = IdGenerator.toString(longId);
+			id = ret;
+		}
+		return ret;
+	}
+
+	/**
+	 * @return id的数值形式
+	 */
+	public long getLongId() {
+		return longId;
 	}
 
 	/**
@@ -166,6 +251,7 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 		if (this.clientNode != null) {
 			try {
 				groupContext.clientNodes.remove(this);
+				groupContext.clientIps.remove(this);
 			} catch (Exception e1) {
 				log.error(e1.toString(), e1);
 			}
@@ -176,12 +262,13 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 		if (this.clientNode != null && !Objects.equals(UNKNOWN_ADDRESS_IP, this.clientNode.getIp())) {
 			try {
 				groupContext.clientNodes.put(this);
+				groupContext.clientIps.put(this);
 			} catch (Exception e1) {
 				log.error(e1.toString(), e1);
 			}
 		}
 
-		clientNodeTraceFilename = StringUtils.replaceAll(clientNode.toString(), ":", "_");
+		clientNodeTraceFilename = null;
 	}
 
 	/**
@@ -198,16 +285,47 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 		this.groupContext = groupContext;
 
 		if (groupContext != null) {
-			decodeRunnable = new DecodeRunnable<>(this);
-			//			closeRunnable = new CloseRunnable<>(this, null, null, groupContext.getCloseExecutor());
+			//EventLoop模式下，同一个连接的业务处理和发送固定在同一个EventLoop上
+			taskExecutor = groupContext.nextTaskExecutor();
+			decodeRunnable = null;
+			handlerRunnable = null;
+			sendRunnable = null;
 
-			//			handlerRunnableHighPrior = new HandlerRunnable<>(this, groupContext.getHandlerExecutorHighPrior());
-			handlerRunnable = new HandlerRunnable<>(this, groupContext.getTioExecutor());
+			groupContext.connections.add(this);
+		}
+	}
 
-			//			sendRunnableHighPrior = new SendRunnable<>(this, groupContext.getSendExecutorHighPrior());
-			sendRunnable = new SendRunnable<>(this, groupContext.getTioExecutor());
+	/**
+	 * 取消或恢复业务处理和发送任务，还没创建的任务在创建时按此状态初始化
+	 * @param canceled
+	 */
+	public void setTasksCanceled(boolean canceled) {
+		synchronized (this) {
+			tasksCanceled = canceled;
+			if (handlerRunnable != null) {
+				handlerRunnable.setCanceled(canceled);
+			}
+			if (sendRunnable != null) {
+				sendRunnable.setCanceled(canceled);
+			}
+		}
+	}
 
-			groupContext.connections.add(this);
+	/**
+	 * 清空已创建任务的消息队列，没创建的任务不会因此被创建
+	 */
+	public void clearTaskQueues() {
+		DecodeRunnable<SessionContext, P, R> decodeRunnable = this.decodeRunnable;
+		if (decodeRunnable != null) {
+			decodeRunnable.clearMsgQueue();
+		}
+		HandlerRunnable<SessionContext, P, R> handlerRunnable = this.handlerRunnable;
+		if (handlerRunnable != null) {
+			handlerRunnable.clearMsgQueue();
+		}
+		SendRunnable<SessionContext, P, R> sendRunnable = this.sendRunnable;
+		if (sendRunnable != null) {
+			sendRunnable.clearMsgQueue();
 		}
 	}
 
@@ -222,21 +340,53 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	 * @return the decodeRunnable
 	 */
 	public DecodeRunnable<SessionContext, P, R> getDecodeRunnable() {
-		return decodeRunnable;
+		DecodeRunnable<SessionContext, P, R> ret = decodeRunnable;
+		if (ret == null) {
+			synchronized (this) {
+				ret = decodeRunnable;
+				if (ret == null) {
+					ret = new DecodeRunnable<>(this);
+					decodeRunnable = ret;
+				}
+			}
+		}
+		return ret;
 	}
 
 	/**
 	 * @return the handlerRunnable
 	 */
 	public HandlerRunnable<SessionContext, P, R> getHandlerRunnable() {
-		return handlerRunnable;
+		HandlerRunnable<SessionContext, P, R> ret = handlerRunnable;
+		if (ret == null) {
+			synchronized (this) {
+				ret = handlerRunnable;
+				if (ret == null) {
+					ret = new HandlerRunnable<>(this, groupContext.handlerExecutor(taskExecutor));
+					ret.setCanceled(tasksCanceled);
+					handlerRunnable = ret;
+				}
+			}
+		}
+		return ret;
 	}
 
 	/**
 	 * @return the sendRunnable
 	 */
 	public SendRunnable<SessionContext, P, R> getSendRunnable() {
-		return sendRunnable;
+		SendRunnable<SessionContext, P, R> ret = sendRunnable;
+		if (ret == null) {
+			synchronized (this) {
+				ret = sendRunnable;
+				if (ret == null) {
+					ret = new SendRunnable<>(this, taskExecutor);
+					ret.setCanceled(tasksCanceled);
+					sendRunnable = ret;
+				}
+			}
+		}
+		return ret;
 	}
 
 	/**
@@ -267,6 +417,7 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	public void setClosed(boolean isClosed) {
 		this.isClosed = isClosed;
 		if (isClosed) {
+			wakeUpWritableWaiters();
 			if (clientNode == null || (!UNKNOWN_ADDRESS_IP.equals(clientNode.getIp()))) {
 				String before = this.toString();
 				assignAnUnknownClientNode();
@@ -275,6 +426,31 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 		}
 	}
 
+	/**
+	 * 获取等待响应的请求表，第一次调用时创建
+	 * @return
+	 */
+	public PendingRequests<SessionContext, P, R> getPendingRequests() {
+		if (pendingRequests == null) {
+			synchronized (this) {
+				if (pendingRequests == null) {
+					pendingRequests = new PendingRequests<>(this);
+				}
+			}
+		}
+		return pendingRequests;
+	}
+
+	/**
+	 * 连接关闭时，让所有在途请求以throwable结束
+	 * @param throwable
+	 */
+	public void failPendingRequests(Throwable throwable) {
+		if (pendingRequests != null) {
+			pendingRequests.failAll(throwable);
+		}
+	}
+
 	/**
 	 * @return the stat
 	 */
@@ -282,6 +458,20 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 		return stat;
 	}
 
+	/**
+	 * @return the rateLimitBuckets
+	 */
+	public PacketRateLimiter.ChannelBuckets getRateLimitBuckets() {
+		return rateLimitBuckets;
+	}
+
+	/**
+	 * @param rateLimitBuckets the rateLimitBuckets to set
+	 */
+	public void setRateLimitBuckets(PacketRateLimiter.ChannelBuckets rateLimitBuckets) {
+		this.rateLimitBuckets = rateLimitBuckets;
+	}
+
 	/**
 	 * @return the writeCompletionHandler
 	 */
@@ -289,6 +479,156 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 		return writeCompletionHandler;
 	}
 
+	/**
+	 * 根据待发送的字节数和packet数更新可写状态，状态变化时通知AioListener.onWritabilityChanged()
+	 */
+	public void updateWritability() {
+		WriteBufferWaterMark waterMark = getWriteBufferWaterMark();
+		long pendingBytes = outboundBuffer.getPendingBytes();
+		int pendingPackets = outboundBuffer.getPendingPackets();
+		if (writable.get()) {
+			if (waterMark.isAboveHigh(pendingBytes, pendingPackets) && writable.compareAndSet(true, false)) {
+				log.warn("{} 待发送的数据超过高水位，变为不可写，pendingBytes:{}, pendingPackets:{}, {}", this, pendingBytes, pendingPackets, waterMark);
+				fireWritabilityChanged(false);
+			}
+		} else {
+			if (waterMark.isBelowLow(pendingBytes, pendingPackets) && writable.compareAndSet(false, true)) {
+				log.info("{} 待发送的数据降到低水位，恢复可写，pendingBytes:{}, pendingPackets:{}", this, pendingBytes, pendingPackets);
+				synchronized (writable) {
+					writable.notifyAll();
+				}
+				fireWritabilityChanged(true);
+			}
+		}
+	}
+
+	private void fireWritabilityChanged(boolean isWritable) {
+		try {
+			groupContext.getAioListener().onWritabilityChanged(this, isWritable);
+		} catch (Throwable e) {
+			log.error(e.toString(), e);
+		}
+	}
+
+	/**
+	 * 连接要关闭了，唤醒awaitWritable()中等待的线程，不用等到超时
+	 */
+	private void wakeUpWritableWaiters() {
+		synchronized (writable) {
+			writable.notifyAll();
+		}
+	}
+
+	/**
+	 * 等待连接恢复可写，连接关闭时提前返回
+	 * @param timeout 单位: 毫秒
+	 * @return true: 已经可写
+	 */
+	public boolean awaitWritable(long timeout) {
+		if (writable.get()) {
+			return true;
+		}
+		long deadline = System.currentTimeMillis() + timeout;
+		synchronized (writable) {
+			while (!writable.get() && !isClosed && !isWaitingClose) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					break;
+				}
+				try {
+					writable.wait(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		return writable.get();
+	}
+
+	/**
+	 * 是否可写，为false时表示待发送的数据超过了高水位，对方消费太慢
+	 * @return
+	 */
+	public boolean isWritable() {
+		return writable.get();
+	}
+
+	/**
+	 * @return the writeBufferWaterMark
+	 */
+	public WriteBufferWaterMark getWriteBufferWaterMark() {
+		if (writeBufferWaterMark != null) {
+			return writeBufferWaterMark;
+		}
+		return groupContext.getWriteBufferWaterMark();
+	}
+
+	/**
+	 * 单独设置本连接的高低水位
+	 * @param writeBufferWaterMark the writeBufferWaterMark to set
+	 */
+	public void setWriteBufferWaterMark(WriteBufferWaterMark writeBufferWaterMark) {
+		this.writeBufferWaterMark = writeBufferWaterMark;
+		updateWritability();
+	}
+
+	/**
+	 * @return the overflowPolicy
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		if (overflowPolicy != null) {
+			return overflowPolicy;
+		}
+		return groupContext.getOverflowPolicy();
+	}
+
+	/**
+	 * 单独设置本连接超过高水位时的处理策略
+	 * @param overflowPolicy the overflowPolicy to set
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * @return the overflowBlockTimeout
+	 */
+	public long getOverflowBlockTimeout() {
+		if (overflowBlockTimeout != null) {
+			return overflowBlockTimeout;
+		}
+		return groupContext.getOverflowBlockTimeout();
+	}
+
+	/**
+	 * @param overflowBlockTimeout the overflowBlockTimeout to set
+	 */
+	public void setOverflowBlockTimeout(Long overflowBlockTimeout) {
+		this.overflowBlockTimeout = overflowBlockTimeout;
+	}
+
+	/**
+	 * @return the outboundBuffer
+	 */
+	public ChannelOutboundBuffer<SessionContext, P, R> getOutboundBuffer() {
+		return outboundBuffer;
+	}
+
+	/**
+	 * @return the idleTimeout
+	 */
+	public Timeout getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * @param idleTimeout the idleTimeout to set
+	 */
+	public void setIdleTimeout(Timeout idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
 	/**
 	 * @return the reConnCount
 	 */
@@ -335,7 +675,17 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	 * @return the closeLock
 	 */
 	public ReentrantReadWriteLock getCloseLock() {
-		return closeLock;
+		ReentrantReadWriteLock ret = closeLock;
+		if (ret == null) {
+			synchronized (this) {
+				ret = closeLock;
+				if (ret == null) {
+					ret = new ReentrantReadWriteLock();
+					closeLock = ret;
+				}
+			}
+		}
+		return ret;
 	}
 
 	/**
@@ -350,6 +700,9 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	 */
 	public void setWaitingClose(boolean isWaitingClose) {
 		this.isWaitingClose = isWaitingClose;
+		if (isWaitingClose) {
+			wakeUpWritableWaiters();
+		}
 	}
 
 	/**
@@ -359,7 +712,7 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	 */
 	@Override
 	public int hashCode() {
-		return this.id.hashCode();
+		return Long.hashCode(longId);
 	}
 
 	//	/**
@@ -397,8 +750,6 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 		}
 	}
 
-	private Logger traceSynPacketLog = LoggerFactory.getLogger("tio-client-trace-syn-log");
-
 	/**
 	 * 跟踪同步消息，主要是跟踪锁的情况，用于问题排查。
 	 * @param synPacketAction
@@ -408,32 +759,7 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	 */
 	public void traceBlockPacket(SynPacketAction synPacketAction, Packet packet, CountDownLatch countDownLatch, Map<String, Object> extmsg) {
 		if (isTraceSynPacket) {
-			ChannelContext<SessionContext, P, R> channelContext = this;
-			Map<String, Object> map = new HashMap<>();
-			map.put("time", DateTime.now().toString(DatePattern.NORM_DATETIME_MS_FORMAT));
-			map.put("c_id", channelContext.getId());
-			map.put("c", channelContext.toString());
-			map.put("action", synPacketAction);
-
-			MDC.put("tio_client_syn", channelContext.getClientNodeTraceFilename());
-
-			if (packet != null) {
-				map.put("p_id", channelContext.getClientNode().getPort() + "_" + packet.getId()); //packet id
-				map.put("p_respId", packet.getRespId());
-				map.put("packet", packet.logstr());
-			}
-
-			if (countDownLatch != null) {
-				map.put("countDownLatch", countDownLatch.hashCode() + " " + countDownLatch.getCount());
-			}
-
-			if (extmsg != null) {
-				map.putAll(extmsg);
-			}
-			String logstr = Json.toJson(map);
-			traceSynPacketLog.info(logstr);
-			log.error(logstr);
-
+			this.getGroupContext().getClientTraceHandler().traceBlockPacket(this, synPacketAction, packet, countDownLatch, extmsg);
 		}
 	}
 
@@ -455,7 +781,12 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	 * @return the clientNodeTraceFilename
 	 */
 	public String getClientNodeTraceFilename() {
-		return clientNodeTraceFilename;
+		String ret = clientNodeTraceFilename;
+		if (ret == null && clientNode != null) {
+			ret = clientNode.toString().replace(':', '_');
+			clientNodeTraceFilename = ret;
+		}
+		return ret;
 	}
 
 	/**
@@ -473,6 +804,9 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 	 */
 	@SuppressWarnings("unchecked")
 	public void processAfterSent(Object obj, Boolean isSentSuccess) {
+		outboundBuffer.decrementPendingPackets();
+		updateWritability();
+
 		P packet = null;
 		PacketWithMeta<P> packetWithMeta = null;
 		boolean isPacket = obj instanceof Packet;
@@ -482,8 +816,10 @@ public abstract class ChannelContext<SessionContext, P extends Packet, R> {
 			packetWithMeta = (PacketWithMeta<P>) obj;
 			packet = packetWithMeta.getPacket();
 			CountDownLatch countDownLatch = packetWithMeta.getCountDownLatch();
-			traceBlockPacket(SynPacketAction.BEFORE_DOWN, packet, countDownLatch, null);
-			countDownLatch.countDown();
+			if (countDownLatch != null) {
+				traceBlockPacket(SynPacketAction.BEFORE_DOWN, packet, countDownLatch, null);
+				countDownLatch.countDown();
+			}
 		}
 		try {
 			log.info("{} 已经发送 {}", this, packet.logstr());
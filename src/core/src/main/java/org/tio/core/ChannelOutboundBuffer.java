@@ -0,0 +1,444 @@
+package org.tio.core;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tio.core.buffer.PooledByteBuffer;
+import org.tio.core.intf.Packet;
+import org.tio.core.utils.AioUtils;
+
+/**
+ * 每个ChannelContext一个的发送缓冲链，所有写操作都经过这里<br>
+ * 1、编码后的ByteBuffer先加到链上(addMessage)，flush()时一批一批写出去<br>
+ * 2、同一时刻只有一个写操作(CAS写状态，不阻塞任何线程)，一次write可能只写出一部分，写回调会接着写剩下的，整批写完后由写回调直接取下一批<br>
+ * 3、只有某个packet的数据全部写出去了，才会触发该packet的processAfterSent<br>
+ * 4、打开合并写(GroupContext.setWriteCoalescing())时，由flushOrSchedule()决定马上写还是延迟一会儿再写<br>
+ * 5、从池中借来的buffer(见BufferEncoder)，在写完、发送失败或被丢弃时还给池
+ * @param <SessionContext>
+ * @param <P>
+ * @param <R>
+ */
+public class ChannelOutboundBuffer<SessionContext, P extends Packet, R> {
+	private static Logger log = LoggerFactory.getLogger(ChannelOutboundBuffer.class);
+
+	/**
+	 * 一次聚集写最多多少个buffer(linux的IOV_MAX为1024)
+	 */
+	public static final int MAX_BATCH_SIZE = 1024;
+
+	private ChannelContext<SessionContext, P, R> channelContext = null;
+
+	/**
+	 * 已加入还没开始写的
+	 */
+	private final ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * 已加入但还没写出去的字节数(包括正在写的)
+	 */
+	private final AtomicLong pendingBytes = new AtomicLong();
+
+	/**
+	 * 已经调用发送但还没触发onAfterSent的packet数(包括还在SendRunnable队列中没编码的)
+	 */
+	private final AtomicInteger pendingPackets = new AtomicInteger();
+
+	private static final int IDLE = 0;
+
+	private static final int WRITING = 1;
+
+	/**
+	 * 写状态，同一时刻只允许一个写操作：把状态从IDLE改成WRITING的线程负责写，写完(或写失败)后改回IDLE
+	 */
+	private final AtomicInteger writeState = new AtomicInteger(IDLE);
+
+	/**
+	 * 加到链上但还没flush的字节数，合并写时用来判断是否攒够了(近似值)
+	 */
+	private final AtomicLong unflushedBytes = new AtomicLong();
+
+	/**
+	 * 是否已经安排了延迟flush
+	 */
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	/**
+	 * Aio.flush()设置，下一次flushOrSchedule()不再等待
+	 */
+	private volatile boolean flushRequested = false;
+
+	private final Runnable delayedFlushTask = new Runnable() {
+		@Override
+		public void run() {
+			flushScheduled.set(false);
+			flush();
+		}
+	};
+
+	/**
+	 * 正在写的一批，只有处于WRITING状态时，由负责写的线程(或写回调)访问
+	 */
+	private Entry[] flushedEntries = new Entry[0];
+	private ByteBuffer[] flushedBuffers = new ByteBuffer[0];
+	private int flushedCount = 0;
+
+	/**
+	 * 正在写的一批中，第一个还没写完的下标
+	 */
+	private int flushedOffset = 0;
+
+	/**
+	 *
+	 * @param channelContext
+	 */
+	public ChannelOutboundBuffer(ChannelContext<SessionContext, P, R> channelContext) {
+		this.channelContext = channelContext;
+	}
+
+	/**
+	 * 加到发送链上，还不会发送，需要调用flush()
+	 * @param byteBuffer 已经flip过的buffer
+	 * @param packets Packet or PacketWithMeta or List<PacketWithMeta> or List<Packet>
+	 * @param packetCount packets中有多少个packet
+	 */
+	public void addMessage(ByteBuffer byteBuffer, Object packets, int packetCount) {
+		addMessage(byteBuffer, packets, packetCount, null);
+	}
+
+	/**
+	 * 加到发送链上，还不会发送，需要调用flush()
+	 * @param byteBuffer 已经flip过的buffer
+	 * @param packets Packet or PacketWithMeta or List<PacketWithMeta> or List<Packet>
+	 * @param packetCount packets中有多少个packet
+	 * @param pooledByteBuffer byteBuffer是从池中借来的时候不为null，写完或发送失败后由本类负责release
+	 */
+	public void addMessage(ByteBuffer byteBuffer, Object packets, int packetCount, PooledByteBuffer pooledByteBuffer) {
+		pendingBytes.addAndGet(byteBuffer.remaining());
+		unflushedBytes.addAndGet(byteBuffer.remaining());
+		entries.add(new Entry(byteBuffer, packets, packetCount, pooledByteBuffer));
+		channelContext.updateWritability();
+	}
+
+	/**
+	 * 把链上的数据写出去。如果已经有写操作在进行，则由它的写回调接着写，本方法立即返回，不会等待
+	 */
+	public void flush() {
+		unflushedBytes.set(0);
+		if (entries.isEmpty()) {
+			return;
+		}
+		if (!writeState.compareAndSet(IDLE, WRITING)) {
+			return;
+		}
+		writeNextOrRelease();
+	}
+
+	/**
+	 * 没打开合并写时等同于flush()；打开时，没攒够就安排一次延迟flush，本方法立即返回
+	 * @param immediate true: 马上写(有延迟敏感的消息)
+	 */
+	public void flushOrSchedule(boolean immediate) {
+		WriteCoalescing writeCoalescing = channelContext.getGroupContext().getWriteCoalescing();
+		if (immediate || flushRequested || !writeCoalescing.isEnabled() || writeCoalescing.isFull(unflushedBytes.get())) {
+			flushRequested = false;
+			flush();
+			return;
+		}
+
+		//正在写，写完后会接着写链上的数据，不用再等
+		if (isWriting()) {
+			return;
+		}
+
+		if (flushScheduled.compareAndSet(false, true)) {
+			channelContext.getGroupContext().scheduleFlush(delayedFlushTask, writeCoalescing.getFlushDelayMicros());
+		}
+	}
+
+	/**
+	 * 要求下一次flushOrSchedule()马上写，由Aio.flush()调用
+	 */
+	public void requestFlush() {
+		flushRequested = true;
+	}
+
+	/**
+	 * 须处于WRITING状态。有数据就写下一批，没有数据就改回IDLE
+	 */
+	void writeNextOrRelease() {
+		while (true) {
+			if (prepareBatch()) {
+				write();
+				return;
+			}
+
+			writeState.set(IDLE);
+
+			//改回IDLE前后可能有新数据加进来(加数据的线程看到WRITING就直接返回了)，再检查一次，避免数据滞留在链上
+			if (entries.isEmpty() || !writeState.compareAndSet(IDLE, WRITING)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 从链上取下一批
+	 * @return false: 链上没有数据
+	 */
+	private boolean prepareBatch() {
+		int count = 0;
+		Entry entry = null;
+		while (count < MAX_BATCH_SIZE && (entry = entries.poll()) != null) {
+			if (count == flushedEntries.length) {
+				int newLength = Math.min(Math.max(count * 2, 16), MAX_BATCH_SIZE);
+				Entry[] newEntries = new Entry[newLength];
+				System.arraycopy(flushedEntries, 0, newEntries, 0, count);
+				flushedEntries = newEntries;
+				flushedBuffers = new ByteBuffer[newLength];
+			}
+			flushedEntries[count] = entry;
+			count++;
+		}
+
+		if (count > 1 && !channelContext.getGroupContext().isGatheringWrite()) {
+			flushedEntries[0] = merge(flushedEntries, count);
+			for (int i = 1; i < count; i++) {
+				flushedEntries[i] = null;
+			}
+			count = 1;
+		}
+
+		for (int i = 0; i < count; i++) {
+			flushedBuffers[i] = flushedEntries[i].byteBuffer;
+		}
+		for (int i = count; i < flushedCount; i++) {
+			flushedEntries[i] = null;
+			flushedBuffers[i] = null;
+		}
+
+		flushedCount = count;
+		flushedOffset = 0;
+		return count > 0;
+	}
+
+	/**
+	 * 不用聚集写时，把一批合并成一个buffer，合并后原来的buffer就还给池了
+	 */
+	private static Entry merge(Entry[] entries, int count) {
+		int capacity = 0;
+		int packetCount = 0;
+		for (int i = 0; i < count; i++) {
+			capacity += entries[i].byteBuffer.remaining();
+			packetCount += entries[i].packetCount;
+		}
+
+		ByteBuffer allByteBuffer = ByteBuffer.allocate(capacity);
+		List<Object> packets = new ArrayList<>(packetCount);
+		for (int i = 0; i < count; i++) {
+			Entry entry = entries[i];
+			allByteBuffer.put(entry.byteBuffer);
+			entry.release();
+			if (entry.packets instanceof List) {
+				packets.addAll((List<?>) entry.packets);
+			} else {
+				packets.add(entry.packets);
+			}
+		}
+		allByteBuffer.flip();
+		return new Entry(allByteBuffer, packets, packetCount, null);
+	}
+
+	/**
+	 * 写出当前批中还没写完的部分
+	 */
+	void write() {
+		WriteCompletionHandler<SessionContext, P, R> writeCompletionHandler = channelContext.getWriteCompletionHandler();
+		if (!AioUtils.checkBeforeIO(channelContext)) {
+			writeCompletionHandler.failed(null, this);
+			return;
+		}
+
+		AsynchronousSocketChannel asynchronousSocketChannel = channelContext.getAsynchronousSocketChannel();
+		channelContext.getGroupContext().getGroupStat().getWrites().increment();
+		try {
+			asynchronousSocketChannel.write(flushedBuffers, flushedOffset, flushedCount - flushedOffset, 0L, TimeUnit.MILLISECONDS, this, writeCompletionHandler);
+		} catch (Throwable e) {
+			writeCompletionHandler.failed(e, this);
+		}
+	}
+
+	/**
+	 * 已经写出去的字节数，由写回调调用
+	 * @param bytes
+	 */
+	void onWritten(long bytes) {
+		pendingBytes.addAndGet(-bytes);
+		channelContext.updateWritability();
+	}
+
+	/**
+	 * 取出当前批中已经写完的下一个，没有则返回null，由写回调调用
+	 * @return
+	 */
+	Entry pollWritten() {
+		if (flushedOffset < flushedCount && !flushedBuffers[flushedOffset].hasRemaining()) {
+			Entry entry = flushedEntries[flushedOffset];
+			flushedEntries[flushedOffset] = null;
+			flushedOffset++;
+			return entry;
+		}
+		return null;
+	}
+
+	/**
+	 * 当前批是否写完了
+	 * @return
+	 */
+	boolean isBatchDone() {
+		return flushedOffset >= flushedCount;
+	}
+
+	/**
+	 * 写失败时，取出当前批中没写完的，并改回IDLE
+	 * @return
+	 */
+	List<Entry> failBatch() {
+		List<Entry> ret = new ArrayList<>(flushedCount - flushedOffset);
+		for (int i = flushedOffset; i < flushedCount; i++) {
+			Entry entry = flushedEntries[i];
+			if (entry != null) {
+				pendingBytes.addAndGet(-entry.byteBuffer.remaining());
+				ret.add(entry);
+			}
+			flushedEntries[i] = null;
+			flushedBuffers[i] = null;
+		}
+		flushedCount = 0;
+		flushedOffset = 0;
+		writeState.set(IDLE);
+		channelContext.updateWritability();
+		return ret;
+	}
+
+	/**
+	 * 连接关闭时，把还没开始写的都按发送失败处理
+	 */
+	public void clear() {
+		Entry entry = null;
+		while ((entry = entries.poll()) != null) {
+			fail(entry);
+		}
+	}
+
+	/**
+	 * 丢弃最早的一个还没开始写的，按发送失败处理
+	 * @return false: 没有可丢弃的(都已经在写了)
+	 */
+	public boolean dropOldest() {
+		Entry entry = entries.poll();
+		if (entry == null) {
+			return false;
+		}
+		fail(entry);
+		return true;
+	}
+
+	private void fail(Entry entry) {
+		pendingBytes.addAndGet(-entry.byteBuffer.remaining());
+		entry.release();
+		try {
+			channelContext.getWriteCompletionHandler().handle(null, entry.packets, false);
+		} catch (Exception e) {
+			log.error(e.toString(), e);
+		}
+		channelContext.updateWritability();
+	}
+
+	/**
+	 * 调用发送时加1
+	 */
+	public void incrementPendingPackets() {
+		pendingPackets.incrementAndGet();
+	}
+
+	/**
+	 * 触发onAfterSent时减1
+	 */
+	public void decrementPendingPackets() {
+		pendingPackets.decrementAndGet();
+	}
+
+	/**
+	 * @return 已经调用发送但还没触发onAfterSent的packet数
+	 */
+	public int getPendingPackets() {
+		return pendingPackets.get();
+	}
+
+	/**
+	 * @return 已加入但还没写出去的字节数(包括正在写的)
+	 */
+	public long getPendingBytes() {
+		return pendingBytes.get();
+	}
+
+	/**
+	 * @return 是否有写操作在进行
+	 */
+	public boolean isWriting() {
+		return writeState.get() == WRITING;
+	}
+
+	/**
+	 * @return 链上还没开始写的是否为空
+	 */
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * 发送链上的一个节点
+	 */
+	static final class Entry {
+		final ByteBuffer byteBuffer;
+
+		/**
+		 * Packet or PacketWithMeta or List<PacketWithMeta> or List<Packet>
+		 */
+		final Object packets;
+
+		final int packetCount;
+
+		/**
+		 * byteBuffer是从池中借来的时候不为null
+		 */
+		private PooledByteBuffer pooledByteBuffer;
+
+		Entry(ByteBuffer byteBuffer, Object packets, int packetCount, PooledByteBuffer pooledByteBuffer) {
+			this.byteBuffer = byteBuffer;
+			this.packets = packets;
+			this.packetCount = packetCount;
+			this.pooledByteBuffer = pooledByteBuffer;
+		}
+
+		/**
+		 * 把借来的buffer还给池，可以重复调用
+		 */
+		void release() {
+			PooledByteBuffer pooledByteBuffer = this.pooledByteBuffer;
+			if (pooledByteBuffer != null) {
+				this.pooledByteBuffer = null;
+				pooledByteBuffer.release();
+			}
+		}
+	}
+}
@@ -12,12 +12,12 @@ public class ChannelStat {
 	/**
 	 * 最近一次收到业务消息包的时间(一个完整的业务消息包，一部分消息不算)
 	 */
-	private long latestTimeOfReceivedPacket = SystemTimer.currentTimeMillis();
+	private volatile long latestTimeOfReceivedPacket = SystemTimer.currentTimeMillis();
 
 	/**
 	 * 最近一次发送业务消息包的时间(一个完整的业务消息包，一部分消息不算)
 	 */
-	private long latestTimeOfSentPacket = SystemTimer.currentTimeMillis();
+	private volatile long latestTimeOfSentPacket = SystemTimer.currentTimeMillis();
 
 	/**
 	 * ChannelContext对象创建的时间
@@ -69,6 +69,11 @@ public class ChannelStat {
 	 */
 	private AtomicLong receivedPackets = new AtomicLong();
 
+	/**
+	 * 本连接超过收包速度限制的packet数(见PacketRateLimiter)，丢包时按这个数打日志，所以不受GroupContext.isChannelStatEnabled()控制
+	 */
+	private AtomicLong rateLimitedPackets = new AtomicLong();
+
 	/**
 	 * @return the timeLatestReceivedMsg
 	 */
@@ -181,6 +186,20 @@ public class ChannelStat {
 		this.receivedPackets = receivedPackets;
 	}
 
+	/**
+	 * @return the rateLimitedPackets
+	 */
+	public AtomicLong getRateLimitedPackets() {
+		return rateLimitedPackets;
+	}
+
+	/**
+	 * @param rateLimitedPackets the rateLimitedPackets to set
+	 */
+	public void setRateLimitedPackets(AtomicLong rateLimitedPackets) {
+		this.rateLimitedPackets = rateLimitedPackets;
+	}
+
 	/**
 	 * @return the timeClosed
 	 */
@@ -1,5 +1,6 @@
 package org.tio.core;
 
+import java.io.IOException;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
@@ -105,21 +106,14 @@ public class CloseRunnable<SessionContext, P extends Packet, R> implements Runna
 				}
 
 				//必须先取消任务再清空队列
-				//				channelContext.getDecodeRunnable().setCanceled(true);
-				channelContext.getHandlerRunnable().setCanceled(true);
-				//		channelContext.getHandlerRunnableHighPrior().setCanceled(true);
-				channelContext.getSendRunnable().setCanceled(true);
-				//		channelContext.getSendRunnableHighPrior().setCanceled(true);
-
-				channelContext.getDecodeRunnable().clearMsgQueue();
-				channelContext.getHandlerRunnable().clearMsgQueue();
-				//		channelContext.getHandlerRunnableHighPrior().clearMsgQueue();
-				channelContext.getSendRunnable().clearMsgQueue();
-				//		channelContext.getSendRunnableHighPrior().clearMsgQueue();
+				channelContext.setTasksCanceled(true);
+				channelContext.clearTaskQueues();
+				channelContext.failPendingRequests(new IOException(channelContext + " 连接已关闭, " + remark));
 
 				log.info("准备关闭连接:{}, isNeedRemove:{}, {}", channelContext, isRemove, remark);
 
 				GroupContext<SessionContext, P, R> groupContext = channelContext.getGroupContext();
+				groupContext.stopIdleCheck(channelContext);
 				AioListener<SessionContext, P, R> aioListener = groupContext.getAioListener();
 
 				try {
@@ -147,7 +141,7 @@ public class CloseRunnable<SessionContext, P extends Packet, R> implements Runna
 					try {
 						channelContext.setClosed(true);
 						channelContext.setRemoved(isRemove);
-						channelContext.getGroupContext().getGroupStat().getClosed().incrementAndGet();
+						channelContext.getGroupContext().getGroupStat().getClosed().increment();
 						channelContext.getStat().setTimeClosed(SystemTimer.currentTimeMillis());
 					} catch (Exception e) {
 						log.error(e.toString(), e);
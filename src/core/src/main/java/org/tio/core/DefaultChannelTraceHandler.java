@@ -2,6 +2,7 @@ package org.tio.core;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +23,8 @@ public class DefaultChannelTraceHandler<SessionContext, P extends Packet, R> imp
 
 	private Logger clientTraceLog = LoggerFactory.getLogger("tio-client-trace-log");
 
+	private Logger traceSynPacketLog = LoggerFactory.getLogger("tio-client-trace-syn-log");
+
 	/**
 	 * 
 	 * @author: tanyaowu
@@ -56,4 +59,40 @@ public class DefaultChannelTraceHandler<SessionContext, P extends Packet, R> imp
 		}
 		clientTraceLog.info(Json.toJson(map));
 	}
+
+	/**
+	 * 跟踪同步消息，主要是跟踪锁的情况，用于问题排查。
+	 * @param channelContext
+	 * @param synPacketAction
+	 * @param packet
+	 * @param countDownLatch
+	 * @param extmsg
+	 */
+	@Override
+	public void traceBlockPacket(ChannelContext<SessionContext, P, R> channelContext, SynPacketAction synPacketAction, Packet packet, CountDownLatch countDownLatch,
+			Map<String, Object> extmsg) {
+		Map<String, Object> map = new HashMap<>();
+		map.put("time", DateTime.now().toString(DatePattern.NORM_DATETIME_MS_FORMAT));
+		map.put("c_id", channelContext.getId());
+		map.put("c", channelContext.toString());
+		map.put("action", synPacketAction);
+
+		MDC.put("tio_client_syn", channelContext.getClientNodeTraceFilename());
+
+		if (packet != null) {
+			map.put("p_id", channelContext.getClientNode().getPort() + "_" + packet.getId()); //packet id
+			map.put("p_respId", packet.getRespId());
+			map.put("packet", packet.logstr());
+		}
+
+		if (countDownLatch != null) {
+			map.put("countDownLatch", countDownLatch.hashCode() + " " + countDownLatch.getCount());
+		}
+
+		if (extmsg != null) {
+			map.putAll(extmsg);
+		}
+		String logstr = Json.toJson(map);
+		traceSynPacketLog.info(logstr);
+	}
 }
@@ -1,7 +1,11 @@
 package org.tio.core;
 
 import java.nio.ByteOrder;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -9,21 +13,32 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tio.client.ReconnConf;
+import org.tio.core.buffer.PooledBufferAllocator;
+import org.tio.core.buffer.intf.BufferAllocator;
 import org.tio.core.intf.AioHandler;
 import org.tio.core.intf.AioListener;
 import org.tio.core.intf.ChannelTraceHandler;
 import org.tio.core.intf.GroupListener;
 import org.tio.core.intf.Packet;
-import org.tio.core.maintain.ChannelContextMapWithLock;
 import org.tio.core.maintain.ChannelContextSetWithLock;
+import org.tio.core.maintain.ClientIps;
 import org.tio.core.maintain.ClientNodes;
 import org.tio.core.maintain.Groups;
 import org.tio.core.maintain.Ids;
 import org.tio.core.maintain.IpBlacklist;
 import org.tio.core.maintain.Users;
 import org.tio.core.stat.GroupStat;
+import org.tio.core.stat.LatencyStat;
+import org.tio.core.stat.intf.LatencyListener;
+import org.tio.core.task.IdleTimerTask;
 import org.tio.core.threadpool.DefaultThreadFactory;
+import org.tio.core.threadpool.EventLoopGroup;
 import org.tio.core.threadpool.SynThreadPoolExecutor;
+import org.tio.core.threadpool.VirtualThreadExecutor;
+import org.tio.core.timer.HashedWheelTimer;
+import org.tio.core.timer.intf.Timeout;
+import org.tio.core.timer.intf.TimerTask;
+import org.tio.monitor.PacketRateLimiter;
 
 public abstract class GroupContext<SessionContext, P extends Packet, R> {
 	static Logger log = LoggerFactory.getLogger(GroupContext.class);
@@ -46,6 +61,11 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 	 */
 	public static final int READ_BUFFER_SIZE = Integer.getInteger("tio.default.read.buffer.size", 2048);
 
+	/**
+	 * 默认的buffer分配器是否使用堆外内存
+	 */
+	public static final boolean DEFAULT_BUFFER_DIRECT = Boolean.getBoolean("tio.default.buffer.direct");
+
 	public static final long KEEP_ALIVE_TIME = 90L;
 
 	private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
@@ -58,10 +78,61 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 	private PacketHandlerMode packetHandlerMode = PacketHandlerMode.SINGLE_THREAD;//.queue;
 
 	/**
-	 * 接收数据的buffer size
+	 * 业务处理和发送任务的执行方式，默认是共用的SynThreadPoolExecutor
+	 */
+	private TaskExecutorMode taskExecutorMode = TaskExecutorMode.SYN_THREAD_POOL;
+
+	/**
+	 * PacketHandlerMode.VIRTUAL_THREAD时才会创建
+	 */
+	private VirtualThreadExecutor virtualThreadExecutor = null;
+
+	/**
+	 * EventLoop的个数，<=0时取cpu核数
+	 */
+	private int eventLoopCount = 0;
+
+	/**
+	 * TaskExecutorMode.EVENT_LOOP时才会创建
+	 */
+	protected EventLoopGroup eventLoopGroup = null;
+
+	/**
+	 * 接收数据的buffer size(开启adaptiveReadBuffer时是初始值)
 	 */
 	protected int readBufferSize = READ_BUFFER_SIZE;
 
+	/**
+	 * 是否根据实际读到的数据量调整每个连接的读buffer大小，见AdaptiveReadBufferSizer
+	 */
+	protected boolean adaptiveReadBuffer = false;
+
+	/**
+	 * 空闲的连接挂起读时是否只用minReadBufferSize大小的buffer，见ReadCompletionHandler<br>
+	 * AIO每个连接始终挂着一个读操作，不这样做的话每个空闲连接都会一直占着一个readBufferSize大小的buffer
+	 */
+	protected boolean smallIdleReadBuffer = true;
+
+	/**
+	 * adaptiveReadBuffer时读buffer的最小值，也是空闲连接挂起读时用的buffer大小(见smallIdleReadBuffer)
+	 */
+	protected int minReadBufferSize = PooledBufferAllocator.sizeOf(0);
+
+	/**
+	 * adaptiveReadBuffer时读buffer的最大值，默认是PooledBufferAllocator的最大规格，再大就不池化了
+	 */
+	protected int maxReadBufferSize = PooledBufferAllocator.sizeOf(PooledBufferAllocator.SIZE_CLASS_COUNT - 1);
+
+	/**
+	 * 连接(accept得到的或主动发起的)的socket参数，由子类设置默认值
+	 */
+	protected SocketOptionProfile socketOptionProfile = new SocketOptionProfile();
+
+	/**
+	 * 读数据时用的buffer分配器
+	 */
+	protected BufferAllocator bufferAllocator = new PooledBufferAllocator(DEFAULT_BUFFER_DIRECT);
+
 	protected ReconnConf<SessionContext, P, R> reconnConf;//重连配置
 
 	private ChannelTraceHandler<SessionContext, P, R> clientTraceHandler = new DefaultChannelTraceHandler<SessionContext, P, R>();
@@ -73,6 +144,21 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 
 	protected ThreadPoolExecutor groupExecutor = null;
 
+	/**
+	 * 当前线程是否是groupExecutor的线程，即AIO回调线程，见isInGroupThread()
+	 */
+	private static final ThreadLocal<Boolean> IN_GROUP_THREAD = new ThreadLocal<Boolean>();
+
+	/**
+	 * 空闲检测、心跳、重连等共用的时间轮，第一次使用时创建
+	 */
+	private volatile HashedWheelTimer timer = null;
+
+	/**
+	 * 合并写的延迟flush，时间轮的精度(100毫秒)不够，所以单独用一个线程，第一次用到时才创建
+	 */
+	private volatile ScheduledThreadPoolExecutor flushScheduler = null;
+
 	public final ClientNodes<SessionContext, P, R> clientNodes = new ClientNodes<>();
 	public final ChannelContextSetWithLock<SessionContext, P, R> connections = new ChannelContextSetWithLock<>();
 	public final ChannelContextSetWithLock<SessionContext, P, R> connecteds = new ChannelContextSetWithLock<>();
@@ -86,13 +172,58 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 	 */
 	public final IpBlacklist ipBlacklist = new IpBlacklist();
 
-	public final ChannelContextMapWithLock<SessionContext, P, R> waitingResps = new ChannelContextMapWithLock<>();
+	/**
+	 * 每个客户端ip当前有多少个连接(服务器端在accept准入时维护)，以及每个ip有哪些ChannelContext
+	 */
+	public final ClientIps<SessionContext, P, R> clientIps = new ClientIps<>();
 
 	/**
 	 * packet编码成bytebuffer时，是否与ChannelContext相关，false: packet编码与ChannelContext无关
 	 */
 	private boolean isEncodeCareWithChannelContext = true;
 
+	/**
+	 * 批量发送时，是否把各packet编码后的ByteBuffer直接交给AsynchronousSocketChannel.write(ByteBuffer[], ...)<br>
+	 * false: 先把各ByteBuffer拷贝到一个大ByteBuffer中再发送
+	 */
+	private boolean isGatheringWrite = true;
+
+	/**
+	 * 每个连接发送队列的高低水位，默认不限制(和以前一样，对方收得慢也不丢消息)；需要背压时再设置，例如WriteBufferWaterMark.RECOMMENDED
+	 */
+	private WriteBufferWaterMark writeBufferWaterMark = WriteBufferWaterMark.UNLIMITED;
+
+	/**
+	 * 发送队列超过高水位时的处理策略，只在设置了writeBufferWaterMark后才起作用
+	 */
+	private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+	/**
+	 * OverflowPolicy.BLOCK时最多阻塞多久(单位: 毫秒)
+	 */
+	private long overflowBlockTimeout = 3000;
+
+	/**
+	 * 合并写的参数，默认不合并
+	 */
+	private WriteCoalescing writeCoalescing = WriteCoalescing.DISABLED;
+
+	/**
+	 * 是否统计每个连接的收发包数和字节数(ChannelStat)，false: 只统计GroupStat，省掉每个包几次原子操作<br>
+	 * 最近收发时间不受影响(空闲检测要用)
+	 */
+	private boolean isChannelStatEnabled = true;
+
+	/**
+	 * 解码出来的packet的对象池，为null时不回收，见PacketRecycler
+	 */
+	private PacketRecycler<P> packetRecycler = null;
+
+	/**
+	 * 收包限流，在解码后、交给AioHandler.handler()之前检查，为null时不限流，见PacketRateLimiter
+	 */
+	private volatile PacketRateLimiter packetRateLimiter = null;
+
 	protected String id;
 
 	private boolean isStopped = false;
@@ -118,8 +249,19 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 
 		LinkedBlockingQueue<Runnable> groupQueue = new LinkedBlockingQueue<Runnable>();
 		String groupThreadName = "tio-group";
-		groupExecutor = new ThreadPoolExecutor(MAX_POOL_SIZE, MAX_POOL_SIZE, KEEP_ALIVE_TIME, TimeUnit.SECONDS, groupQueue,
-				DefaultThreadFactory.getInstance(groupThreadName, Thread.NORM_PRIORITY));
+		final ThreadFactory groupThreadFactory = DefaultThreadFactory.getInstance(groupThreadName, Thread.NORM_PRIORITY);
+		groupExecutor = new ThreadPoolExecutor(MAX_POOL_SIZE, MAX_POOL_SIZE, KEEP_ALIVE_TIME, TimeUnit.SECONDS, groupQueue, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				return groupThreadFactory.newThread(new Runnable() {
+					@Override
+					public void run() {
+						IN_GROUP_THREAD.set(Boolean.TRUE);
+						r.run();
+					}
+				});
+			}
+		});
 		groupExecutor.prestartAllCoreThreads();
 	}
 
@@ -178,6 +320,94 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 		this.readBufferSize = readBufferSize;
 	}
 
+	/**
+	 * @return the adaptiveReadBuffer
+	 */
+	public boolean isAdaptiveReadBuffer() {
+		return adaptiveReadBuffer;
+	}
+
+	/**
+	 * 开启后，每个连接的读buffer从readBufferSize开始，在[minReadBufferSize, maxReadBufferSize]之间按实际读到的数据量调整
+	 * @param adaptiveReadBuffer
+	 */
+	public void setAdaptiveReadBuffer(boolean adaptiveReadBuffer) {
+		this.adaptiveReadBuffer = adaptiveReadBuffer;
+	}
+
+	/**
+	 * @return the smallIdleReadBuffer
+	 */
+	public boolean isSmallIdleReadBuffer() {
+		return smallIdleReadBuffer;
+	}
+
+	/**
+	 * 开启后(默认开启)，上一次读没有把buffer读满(socket中的数据已经读完)时，下一次读只用minReadBufferSize大小的buffer挂着，读满了再用正常大小<br>
+	 * 空闲连接因此只占一个最小规格的buffer；代价是数据间隔到达时，一条消息可能要多读一次
+	 * @param smallIdleReadBuffer
+	 */
+	public void setSmallIdleReadBuffer(boolean smallIdleReadBuffer) {
+		this.smallIdleReadBuffer = smallIdleReadBuffer;
+	}
+
+	/**
+	 * @return the minReadBufferSize
+	 */
+	public int getMinReadBufferSize() {
+		return minReadBufferSize;
+	}
+
+	/**
+	 * @return the maxReadBufferSize
+	 */
+	public int getMaxReadBufferSize() {
+		return maxReadBufferSize;
+	}
+
+	/**
+	 * adaptiveReadBuffer时读buffer的范围，minReadBufferSize也是空闲连接挂起读时用的buffer大小
+	 * @param minReadBufferSize
+	 * @param maxReadBufferSize
+	 */
+	public void setReadBufferSizeRange(int minReadBufferSize, int maxReadBufferSize) {
+		if (minReadBufferSize <= 0 || minReadBufferSize > maxReadBufferSize) {
+			throw new IllegalArgumentException("minReadBufferSize: " + minReadBufferSize + ", maxReadBufferSize: " + maxReadBufferSize);
+		}
+		this.minReadBufferSize = minReadBufferSize;
+		this.maxReadBufferSize = maxReadBufferSize;
+	}
+
+	/**
+	 * @return 连接的socket参数
+	 */
+	public SocketOptionProfile getSocketOptionProfile() {
+		return socketOptionProfile;
+	}
+
+	/**
+	 * 之后建立的连接生效
+	 * @param socketOptionProfile 连接的socket参数
+	 */
+	public void setSocketOptionProfile(SocketOptionProfile socketOptionProfile) {
+		this.socketOptionProfile = socketOptionProfile == null ? new SocketOptionProfile() : socketOptionProfile;
+	}
+
+	/**
+	 * @return the bufferAllocator
+	 */
+	public BufferAllocator getBufferAllocator() {
+		return bufferAllocator;
+	}
+
+	/**
+	 * 设置buffer分配器，请在启动前设置
+	 * @param bufferAllocator the bufferAllocator to set
+	 */
+	public void setBufferAllocator(BufferAllocator bufferAllocator) {
+		this.bufferAllocator = bufferAllocator;
+	}
+
 	/**
 	 * @return
 	 *
@@ -212,12 +442,6 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 		return reconnConf;
 	}
 
-	/**
-	 * @return the syns
-	 */
-	public ChannelContextMapWithLock<SessionContext, P, R> getWaitingResps() {
-		return waitingResps;
-	}
 
 	/**
 	 * @return the isEncodeCareWithChannelContext
@@ -233,6 +457,118 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 		this.isEncodeCareWithChannelContext = isEncodeCareWithChannelContext;
 	}
 
+	/**
+	 * @return the isGatheringWrite
+	 */
+	public boolean isGatheringWrite() {
+		return isGatheringWrite;
+	}
+
+	/**
+	 * @param isGatheringWrite the isGatheringWrite to set
+	 */
+	public void setGatheringWrite(boolean isGatheringWrite) {
+		this.isGatheringWrite = isGatheringWrite;
+	}
+
+	/**
+	 * @return the writeBufferWaterMark
+	 */
+	public WriteBufferWaterMark getWriteBufferWaterMark() {
+		return writeBufferWaterMark;
+	}
+
+	/**
+	 * @param writeBufferWaterMark the writeBufferWaterMark to set
+	 */
+	public void setWriteBufferWaterMark(WriteBufferWaterMark writeBufferWaterMark) {
+		this.writeBufferWaterMark = writeBufferWaterMark;
+	}
+
+	/**
+	 * @return the overflowPolicy
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * @param overflowPolicy the overflowPolicy to set
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * @return the overflowBlockTimeout
+	 */
+	public long getOverflowBlockTimeout() {
+		return overflowBlockTimeout;
+	}
+
+	/**
+	 * @param overflowBlockTimeout the overflowBlockTimeout to set
+	 */
+	public void setOverflowBlockTimeout(long overflowBlockTimeout) {
+		this.overflowBlockTimeout = overflowBlockTimeout;
+	}
+
+	/**
+	 * @return the writeCoalescing
+	 */
+	public WriteCoalescing getWriteCoalescing() {
+		return writeCoalescing;
+	}
+
+	/**
+	 * @param writeCoalescing the writeCoalescing to set
+	 */
+	public void setWriteCoalescing(WriteCoalescing writeCoalescing) {
+		this.writeCoalescing = writeCoalescing == null ? WriteCoalescing.DISABLED : writeCoalescing;
+	}
+
+	/**
+	 * @return the isChannelStatEnabled
+	 */
+	public boolean isChannelStatEnabled() {
+		return isChannelStatEnabled;
+	}
+
+	/**
+	 * @param isChannelStatEnabled the isChannelStatEnabled to set
+	 */
+	public void setChannelStatEnabled(boolean isChannelStatEnabled) {
+		this.isChannelStatEnabled = isChannelStatEnabled;
+	}
+
+	/**
+	 * @return the packetRecycler
+	 */
+	public PacketRecycler<P> getPacketRecycler() {
+		return packetRecycler;
+	}
+
+	/**
+	 * @param packetRecycler the packetRecycler to set
+	 */
+	public void setPacketRecycler(PacketRecycler<P> packetRecycler) {
+		this.packetRecycler = packetRecycler;
+	}
+
+	/**
+	 * @return the packetRateLimiter
+	 */
+	public PacketRateLimiter getPacketRateLimiter() {
+		return packetRateLimiter;
+	}
+
+	/**
+	 * @param packetRateLimiter 收包限流，为null时不限流
+	 */
+	public void setPacketRateLimiter(PacketRateLimiter packetRateLimiter) {
+		this.packetRateLimiter = packetRateLimiter;
+	}
+
 	/**
 	 * @return the isStop
 	 */
@@ -258,9 +594,39 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 	 * @param packetHandlerMode the packetHandlerMode to set
 	 */
 	public void setPacketHandlerMode(PacketHandlerMode packetHandlerMode) {
+		if (packetHandlerMode == PacketHandlerMode.VIRTUAL_THREAD) {
+			if (VirtualThreadExecutor.isSupported()) {
+				if (virtualThreadExecutor == null) {
+					virtualThreadExecutor = new VirtualThreadExecutor("tio-handler-");
+				}
+			} else {
+				log.warn("当前JDK({})不支持虚拟线程，PacketHandlerMode.VIRTUAL_THREAD退化为QUEUE", System.getProperty("java.version"));
+				packetHandlerMode = PacketHandlerMode.QUEUE;
+			}
+		}
 		this.packetHandlerMode = packetHandlerMode;
 	}
 
+	/**
+	 * 为新连接选择执行业务处理的executor
+	 * @param taskExecutor 该连接的任务executor，见nextTaskExecutor()
+	 * @return
+	 */
+	public Executor handlerExecutor(Executor taskExecutor) {
+		if (packetHandlerMode == PacketHandlerMode.VIRTUAL_THREAD && virtualThreadExecutor != null) {
+			return virtualThreadExecutor;
+		}
+		return taskExecutor;
+	}
+
+	/**
+	 * PacketHandlerMode.VIRTUAL_THREAD时才有值，可用来查看挂起/运行中的handler个数
+	 * @return the virtualThreadExecutor
+	 */
+	public VirtualThreadExecutor getVirtualThreadExecutor() {
+		return virtualThreadExecutor;
+	}
+
 	/**
 	 * @return the groupExecutor
 	 */
@@ -268,6 +634,71 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 		return tioExecutor;
 	}
 
+	/**
+	 * 为新连接选择执行业务处理和发送任务的executor
+	 * @return
+	 */
+	public Executor nextTaskExecutor() {
+		if (taskExecutorMode == TaskExecutorMode.EVENT_LOOP) {
+			return getEventLoopGroup().next();
+		}
+		return tioExecutor;
+	}
+
+	/**
+	 * @return the taskExecutorMode
+	 */
+	public TaskExecutorMode getTaskExecutorMode() {
+		return taskExecutorMode;
+	}
+
+	/**
+	 * 需要在连接建立之前设置，已经建立的连接不会切换executor
+	 * @param taskExecutorMode the taskExecutorMode to set
+	 */
+	public void setTaskExecutorMode(TaskExecutorMode taskExecutorMode) {
+		this.taskExecutorMode = taskExecutorMode;
+	}
+
+	/**
+	 * @return the eventLoopCount
+	 */
+	public int getEventLoopCount() {
+		return eventLoopCount;
+	}
+
+	/**
+	 * 需要在EventLoopGroup创建之前设置
+	 * @param eventLoopCount the eventLoopCount to set
+	 */
+	public void setEventLoopCount(int eventLoopCount) {
+		this.eventLoopCount = eventLoopCount;
+	}
+
+	/**
+	 * 获取EventLoopGroup，第一次调用时创建
+	 * @return
+	 */
+	public EventLoopGroup getEventLoopGroup() {
+		if (eventLoopGroup == null) {
+			synchronized (this) {
+				if (eventLoopGroup == null) {
+					eventLoopGroup = new EventLoopGroup("tio-eventloop", eventLoopCount);
+				}
+			}
+		}
+		return eventLoopGroup;
+	}
+
+	/**
+	 * 当前线程是否是AIO回调线程(读写完成、PacketHandlerMode.SINGLE_THREAD时的业务处理都在这些线程中)<br>
+	 * 这些线程不能阻塞等待发送，否则写完成的回调可能没有线程来执行
+	 * @return
+	 */
+	public static boolean isInGroupThread() {
+		return IN_GROUP_THREAD.get() != null;
+	}
+
 	/**
 	 * @return the groupExecutor
 	 */
@@ -275,6 +706,134 @@ public abstract class GroupContext<SessionContext, P extends Packet, R> {
 		return groupExecutor;
 	}
 
+	/**
+	 * 获取时间轮，第一次调用时创建
+	 * @return
+	 */
+	public HashedWheelTimer getTimer() {
+		if (timer == null) {
+			synchronized (this) {
+				if (timer == null) {
+					timer = new HashedWheelTimer("tio-timer-" + id);
+				}
+			}
+		}
+		return timer;
+	}
+
+	/**
+	 * 停止时间轮(如果创建过的话)
+	 */
+	public void stopTimer() {
+		if (timer != null) {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * delayMicros微秒后执行task(合并写的延迟flush用)，已经停止时马上在当前线程执行
+	 * @param task
+	 * @param delayMicros
+	 */
+	public void scheduleFlush(Runnable task, long delayMicros) {
+		if (flushScheduler == null) {
+			synchronized (this) {
+				if (flushScheduler == null && !isStopped) {
+					ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, DefaultThreadFactory.getInstance("tio-flush-" + id, Thread.MAX_PRIORITY));
+					scheduler.setRemoveOnCancelPolicy(true);
+					flushScheduler = scheduler;
+				}
+			}
+		}
+		ScheduledThreadPoolExecutor scheduler = flushScheduler;
+		if (scheduler != null) {
+			try {
+				scheduler.schedule(task, delayMicros, TimeUnit.MICROSECONDS);
+				return;
+			} catch (RejectedExecutionException e) {
+				//已经停止
+			}
+		}
+		task.run();
+	}
+
+	/**
+	 * 停止合并写的flush线程(如果创建过的话)
+	 */
+	public void stopFlushScheduler() {
+		synchronized (this) {
+			if (flushScheduler != null) {
+				flushScheduler.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * 每隔intervalMillis毫秒把这段时间内各环节的延迟分布(LatencyStat.intervalSnapshot())回调给listener，直到停止<br>
+	 * 还需要GroupStat.getLatencyStat().setSampleRate()打开采样
+	 * @param intervalMillis
+	 * @param listener
+	 */
+	public void startLatencyReport(final long intervalMillis, final LatencyListener listener) {
+		final LatencyStat latencyStat = getGroupStat().getLatencyStat();
+		latencyStat.intervalSnapshot();
+		getTimer().newTimeout(new TimerTask() {
+			@Override
+			public void run(Timeout timeout) throws Exception {
+				try {
+					listener.onReport(GroupContext.this, latencyStat.intervalSnapshot());
+				} catch (Throwable e) {
+					log.error(e.toString(), e);
+				}
+				if (!isStopped && !timer.isStopped()) {
+					timer.newTimeout(this, intervalMillis, TimeUnit.MILLISECONDS);
+				}
+			}
+		}, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 连接建立后调用，开始空闲检测(服务器：空闲超时就删除连接；客户端：空闲就发心跳)<br>
+	 * 重复调用时，之前的检测会被取消
+	 * @param channelContext
+	 */
+	public void startIdleCheck(ChannelContext<SessionContext, P, R> channelContext) {
+		Timeout old = channelContext.getIdleTimeout();
+		if (old != null) {
+			old.cancel();
+			channelContext.setIdleTimeout(null);
+		}
+		if (heartbeatTimeout <= 0) {
+			return;
+		}
+		IdleTimerTask<SessionContext, P, R> idleTimerTask = createIdleTimerTask(channelContext);
+		if (idleTimerTask == null) {
+			return;
+		}
+		channelContext.setIdleTimeout(getTimer().newTimeout(idleTimerTask, idleTimerTask.getIdleTime(), TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * 连接关闭时调用，取消空闲检测
+	 * @param channelContext
+	 */
+	public void stopIdleCheck(ChannelContext<SessionContext, P, R> channelContext) {
+		Timeout old = channelContext.getIdleTimeout();
+		if (old != null) {
+			old.cancel();
+			channelContext.setIdleTimeout(null);
+		}
+	}
+
+	/**
+	 * 创建空闲检测任务，由子类实现，返回null表示不做空闲检测
+	 * @param channelContext
+	 * @return
+	 */
+	protected IdleTimerTask<SessionContext, P, R> createIdleTimerTask(ChannelContext<SessionContext, P, R> channelContext) {
+		return null;
+	}
+
 	/**
 	 * @return the clientTraceHandler
 	 */
@@ -0,0 +1,57 @@
+package org.tio.core;
+
+/**
+ *  发送队列超过高水位时，新消息的处理策略
+ *
+ */
+public enum OverflowPolicy {
+	/**
+	 * 丢弃队列中最早的还没开始写的消息，再把新消息加进去
+	 */
+	DROP_OLDEST(1),
+
+	/**
+	 * 丢弃新消息
+	 */
+	DROP_NEWEST(2),
+
+	/**
+	 * 关闭这个消费太慢的连接
+	 */
+	CLOSE(3),
+
+	/**
+	 * 阻塞发送者，直到连接恢复可写或超时(超时后丢弃新消息)<br>
+	 * 在本连接的EventLoop线程(TaskExecutorMode.EVENT_LOOP)和AIO回调线程(例如PacketHandlerMode.SINGLE_THREAD时的业务处理)中发送时不阻塞，按DROP_NEWEST处理，
+	 * 因为阻塞的正是要把发送队列写出去的线程
+	 */
+	BLOCK(4);
+
+	private final int value;
+
+	public static OverflowPolicy forNumber(int value) {
+		switch (value) {
+		case 1:
+			return DROP_OLDEST;
+		case 2:
+			return DROP_NEWEST;
+		case 3:
+			return CLOSE;
+		case 4:
+			return BLOCK;
+		default:
+			return null;
+		}
+	}
+
+	private OverflowPolicy(int value) {
+		this.value = value;
+	}
+
+	/**
+	 * @return the value
+	 */
+	public int getValue() {
+		return value;
+	}
+}
@@ -14,7 +14,13 @@ public enum PacketHandlerMode {
 	/**
 	 * 把packet丢到一个队列中，让线程池去处理
 	 */
-	QUEUE(2);
+	QUEUE(2),
+
+	/**
+	 * 每个连接的消息队列由虚拟线程(JDK 21+)处理，业务handler中可以有阻塞调用，单个连接内仍然按顺序处理<br>
+	 * 不支持虚拟线程的JDK上自动退化为QUEUE
+	 */
+	VIRTUAL_THREAD(3);
 
 	private final int value;
 
@@ -24,6 +30,8 @@ public enum PacketHandlerMode {
 			return SINGLE_THREAD;
 		case 2:
 			return QUEUE;
+		case 3:
+			return VIRTUAL_THREAD;
 		default:
 			return null;
 		}
@@ -0,0 +1,155 @@
+package org.tio.core;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.tio.core.intf.Packet;
+
+/**
+ * 解码出来的packet的对象池(可选)<br>
+ * 1、decode()中用get()代替new，HandlerRunnable处理完(AioHandler.handler()返回后)会自动recycle()，稳定运行后收包不再创建packet；
+ * AioListener.onAfterReceived()在交给handler()之前调用，所以拿到的packet还没有被回收<br>
+ * 2、每个线程有自己的缓存，满了才放到全局池中，全局池也满了则交给GC；解码和处理不在同一个线程时，处理线程的缓存满了以后，回收的packet经全局池回到解码线程<br>
+ * 3、handler()中要继续持有packet(保存起来、原样发回去、交给别的线程等)时，调用packet.setRecyclable(false)；同步消息的响应包会交给等待方，不会被回收<br>
+ * 用法：groupContext.setPacketRecycler(new PacketRecycler<HelloPacket>() { protected HelloPacket newPacket() { return new HelloPacket(); } })
+ * @param <P>
+ */
+public abstract class PacketRecycler<P extends Packet> {
+
+	/**
+	 * 每个线程默认最多缓存多少个
+	 */
+	public static final int DEFAULT_MAX_PER_THREAD = 256;
+
+	/**
+	 * 全局池默认最多缓存多少个
+	 */
+	public static final int DEFAULT_MAX_SHARED = 4096;
+
+	private final int maxPerThread;
+
+	private final int maxShared;
+
+	private final ConcurrentLinkedQueue<P> sharedPool = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * 全局池中的个数(ConcurrentLinkedQueue.size()要遍历，所以单独计数)
+	 */
+	private final AtomicInteger sharedPoolSize = new AtomicInteger();
+
+	private final ThreadLocal<Object[]> threadCache = new ThreadLocal<Object[]>() {
+		@Override
+		protected Object[] initialValue() {
+			return new Object[maxPerThread];
+		}
+	};
+
+	/**
+	 * 线程缓存中的个数，和threadCache分开是为了不用包装对象
+	 */
+	private final ThreadLocal<int[]> threadCacheSize = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	/**
+	 * 新建的packet数
+	 */
+	private final LongAdder created = new LongAdder();
+
+	/**
+	 * 复用的packet数
+	 */
+	private final LongAdder reused = new LongAdder();
+
+	public PacketRecycler() {
+		this(DEFAULT_MAX_PER_THREAD, DEFAULT_MAX_SHARED);
+	}
+
+	/**
+	 *
+	 * @param maxPerThread 每个线程最多缓存多少个
+	 * @param maxShared 全局池最多缓存多少个
+	 */
+	public PacketRecycler(int maxPerThread, int maxShared) {
+		this.maxPerThread = Math.max(maxPerThread, 0);
+		this.maxShared = Math.max(maxShared, 0);
+	}
+
+	/**
+	 * 新建一个packet，池中没有可用的时调用
+	 * @return
+	 */
+	protected abstract P newPacket();
+
+	/**
+	 * 取一个packet，字段都是初始值
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public P get() {
+		P packet = null;
+		int[] size = threadCacheSize.get();
+		if (size[0] > 0) {
+			Object[] stack = threadCache.get();
+			size[0]--;
+			packet = (P) stack[size[0]];
+			stack[size[0]] = null;
+		} else {
+			packet = sharedPool.poll();
+			if (packet != null) {
+				sharedPoolSize.decrementAndGet();
+			}
+		}
+
+		if (packet == null) {
+			created.increment();
+			packet = newPacket();
+		} else {
+			reused.increment();
+		}
+		packet.setRecyclable(true);
+		return packet;
+	}
+
+	/**
+	 * 回收packet，不是由本池分配的或者已经setRecyclable(false)的会被忽略，所以重复调用也没关系
+	 * @param packet
+	 */
+	public void recycle(P packet) {
+		if (packet == null || !packet.isRecyclable()) {
+			return;
+		}
+		packet.reset();
+
+		int[] size = threadCacheSize.get();
+		if (size[0] < maxPerThread) {
+			threadCache.get()[size[0]] = packet;
+			size[0]++;
+			return;
+		}
+
+		if (sharedPoolSize.incrementAndGet() <= maxShared) {
+			sharedPool.offer(packet);
+		} else {
+			sharedPoolSize.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return 新建的packet数
+	 */
+	public long getCreated() {
+		return created.sum();
+	}
+
+	/**
+	 * @return 复用的packet数
+	 */
+	public long getReused() {
+		return reused.sum();
+	}
+}
@@ -5,24 +5,42 @@ import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.CompletionHandler;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tio.core.buffer.AdaptiveReadBufferSizer;
+import org.tio.core.buffer.PooledByteBuffer;
 import org.tio.core.intf.Packet;
 import org.tio.core.task.DecodeRunnable;
+import org.tio.core.timer.intf.Timeout;
+import org.tio.core.timer.intf.TimerTask;
 import org.tio.core.utils.AioUtils;
 
 /**
- * 
+ * 读数据的buffer只在有读操作挂起时才从GroupContext.getBufferAllocator()借，读完成(或失败)后立即归还<br>
+ * AIO每个连接始终挂着一个读操作，所以空闲连接(上一次读没有把buffer读满)只用minReadBufferSize大小的buffer挂着，见GroupContext.setSmallIdleReadBuffer()
  * @author tanyaowu 
  * 2017年4月4日 上午9:22:04
  */
-public class ReadCompletionHandler<SessionContext, P extends Packet, R> implements CompletionHandler<Integer, ByteBuffer> {
+public class ReadCompletionHandler<SessionContext, P extends Packet, R> implements CompletionHandler<Integer, PooledByteBuffer> {
 	private static Logger log = LoggerFactory.getLogger(ReadCompletionHandler.class);
 	private ChannelContext<SessionContext, P, R> channelContext = null;
-	private ByteBuffer readByteBuffer;
 
-	//	private ByteBuffer byteBuffer = ByteBuffer.allocate(ChannelContext.READ_BUFFER_SIZE);
+	/**
+	 * GroupContext.isAdaptiveReadBuffer()时才创建
+	 */
+	private AdaptiveReadBufferSizer readBufferSizer = null;
+
+	/**
+	 * 上一次读是否把buffer读满了，读满了说明socket中可能还有数据；第一次读时当作没读满
+	 */
+	private boolean lastReadFull = false;
+
+	/**
+	 * 本次挂起的读用的是不是空闲时的小buffer，这样的读不计入readBufferSizer
+	 */
+	private boolean idleRead = false;
 
 	/**
 	 * 
@@ -31,58 +49,105 @@ public class ReadCompletionHandler<SessionContext, P extends Packet, R> implemen
 	 */
 	public ReadCompletionHandler(ChannelContext<SessionContext, P, R> channelContext) {
 		this.channelContext = channelContext;
-		this.readByteBuffer = ByteBuffer.allocate(channelContext.getGroupContext().getReadBufferSize());
 	}
 
-	@Override
-	public void completed(Integer result, ByteBuffer byteBuffer) {
-		//		GroupContext<SessionContext, P, R> groupContext = channelContext.getGroupContext();
-		if (result > 0) {
-			if (channelContext.isTraceClient()) {
-				Map<String, Object> map = new HashMap<>();
-				map.put("p_r_buf_len", result);
-				channelContext.traceClient(ChannelAction.RECEIVED_BUF, null, map);
+	/**
+	 * 借一个buffer，发起一次读操作
+	 */
+	public void read() {
+		GroupContext<SessionContext, P, R> groupContext = channelContext.getGroupContext();
+		AsynchronousSocketChannel asynchronousSocketChannel = channelContext.getAsynchronousSocketChannel();
+		int readBufferSize;
+		idleRead = groupContext.isSmallIdleReadBuffer() && !lastReadFull;
+		if (idleRead) {
+			readBufferSize = groupContext.getMinReadBufferSize();
+		} else if (groupContext.isAdaptiveReadBuffer()) {
+			if (readBufferSizer == null) {
+				readBufferSizer = new AdaptiveReadBufferSizer(groupContext.getMinReadBufferSize(), groupContext.getReadBufferSize(), groupContext.getMaxReadBufferSize());
 			}
+			readBufferSize = readBufferSizer.nextSize();
+		} else {
+			readBufferSize = groupContext.getReadBufferSize();
+		}
+		PooledByteBuffer pooledByteBuffer = groupContext.getBufferAllocator().allocate(readBufferSize);
+		try {
+			asynchronousSocketChannel.read(pooledByteBuffer.getByteBuffer(), pooledByteBuffer, this);
+		} catch (Throwable e) {
+			pooledByteBuffer.release();
+			Aio.close(channelContext, e, "发起读操作时发生异常");
+		}
+	}
+
+	@Override
+	public void completed(Integer result, PooledByteBuffer pooledByteBuffer) {
+		long readDelayNanos = 0;
+		try {
+			if (result > 0) {
+				ByteBuffer readByteBuffer = pooledByteBuffer.getByteBuffer();
+				lastReadFull = !readByteBuffer.hasRemaining();
+				if (readBufferSizer != null && !idleRead) {
+					readBufferSizer.record(result);
+				}
+				if (channelContext.isTraceClient()) {
+					Map<String, Object> map = new HashMap<>();
+					map.put("p_r_buf_len", result);
+					channelContext.traceClient(ChannelAction.RECEIVED_BUF, null, map);
+				}
 
-			//			ByteBuffer newByteBuffer = ByteBufferUtils.copy(readByteBuffer, 0, readByteBuffer.position());
-			DecodeRunnable<SessionContext, P, R> decodeRunnable = channelContext.getDecodeRunnable();
-			readByteBuffer.flip();
-			decodeRunnable.setNewByteBuffer(readByteBuffer);
-			decodeRunnable.run();
-			//			decodeRunnable.addMsg(newByteBuffer);
-			//			groupContext.getDecodeExecutor().execute(decodeRunnable);
-		} else if (result == 0) {
-			log.error("{}读到的数据长度为0", channelContext);
-		} else if (result < 0) {
-			Aio.close(channelContext, null, "读数据时返回" + result);
+				DecodeRunnable<SessionContext, P, R> decodeRunnable = channelContext.getDecodeRunnable();
+				readByteBuffer.flip();
+				decodeRunnable.setNewByteBuffer(readByteBuffer);
+				decodeRunnable.run();
+				readDelayNanos = decodeRunnable.takeReadDelayNanos();
+			} else if (result == 0) {
+				log.error("{}读到的数据长度为0", channelContext);
+			} else if (result < 0) {
+				Aio.close(channelContext, null, "读数据时返回" + result);
+			}
+		} finally {
+			pooledByteBuffer.release();
 		}
 
 		if (AioUtils.checkBeforeIO(channelContext)) {
-			AsynchronousSocketChannel asynchronousSocketChannel = channelContext.getAsynchronousSocketChannel();
-			readByteBuffer.position(0);
-			readByteBuffer.limit(readByteBuffer.capacity());
-			asynchronousSocketChannel.read(readByteBuffer, readByteBuffer, this);
+			if (readDelayNanos > 0) {
+				delayRead(readDelayNanos);
+			} else {
+				read();
+			}
 		}
+	}
 
+	/**
+	 * 收包超过速度限制时，等令牌恢复后再读，这期间对方的发送会被TCP窗口挡住
+	 * @param delayNanos
+	 */
+	private void delayRead(long delayNanos) {
+		channelContext.getGroupContext().getTimer().newTimeout(new TimerTask() {
+			@Override
+			public void run(Timeout timeout) throws Exception {
+				if (AioUtils.checkBeforeIO(channelContext)) {
+					read();
+				}
+			}
+		}, delayNanos, TimeUnit.NANOSECONDS);
 	}
 
 	/**
-	 * 
-	 * @param exc
-	 * @param byteBuffer
-	 * @author: tanyaowu
+	 * @return 开启adaptiveReadBuffer之前返回null
 	 */
-	@Override
-	public void failed(Throwable exc, ByteBuffer byteBuffer) {
-		Aio.close(channelContext, exc, "读数据时发生异常");
+	public AdaptiveReadBufferSizer getReadBufferSizer() {
+		return readBufferSizer;
 	}
 
 	/**
 	 * 
-	 * @return
+	 * @param exc
+	 * @param pooledByteBuffer
 	 * @author: tanyaowu
 	 */
-	public ByteBuffer getReadByteBuffer() {
-		return readByteBuffer;
+	@Override
+	public void failed(Throwable exc, PooledByteBuffer pooledByteBuffer) {
+		pooledByteBuffer.release();
+		Aio.close(channelContext, exc, "读数据时发生异常");
 	}
 }
@@ -0,0 +1,69 @@
+package org.tio.core;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.tio.core.intf.ChannelTraceHandler;
+import org.tio.core.intf.Packet;
+import org.tio.core.maintain.ClientNodes;
+import org.tio.core.trace.TraceRecorder;
+
+/**
+ * 把跟踪事件写到TraceRecorder的环形缓冲中，由后台线程写文件，用TraceDecoder离线查看<br>
+ * 和DefaultChannelTraceHandler相比，IO线程上不拼Map、不格式化时间、不序列化json，也不碰MDC，只写几个long<br>
+ * extmsg不会被记录<br>
+ * 用法：groupContext.setClientTraceHandler(new RingBufferChannelTraceHandler<>(new TraceRecorder(file, 65536, 100)))，再对要跟踪的连接setTraceClient(true)
+ */
+public class RingBufferChannelTraceHandler<SessionContext, P extends Packet, R> implements ChannelTraceHandler<SessionContext, P, R> {
+
+	private final TraceRecorder traceRecorder;
+
+	/**
+	 *
+	 * @param traceRecorder
+	 */
+	public RingBufferChannelTraceHandler(TraceRecorder traceRecorder) {
+		this.traceRecorder = traceRecorder;
+	}
+
+	private static long clientNodeKey(ChannelContext<?, ?, ?> channelContext) {
+		Node clientNode = channelContext.getClientNode();
+		if (clientNode == null) {
+			return ClientNodes.NOT_IPV4;
+		}
+		return ClientNodes.packKey(clientNode.getIp(), clientNode.getPort());
+	}
+
+	@Override
+	public void traceChannel(ChannelContext<SessionContext, P, R> channelContext, ChannelAction channelAction, Packet packet, Map<String, Object> extmsg) {
+		long packetId = 0;
+		long respId = 0;
+		int byteCount = 0;
+		if (packet != null) {
+			packetId = packet.getId();
+			respId = packet.getRespId();
+			byteCount = packet.getByteCount();
+		}
+		traceRecorder.record(TraceRecorder.KIND_CHANNEL, channelAction.getValue(), channelContext.getLongId(), clientNodeKey(channelContext), packetId, respId, byteCount);
+	}
+
+	@Override
+	public void traceBlockPacket(ChannelContext<SessionContext, P, R> channelContext, SynPacketAction synPacketAction, Packet packet, CountDownLatch countDownLatch,
+			Map<String, Object> extmsg) {
+		long packetId = 0;
+		int byteCount = 0;
+		if (packet != null) {
+			packetId = packet.getId();
+			byteCount = packet.getByteCount();
+		}
+		long count = countDownLatch == null ? -1 : countDownLatch.getCount();
+		traceRecorder.record(TraceRecorder.KIND_SYN, synPacketAction.getValue(), channelContext.getLongId(), clientNodeKey(channelContext), packetId, count, byteCount);
+	}
+
+	/**
+	 * @return the traceRecorder
+	 */
+	public TraceRecorder getTraceRecorder() {
+		return traceRecorder;
+	}
+}
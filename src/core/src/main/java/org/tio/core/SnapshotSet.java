@@ -0,0 +1,133 @@
+package org.tio.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 为并发群发设计的集合<br>
+ * 1、增删直接操作ConcurrentHashMap，不加锁，加入和离开不会被群发卡住<br>
+ * 2、size()是计数器，O(1)<br>
+ * 3、snapshot()返回不可变的快照，有变更时才重建，没变更时多次群发共用同一份快照，遍历快照不会阻塞增删<br>
+ * 为了兼容以前的API，本类仍然继承SetWithLock，但增删不再使用锁，调用者拿读锁也不会和增删互斥；
+ * getObj()返回的是只读视图，请使用add()、remove()修改
+ *
+ * @param <T>
+ */
+public class SnapshotSet<T> extends SetWithLock<T> {
+
+	private static class Snapshot<T> {
+		private final long version;
+		private final List<T> list;
+
+		private Snapshot(long version, List<T> list) {
+			this.version = version;
+			this.list = list;
+		}
+	}
+
+	private final Set<T> set;
+
+	private final AtomicInteger size = new AtomicInteger(0);
+
+	/**
+	 * 每次增删都会加1，用于判断快照是否过期
+	 */
+	private final AtomicLong version = new AtomicLong(0);
+
+	private volatile Snapshot<T> snapshot = null;
+
+	/**
+	 *
+	 */
+	public SnapshotSet() {
+		this(ConcurrentHashMap.<T> newKeySet());
+	}
+
+	private SnapshotSet(Set<T> set) {
+		super(Collections.unmodifiableSet(set));
+		this.set = set;
+	}
+
+	/**
+	 *
+	 * @param t
+	 * @return true: 新加入; false: 已经存在
+	 */
+	public boolean add(T t) {
+		if (set.add(t)) {
+			size.incrementAndGet();
+			version.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param t
+	 * @return true: 删除成功; false: 本来就不存在
+	 */
+	public boolean remove(T t) {
+		if (set.remove(t)) {
+			size.decrementAndGet();
+			version.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param t
+	 * @return
+	 */
+	public boolean contains(T t) {
+		return set.contains(t);
+	}
+
+	/**
+	 * O(1)
+	 * @return
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * 获取快照，返回的list不可修改
+	 * @return
+	 */
+	public List<T> snapshot() {
+		long v = version.get();
+		Snapshot<T> s = snapshot;
+		if (s != null && s.version == v) {
+			return s.list;
+		}
+
+		//重建期间如果又有增删，version会变，下次再重建即可
+		List<T> list = Collections.unmodifiableList(new ArrayList<T>(set));
+		snapshot = new Snapshot<T>(v, list);
+		return list;
+	}
+
+	/**
+	 * 快照版本号
+	 * @return
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * 不支持替换内部的set
+	 */
+	@Override
+	public void setObj(Set<T> obj) {
+		throw new UnsupportedOperationException("SnapshotSet不支持setObj()");
+	}
+}
@@ -0,0 +1,138 @@
+package org.tio.core;
+
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 一组socket参数，按设置顺序应用到socket上<br>
+ * 通过GroupContext.setSocketOptionProfile()设置连接的参数，ServerGroupContext.setListenerSocketOptionProfile()设置监听socket的参数；
+ * 没有设置的参数使用操作系统的默认值，当前平台不支持的参数会被跳过
+ */
+public class SocketOptionProfile {
+	private static Logger log = LoggerFactory.getLogger(SocketOptionProfile.class);
+
+	private final Map<SocketOption<?>, Object> options = new LinkedHashMap<>();
+
+	/**
+	 * 空的profile，全部使用操作系统的默认值
+	 */
+	public SocketOptionProfile() {
+	}
+
+	/**
+	 * 复制一份
+	 * @param other
+	 */
+	public SocketOptionProfile(SocketOptionProfile other) {
+		options.putAll(other.options);
+	}
+
+	/**
+	 * 服务端连接的默认参数(和以前写死的值一样)：SO_REUSEADDR、SO_KEEPALIVE，收发缓冲各32KB
+	 * @return
+	 */
+	public static SocketOptionProfile server() {
+		return new SocketOptionProfile().set(StandardSocketOptions.SO_REUSEADDR, true).set(StandardSocketOptions.SO_RCVBUF, 32 * 1024)
+				.set(StandardSocketOptions.SO_SNDBUF, 32 * 1024).set(StandardSocketOptions.SO_KEEPALIVE, true);
+	}
+
+	/**
+	 * 客户端连接的默认参数：TCP_NODELAY、SO_REUSEADDR、SO_KEEPALIVE
+	 * @return
+	 */
+	public static SocketOptionProfile client() {
+		return new SocketOptionProfile().set(StandardSocketOptions.TCP_NODELAY, true).set(StandardSocketOptions.SO_REUSEADDR, true)
+				.set(StandardSocketOptions.SO_KEEPALIVE, true);
+	}
+
+	/**
+	 * 监听socket的默认参数：SO_REUSEADDR，接收缓冲64KB<br>
+	 * accept得到的连接继承监听socket的接收缓冲，而且TCP窗口扩大因子在握手时就确定了，所以大于64KB的接收缓冲要在这里设置才能完全生效
+	 * @return
+	 */
+	public static SocketOptionProfile listener() {
+		return new SocketOptionProfile().set(StandardSocketOptions.SO_REUSEADDR, true).set(StandardSocketOptions.SO_RCVBUF, 64 * 1024);
+	}
+
+	/**
+	 * 低延迟(例如聊天)：在server()的基础上打开TCP_NODELAY，小包不再等Nagle合并
+	 * @return
+	 */
+	public static SocketOptionProfile lowLatency() {
+		return server().set(StandardSocketOptions.TCP_NODELAY, true);
+	}
+
+	/**
+	 * 高吞吐(例如服务间长连接)：大的收发缓冲，同时打开TCP_NODELAY(请求-响应式的调用不希望被Nagle延迟)
+	 * @param bufferSize 收发缓冲的大小，例如1MB；服务端还需要把监听socket的SO_RCVBUF设成同样大小
+	 * @return
+	 */
+	public static SocketOptionProfile highThroughput(int bufferSize) {
+		return new SocketOptionProfile().set(StandardSocketOptions.SO_REUSEADDR, true).set(StandardSocketOptions.SO_KEEPALIVE, true)
+				.set(StandardSocketOptions.TCP_NODELAY, true).set(StandardSocketOptions.SO_RCVBUF, bufferSize).set(StandardSocketOptions.SO_SNDBUF, bufferSize);
+	}
+
+	/**
+	 * 设置一个参数
+	 * @param name
+	 * @param value 为null时删除该参数，使用操作系统的默认值
+	 * @return this
+	 */
+	public <T> SocketOptionProfile set(SocketOption<T> name, T value) {
+		if (value == null) {
+			options.remove(name);
+		} else {
+			options.put(name, value);
+		}
+		return this;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return 没有设置时返回null
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(SocketOption<T> name) {
+		return (T) options.get(name);
+	}
+
+	/**
+	 * @return 只读
+	 */
+	public Map<SocketOption<?>, Object> getOptions() {
+		return Collections.unmodifiableMap(options);
+	}
+
+	/**
+	 * 把参数应用到socket上，不支持或设置失败的参数记日志后跳过
+	 * @param channel
+	 */
+	@SuppressWarnings("unchecked")
+	public void applyTo(NetworkChannel channel) {
+		for (Map.Entry<SocketOption<?>, Object> entry : options.entrySet()) {
+			SocketOption<Object> name = (SocketOption<Object>) entry.getKey();
+			try {
+				if (channel.supportedOptions().contains(name)) {
+					channel.setOption(name, entry.getValue());
+				} else {
+					log.debug("不支持的socket参数:{}", name);
+				}
+			} catch (Exception e) {
+				log.warn("设置socket参数{}={}失败, {}", name, entry.getValue(), e.toString());
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return options.toString();
+	}
+}
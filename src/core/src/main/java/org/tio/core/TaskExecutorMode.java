@@ -0,0 +1,41 @@
+package org.tio.core;
+
+/**
+ * 业务处理和发送任务的执行方式
+ *
+ */
+public enum TaskExecutorMode {
+	/**
+	 * 所有连接共用一个SynThreadPoolExecutor，任务执行前用锁防止同一个任务被并发执行(默认)
+	 */
+	SYN_THREAD_POOL(1),
+
+	/**
+	 * 每个连接固定绑定到一个单线程的EventLoop上，同一个连接的任务天然串行，不需要锁
+	 */
+	EVENT_LOOP(2);
+
+	private final int value;
+
+	public static TaskExecutorMode forNumber(int value) {
+		switch (value) {
+		case 1:
+			return SYN_THREAD_POOL;
+		case 2:
+			return EVENT_LOOP;
+		default:
+			return null;
+		}
+	}
+
+	private TaskExecutorMode(int value) {
+		this.value = value;
+	}
+
+	/**
+	 * @return the value
+	 */
+	public int getValue() {
+		return value;
+	}
+}
@@ -0,0 +1,104 @@
+package org.tio.core;
+
+/**
+ * 发送队列的高低水位<br>
+ * 待发送的字节数或packet数超过高水位时，连接变为不可写(ChannelContext.isWritable()为false)，新消息按OverflowPolicy处理；
+ * 字节数和packet数都降到低水位及以下时，连接恢复可写<br>
+ * 字节数指已经编码但还没写到socket的字节数，packet数指已经调用发送但还没触发onAfterSent的packet数<br>
+ * 值小于等于0表示不限制
+ */
+public class WriteBufferWaterMark {
+
+	/**
+	 * 推荐值：字节 4M/8M，packet 4096/8192；GroupContext默认是UNLIMITED，需要背压时再设置
+	 */
+	public static final WriteBufferWaterMark RECOMMENDED = new WriteBufferWaterMark(Long.getLong("tio.default.write.low.bytes", 4L * 1024 * 1024),
+			Long.getLong("tio.default.write.high.bytes", 8L * 1024 * 1024), Integer.getInteger("tio.default.write.low.packets", 4096),
+			Integer.getInteger("tio.default.write.high.packets", 8192));
+
+	/**
+	 * 不限制，GroupContext的默认值
+	 */
+	public static final WriteBufferWaterMark UNLIMITED = new WriteBufferWaterMark(0, 0, 0, 0);
+
+	private final long lowBytes;
+
+	private final long highBytes;
+
+	private final int lowPackets;
+
+	private final int highPackets;
+
+	/**
+	 *
+	 * @param lowBytes
+	 * @param highBytes
+	 * @param lowPackets
+	 * @param highPackets
+	 */
+	public WriteBufferWaterMark(long lowBytes, long highBytes, int lowPackets, int highPackets) {
+		if (highBytes > 0 && lowBytes > highBytes) {
+			throw new IllegalArgumentException("lowBytes(" + lowBytes + ") 不能大于 highBytes(" + highBytes + ")");
+		}
+		if (highPackets > 0 && lowPackets > highPackets) {
+			throw new IllegalArgumentException("lowPackets(" + lowPackets + ") 不能大于 highPackets(" + highPackets + ")");
+		}
+		this.lowBytes = lowBytes;
+		this.highBytes = highBytes;
+		this.lowPackets = lowPackets;
+		this.highPackets = highPackets;
+	}
+
+	/**
+	 * 是否超过了高水位
+	 * @param pendingBytes
+	 * @param pendingPackets
+	 * @return
+	 */
+	public boolean isAboveHigh(long pendingBytes, int pendingPackets) {
+		return (highBytes > 0 && pendingBytes > highBytes) || (highPackets > 0 && pendingPackets > highPackets);
+	}
+
+	/**
+	 * 是否降到了低水位及以下
+	 * @param pendingBytes
+	 * @param pendingPackets
+	 * @return
+	 */
+	public boolean isBelowLow(long pendingBytes, int pendingPackets) {
+		return (highBytes <= 0 || pendingBytes <= lowBytes) && (highPackets <= 0 || pendingPackets <= lowPackets);
+	}
+
+	/**
+	 * @return the lowBytes
+	 */
+	public long getLowBytes() {
+		return lowBytes;
+	}
+
+	/**
+	 * @return the highBytes
+	 */
+	public long getHighBytes() {
+		return highBytes;
+	}
+
+	/**
+	 * @return the lowPackets
+	 */
+	public int getLowPackets() {
+		return lowPackets;
+	}
+
+	/**
+	 * @return the highPackets
+	 */
+	public int getHighPackets() {
+		return highPackets;
+	}
+
+	@Override
+	public String toString() {
+		return "WriteBufferWaterMark[bytes:" + lowBytes + "/" + highBytes + ", packets:" + lowPackets + "/" + highPackets + "]";
+	}
+}
@@ -0,0 +1,64 @@
+package org.tio.core;
+
+/**
+ * 合并写的参数<br>
+ * 打开后，小消息编码后不会马上写到socket，而是最多等flushDelayMicros微秒，或者攒够maxBytes字节，再一次性写出去，减少系统调用次数<br>
+ * 已经有写操作在进行时，新消息会在它写完后接着写，不再额外等待<br>
+ * Packet.setFlushImmediately(true)的消息、同步发送的消息以及Aio.flush()都不等待
+ */
+public class WriteCoalescing {
+
+	/**
+	 * 不合并，每次都马上写(默认)
+	 */
+	public static final WriteCoalescing DISABLED = new WriteCoalescing(0, 0);
+
+	private final long flushDelayMicros;
+
+	private final int maxBytes;
+
+	/**
+	 *
+	 * @param flushDelayMicros 最多等多少微秒，小于等于0表示不合并
+	 * @param maxBytes 攒够多少字节就马上写，小于等于0表示只按时间
+	 */
+	public WriteCoalescing(long flushDelayMicros, int maxBytes) {
+		this.flushDelayMicros = flushDelayMicros;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return 是否打开了合并写
+	 */
+	public boolean isEnabled() {
+		return flushDelayMicros > 0;
+	}
+
+	/**
+	 * 是否已经攒够了
+	 * @param unflushedBytes
+	 * @return
+	 */
+	public boolean isFull(long unflushedBytes) {
+		return maxBytes > 0 && unflushedBytes >= maxBytes;
+	}
+
+	/**
+	 * @return the flushDelayMicros
+	 */
+	public long getFlushDelayMicros() {
+		return flushDelayMicros;
+	}
+
+	/**
+	 * @return the maxBytes
+	 */
+	public int getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "WriteCoalescing[flushDelayMicros:" + flushDelayMicros + ", maxBytes:" + maxBytes + "]";
+	}
+}
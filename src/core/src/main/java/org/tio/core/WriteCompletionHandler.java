@@ -2,106 +2,112 @@ package org.tio.core;
 
 import java.nio.channels.CompletionHandler;
 import java.util.List;
-import java.util.concurrent.Semaphore;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tio.core.ChannelOutboundBuffer.Entry;
 import org.tio.core.intf.Packet;
 import org.tio.core.intf.PacketWithMeta;
 import org.tio.core.stat.GroupStat;
+import org.tio.core.utils.AioUtils;
 
 /**
- * 
+ * 写数据的回调<br>
+ * 一次write可能只写出一部分，这里会接着写剩下的；只有某个packet的数据全部写出去了，才算该packet发送成功
  * @author tanyaowu 
  *
  */
-public class WriteCompletionHandler<SessionContext, P extends Packet, R> implements CompletionHandler<Integer, Object> {
+public class WriteCompletionHandler<SessionContext, P extends Packet, R> implements CompletionHandler<Long, ChannelOutboundBuffer<SessionContext, P, R>> {
 
 	private static Logger log = LoggerFactory.getLogger(WriteCompletionHandler.class);
 
 	private ChannelContext<SessionContext, P, R> channelContext = null;
 
-	private java.util.concurrent.Semaphore writeSemaphore = new Semaphore(1);
-
 	public WriteCompletionHandler(ChannelContext<SessionContext, P, R> channelContext) {
 		this.channelContext = channelContext;
 	}
 
 	@Override
-	public void completed(Integer result, Object attachment) {
-		handle(result, null, attachment);
+	public void completed(Long result, ChannelOutboundBuffer<SessionContext, P, R> outboundBuffer) {
+		if (result < 0) {
+			failed(null, outboundBuffer);
+			return;
+		}
+
+		GroupContext<SessionContext, P, R> groupContext = channelContext.getGroupContext();
+		GroupStat groupStat = groupContext.getGroupStat();
+		ChannelStat channelStat = groupContext.isChannelStatEnabled() ? channelContext.getStat() : null;
+
+		if (result > 0) {
+			groupStat.getSentBytes().add(result);
+			if (channelStat != null) {
+				channelStat.getSentBytes().addAndGet(result);
+			}
+			outboundBuffer.onWritten(result);
+		}
+
+		//逐个buffer统计，写完了的buffer对应的packet才算发送成功
+		Entry entry = null;
+		while ((entry = outboundBuffer.pollWritten()) != null) {
+			groupStat.getSentPacket().add(entry.packetCount);
+			if (channelStat != null) {
+				channelStat.getSentPackets().addAndGet(entry.packetCount);
+			}
+			entry.release();
+			handle(null, entry.packets, true);
+		}
+
+		if (outboundBuffer.isBatchDone()) {
+			outboundBuffer.writeNextOrRelease();
+		} else if (AioUtils.checkBeforeIO(channelContext)) {
+			//只写出了一部分，接着写剩下的
+			outboundBuffer.write();
+		} else {
+			failed(null, outboundBuffer);
+		}
 	}
 
 	@Override
-	public void failed(Throwable throwable, Object attachment) {
-		handle(0, throwable, attachment);
+	public void failed(Throwable throwable, ChannelOutboundBuffer<SessionContext, P, R> outboundBuffer) {
+		List<Entry> entries = outboundBuffer.failBatch();
+		for (Entry entry : entries) {
+			entry.release();
+			handle(throwable, entry.packets, false);
+		}
+
+		Aio.close(channelContext, throwable, "写数据失败");
 	}
 
 	/**
 	 * 
-	 * @param result
 	 * @param throwable
-	 * @param attachment Packet or PacketWithMeta or List<PacketWithMeta> or List<Packet>
-	 * @author: tanyaowu
+	 * @param packets Packet or PacketWithMeta or List<PacketWithMeta> or List<Packet>
+	 * @param isSentSuccess
 	 */
-	public void handle(Integer result, Throwable throwable, Object attachment) {
-		this.writeSemaphore.release();
-
-		GroupContext<SessionContext, P, R> groupContext = channelContext.getGroupContext();
-		GroupStat groupStat = groupContext.getGroupStat();
-		ChannelStat channelStat = channelContext.getStat();
-		//		AioListener<SessionContext, P, R> aioListener = groupContext.getAioListener();
-		boolean isSentSuccess = result > 0;
-
-		if (isSentSuccess) {
-			groupStat.getSentBytes().addAndGet(result);
-			channelStat.getSentBytes().addAndGet(result);
-		}
-
-		int packetCount = 0;
+	public void handle(Throwable throwable, Object packets, boolean isSentSuccess) {
 		try {
-			boolean isPacket = attachment instanceof Packet;
-			boolean isPacketWithMeta = !isPacket && attachment instanceof PacketWithMeta;
-
-			if (isPacket || isPacketWithMeta) {
-				if (isSentSuccess) {
-					groupStat.getSentPacket().incrementAndGet();
-					channelStat.getSentPackets().incrementAndGet();
-				}
-				handleOne(result, throwable, attachment, isSentSuccess);
-			} else {
-				List<?> ps = (List<?>) attachment;
-				if (isSentSuccess) {
-					packetCount = ps.size();
-					groupStat.getSentPacket().addAndGet(packetCount);
-					channelStat.getSentPackets().addAndGet(packetCount);
-				}
-
+			if (packets instanceof List) {
+				List<?> ps = (List<?>) packets;
 				for (Object obj : ps) {
-					handleOne(result, throwable, obj, isSentSuccess);
+					handleOne(throwable, obj, isSentSuccess);
 				}
-			}
-
-			if (!isSentSuccess) {
-				Aio.close(channelContext, throwable, "写数据返回:" + result);
+			} else {
+				handleOne(throwable, packets, isSentSuccess);
 			}
 		} catch (Exception e) {
 			log.error(e.toString(), e);
-		} finally {
-
 		}
 	}
 
 	/**
 	 * 
-	 * @param result
 	 * @param throwable
 	 * @param obj PacketWithMeta or Packet
 	 * @param isSentSuccess
 	 * @author: tanyaowu
 	 */
 	@SuppressWarnings("unchecked")
-	public void handleOne(Integer result, Throwable throwable, Object obj, Boolean isSentSuccess) {
+	public void handleOne(Throwable throwable, Object obj, Boolean isSentSuccess) {
 		P packet = null;
 		PacketWithMeta<P> packetWithMeta = null;
 
@@ -112,6 +118,9 @@ public class WriteCompletionHandler<SessionContext, P extends Packet, R> impleme
 			packetWithMeta = (PacketWithMeta<P>) obj;
 			packetWithMeta.setIsSentSuccess(isSentSuccess);
 			packet = packetWithMeta.getPacket();
+			if (Boolean.TRUE.equals(isSentSuccess)) {
+				channelContext.getGroupContext().getGroupStat().getLatencyStat().getSend().recordSince(packetWithMeta.getSendStartTime());
+			}
 		}
 
 		try {
@@ -122,12 +131,4 @@ public class WriteCompletionHandler<SessionContext, P extends Packet, R> impleme
 		}
 
 	}
-
-	/**
-	 * @return the writeSemaphore
-	 */
-	public java.util.concurrent.Semaphore getWriteSemaphore() {
-		return writeSemaphore;
-	}
-
 }
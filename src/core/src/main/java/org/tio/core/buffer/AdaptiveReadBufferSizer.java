@@ -0,0 +1,70 @@
+package org.tio.core.buffer;
+
+/**
+ * 根据实际读到的字节数调整下一次读用的buffer大小(每个连接一个)<br>
+ * 大小都是2的幂，和PooledBufferAllocator的规格对齐：<br>
+ * 1、一次读就把buffer读满了，说明数据还多，下一次直接放大到4倍<br>
+ * 2、连续两次读到的数据都不超过小一档的大小，才缩小一档，避免在两档之间来回抖动<br>
+ * 非线程安全：同一个连接同一时刻只有一个读操作，由调用者保证
+ */
+public class AdaptiveReadBufferSizer {
+
+	private static final int GROW_STEP = 2;
+
+	private final int minShift;
+
+	private final int maxShift;
+
+	private int shift;
+
+	/**
+	 * 上一次读的数据是否已经小到可以缩小了
+	 */
+	private boolean decreaseNow = false;
+
+	/**
+	 *
+	 * @param minSize 最小值，向上取整为2的幂
+	 * @param initialSize 初始值，向上取整为2的幂
+	 * @param maxSize 最大值，向上取整为2的幂
+	 */
+	public AdaptiveReadBufferSizer(int minSize, int initialSize, int maxSize) {
+		if (minSize <= 0 || minSize > maxSize) {
+			throw new IllegalArgumentException("minSize: " + minSize + ", maxSize: " + maxSize);
+		}
+		this.minShift = shiftOf(minSize);
+		this.maxShift = shiftOf(maxSize);
+		this.shift = Math.max(minShift, Math.min(maxShift, shiftOf(initialSize)));
+	}
+
+	private static int shiftOf(int size) {
+		return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+	}
+
+	/**
+	 * @return 下一次读用的buffer大小
+	 */
+	public int nextSize() {
+		return 1 << shift;
+	}
+
+	/**
+	 * 记录一次读的结果
+	 * @param bytesRead 读到的字节数
+	 */
+	public void record(int bytesRead) {
+		if (bytesRead >= (1 << shift)) {
+			shift = Math.min(maxShift, shift + GROW_STEP);
+			decreaseNow = false;
+		} else if (shift > minShift && bytesRead <= (1 << (shift - 1))) {
+			if (decreaseNow) {
+				shift--;
+				decreaseNow = false;
+			} else {
+				decreaseNow = true;
+			}
+		} else {
+			decreaseNow = false;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package org.tio.core.buffer;
+
+import java.nio.ByteBuffer;
+
+import org.tio.core.buffer.intf.BufferAllocator;
+
+/**
+ * 半包累积buffer<br>
+ * 1、只有出现半包时才会从分配器借buffer，数据解码完后立即归还，空闲连接不占内存<br>
+ * 2、容量不够时按2倍扩容，只拷贝未解码的数据，不会像composite+copy那样每来一个分片就把已有数据全部拷贝两次<br>
+ * 3、尾部空间不够但总容量够时才做compact<br>
+ * 非线程安全，由调用者保证同一时刻只有一个线程访问
+ */
+public class CumulationBuffer {
+
+	private final BufferAllocator allocator;
+
+	private PooledByteBuffer pooledByteBuffer = null;
+
+	/**
+	 * 读模式：position为未解码数据的起始位置，limit为数据的结束位置
+	 */
+	private ByteBuffer buffer = null;
+
+	/**
+	 *
+	 * @param allocator
+	 */
+	public CumulationBuffer(BufferAllocator allocator) {
+		this.allocator = allocator;
+	}
+
+	/**
+	 * 是否没有累积的数据
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return buffer == null || !buffer.hasRemaining();
+	}
+
+	/**
+	 * 把src中剩余的数据追加到累积buffer中，src的position会移到limit
+	 * @param src
+	 * @return 累积buffer，position为未解码数据的起始位置，limit为数据的结束位置，解码器可以直接在上面读
+	 */
+	public ByteBuffer append(ByteBuffer src) {
+		int incoming = src.remaining();
+		if (buffer == null) {
+			pooledByteBuffer = allocator.allocate(incoming);
+			buffer = pooledByteBuffer.getByteBuffer();
+			buffer.put(src);
+			buffer.flip();
+			return buffer;
+		}
+
+		int readable = buffer.remaining();
+		int needed = readable + incoming;
+		if (buffer.capacity() - buffer.limit() < incoming) {
+			if (buffer.capacity() >= needed) {
+				buffer.compact();
+				buffer.flip();
+			} else {
+				grow(needed);
+			}
+		}
+
+		int position = buffer.position();
+		int limit = buffer.limit();
+		buffer.limit(limit + incoming);
+		buffer.position(limit);
+		buffer.put(src);
+		buffer.position(position);
+		return buffer;
+	}
+
+	/**
+	 * 扩容，只拷贝未解码的数据
+	 * @param needed
+	 */
+	private void grow(int needed) {
+		int newCapacity = Math.max(buffer.capacity(), 1);
+		while (newCapacity < needed) {
+			newCapacity = newCapacity << 1;
+			if (newCapacity <= 0) {
+				newCapacity = needed;
+				break;
+			}
+		}
+
+		PooledByteBuffer newPooledByteBuffer = allocator.allocate(newCapacity);
+		ByteBuffer newBuffer = newPooledByteBuffer.getByteBuffer();
+		newBuffer.put(buffer);
+		newBuffer.flip();
+
+		pooledByteBuffer.release();
+		pooledByteBuffer = newPooledByteBuffer;
+		buffer = newBuffer;
+	}
+
+	/**
+	 * 数据都解码完了，就把buffer还给分配器
+	 */
+	public void discardIfEmpty() {
+		if (buffer != null && !buffer.hasRemaining()) {
+			release();
+		}
+	}
+
+	/**
+	 * 归还buffer，之后还可以继续append()
+	 */
+	public void release() {
+		if (pooledByteBuffer != null) {
+			PooledByteBuffer tmp = pooledByteBuffer;
+			pooledByteBuffer = null;
+			buffer = null;
+			tmp.release();
+		}
+	}
+
+	/**
+	 * 当前累积的未解码字节数
+	 * @return
+	 */
+	public int readableBytes() {
+		return buffer == null ? 0 : buffer.remaining();
+	}
+}
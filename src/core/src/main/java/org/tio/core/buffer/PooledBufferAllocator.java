@@ -0,0 +1,304 @@
+package org.tio.core.buffer;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tio.core.buffer.intf.BufferAllocator;
+import org.tio.core.stat.BufferStat;
+
+/**
+ * 池化的buffer分配器<br>
+ * 1、按2的幂分成若干规格(256B ~ 64KB)，申请的容量向上取整到最近的规格，超过最大规格的不池化<br>
+ * 2、每个线程有自己的缓存，线程缓存满了才放到全局池中，全局池也满了则直接丢弃，交给GC<br>
+ *   在别的线程中回收的buffer(例如发送线程编码、写回调线程回收)直接放到全局池，不然会一直堆在回收线程的缓存里，分配线程只能不断新建<br>
+ * 3、可选择堆内或堆外内存<br>
+ * 4、可开启泄漏检测：buffer被GC回收了却没有release()，会被统计为泄漏
+ */
+public class PooledBufferAllocator implements BufferAllocator {
+	private static Logger log = LoggerFactory.getLogger(PooledBufferAllocator.class);
+
+	/**
+	 * 最小规格 1 << 8 = 256B
+	 */
+	public static final int MIN_SIZE_CLASS_SHIFT = 8;
+
+	/**
+	 * 最大规格 1 << 16 = 64KB
+	 */
+	public static final int MAX_SIZE_CLASS_SHIFT = 16;
+
+	public static final int SIZE_CLASS_COUNT = MAX_SIZE_CLASS_SHIFT - MIN_SIZE_CLASS_SHIFT + 1;
+
+	/**
+	 * 每种规格的全局池最多缓存多少字节
+	 */
+	public static final int DEFAULT_MAX_POOLED_BYTES_PER_SIZE_CLASS = Integer.getInteger("tio.buffer.pool.max.bytes", 8 * 1024 * 1024);
+
+	/**
+	 * 每个线程每种规格最多缓存多少字节
+	 */
+	public static final int DEFAULT_THREAD_CACHE_BYTES_PER_SIZE_CLASS = Integer.getInteger("tio.buffer.thread.cache.bytes", 256 * 1024);
+
+	private final boolean isDirect;
+
+	private final BufferStat stat = new BufferStat();
+
+	/**
+	 * 全局池，每种规格一个队列
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final ConcurrentLinkedQueue<ByteBuffer>[] sharedPools = new ConcurrentLinkedQueue[SIZE_CLASS_COUNT];
+
+	/**
+	 * 全局池中各规格的buffer个数(ConcurrentLinkedQueue.size()要遍历，所以单独计数)
+	 */
+	private final AtomicInteger[] sharedPoolSizes = new AtomicInteger[SIZE_CLASS_COUNT];
+
+	private final int[] maxSharedPoolSizes = new int[SIZE_CLASS_COUNT];
+
+	private final int[] maxThreadCacheSizes = new int[SIZE_CLASS_COUNT];
+
+	private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+		@Override
+		protected ThreadCache initialValue() {
+			return new ThreadCache(maxThreadCacheSizes);
+		}
+	};
+
+	/**
+	 * 是否开启泄漏检测，开启后每次分配会多创建一个PhantomReference
+	 */
+	private volatile boolean isLeakDetection = false;
+
+	private final ReferenceQueue<PooledByteBuffer> leakQueue = new ReferenceQueue<>();
+
+	private final Set<LeakTracker> leakTrackers = ConcurrentHashMap.newKeySet();
+
+	/**
+	 *
+	 * @param isDirect 是否使用堆外内存
+	 */
+	public PooledBufferAllocator(boolean isDirect) {
+		this(isDirect, DEFAULT_MAX_POOLED_BYTES_PER_SIZE_CLASS, DEFAULT_THREAD_CACHE_BYTES_PER_SIZE_CLASS);
+	}
+
+	/**
+	 *
+	 * @param isDirect 是否使用堆外内存
+	 * @param maxPooledBytesPerSizeClass 每种规格的全局池最多缓存多少字节
+	 * @param threadCacheBytesPerSizeClass 每个线程每种规格最多缓存多少字节，0表示不用线程缓存
+	 */
+	public PooledBufferAllocator(boolean isDirect, int maxPooledBytesPerSizeClass, int threadCacheBytesPerSizeClass) {
+		this.isDirect = isDirect;
+		for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+			int size = sizeOf(i);
+			sharedPools[i] = new ConcurrentLinkedQueue<>();
+			sharedPoolSizes[i] = new AtomicInteger();
+			maxSharedPoolSizes[i] = Math.max(maxPooledBytesPerSizeClass / size, 0);
+			maxThreadCacheSizes[i] = Math.max(threadCacheBytesPerSizeClass / size, 0);
+		}
+	}
+
+	/**
+	 * 规格下标对应的容量
+	 * @param sizeClassIndex
+	 * @return
+	 */
+	public static int sizeOf(int sizeClassIndex) {
+		return 1 << (sizeClassIndex + MIN_SIZE_CLASS_SHIFT);
+	}
+
+	/**
+	 * 容量对应的规格下标，超过最大规格时返回-1
+	 * @param capacity
+	 * @return
+	 */
+	public static int sizeClassIndex(int capacity) {
+		if (capacity <= (1 << MIN_SIZE_CLASS_SHIFT)) {
+			return 0;
+		}
+		if (capacity > (1 << MAX_SIZE_CLASS_SHIFT)) {
+			return -1;
+		}
+		int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+		return shift - MIN_SIZE_CLASS_SHIFT;
+	}
+
+	@Override
+	public PooledByteBuffer allocate(int capacity) {
+		if (isLeakDetection) {
+			pollLeaks();
+		}
+
+		int index = sizeClassIndex(capacity);
+		PooledByteBuffer ret = null;
+		if (index < 0) {
+			stat.getUnpooledAllocated().incrementAndGet();
+			ret = new PooledByteBuffer(newByteBuffer(capacity), this, -1);
+		} else {
+			ByteBuffer byteBuffer = threadCache.get().poll(index);
+			if (byteBuffer == null) {
+				byteBuffer = sharedPools[index].poll();
+				if (byteBuffer != null) {
+					sharedPoolSizes[index].decrementAndGet();
+				}
+			}
+
+			if (byteBuffer == null) {
+				stat.getAllocated().incrementAndGet();
+				byteBuffer = newByteBuffer(sizeOf(index));
+			} else {
+				stat.getPooled().decrementAndGet();
+			}
+
+			byteBuffer.clear();
+			byteBuffer.limit(capacity);
+			ret = new PooledByteBuffer(byteBuffer, this, index);
+			ret.setAllocatingThread(Thread.currentThread());
+		}
+
+		stat.getInUse().incrementAndGet();
+		if (isLeakDetection) {
+			LeakTracker leakTracker = new LeakTracker(ret, leakQueue, capacity);
+			leakTrackers.add(leakTracker);
+			ret.setLeakTracker(leakTracker);
+		}
+		return ret;
+	}
+
+	@Override
+	public void deallocate(PooledByteBuffer pooledByteBuffer) {
+		Object leakTracker = pooledByteBuffer.getLeakTracker();
+		if (leakTracker != null) {
+			LeakTracker tracker = (LeakTracker) leakTracker;
+			leakTrackers.remove(tracker);
+			tracker.clear();
+		}
+
+		stat.getInUse().decrementAndGet();
+
+		int index = pooledByteBuffer.getSizeClassIndex();
+		if (index < 0) {
+			return;
+		}
+
+		ByteBuffer byteBuffer = pooledByteBuffer.getByteBuffer();
+		if (pooledByteBuffer.getAllocatingThread() == Thread.currentThread() && threadCache.get().offer(index, byteBuffer)) {
+			stat.getPooled().incrementAndGet();
+			return;
+		}
+
+		AtomicInteger sharedPoolSize = sharedPoolSizes[index];
+		if (sharedPoolSize.incrementAndGet() <= maxSharedPoolSizes[index]) {
+			sharedPools[index].offer(byteBuffer);
+			stat.getPooled().incrementAndGet();
+		} else {
+			sharedPoolSize.decrementAndGet();
+			stat.getDropped().incrementAndGet();
+		}
+	}
+
+	private ByteBuffer newByteBuffer(int capacity) {
+		if (isDirect) {
+			return ByteBuffer.allocateDirect(capacity);
+		} else {
+			return ByteBuffer.allocate(capacity);
+		}
+	}
+
+	/**
+	 * 检查被GC回收却没有release()的buffer
+	 */
+	private void pollLeaks() {
+		Reference<? extends PooledByteBuffer> ref = null;
+		while ((ref = leakQueue.poll()) != null) {
+			LeakTracker leakTracker = (LeakTracker) ref;
+			if (leakTrackers.remove(leakTracker)) {
+				stat.getLeaked().incrementAndGet();
+				stat.getInUse().decrementAndGet();
+				log.error("buffer泄漏了，capacity:{}，请检查是否忘了调用release()，{}", leakTracker.capacity, stat);
+			}
+		}
+	}
+
+	@Override
+	public boolean isDirect() {
+		return isDirect;
+	}
+
+	@Override
+	public BufferStat getStat() {
+		return stat;
+	}
+
+	/**
+	 * @return the isLeakDetection
+	 */
+	public boolean isLeakDetection() {
+		return isLeakDetection;
+	}
+
+	/**
+	 * @param isLeakDetection the isLeakDetection to set
+	 */
+	public void setLeakDetection(boolean isLeakDetection) {
+		this.isLeakDetection = isLeakDetection;
+	}
+
+	/**
+	 * 线程缓存，只被所属线程访问，所以不需要加锁
+	 */
+	private static final class ThreadCache {
+		private final ByteBuffer[][] stacks;
+		private final int[] sizes;
+
+		ThreadCache(int[] maxSizes) {
+			stacks = new ByteBuffer[maxSizes.length][];
+			sizes = new int[maxSizes.length];
+			for (int i = 0; i < maxSizes.length; i++) {
+				stacks[i] = new ByteBuffer[maxSizes[i]];
+			}
+		}
+
+		ByteBuffer poll(int index) {
+			int size = sizes[index];
+			if (size == 0) {
+				return null;
+			}
+			size--;
+			ByteBuffer[] stack = stacks[index];
+			ByteBuffer ret = stack[size];
+			stack[size] = null;
+			sizes[index] = size;
+			return ret;
+		}
+
+		boolean offer(int index, ByteBuffer byteBuffer) {
+			ByteBuffer[] stack = stacks[index];
+			int size = sizes[index];
+			if (size >= stack.length) {
+				return false;
+			}
+			stack[size] = byteBuffer;
+			sizes[index] = size + 1;
+			return true;
+		}
+	}
+
+	private static final class LeakTracker extends PhantomReference<PooledByteBuffer> {
+		private final int capacity;
+
+		LeakTracker(PooledByteBuffer referent, ReferenceQueue<? super PooledByteBuffer> q, int capacity) {
+			super(referent, q);
+			this.capacity = capacity;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package org.tio.core.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.tio.core.buffer.intf.BufferAllocator;
+
+/**
+ * 带引用计数的ByteBuffer，引用计数归零时buffer会被还给分配它的BufferAllocator<br>
+ * 注意：release()之后就不能再使用getByteBuffer()拿到的buffer了
+ */
+public class PooledByteBuffer {
+
+	private static final AtomicIntegerFieldUpdater<PooledByteBuffer> REF_CNT_UPDATER = AtomicIntegerFieldUpdater.newUpdater(PooledByteBuffer.class, "refCnt");
+
+	private final ByteBuffer byteBuffer;
+
+	private final BufferAllocator allocator;
+
+	/**
+	 * 在分配器中的规格下标，小于0表示不是池化的buffer
+	 */
+	private final int sizeClassIndex;
+
+	private volatile int refCnt = 1;
+
+	/**
+	 * 泄漏检测用，没有开启泄漏检测时为null
+	 */
+	private Object leakTracker = null;
+
+	/**
+	 * 分配这个buffer的线程，在别的线程中回收时直接放到全局池，分配线程才能再拿到它
+	 */
+	private Thread allocatingThread = null;
+
+	/**
+	 *
+	 * @param byteBuffer
+	 * @param allocator
+	 * @param sizeClassIndex
+	 */
+	public PooledByteBuffer(ByteBuffer byteBuffer, BufferAllocator allocator, int sizeClassIndex) {
+		this.byteBuffer = byteBuffer;
+		this.allocator = allocator;
+		this.sizeClassIndex = sizeClassIndex;
+	}
+
+	/**
+	 * 引用计数加1
+	 * @return
+	 */
+	public PooledByteBuffer retain() {
+		for (;;) {
+			int cnt = refCnt;
+			if (cnt <= 0) {
+				throw new IllegalStateException("buffer已经被回收, refCnt:" + cnt);
+			}
+			if (REF_CNT_UPDATER.compareAndSet(this, cnt, cnt + 1)) {
+				return this;
+			}
+		}
+	}
+
+	/**
+	 * 引用计数减1，归零时把buffer还给分配器
+	 * @return true: buffer已经被回收
+	 */
+	public boolean release() {
+		for (;;) {
+			int cnt = refCnt;
+			if (cnt <= 0) {
+				throw new IllegalStateException("buffer已经被回收, refCnt:" + cnt);
+			}
+			if (REF_CNT_UPDATER.compareAndSet(this, cnt, cnt - 1)) {
+				if (cnt == 1) {
+					if (allocator != null) {
+						allocator.deallocate(this);
+					}
+					return true;
+				}
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * @return the byteBuffer
+	 */
+	public ByteBuffer getByteBuffer() {
+		return byteBuffer;
+	}
+
+	/**
+	 * @return the refCnt
+	 */
+	public int refCnt() {
+		return refCnt;
+	}
+
+	/**
+	 * @return the sizeClassIndex
+	 */
+	public int getSizeClassIndex() {
+		return sizeClassIndex;
+	}
+
+	/**
+	 * @return the allocator
+	 */
+	public BufferAllocator getAllocator() {
+		return allocator;
+	}
+
+	/**
+	 * @return the leakTracker
+	 */
+	Object getLeakTracker() {
+		return leakTracker;
+	}
+
+	/**
+	 * @param leakTracker the leakTracker to set
+	 */
+	void setLeakTracker(Object leakTracker) {
+		this.leakTracker = leakTracker;
+	}
+
+	/**
+	 * @return the allocatingThread
+	 */
+	Thread getAllocatingThread() {
+		return allocatingThread;
+	}
+
+	/**
+	 * @param allocatingThread the allocatingThread to set
+	 */
+	void setAllocatingThread(Thread allocatingThread) {
+		this.allocatingThread = allocatingThread;
+	}
+
+	@Override
+	public String toString() {
+		return "PooledByteBuffer[" + byteBuffer + ", refCnt=" + refCnt + "]";
+	}
+}
@@ -0,0 +1,53 @@
+package org.tio.core.buffer;
+
+import java.nio.ByteBuffer;
+
+import org.tio.core.buffer.intf.BufferAllocator;
+import org.tio.core.stat.BufferStat;
+
+/**
+ * 不池化的分配器，每次都新建buffer，release()后交给GC，行为和以前每个连接固定持有一个buffer时一样简单
+ */
+public class UnpooledBufferAllocator implements BufferAllocator {
+
+	private final boolean isDirect;
+
+	private final BufferStat stat = new BufferStat();
+
+	/**
+	 *
+	 * @param isDirect 是否使用堆外内存
+	 */
+	public UnpooledBufferAllocator(boolean isDirect) {
+		this.isDirect = isDirect;
+	}
+
+	@Override
+	public PooledByteBuffer allocate(int capacity) {
+		ByteBuffer byteBuffer = null;
+		if (isDirect) {
+			byteBuffer = ByteBuffer.allocateDirect(capacity);
+		} else {
+			byteBuffer = ByteBuffer.allocate(capacity);
+		}
+		stat.getUnpooledAllocated().incrementAndGet();
+		stat.getInUse().incrementAndGet();
+		return new PooledByteBuffer(byteBuffer, this, -1);
+	}
+
+	@Override
+	public void deallocate(PooledByteBuffer pooledByteBuffer) {
+		stat.getInUse().decrementAndGet();
+	}
+
+	@Override
+	public boolean isDirect() {
+		return isDirect;
+	}
+
+	@Override
+	public BufferStat getStat() {
+		return stat;
+	}
+
+}
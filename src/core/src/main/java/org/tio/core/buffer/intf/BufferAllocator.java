@@ -0,0 +1,35 @@
+package org.tio.core.buffer.intf;
+
+import org.tio.core.buffer.PooledByteBuffer;
+import org.tio.core.stat.BufferStat;
+
+/**
+ * ByteBuffer分配器，框架读数据时从这里借buffer，用完后通过PooledByteBuffer.release()归还
+ */
+public interface BufferAllocator {
+
+	/**
+	 * 分配一个buffer，返回的buffer position为0，limit为capacity
+	 * @param capacity 需要的容量
+	 * @return
+	 */
+	PooledByteBuffer allocate(int capacity);
+
+	/**
+	 * 回收buffer，由PooledByteBuffer在引用计数归零时调用，用户请勿直接调用
+	 * @param pooledByteBuffer
+	 */
+	void deallocate(PooledByteBuffer pooledByteBuffer);
+
+	/**
+	 * 是否分配堆外内存
+	 * @return
+	 */
+	boolean isDirect();
+
+	/**
+	 * 统计信息：在用的、池中的、泄漏的buffer数量等
+	 * @return
+	 */
+	BufferStat getStat();
+}
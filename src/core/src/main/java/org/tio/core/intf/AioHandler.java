@@ -34,7 +34,8 @@ public interface AioHandler<SessionContext, P extends Packet, R> {
 	ByteBuffer encode(P packet, GroupContext<SessionContext, P, R> groupContext, ChannelContext<SessionContext, P, R> channelContext);
 
 	/**
-	 * 根据ByteBuffer解码成业务需要的Packet对象.
+	 * 根据ByteBuffer解码成业务需要的Packet对象.<br>
+	 * 注意：buffer是从池里借来的，本方法返回后就会被框架回收，所以不要在packet中持有buffer本身(或它的slice/duplicate)，需要的数据请拷贝出来
 	 *
 	 * @param buffer the buffer
 	 * @return the t
@@ -31,7 +31,7 @@ public interface AioListener<SessionContext, P extends Packet, R> {
 	void onAfterSent(ChannelContext<SessionContext, P, R> channelContext, P packet, boolean isSentSuccess) throws Exception;
 
 	/**
-	 * 解码成功后触发本方法
+	 * 解码成功后、交给AioHandler.handler()之前触发本方法
 	 * @param channelContext
 	 * @param packet
 	 * @param sentSize
@@ -41,6 +41,17 @@ public interface AioListener<SessionContext, P extends Packet, R> {
 	 */
 	void onAfterReceived(ChannelContext<SessionContext, P, R> channelContext, P packet, int packetSize) throws Exception;
 
+	/**
+	 * 连接的可写状态变化后触发本方法<br>
+	 * 待发送的数据超过高水位时isWritable为false，降到低水位时isWritable为true，业务可据此暂停/恢复给这个连接推消息<br>
+	 * 默认什么都不做，需要时再覆盖
+	 * @param channelContext
+	 * @param isWritable
+	 * @throws Exception
+	 */
+	default void onWritabilityChanged(ChannelContext<SessionContext, P, R> channelContext, boolean isWritable) throws Exception {
+	}
+
 	//	/**
 	//	 * 连接关闭前触发本方法
 	//	 *
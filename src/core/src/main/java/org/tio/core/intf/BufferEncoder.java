@@ -0,0 +1,27 @@
+package org.tio.core.intf;
+
+import org.tio.core.ChannelContext;
+import org.tio.core.GroupContext;
+import org.tio.core.buffer.PooledByteBuffer;
+import org.tio.core.buffer.intf.BufferAllocator;
+
+/**
+ * AioHandler可选实现本接口：编码时从框架提供的分配器(GroupContext.getBufferAllocator())借buffer，不用每个packet新建ByteBuffer<br>
+ * 数据全部写到socket后(或发送失败、连接关闭时)，框架会把buffer还给池，编码方不用也不能再持有它<br>
+ * 没有实现本接口的AioHandler照旧走AioHandler.encode()；实现了本接口的，AioHandler.encode()仍会在群发预编码时用到，
+ * 两个方法可以共用同一段"往buffer中写"的代码，见HelloAbsAioHandler
+ */
+public interface BufferEncoder<SessionContext, P extends Packet, R> {
+
+	/**
+	 * 编码到从allocator借来的buffer中<br>
+	 * 先算出长度，再allocator.allocate(长度)，然后从position 0开始写；借到的buffer容量可能比要求的大，写完后position就是数据的长度(和AioHandler.encode()一样不用flip)<br>
+	 * 注意设置字节序：池中的buffer是复用的
+	 * @param packet
+	 * @param allocator
+	 * @param groupContext
+	 * @param channelContext
+	 * @return 返回null表示这个packet不走本方法，框架改用AioHandler.encode()
+	 */
+	PooledByteBuffer encode(P packet, BufferAllocator allocator, GroupContext<SessionContext, P, R> groupContext, ChannelContext<SessionContext, P, R> channelContext);
+}
@@ -1,9 +1,11 @@
 package org.tio.core.intf;
 
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.tio.core.ChannelContext;
 import org.tio.core.ChannelAction;
+import org.tio.core.SynPacketAction;
 
 /**
  * @author tanyaowu 
@@ -19,4 +21,15 @@ public interface ChannelTraceHandler<SessionContext, P extends Packet, R> {
 	 * @author: tanyaowu
 	 */
 	public void traceChannel(ChannelContext<SessionContext, P, R> channelContext, ChannelAction channelAction, Packet packet, Map<String, Object> extmsg);
+
+	/**
+	 * 跟踪同步消息
+	 * @param channelContext
+	 * @param synPacketAction
+	 * @param packet
+	 * @param countDownLatch
+	 * @param extmsg
+	 */
+	public void traceBlockPacket(ChannelContext<SessionContext, P, R> channelContext, SynPacketAction synPacketAction, Packet packet, CountDownLatch countDownLatch,
+			Map<String, Object> extmsg);
 }
@@ -0,0 +1,18 @@
+package org.tio.core.intf;
+
+import org.tio.core.ChannelContext;
+
+/**
+ * AioHandler可选实现本接口，用于群发时复用编码结果<br>
+ * 群发(sendToGroup、sendToAll等)时，编码变体key相同的连接只编码一次，共享同一份编码结果(各连接拿到的是只读的duplicate)，
+ * 这样群发的编码开销只和变体数有关，和接收者数量无关<br>
+ * 例如：同一个packet，普通tcp连接和websocket连接的编码结果不同，那就只有"tcp"和"ws"两种变体
+ */
+public interface EncodeVariantAware<SessionContext, P extends Packet, R> {
+	/**
+	 * 获取连接的编码变体key，key相同的连接对同一个packet的编码结果必须完全相同
+	 * @param channelContext
+	 * @return 编码变体key(需正确实现equals和hashCode)，返回null表示该连接的编码结果不能共享
+	 */
+	Object getEncodeVariantKey(ChannelContext<SessionContext, P, R> channelContext);
+}
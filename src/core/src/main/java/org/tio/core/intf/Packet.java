@@ -2,46 +2,113 @@ package org.tio.core.intf;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
- * 
- * @author tanyaowu 
+ * 消息包的基类<br>
+ * 1、id在第一次getId()时才分配：每个线程从全局计数器一次领一段(ID_RANGE个)，段内自增，不再是每new一个packet都争抢同一个AtomicLong；
+ * 同一个packet可能被多个发送线程同时第一次getId()(例如群发)，用CAS写入，保证所有线程拿到同一个id<br>
+ * 2、id、respId、synSeq都是基本类型，不装箱；respId、packetListener、preEncodedByteBuffer不常用，用到时才创建Extra存放<br>
+ * 3、可以由PacketRecycler复用，见reset()
+ * @author tanyaowu
  * 2017年4月1日 上午9:34:59
  */
 public class Packet {
+	/**
+	 * 每个线程一次领多少个id
+	 */
+	private static final int ID_RANGE = 1024;
+
 	private static final AtomicLong ID_ATOMICLONG = new AtomicLong();
 
-	private Long id = ID_ATOMICLONG.incrementAndGet();
-	
-	private int byteCount = 0;
+	/**
+	 * [0]: 下一个可用的id，[1]: 本段的结束(不含)
+	 */
+	private static final ThreadLocal<long[]> ID_RANGE_LOCAL = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[2];
+		}
+	};
 
-	private Long respId = null;
+	private static final AtomicLongFieldUpdater<Packet> ID_UPDATER = AtomicLongFieldUpdater.newUpdater(Packet.class, "id");
 
-	private PacketListener packetListener;
+	/**
+	 * 0表示还没分配
+	 */
+	private volatile long id = 0;
+
+	private int byteCount = 0;
+
+	/**
+	 * 同步发送时，需要的同步序列号，0表示不是同步消息
+	 */
+	private int synSeq = 0;
 
 	private boolean isBlockSend = false;
 
 	/**
-	 * 同步发送时，需要的同步序列号
+	 * 延迟敏感的消息，打开了合并写时也马上写(连同它前面还在等待的消息)
 	 */
-	private Integer synSeq = 0;
+	private boolean isFlushImmediately = false;
 
 	/**
-	 * 预编码过的bytebuffer，如果此值不为null，框架则会忽略原来的encode()而直接用此值
+	 * 是否由PacketRecycler分配并且可以被回收，框架内部使用
 	 */
-	private ByteBuffer preEncodedByteBuffer = null;
+	private boolean isRecyclable = false;
+
+	/**
+	 * 加入处理队列的时间(System.nanoTime())，只在延迟采样时设置，框架内部使用
+	 */
+	private long enqueueTime = 0;
+
+	/**
+	 * 不常用的字段，用到时才创建
+	 */
+	private Extra extra = null;
+
+	private static long nextId() {
+		long[] range = ID_RANGE_LOCAL.get();
+		if (range[0] == range[1]) {
+			range[0] = ID_ATOMICLONG.getAndAdd(ID_RANGE) + 1;
+			range[1] = range[0] + ID_RANGE;
+		}
+		return range[0]++;
+	}
+
+	private Extra extra() {
+		if (extra == null) {
+			extra = new Extra();
+		}
+		return extra;
+	}
+
+	/**
+	 * 清空所有字段，回到刚new出来的状态，PacketRecycler回收时调用<br>
+	 * 子类有自己的字段时，要覆盖本方法并调用super.reset()
+	 */
+	public void reset() {
+		id = 0;
+		byteCount = 0;
+		synSeq = 0;
+		isBlockSend = false;
+		isFlushImmediately = false;
+		isRecyclable = false;
+		enqueueTime = 0;
+		extra = null;
+	}
 
 	/**
 	 * @return the synSeq
 	 */
-	public Integer getSynSeq() {
+	public int getSynSeq() {
 		return synSeq;
 	}
 
 	/**
 	 * @param synSeq the synSeq to set
 	 */
-	public void setSynSeq(Integer synSeq) {
+	public void setSynSeq(int synSeq) {
 		this.synSeq = synSeq;
 	}
 
@@ -49,14 +116,18 @@ public class Packet {
 	 * @return the preEncodedByteBuffer
 	 */
 	public ByteBuffer getPreEncodedByteBuffer() {
-		return preEncodedByteBuffer;
+		return extra == null ? null : extra.preEncodedByteBuffer;
 	}
 
 	/**
+	 * 预编码过的bytebuffer，如果此值不为null，框架则会忽略原来的encode()而直接用此值
 	 * @param preEncodedByteBuffer the preEncodedByteBuffer to set
 	 */
 	public void setPreEncodedByteBuffer(ByteBuffer preEncodedByteBuffer) {
-		this.preEncodedByteBuffer = preEncodedByteBuffer;
+		if (preEncodedByteBuffer == null && extra == null) {
+			return;
+		}
+		extra().preEncodedByteBuffer = preEncodedByteBuffer;
 	}
 
 	public String logstr() {
@@ -64,45 +135,61 @@ public class Packet {
 	}
 
 	/**
-	 * @return the id
+	 * 第一次调用时分配
+	 * @return the id，始终大于0
 	 */
-	public Long getId() {
-		return id;
+	public long getId() {
+		long id = this.id;
+		if (id != 0) {
+			return id;
+		}
+		id = nextId();
+		if (ID_UPDATER.compareAndSet(this, 0, id)) {
+			return id;
+		}
+		//别的线程先分配了，用它的
+		return this.id;
 	}
 
 	/**
 	 * @param id the id to set
 	 */
-	public void setId(Long id) {
+	public void setId(long id) {
 		this.id = id;
 	}
 
 	/**
-	 * @return the respId
+	 * @return the respId，0表示没有
 	 */
-	public Long getRespId() {
-		return respId;
+	public long getRespId() {
+		return extra == null ? 0 : extra.respId;
 	}
 
 	/**
 	 * @param respId the respId to set
 	 */
-	public void setRespId(Long respId) {
-		this.respId = respId;
+	public void setRespId(long respId) {
+		if (respId == 0 && extra == null) {
+			return;
+		}
+		extra().respId = respId;
 	}
 
 	/**
 	 * @return the packetListener
 	 */
 	public PacketListener getPacketListener() {
-		return packetListener;
+		return extra == null ? null : extra.packetListener;
 	}
 
 	/**
 	 * @param packetListener the packetListener to set
 	 */
 	public void setPacketListener(PacketListener packetListener) {
-		this.packetListener = packetListener;
+		if (packetListener == null && extra == null) {
+			return;
+		}
+		extra().packetListener = packetListener;
 	}
 
 	/**
@@ -119,6 +206,49 @@ public class Packet {
 		this.isBlockSend = isBlockSend;
 	}
 
+	/**
+	 * @return the isFlushImmediately
+	 */
+	public boolean isFlushImmediately() {
+		return isFlushImmediately;
+	}
+
+	/**
+	 * @param isFlushImmediately the isFlushImmediately to set
+	 */
+	public void setFlushImmediately(boolean isFlushImmediately) {
+		this.isFlushImmediately = isFlushImmediately;
+	}
+
+	/**
+	 * @return the isRecyclable
+	 */
+	public boolean isRecyclable() {
+		return isRecyclable;
+	}
+
+	/**
+	 * 由PacketRecycler分配的packet，handler()返回后会被回收；handler中要继续持有这个packet(保存起来、原样发回去、交给别的线程等)时，调用setRecyclable(false)
+	 * @param isRecyclable the isRecyclable to set
+	 */
+	public void setRecyclable(boolean isRecyclable) {
+		this.isRecyclable = isRecyclable;
+	}
+
+	/**
+	 * @return the enqueueTime
+	 */
+	public long getEnqueueTime() {
+		return enqueueTime;
+	}
+
+	/**
+	 * @param enqueueTime the enqueueTime to set
+	 */
+	public void setEnqueueTime(long enqueueTime) {
+		this.enqueueTime = enqueueTime;
+	}
+
 	/**
 	 * @return the byteCount
 	 */
@@ -133,4 +263,14 @@ public class Packet {
 		this.byteCount = byteCount;
 	}
 
+	/**
+	 * 不常用的字段
+	 */
+	private static final class Extra {
+		private long respId = 0;
+
+		private PacketListener packetListener = null;
+
+		private ByteBuffer preEncodedByteBuffer = null;
+	}
 }
@@ -1,5 +1,6 @@
 package org.tio.core.intf;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.CountDownLatch;
 
 /**
@@ -12,6 +13,16 @@ public class PacketWithMeta<P extends Packet> {
 	private Boolean isSentSuccess = null;
 	private CountDownLatch countDownLatch = null;
 
+	/**
+	 * 群发时预先编码好的数据(只读)，为null时由SendRunnable编码
+	 */
+	private ByteBuffer preEncodedByteBuffer = null;
+
+	/**
+	 * 调用发送的时间(System.nanoTime())，只在延迟采样时设置
+	 */
+	private long sendStartTime = 0;
+
 	/**
 	 * 
 	 * @param packet
@@ -27,6 +38,17 @@ public class PacketWithMeta<P extends Packet> {
 		}
 	}
 
+	/**
+	 * 
+	 * @param packet
+	 * @param countDownLatch 可以为null
+	 * @param preEncodedByteBuffer 预先编码好的数据，可以为null
+	 */
+	public PacketWithMeta(P packet, CountDownLatch countDownLatch, ByteBuffer preEncodedByteBuffer) {
+		this(packet, countDownLatch);
+		this.preEncodedByteBuffer = preEncodedByteBuffer;
+	}
+
 	/**
 	 * @return the packet
 	 */
@@ -55,4 +77,25 @@ public class PacketWithMeta<P extends Packet> {
 		return countDownLatch;
 	}
 
+	/**
+	 * @return the sendStartTime
+	 */
+	public long getSendStartTime() {
+		return sendStartTime;
+	}
+
+	/**
+	 * @param sendStartTime the sendStartTime to set
+	 */
+	public void setSendStartTime(long sendStartTime) {
+		this.sendStartTime = sendStartTime;
+	}
+
+	/**
+	 * @return the preEncodedByteBuffer
+	 */
+	public ByteBuffer getPreEncodedByteBuffer() {
+		return preEncodedByteBuffer;
+	}
+
 }
@@ -1,45 +1,254 @@
 package org.tio.core.maintain;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.tio.core.ChannelContext;
+import org.tio.core.Node;
+import org.tio.core.intf.Packet;
+import org.tio.core.utils.IpUtils;
 
 /**
- * 客户端ip集合
- * @author tanyaowu 
+ * 按客户端ip维护的两份数据：<br>
+ * 1、每个ip当前有多少个连接(准入控制用)，计数为0时删除这个ip，计数器被标记为-1，正在对它加1的线程看到-1会重新取一个<br>
+ * 2、每个ip当前有哪些ChannelContext，key是128位的ip(见IpUtils)，放在有序的ConcurrentSkipListMap中，一个网段就是一段连续的key，
+ * 所以按网段查找连接时只需要取subMap，不用遍历全部连接
+ * @author tanyaowu
  * 2017年5月23日 下午2:40:20
  */
-public class ClientIps<T> {
-	private static Logger log = LoggerFactory.getLogger(ClientIps.class);
-	
-	private T context;
+public class ClientIps<SessionContext, P extends Packet, R> {
+
+	private final ConcurrentHashMap<String, AtomicInteger> map = new ConcurrentHashMap<>();
+
+	/** key: ip value: 这个ip的所有ChannelContext */
+	private final ConcurrentSkipListMap<IpKey, IpChannels<SessionContext, P, R>> channelMap = new ConcurrentSkipListMap<>();
 
 	/**
-	 * 
-	 * @author: tanyaowu
+	 * 连接数加1
+	 * @param ip
+	 * @param maxPerIp 这个ip最多多少个连接，<=0表示不限
+	 * @return false: 已经达到maxPerIp，计数没有变化
 	 */
-	public ClientIps(T context) {
-		this.context = context;
+	public boolean tryAdd(String ip, int maxPerIp) {
+		while (true) {
+			AtomicInteger counter = map.get(ip);
+			if (counter == null) {
+				counter = new AtomicInteger();
+				AtomicInteger old = map.putIfAbsent(ip, counter);
+				if (old != null) {
+					counter = old;
+				}
+			}
+
+			while (true) {
+				int count = counter.get();
+				if (count < 0) {
+					//刚被删除
+					map.remove(ip, counter);
+					break;
+				}
+				if (maxPerIp > 0 && count >= maxPerIp) {
+					return false;
+				}
+				if (counter.compareAndSet(count, count + 1)) {
+					return true;
+				}
+			}
+		}
 	}
 
 	/**
-	 * @param args
-	 * @author: tanyaowu
+	 * 连接数减1，须和tryAdd()成功的调用一一对应
+	 * @param ip
 	 */
-	public static void main(String[] args) {
+	public void remove(String ip) {
+		AtomicInteger counter = map.get(ip);
+		if (counter == null) {
+			return;
+		}
+		if (counter.decrementAndGet() == 0 && counter.compareAndSet(0, -1)) {
+			map.remove(ip, counter);
+		}
+	}
 
+	/**
+	 *
+	 * @param ip
+	 * @return 这个ip当前有多少个连接
+	 */
+	public int count(String ip) {
+		AtomicInteger counter = map.get(ip);
+		if (counter == null) {
+			return 0;
+		}
+		int count = counter.get();
+		return count < 0 ? 0 : count;
 	}
 
 	/**
-	 * @return the context
+	 * @return 有连接的ip数
 	 */
-	public T getContext() {
-		return context;
+	public int size() {
+		return map.size();
 	}
 
 	/**
-	 * @param context the context to set
+	 * 把ChannelContext加到它的ip下，ip不合法(例如未知地址)时忽略
+	 * @param channelContext
 	 */
-	public void setContext(T context) {
-		this.context = context;
+	public void put(ChannelContext<SessionContext, P, R> channelContext) {
+		IpKey key = IpKey.from(channelContext.getClientNode());
+		if (key == null) {
+			return;
+		}
+		while (true) {
+			IpChannels<SessionContext, P, R> ipChannels = channelMap.get(key);
+			if (ipChannels == null) {
+				ipChannels = new IpChannels<>();
+				IpChannels<SessionContext, P, R> old = channelMap.putIfAbsent(key, ipChannels);
+				if (old != null) {
+					ipChannels = old;
+				}
+			}
+			synchronized (ipChannels) {
+				if (!ipChannels.removed) {
+					ipChannels.channels.add(channelContext);
+					return;
+				}
+			}
+			//刚被删除
+			channelMap.remove(key, ipChannels);
+		}
+	}
+
+	/**
+	 * 把ChannelContext从它的ip下删除
+	 * @param channelContext
+	 */
+	public void remove(ChannelContext<SessionContext, P, R> channelContext) {
+		IpKey key = IpKey.from(channelContext.getClientNode());
+		if (key == null) {
+			return;
+		}
+		IpChannels<SessionContext, P, R> ipChannels = channelMap.get(key);
+		if (ipChannels == null) {
+			return;
+		}
+		synchronized (ipChannels) {
+			ipChannels.channels.remove(channelContext);
+			if (ipChannels.channels.isEmpty() && !ipChannels.removed) {
+				ipChannels.removed = true;
+				channelMap.remove(key, ipChannels);
+			}
+		}
+	}
+
+	/**
+	 * 查找落在网段中的所有ChannelContext
+	 * @param hi 网段地址的高64位
+	 * @param lo 网段地址的低64位
+	 * @param prefixBits 128位中的前缀长度
+	 * @return
+	 */
+	public List<ChannelContext<SessionContext, P, R>> find(long hi, long lo, int prefixBits) {
+		long highMask = IpUtils.highMask(prefixBits);
+		long lowMask = IpUtils.lowMask(prefixBits);
+		IpKey from = new IpKey(hi & highMask, lo & lowMask);
+		IpKey to = new IpKey(hi | ~highMask, lo | ~lowMask);
+
+		List<ChannelContext<SessionContext, P, R>> ret = new ArrayList<>();
+		for (IpChannels<SessionContext, P, R> ipChannels : channelMap.subMap(from, true, to, true).values()) {
+			synchronized (ipChannels) {
+				ret.addAll(ipChannels.channels);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * 查找落在网段中的所有ChannelContext
+	 * @param cidr 例如192.168.1.0/24、2001:db8::/64，也可以是单个ip
+	 * @return
+	 */
+	public List<ChannelContext<SessionContext, P, R>> find(String cidr) {
+		long[] addr = new long[2];
+		int prefixBits = IpUtils.parseCidr(cidr, addr);
+		if (prefixBits < 0) {
+			throw new IllegalArgumentException("invalid ip or cidr: " + cidr);
+		}
+		return find(addr[0], addr[1], prefixBits);
+	}
+
+	/**
+	 * @return 有ChannelContext的ip数
+	 */
+	public int channelIpCount() {
+		return channelMap.size();
+	}
+
+	private static class IpChannels<SessionContext, P extends Packet, R> {
+		private final Set<ChannelContext<SessionContext, P, R>> channels = new HashSet<>(4);
+
+		/**
+		 * 已经从channelMap中删除，不能再往里加
+		 */
+		private boolean removed = false;
+	}
+
+	/**
+	 * 128位ip，按无符号数比较
+	 */
+	private static final class IpKey implements Comparable<IpKey> {
+		private final long hi;
+		private final long lo;
+
+		private IpKey(long hi, long lo) {
+			this.hi = hi;
+			this.lo = lo;
+		}
+
+		private static IpKey from(Node clientNode) {
+			if (clientNode == null) {
+				return null;
+			}
+			long[] addr = new long[2];
+			if (!IpUtils.parse(clientNode.getIp(), addr)) {
+				return null;
+			}
+			return new IpKey(addr[0], addr[1]);
+		}
+
+		@Override
+		public int compareTo(IpKey o) {
+			int c = Long.compareUnsigned(hi, o.hi);
+			return c != 0 ? c : Long.compareUnsigned(lo, o.lo);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof IpKey)) {
+				return false;
+			}
+			IpKey other = (IpKey) obj;
+			return hi == other.hi && lo == other.lo;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(hi * 31 + lo);
+		}
+
+		@Override
+		public String toString() {
+			return IpUtils.toString(hi, lo);
+		}
 	}
 }
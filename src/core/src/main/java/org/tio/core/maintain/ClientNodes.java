@@ -1,26 +1,39 @@
 package org.tio.core.maintain;
 
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.collections4.bidimap.DualHashBidiMap;
 import org.tio.core.ChannelContext;
 import org.tio.core.Node;
-import org.tio.core.ObjWithLock;
 import org.tio.core.intf.Packet;
+import org.tio.core.utils.IpUtils;
+import org.tio.core.utils.collection.StripedLongObjectMap;
 
 /**
- * 
- * @author tanyaowu 
+ * 客户端地址(ip:port)与ChannelContext的映射<br>
+ * IPv4地址和端口打包成一个long(高32位是ip，低16位是端口)作为key，放在分段加锁的StripedLongObjectMap中，
+ * 查找时直接解析ip字符串，不拼接字符串也不装箱；非IPv4地址(例如IPv6)退回到ConcurrentHashMap，key为"ip:port"<br>
+ * ChannelContext自身记录了clientNode，所以不再需要双向map
+ *
+ * @author tanyaowu
  * 2017年4月1日 上午9:35:20
  */
 public class ClientNodes<SessionContext, P extends Packet, R> {
 
-	/** remoteAndChannelContext key: "ip:port" value: ChannelContext. */
-	private ObjWithLock<DualHashBidiMap<String, ChannelContext<SessionContext, P, R>>> map = new ObjWithLock<DualHashBidiMap<String, ChannelContext<SessionContext, P, R>>>(
-			new DualHashBidiMap<String, ChannelContext<SessionContext, P, R>>());
+	private static final int STRIPE_COUNT = 64;
 
 	/**
-	 * 
+	 * 不是IPv4地址时packKey()的返回值
+	 */
+	public static final long NOT_IPV4 = -1L;
+
+	/** key: ip和port打包成的long value: ChannelContext. */
+	private final StripedLongObjectMap<ChannelContext<SessionContext, P, R>> map = new StripedLongObjectMap<ChannelContext<SessionContext, P, R>>(STRIPE_COUNT);
+
+	/** 非IPv4地址 key: "ip:port" value: ChannelContext. */
+	private final ConcurrentHashMap<String, ChannelContext<SessionContext, P, R>> otherMap = new ConcurrentHashMap<String, ChannelContext<SessionContext, P, R>>();
+
+	/**
+	 *
 	 * @param channelContext
 	 * @return
 	 * @author: tanyaowu
@@ -35,7 +48,7 @@ public class ClientNodes<SessionContext, P extends Packet, R> {
 	}
 
 	/**
-	 * 
+	 *
 	 * @param ip
 	 * @param port
 	 * @return
@@ -46,21 +59,38 @@ public class ClientNodes<SessionContext, P extends Packet, R> {
 		return key;
 	}
 
+	/**
+	 * 把IPv4地址和端口打包成一个long，不产生任何对象，ip的解析见IpUtils.parseIpv4()
+	 * @param ip 形如"192.168.1.1"
+	 * @param port
+	 * @return ip不是IPv4地址或port不在[0, 65535]时返回NOT_IPV4
+	 */
+	public static long packKey(String ip, int port) {
+		if (ip == null || port < 0 || port > 0xFFFF) {
+			return NOT_IPV4;
+		}
+		long addr = IpUtils.parseIpv4(ip, 0, ip.length());
+		if (addr < 0) {
+			return NOT_IPV4;
+		}
+		return (addr << 16) | port;
+	}
+
 	/**
 	 * Removes映射
 	 * @param channelContext
 	 * @author: tanyaowu
 	 */
 	public void remove(ChannelContext<SessionContext, P, R> channelContext) {
-		Lock lock = map.getLock().writeLock();
-		DualHashBidiMap<String, ChannelContext<SessionContext, P, R>> m = map.getObj();
-		try {
-			lock.lock();
-			m.removeValue(channelContext);
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
+		Node clientNode = channelContext.getClientNode();
+		if (clientNode == null) {
+			return;
+		}
+		long key = packKey(clientNode.getIp(), clientNode.getPort());
+		if (key != NOT_IPV4) {
+			map.remove(key, channelContext);
+		} else {
+			otherMap.remove(getKey(clientNode.getIp(), clientNode.getPort()), channelContext);
 		}
 	}
 
@@ -70,59 +100,65 @@ public class ClientNodes<SessionContext, P extends Packet, R> {
 	 * @author: tanyaowu
 	 */
 	public void put(ChannelContext<SessionContext, P, R> channelContext) {
-		String key = getKey(channelContext);
-		Lock lock = map.getLock().writeLock();
-		DualHashBidiMap<String, ChannelContext<SessionContext, P, R>> m = map.getObj();
-
-		try {
-			lock.lock();
-			m.put(key, channelContext);
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
+		Node clientNode = channelContext.getClientNode();
+		if (clientNode == null) {
+			throw new RuntimeException("client node is null");
+		}
+		long key = packKey(clientNode.getIp(), clientNode.getPort());
+		if (key != NOT_IPV4) {
+			map.put(key, channelContext);
+		} else {
+			otherMap.put(getKey(clientNode.getIp(), clientNode.getPort()), channelContext);
 		}
 	}
 
 	/**
-	 * 
+	 *
 	 * @param ip
 	 * @param port
 	 * @return
 	 * @author: tanyaowu
 	 */
 	public ChannelContext<SessionContext, P, R> find(String ip, int port) {
-		String key = getKey(ip, port);
-		return find(key);
+		long key = packKey(ip, port);
+		if (key != NOT_IPV4) {
+			return map.get(key);
+		}
+		if (ip == null) {
+			return null;
+		}
+		return otherMap.get(getKey(ip, port));
 	}
 
 	/**
-	 * 
-	 * @param key
+	 *
+	 * @param key "ip:port"
 	 * @return
 	 * @author: tanyaowu
 	 */
 	public ChannelContext<SessionContext, P, R> find(String key) {
-		Lock lock = map.getLock().readLock();
-		DualHashBidiMap<String, ChannelContext<SessionContext, P, R>> m = map.getObj();
-
+		if (key == null) {
+			return null;
+		}
+		int idx = key.lastIndexOf(':');
+		if (idx <= 0) {
+			return null;
+		}
+		int port;
 		try {
-			lock.lock();
-			return m.get(key);
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
+			port = Integer.parseInt(key.substring(idx + 1));
+		} catch (NumberFormatException e) {
+			return null;
 		}
+		return find(key.substring(0, idx), port);
 	}
 
 	/**
-	 * 
+	 * 映射数(近似值)
 	 * @return
-	 * @author: tanyaowu
 	 */
-	public ObjWithLock<DualHashBidiMap<String, ChannelContext<SessionContext, P, R>>> getMap() {
-		return map;
+	public int size() {
+		return map.size() + otherMap.size();
 	}
 
 }
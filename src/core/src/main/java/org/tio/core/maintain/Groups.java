@@ -1,21 +1,23 @@
 package org.tio.core.maintain;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
+import java.util.function.BiFunction;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tio.core.ChannelContext;
 import org.tio.core.GroupContext;
-import org.tio.core.MapWithLock;
 import org.tio.core.SetWithLock;
+import org.tio.core.SnapshotSet;
 import org.tio.core.intf.GroupListener;
 import org.tio.core.intf.Packet;
 
+/**
+ * 群组关系<br>
+ * 不再使用全局的读写锁：组的创建和删除依靠ConcurrentHashMap.compute()的按key加锁(只锁住同一个桶)，
+ * 组内成员用SnapshotSet维护，加入/离开不加锁，群发遍历的是快照，互不阻塞
+ */
 public class Groups<SessionContext, P extends Packet, R> {
 
 	/** The log. */
@@ -23,29 +25,27 @@ public class Groups<SessionContext, P extends Packet, R> {
 
 	/** 一个组有哪些客户端
 	 * key: groupid
-	 * value: Set<ChannelContext<?, ?, ?>
+	 * value: SnapshotSet<ChannelContext<?, ?, ?>
 	 */
-	private MapWithLock<String, SetWithLock<ChannelContext<SessionContext, P, R>>> groupmap = new MapWithLock<String, SetWithLock<ChannelContext<SessionContext, P, R>>>(
-			new ConcurrentHashMap<String,SetWithLock<ChannelContext<SessionContext, P, R>>>());
+	private ConcurrentHashMap<String, SnapshotSet<ChannelContext<SessionContext, P, R>>> groupmap = new ConcurrentHashMap<String, SnapshotSet<ChannelContext<SessionContext, P, R>>>();
 
 	/** 一个客户端在哪组组中
 	 *  key: ChannelContext
-	 *  value: Set<groupid<?, ?, ?>
+	 *  value: SnapshotSet<groupid<?, ?, ?>
 	 */
-	private MapWithLock<ChannelContext<SessionContext, P, R>, SetWithLock<String>> channelmap = new MapWithLock<ChannelContext<SessionContext, P, R>, SetWithLock<String>>(
-			new ConcurrentHashMap<ChannelContext<SessionContext, P, R>, SetWithLock<String>>());
+	private ConcurrentHashMap<ChannelContext<SessionContext, P, R>, SnapshotSet<String>> channelmap = new ConcurrentHashMap<ChannelContext<SessionContext, P, R>, SnapshotSet<String>>();
 
 	/**
 	 * @return the groupmap
 	 */
-	public MapWithLock<String, SetWithLock<ChannelContext<SessionContext, P, R>>> getGroupmap() {
+	public ConcurrentHashMap<String, SnapshotSet<ChannelContext<SessionContext, P, R>>> getGroupmap() {
 		return groupmap;
 	}
 
 	/**
 	 * @return the channelmap
 	 */
-	public MapWithLock<ChannelContext<SessionContext, P, R>, SetWithLock<String>> getChannelmap() {
+	public ConcurrentHashMap<ChannelContext<SessionContext, P, R>, SnapshotSet<String>> getChannelmap() {
 		return channelmap;
 	}
 
@@ -55,40 +55,22 @@ public class Groups<SessionContext, P extends Packet, R> {
 	 * @author: tanyaowu
 	 */
 	public void unbind(ChannelContext<SessionContext, P, R> channelContext) {
-		Lock lock = channelmap.getLock().writeLock();
-		try {
-			SetWithLock<String> set = null;
-			try {
-				lock.lock();
-				Map<ChannelContext<SessionContext, P, R>, SetWithLock<String>> m = channelmap.getObj();
-				set = m.get(channelContext);
-				m.remove(channelContext);
-			} catch (Exception e) {
-				log.error(e.toString(), e);
-			} finally {
-				lock.unlock();
-			}
+		SnapshotSet<String> set = channelmap.remove(channelContext);
+		if (set == null) {
+			return;
+		}
 
-			if (set != null) {
-				GroupContext<SessionContext, P, R> groupContext = channelContext.getGroupContext();
-				GroupListener<SessionContext, P, R> groupListener = groupContext.getGroupListener();
-				Set<String> groups = set.getObj();
-				if (groups != null && groups.size() > 0) {
-					for (String groupid : groups) {
-						unbind(groupid, channelContext);
-						if (groupListener != null) {
-							try {
-								groupListener.onAfterUnbind(channelContext, groupid);
-							} catch (Exception e) {
-								log.error(e.toString(), e);
-							}
-						}
-						//groupListener.onAfterUnbind
-					}
+		GroupContext<SessionContext, P, R> groupContext = channelContext.getGroupContext();
+		GroupListener<SessionContext, P, R> groupListener = groupContext.getGroupListener();
+		for (String groupid : set.snapshot()) {
+			unbindFromGroupmap(groupid, channelContext);
+			if (groupListener != null) {
+				try {
+					groupListener.onAfterUnbind(channelContext, groupid);
+				} catch (Exception e) {
+					log.error(e.toString(), e);
 				}
 			}
-		} catch (Exception e) {
-			throw e;
 		}
 	}
 
@@ -98,101 +80,65 @@ public class Groups<SessionContext, P extends Packet, R> {
 	 * @param channelContext
 	 * @author: tanyaowu
 	 */
-	public void unbind(String groupid, ChannelContext<SessionContext, P, R> channelContext) {
+	public void unbind(String groupid, final ChannelContext<SessionContext, P, R> channelContext) {
 		if (StringUtils.isBlank(groupid)) {
 			return;
 		}
-		
-		SetWithLock<ChannelContext<SessionContext, P, R>> set = groupmap.getObj().get(groupid);
-		if (set != null) {
-			Lock lock1 = set.getLock().writeLock();
-			try {
-				lock1.lock();
-				set.getObj().remove(channelContext);
-			} catch (Exception e) {
-				log.error(e.toString(), e);
-			} finally {
-				lock1.unlock();
-			}
 
-			if (set.getObj().size() == 0) {
-				Lock lock2 = groupmap.getLock().writeLock();
-				try {
-					lock2.lock();
-					groupmap.getObj().remove(groupid);
-				} catch (Exception e) {
-					log.error(e.toString(), e);
-				} finally {
-					lock2.unlock();
-				}
-			}
+		unbindFromGroupmap(groupid, channelContext);
+
+		SnapshotSet<String> groups = channelmap.get(channelContext);
+		if (groups != null) {
+			groups.remove(groupid);
 		}
 	}
 
+	/**
+	 * 从组中移除，组空了就删除组；在compute()中进行，和bind()不会出现"刚加入就被当作空组删掉"的情况
+	 * @param groupid
+	 * @param channelContext
+	 */
+	private void unbindFromGroupmap(String groupid, final ChannelContext<SessionContext, P, R> channelContext) {
+		groupmap.computeIfPresent(groupid, new BiFunction<String, SnapshotSet<ChannelContext<SessionContext, P, R>>, SnapshotSet<ChannelContext<SessionContext, P, R>>>() {
+			@Override
+			public SnapshotSet<ChannelContext<SessionContext, P, R>> apply(String key, SnapshotSet<ChannelContext<SessionContext, P, R>> members) {
+				members.remove(channelContext);
+				return members.size() == 0 ? null : members;
+			}
+		});
+	}
+
 	/**
 	 * 和组绑定
 	 * @param groupid
 	 * @param channelContext
 	 * @author: tanyaowu
 	 */
-	public void bind(String groupid, ChannelContext<SessionContext, P, R> channelContext) {
+	public void bind(String groupid, final ChannelContext<SessionContext, P, R> channelContext) {
 		if (StringUtils.isBlank(groupid)) {
 			return;
 		}
-		
-		Lock lock1 = groupmap.getLock().writeLock();
-		SetWithLock<ChannelContext<SessionContext, P, R>> channelContexts = null;
-		try {
-			lock1.lock();
-			channelContexts = groupmap.getObj().get(groupid);
-			if (channelContexts == null) {
-				channelContexts = new SetWithLock<ChannelContext<SessionContext, P, R>>(new HashSet<ChannelContext<SessionContext, P, R>>());
-			}
-			groupmap.getObj().put(groupid, channelContexts);
-		} catch (Exception e) {
-			log.error(e.toString(), e);
-		} finally {
-			lock1.unlock();
-		}
 
-		if (channelContexts != null) {
-			Lock lock11 = channelContexts.getLock().writeLock();
-			try {
-				lock11.lock();
-				channelContexts.getObj().add(channelContext);
-			} catch (Exception e) {
-				log.error(e.toString(), e);
-			} finally {
-				lock11.unlock();
+		groupmap.compute(groupid, new BiFunction<String, SnapshotSet<ChannelContext<SessionContext, P, R>>, SnapshotSet<ChannelContext<SessionContext, P, R>>>() {
+			@Override
+			public SnapshotSet<ChannelContext<SessionContext, P, R>> apply(String key, SnapshotSet<ChannelContext<SessionContext, P, R>> members) {
+				if (members == null) {
+					members = new SnapshotSet<ChannelContext<SessionContext, P, R>>();
+				}
+				members.add(channelContext);
+				return members;
 			}
-		}
+		});
 
-		Lock lock2 = channelmap.getLock().writeLock();
-		SetWithLock<String> groups = null;// = channelmap.getObj().get(channelContext);
-		try {
-			lock2.lock();
-			groups = channelmap.getObj().get(channelContext);
+		SnapshotSet<String> groups = channelmap.get(channelContext);
+		if (groups == null) {
+			SnapshotSet<String> newGroups = new SnapshotSet<String>();
+			groups = channelmap.putIfAbsent(channelContext, newGroups);
 			if (groups == null) {
-				groups = new SetWithLock<String>(new HashSet<String>());
-			}
-			channelmap.getObj().put(channelContext, groups);
-		} catch (Exception e) {
-			log.error(e.toString(), e);
-		} finally {
-			lock2.unlock();
-		}
-
-		if (groups != null) {
-			Lock lock22 = groups.getLock().writeLock();
-			try {
-				lock22.lock();
-				groups.getObj().add(groupid);
-			} catch (Exception e) {
-				log.error(e.toString(), e);
-			} finally {
-				lock22.unlock();
+				groups = newGroups;
 			}
 		}
+		groups.add(groupid);
 	}
 
 	/**
@@ -201,14 +147,22 @@ public class Groups<SessionContext, P extends Packet, R> {
 	 * @return
 	 * @author: tanyaowu
 	 */
-	public SetWithLock<ChannelContext<SessionContext, P, R>> clients(String groupid) {
+	public SnapshotSet<ChannelContext<SessionContext, P, R>> clients(String groupid) {
 		if (StringUtils.isBlank(groupid)) {
 			return null;
 		}
-		
-		Map<String, SetWithLock<ChannelContext<SessionContext, P, R>>> map = groupmap.getObj();
-		SetWithLock<ChannelContext<SessionContext, P, R>> set = map.get(groupid);
-		return set;
+
+		return groupmap.get(groupid);
+	}
+
+	/**
+	 * 一个组有多少客户端，O(1)
+	 * @param groupid
+	 * @return
+	 */
+	public int size(String groupid) {
+		SnapshotSet<ChannelContext<SessionContext, P, R>> set = clients(groupid);
+		return set == null ? 0 : set.size();
 	}
 
 	/**
@@ -218,8 +172,6 @@ public class Groups<SessionContext, P extends Packet, R> {
 	 * @author: tanyaowu
 	 */
 	public SetWithLock<String> groups(ChannelContext<SessionContext, P, R> channelContext) {
-		Map<ChannelContext<SessionContext, P, R>, SetWithLock<String>> map = channelmap.getObj();
-		SetWithLock<String> set = map.get(channelContext);
-		return set;
+		return channelmap.get(channelContext);
 	}
 }
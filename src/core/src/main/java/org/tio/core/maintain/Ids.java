@@ -1,72 +1,50 @@
 package org.tio.core.maintain;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.locks.Lock;
-
-import org.apache.commons.lang3.StringUtils;
 import org.tio.core.ChannelContext;
-import org.tio.core.MapWithLock;
 import org.tio.core.intf.Packet;
+import org.tio.core.utils.IdGenerator;
+import org.tio.core.utils.collection.StripedLongObjectMap;
 
 /**
- * 
- * @author tanyaowu 
+ * id与ChannelContext的映射<br>
+ * key是ChannelContext.getLongId()，分段加锁，连接建立和关闭时不争抢全局锁，也不需要先生成id的字符串
+ *
+ * @author tanyaowu
  * 2017年4月15日 下午12:13:19
  */
 public class Ids<SessionContext, P extends Packet, R> {
 
+	private static final int STRIPE_COUNT = 64;
+
 	/**
 	 * key: id
 	 * value: ChannelContext
 	 */
-	private MapWithLock<String, ChannelContext<SessionContext, P, R>> map = new MapWithLock<String, ChannelContext<SessionContext, P, R>>(
-			new HashMap<String, ChannelContext<SessionContext, P, R>>());
+	private final StripedLongObjectMap<ChannelContext<SessionContext, P, R>> map = new StripedLongObjectMap<ChannelContext<SessionContext, P, R>>(STRIPE_COUNT);
 
 	/**
 	 * @return the map
 	 */
-	public MapWithLock<String, ChannelContext<SessionContext, P, R>> getMap() {
+	public StripedLongObjectMap<ChannelContext<SessionContext, P, R>> getMap() {
 		return map;
 	}
 
 	/**
-	 * 
+	 *
 	 * @param channelContext
 	 * @author: tanyaowu
 	 */
 	public void unbind(ChannelContext<SessionContext, P, R> channelContext) {
-		Lock lock = map.getLock().writeLock();
-		Map<String, ChannelContext<SessionContext, P, R>> m = map.getObj();
-		try {
-			lock.lock();
-			m.remove(channelContext.getId());
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
-		}
+		map.remove(channelContext.getLongId(), channelContext);
 	}
 
 	/**
-	 * 
+	 *
 	 * @param channelContext
 	 * @author: tanyaowu
 	 */
 	public void bind(ChannelContext<SessionContext, P, R> channelContext) {
-		String key = channelContext.getId();
-		Lock lock = map.getLock().writeLock();
-		Map<String, ChannelContext<SessionContext, P, R>> m = map.getObj();
-
-		try {
-			lock.lock();
-			m.put(key, channelContext);
-			//			channelContext.setId(id);
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
-		}
+		map.put(channelContext.getLongId(), channelContext);
 	}
 
 	/**
@@ -76,21 +54,26 @@ public class Ids<SessionContext, P extends Packet, R> {
 	 * @return the channel context
 	 */
 	public ChannelContext<SessionContext, P, R> find(String id) {
-		if (StringUtils.isBlank(id)) {
+		long key = IdGenerator.parse(id);
+		if (key <= 0) {
 			return null;
 		}
-		
-		String key = id;
-		Lock lock = map.getLock().readLock();
-		Map<String, ChannelContext<SessionContext, P, R>> m = map.getObj();
+		return map.get(key);
+	}
 
-		try {
-			lock.lock();
-			return m.get(key);
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
-		}
+	/**
+	 *
+	 * @param id
+	 * @return
+	 */
+	public ChannelContext<SessionContext, P, R> find(long id) {
+		return map.get(id);
+	}
+
+	/**
+	 * @return 映射数(近似值)
+	 */
+	public int size() {
+		return map.size();
 	}
 }
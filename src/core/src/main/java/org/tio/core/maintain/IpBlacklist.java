@@ -1,62 +1,95 @@
 package org.tio.core.maintain;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 
-import org.apache.commons.lang3.StringUtils;
 import org.tio.core.Aio;
 import org.tio.core.ChannelContext;
 import org.tio.core.GroupContext;
 import org.tio.core.SetWithLock;
 import org.tio.core.intf.Packet;
+import org.tio.core.utils.IpUtils;
+import org.tio.core.utils.collection.IpPrefixTrie;
 
 /**
- * 
- * @author tanyaowu 
+ * ip黑名单，支持单个ip和网段(CIDR，例如192.168.1.0/24、2001:db8::/64)，IPv4和IPv6都可以<br>
+ * 黑名单条目放在setWithLock中，每次修改后重新构建一棵IpPrefixTrie并替换volatile引用，
+ * isInBlacklist()只读这棵树，不加锁也不产生任何对象<br>
+ * 加入黑名单时通过GroupContext.clientIps按网段找到相关连接并删除，不遍历全部连接
+ * @author tanyaowu
  * 2017年5月22日 下午2:53:47
  */
 public class IpBlacklist {
 
-	/** remoteAndChannelContext key: "ip:port" value: ChannelContext. */
+	/**
+	 * isInBlacklist()解析ip用的临时数组
+	 */
+	private static final ThreadLocal<long[]> ADDR = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[2];
+		}
+	};
+
+	/** 黑名单条目，ip或CIDR */
 	private SetWithLock<String> setWithLock = new SetWithLock<String>(new HashSet<String>());
 
+	private volatile IpPrefixTrie trie = IpPrefixTrie.EMPTY;
+
+	/**
+	 * 加入黑名单，并删除相关连接
+	 * @param groupContext
+	 * @param ip 单个ip或CIDR，例如192.168.1.1、192.168.1.0/24、2001:db8::/64
+	 * @throws IllegalArgumentException ip不合法
+	 */
 	public <SessionContext, P extends Packet, R> void add(GroupContext<SessionContext, P, R> groupContext, String ip) {
+		long[] addr = new long[2];
+		int prefixBits = IpUtils.parseCidr(ip, addr);
+		if (prefixBits < 0) {
+			throw new IllegalArgumentException("invalid ip or cidr: " + ip);
+		}
+
 		//先添加到黑名单列表
 		Lock lock = setWithLock.getLock().writeLock();
 		try {
 			lock.lock();
 			Set<String> m = setWithLock.getObj();
-			m.add(ip);
+			if (m.add(ip.trim())) {
+				rebuild(m);
+			}
 		} catch (Exception e) {
 			throw e;
 		} finally {
 			lock.unlock();
 		}
-		
+
 		//再删除相关连接
-		SetWithLock<ChannelContext<SessionContext, P, R>> setWithLock = Aio.getAllChannelContexts(groupContext);
-		Lock lock2 = setWithLock.getLock().readLock();
-		try {
-			lock2.lock();
-			Set<ChannelContext<SessionContext, P, R>> set = setWithLock.getObj();
-			for (ChannelContext<SessionContext, P, R> channelContext : set) {
-				String clientIp = channelContext.getClientNode().getIp();
-				if (StringUtils.equals(clientIp, ip)) {
-					Aio.remove(channelContext, "ip[" + clientIp + "]被加入了黑名单");
-				}
-			}
-		} finally {
-			lock2.unlock();
+		List<ChannelContext<SessionContext, P, R>> list = groupContext.clientIps.find(addr[0], addr[1], prefixBits);
+		for (ChannelContext<SessionContext, P, R> channelContext : list) {
+			Aio.remove(channelContext, "ip[" + channelContext.getClientNode().getIp() + "]被加入了黑名单[" + ip + "]");
 		}
 	}
 
+	/**
+	 * 从黑名单中删除，只删除完全相同的条目(加入时用的是网段，删除时也要用这个网段)
+	 * @param ip
+	 * @return
+	 */
 	public boolean remove(String ip) {
+		if (ip == null) {
+			return false;
+		}
 		Lock lock = setWithLock.getLock().writeLock();
 		try {
 			lock.lock();
 			Set<String> m = setWithLock.getObj();
-			return m.remove(ip);
+			boolean ret = m.remove(ip.trim());
+			if (ret) {
+				rebuild(m);
+			}
+			return ret;
 		} catch (Exception e) {
 			throw e;
 		} finally {
@@ -64,6 +97,17 @@ public class IpBlacklist {
 		}
 	}
 
+	/**
+	 * 在写锁中调用
+	 */
+	private void rebuild(Set<String> m) {
+		IpPrefixTrie.Builder builder = new IpPrefixTrie.Builder();
+		for (String ip : m) {
+			builder.add(ip);
+		}
+		trie = builder.build();
+	}
+
 	public Set<String> getCopy() {
 		Lock lock = setWithLock.getLock().readLock();
 		try {
@@ -91,28 +135,27 @@ public class IpBlacklist {
 			lock.unlock();
 		}
 	}
-	
+
 	/**
-	 * 是否在黑名单中
+	 * 是否在黑名单中(包括落在黑名单的网段中)
 	 * @param ip
 	 * @return
 	 * @author: tanyaowu
 	 */
 	public boolean isInBlacklist(String ip) {
-		Lock lock = setWithLock.getLock().readLock();
-		try {
-			lock.lock();
-			Set<String> m = setWithLock.getObj();
-			return m.contains(ip);
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
+		IpPrefixTrie trie = this.trie;
+		if (trie.isEmpty()) {
+			return false;
 		}
+		long[] addr = ADDR.get();
+		if (!IpUtils.parse(ip, addr)) {
+			return false;
+		}
+		return trie.contains(addr[0], addr[1]);
 	}
 
 	/**
-	 * 
+	 *
 	 *
 	 * @return
 	 */
@@ -1,27 +0,0 @@
-package org.tio.core.maintain;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-/**
- * @author tanyaowu 
- * 2017年5月23日 下午2:06:47
- */
-public class IpRateLimiterWrap {
-	private static Logger log = LoggerFactory.getLogger(IpRateLimiterWrap.class);
-
-	/**
-	 * 
-	 * @author: tanyaowu
-	 */
-	public IpRateLimiterWrap() {
-	}
-
-	/**
-	 * @param args
-	 * @author: tanyaowu
-	 */
-	public static void main(String[] args) {
-
-	}
-}
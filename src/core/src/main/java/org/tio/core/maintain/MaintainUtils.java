@@ -7,6 +7,8 @@ import org.tio.core.Aio;
 import org.tio.core.ChannelContext;
 import org.tio.core.GroupContext;
 import org.tio.core.intf.Packet;
+import org.tio.server.ServerChannelContext;
+import org.tio.server.ServerGroupContext;
 
 public class MaintainUtils {
 	private static Logger log = LoggerFactory.getLogger(MaintainUtils.class);
@@ -21,10 +23,11 @@ public class MaintainUtils {
 	public static <SessionContext, P extends Packet, R> void removeFromMaintain(ChannelContext<SessionContext, P, R> channelContext) {
 		GroupContext<SessionContext, P, R> groupContext = channelContext.getGroupContext();
 		try {
-			groupContext.connections.remove(channelContext);
-			groupContext.connecteds.remove(channelContext);
-			groupContext.closeds.remove(channelContext);
-			groupContext.ids.unbind(channelContext);
+			unregister(groupContext, channelContext);
+			if (channelContext instanceof ServerChannelContext) {
+				//ServerChannelContext都是经过准入才创建的
+				((ServerGroupContext<SessionContext, P, R>) groupContext).getConnectionAdmission().release(groupContext.clientIps, channelContext.getClientNode().getIp());
+			}
 			if (StringUtils.isNotBlank(channelContext.getUserid())) {
 				try {
 					Aio.unbindUser(channelContext);
@@ -38,4 +41,19 @@ public class MaintainUtils {
 		}
 	}
 
+	/**
+	 * 从groupContext的各个连接索引中删除，不退回准入计数，也不解绑用户和群组<br>
+	 * ChannelContext构造失败时也用这个方法撤掉已经做了的登记，这时channelContext的字段可能还没有赋值
+	 * @param groupContext
+	 * @param channelContext
+	 */
+	public static <SessionContext, P extends Packet, R> void unregister(GroupContext<SessionContext, P, R> groupContext, ChannelContext<SessionContext, P, R> channelContext) {
+		groupContext.connections.remove(channelContext);
+		groupContext.connecteds.remove(channelContext);
+		groupContext.closeds.remove(channelContext);
+		groupContext.ids.unbind(channelContext);
+		groupContext.clientNodes.remove(channelContext);
+		groupContext.clientIps.remove(channelContext);
+	}
+
 }
@@ -0,0 +1,140 @@
+package org.tio.core.maintain;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.tio.core.ChannelContext;
+import org.tio.core.intf.Packet;
+import org.tio.core.timer.intf.Timeout;
+import org.tio.core.timer.intf.TimerTask;
+import org.tio.core.utils.collection.StripedIntObjectMap;
+
+/**
+ * 一个连接上等待响应的请求(synSeq -> CompletableFuture)<br>
+ * 每个连接一张表，按synSeq分段加锁，key不装箱；超时由GroupContext的时间轮处理，不占用线程
+ */
+public class PendingRequests<SessionContext, P extends Packet, R> {
+
+	private static final int STRIPE_COUNT = 8;
+
+	private static class PendingRequest<P> {
+		private final CompletableFuture<P> future = new CompletableFuture<P>();
+		private volatile Timeout timeout = null;
+	}
+
+	private final ChannelContext<SessionContext, P, R> channelContext;
+
+	private final StripedIntObjectMap<PendingRequest<P>> map = new StripedIntObjectMap<PendingRequest<P>>(STRIPE_COUNT);
+
+	private final AtomicInteger seq = new AtomicInteger();
+
+	/**
+	 *
+	 * @param channelContext
+	 */
+	public PendingRequests(ChannelContext<SessionContext, P, R> channelContext) {
+		this.channelContext = channelContext;
+	}
+
+	/**
+	 * 生成一个本连接内唯一(在途请求不超过2^31个的前提下)的synSeq，始终大于0
+	 * @return
+	 */
+	public int nextSynSeq() {
+		while (true) {
+			int ret = seq.incrementAndGet();
+			if (ret > 0) {
+				return ret;
+			}
+			seq.compareAndSet(ret, 0);
+		}
+	}
+
+	/**
+	 * 登记一个等待响应的请求
+	 * @param synSeq
+	 * @param timeout 超时时间(毫秒)
+	 * @return 收到响应时complete，超时时以TimeoutException结束
+	 */
+	public CompletableFuture<P> add(final int synSeq, final long timeout) {
+		final PendingRequest<P> pendingRequest = new PendingRequest<P>();
+		if (map.putIfAbsent(synSeq, pendingRequest) != null) {
+			pendingRequest.future.completeExceptionally(new IllegalStateException("synSeq[" + synSeq + "]已经在等待响应"));
+			return pendingRequest.future;
+		}
+
+		pendingRequest.timeout = channelContext.getGroupContext().getTimer().newTimeout(new TimerTask() {
+			@Override
+			public void run(Timeout t) throws Exception {
+				if (map.remove(synSeq, pendingRequest)) {
+					pendingRequest.future.completeExceptionally(new TimeoutException(channelContext + " 等待响应超时, synSeq:" + synSeq + ", timeout:" + timeout + "ms"));
+				}
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+
+		//响应可能在设置timeout之前就到了
+		if (pendingRequest.future.isDone()) {
+			pendingRequest.timeout.cancel();
+		}
+		return pendingRequest.future;
+	}
+
+	/**
+	 * 收到响应
+	 * @param synSeq
+	 * @param packet
+	 * @return false: 没有对应的请求(可能已经超时)
+	 */
+	public boolean complete(int synSeq, P packet) {
+		PendingRequest<P> pendingRequest = map.remove(synSeq);
+		if (pendingRequest == null) {
+			return false;
+		}
+		Timeout timeout = pendingRequest.timeout;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+		pendingRequest.future.complete(packet);
+		return true;
+	}
+
+	/**
+	 * 取消一个请求(例如发送失败)
+	 * @param synSeq
+	 * @param throwable
+	 */
+	public void fail(int synSeq, Throwable throwable) {
+		PendingRequest<P> pendingRequest = map.remove(synSeq);
+		if (pendingRequest != null) {
+			Timeout timeout = pendingRequest.timeout;
+			if (timeout != null) {
+				timeout.cancel();
+			}
+			pendingRequest.future.completeExceptionally(throwable);
+		}
+	}
+
+	/**
+	 * 连接关闭时，所有在途请求以throwable结束
+	 * @param throwable
+	 */
+	public void failAll(Throwable throwable) {
+		for (PendingRequest<P> pendingRequest : map.clear()) {
+			Timeout timeout = pendingRequest.timeout;
+			if (timeout != null) {
+				timeout.cancel();
+			}
+			pendingRequest.future.completeExceptionally(throwable);
+		}
+	}
+
+	/**
+	 * 在途请求数(近似值)
+	 * @return
+	 */
+	public int size() {
+		return map.size();
+	}
+}
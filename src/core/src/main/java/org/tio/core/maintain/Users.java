@@ -1,17 +1,22 @@
 package org.tio.core.maintain;
 
-import java.util.concurrent.locks.Lock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 
-import org.apache.commons.collections4.bidimap.DualHashBidiMap;
 import org.apache.commons.lang3.StringUtils;
 import org.tio.core.ChannelContext;
-import org.tio.core.ObjWithLock;
 import org.tio.core.intf.Packet;
 
 /**
- * The Class Users.
+ * 用户与ChannelContext的绑定关系，一个用户可以同时有多个连接(多端登录)<br>
+ * userid -> ChannelContext[]，反向关系就是ChannelContext.getUserid()，不再需要双向map；
+ * 增删依靠ConcurrentHashMap.compute()的按key加锁，不同用户之间互不阻塞<br>
+ * 一个用户的连接数很少，数组写时复制，读的时候(find/findAll)不加锁也不拷贝
  *
- * @param <Ext> the generic type
+ * @param <SessionContext> the generic type
  * @param <P> the generic type
  * @param <R> the generic type
  */
@@ -19,38 +24,35 @@ public class Users<SessionContext, P extends Packet, R> {
 
 	/**
 	 * key: userid
-	 * value: ChannelContext
+	 * value: 该用户的所有ChannelContext，数组不会被修改，变化时整体替换
 	 */
-	private ObjWithLock<DualHashBidiMap<String, ChannelContext<SessionContext, P, R>>> map = new ObjWithLock<DualHashBidiMap<String, ChannelContext<SessionContext, P, R>>>(
-			new DualHashBidiMap<String, ChannelContext<SessionContext, P, R>>());
+	private final ConcurrentHashMap<String, ChannelContext<SessionContext, P, R>[]> map = new ConcurrentHashMap<String, ChannelContext<SessionContext, P, R>[]>();
 
 	/**
 	 * @return the map
 	 */
-	public ObjWithLock<DualHashBidiMap<String, ChannelContext<SessionContext, P, R>>> getMap() {
+	public ConcurrentHashMap<String, ChannelContext<SessionContext, P, R>[]> getMap() {
 		return map;
 	}
 
 	/**
-	 * 解除绑定
+	 * 解除绑定<br>
+	 * channelContext.getUserid()保留最后一次绑定的userid，关闭连接后的回调中仍然可以拿到
 	 *
 	 * @param channelContext the channel context
 	 */
 	public void unbind(ChannelContext<SessionContext, P, R> channelContext) {
-		Lock lock = map.getLock().writeLock();
-		DualHashBidiMap<String, ChannelContext<SessionContext, P, R>> m = map.getObj();
-		try {
-			lock.lock();
-			m.removeValue(channelContext);
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
+		synchronized (channelContext) {
+			String userid = channelContext.getUserid();
+			if (StringUtils.isBlank(userid)) {
+				return;
+			}
+			removeFromMap(userid, channelContext);
 		}
 	}
 
 	/**
-	 * 解除绑定
+	 * 解除该用户所有连接的绑定
 	 *
 	 * @param userid the userid
 	 * @author: tanyaowu
@@ -59,47 +61,81 @@ public class Users<SessionContext, P extends Packet, R> {
 		if (StringUtils.isBlank(userid)) {
 			return;
 		}
-		
-		Lock lock = map.getLock().writeLock();
-		DualHashBidiMap<String, ChannelContext<SessionContext, P, R>> m = map.getObj();
-		try {
-			lock.lock();
-			m.remove(userid);
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
-		}
+		map.remove(userid);
 	}
 
 	/**
-	 * 绑定userid.
+	 * 绑定userid，一个连接只能绑定一个userid，重新绑定时会先和原来的userid解绑
 	 *
 	 * @param userid the userid
 	 * @param channelContext the channel context
 	 * @author: tanyaowu
 	 */
-	public void bind(String userid, ChannelContext<SessionContext, P, R> channelContext) {
+	public void bind(String userid, final ChannelContext<SessionContext, P, R> channelContext) {
 		if (StringUtils.isBlank(userid)) {
 			return;
 		}
-		String key = userid;
-		Lock lock = map.getLock().writeLock();
-		DualHashBidiMap<String, ChannelContext<SessionContext, P, R>> m = map.getObj();
 
-		try {
-			lock.lock();
-			m.put(key, channelContext);
+		synchronized (channelContext) {
+			String oldUserid = channelContext.getUserid();
+			if (oldUserid != null && !oldUserid.equals(userid)) {
+				removeFromMap(oldUserid, channelContext);
+			}
+
+			map.compute(userid, new BiFunction<String, ChannelContext<SessionContext, P, R>[], ChannelContext<SessionContext, P, R>[]>() {
+				@Override
+				@SuppressWarnings({"unchecked", "rawtypes"})
+				public ChannelContext<SessionContext, P, R>[] apply(String key, ChannelContext<SessionContext, P, R>[] channels) {
+					if (channels == null) {
+						return new ChannelContext[] { channelContext };
+					}
+					for (ChannelContext<SessionContext, P, R> c : channels) {
+						if (c == channelContext) {
+							return channels;
+						}
+					}
+					ChannelContext<SessionContext, P, R>[] ret = Arrays.copyOf(channels, channels.length + 1);
+					ret[channels.length] = channelContext;
+					return ret;
+				}
+			});
 			channelContext.setUserid(userid);
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
 		}
 	}
 
 	/**
-	 * Find.
+	 * 从用户的连接集合中移除，集合空了就删除该用户
+	 * @param userid
+	 * @param channelContext
+	 */
+	private void removeFromMap(String userid, final ChannelContext<SessionContext, P, R> channelContext) {
+		map.computeIfPresent(userid, new BiFunction<String, ChannelContext<SessionContext, P, R>[], ChannelContext<SessionContext, P, R>[]>() {
+			@Override
+			@SuppressWarnings({"unchecked", "rawtypes"})
+			public ChannelContext<SessionContext, P, R>[] apply(String key, ChannelContext<SessionContext, P, R>[] channels) {
+				int idx = -1;
+				for (int i = 0; i < channels.length; i++) {
+					if (channels[i] == channelContext) {
+						idx = i;
+						break;
+					}
+				}
+				if (idx < 0) {
+					return channels;
+				}
+				if (channels.length == 1) {
+					return null;
+				}
+				ChannelContext<SessionContext, P, R>[] ret = new ChannelContext[channels.length - 1];
+				System.arraycopy(channels, 0, ret, 0, idx);
+				System.arraycopy(channels, idx + 1, ret, idx, channels.length - idx - 1);
+				return ret;
+			}
+		});
+	}
+
+	/**
+	 * 找到该用户的一个连接，用户有多个连接时返回最早绑定的那个，需要全部连接请用findAll()
 	 *
 	 * @param userid the userid
 	 * @return the channel context
@@ -108,17 +144,31 @@ public class Users<SessionContext, P extends Packet, R> {
 		if (StringUtils.isBlank(userid)) {
 			return null;
 		}
-		String key = userid;
-		Lock lock = map.getLock().readLock();
-		DualHashBidiMap<String, ChannelContext<SessionContext, P, R>> m = map.getObj();
+		ChannelContext<SessionContext, P, R>[] channels = map.get(userid);
+		return channels == null ? null : channels[0];
+	}
 
-		try {
-			lock.lock();
-			return m.get(key);
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			lock.unlock();
+	/**
+	 * 该用户的所有连接
+	 *
+	 * @param userid the userid
+	 * @return 只读，没有绑定时返回空列表
+	 */
+	public List<ChannelContext<SessionContext, P, R>> findAll(String userid) {
+		if (StringUtils.isBlank(userid)) {
+			return Collections.emptyList();
+		}
+		ChannelContext<SessionContext, P, R>[] channels = map.get(userid);
+		if (channels == null) {
+			return Collections.emptyList();
 		}
+		return Collections.unmodifiableList(Arrays.asList(channels));
+	}
+
+	/**
+	 * @return 在线用户数
+	 */
+	public int size() {
+		return map.size();
 	}
 }
@@ -0,0 +1,86 @@
+package org.tio.core.stat;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * buffer池的统计信息
+ */
+public class BufferStat {
+	/**
+	 * 一共新创建了多少个buffer(池中没有可用的buffer时才会新建)
+	 */
+	private AtomicLong allocated = new AtomicLong();
+
+	/**
+	 * 超过最大规格，没有走池化的分配次数
+	 */
+	private AtomicLong unpooledAllocated = new AtomicLong();
+
+	/**
+	 * 当前正在使用(已借出未归还)的buffer数
+	 */
+	private AtomicLong inUse = new AtomicLong();
+
+	/**
+	 * 当前池中(包括线程缓存)空闲的buffer数
+	 */
+	private AtomicLong pooled = new AtomicLong();
+
+	/**
+	 * 因为池满了而被丢弃的buffer数
+	 */
+	private AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * 被GC回收了却没有release()的buffer数(需要开启泄漏检测)
+	 */
+	private AtomicLong leaked = new AtomicLong();
+
+	/**
+	 * @return the allocated
+	 */
+	public AtomicLong getAllocated() {
+		return allocated;
+	}
+
+	/**
+	 * @return the unpooledAllocated
+	 */
+	public AtomicLong getUnpooledAllocated() {
+		return unpooledAllocated;
+	}
+
+	/**
+	 * @return the inUse
+	 */
+	public AtomicLong getInUse() {
+		return inUse;
+	}
+
+	/**
+	 * @return the pooled
+	 */
+	public AtomicLong getPooled() {
+		return pooled;
+	}
+
+	/**
+	 * @return the dropped
+	 */
+	public AtomicLong getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return the leaked
+	 */
+	public AtomicLong getLeaked() {
+		return leaked;
+	}
+
+	@Override
+	public String toString() {
+		return "BufferStat[allocated=" + allocated.get() + ", unpooledAllocated=" + unpooledAllocated.get() + ", inUse=" + inUse.get() + ", pooled=" + pooled.get()
+				+ ", dropped=" + dropped.get() + ", leaked=" + leaked.get() + "]";
+	}
+}
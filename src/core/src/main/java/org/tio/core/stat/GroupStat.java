@@ -1,104 +1,174 @@
 package org.tio.core.stat;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 整个GroupContext的统计<br>
+ * 所有连接的收发都会更新这里的计数器，所以用LongAdder(分段、按缓存行填充的计数器)，各线程更新不同的段，不会争抢同一个缓存行；
+ * 读的时候才把各段加起来(sum())，需要同时取多个值时用snapshot()
+ */
 public class GroupStat {
 	/**
 	 * 关闭了多少连接
 	 */
-	private AtomicLong closed = new AtomicLong();
+	private LongAdder closed = new LongAdder();
 	/**
 	 * 接收到的消息包
 	 */
-	private AtomicLong receivedPacket = new AtomicLong();
+	private LongAdder receivedPacket = new LongAdder();
 	/**
 	 * 接收到的消息字节数
 	 */
-	private AtomicLong receivedBytes = new AtomicLong();
+	private LongAdder receivedBytes = new LongAdder();
 	/**
 	 * 处理了的消息包数
 	 */
-	private AtomicLong handledPacket = new AtomicLong();
+	private LongAdder handledPacket = new LongAdder();
 	
-	private AtomicLong handledBytes = new AtomicLong();
+	private LongAdder handledBytes = new LongAdder();
 
 	/**
 	 * 发送了的消息包数
 	 */
-	private AtomicLong sentPacket = new AtomicLong();
+	private LongAdder sentPacket = new LongAdder();
 
 	/**
 	 * 发送了的字节数
 	 */
-	private AtomicLong sentBytes = new AtomicLong();
+	private LongAdder sentBytes = new LongAdder();
+
+	/**
+	 * 因发送队列超过高水位而被丢弃的消息包数
+	 */
+	private LongAdder droppedPacket = new LongAdder();
+
+	/**
+	 * 超过收包速度限制的消息包数(不管怎么处理的)，见PacketRateLimiter
+	 */
+	private LongAdder rateLimitedPacket = new LongAdder();
+
+	/**
+	 * 调用socket写的次数(一次只写出一部分时，接着写也算一次)
+	 */
+	private LongAdder writes = new LongAdder();
+
+	/**
+	 * 收发各环节的延迟分布，默认不采样
+	 */
+	private final LatencyStat latencyStat = new LatencyStat();
 
 	/**
 	 * @return the receivedPacket
 	 */
-	public AtomicLong getReceivedPacket() {
+	public LongAdder getReceivedPacket() {
 		return receivedPacket;
 	}
 
 	/**
 	 * @return the handledPacket
 	 */
-	public AtomicLong getHandledPacket() {
+	public LongAdder getHandledPacket() {
 		return handledPacket;
 	}
 
 	/**
 	 * @return the sentPacket
 	 */
-	public AtomicLong getSentPacket() {
+	public LongAdder getSentPacket() {
 		return sentPacket;
 	}
 
+	/**
+	 * @return the droppedPacket
+	 */
+	public LongAdder getDroppedPacket() {
+		return droppedPacket;
+	}
+
+	/**
+	 * @return the rateLimitedPacket
+	 */
+	public LongAdder getRateLimitedPacket() {
+		return rateLimitedPacket;
+	}
+
+	/**
+	 * @return the writes
+	 */
+	public LongAdder getWrites() {
+		return writes;
+	}
+
+	/**
+	 * 合并写的效果：平均每次socket写发送了多少个packet
+	 * @return 还没写过时返回0
+	 */
+	public double getCoalescingRatio() {
+		long w = writes.sum();
+		return w == 0 ? 0 : (double) sentPacket.sum() / w;
+	}
+
+	/**
+	 * @return the latencyStat
+	 */
+	public LatencyStat getLatencyStat() {
+		return latencyStat;
+	}
+
+	/**
+	 * 取一份当前值的快照，用于展示或按时间间隔计算速率
+	 * @return
+	 */
+	public GroupStatSnapshot snapshot() {
+		return new GroupStatSnapshot(this);
+	}
+
 	/**
 	 * @return the closed
 	 */
-	public AtomicLong getClosed() {
+	public LongAdder getClosed() {
 		return closed;
 	}
 
 	/**
 	 * @param closed the closed to set
 	 */
-	public void setClosed(AtomicLong closed) {
+	public void setClosed(LongAdder closed) {
 		this.closed = closed;
 	}
 
 	/**
 	 * @return the sentBytes
 	 */
-	public AtomicLong getSentBytes() {
+	public LongAdder getSentBytes() {
 		return sentBytes;
 	}
 
 	/**
 	 * @return the receivedBytes
 	 */
-	public AtomicLong getReceivedBytes() {
+	public LongAdder getReceivedBytes() {
 		return receivedBytes;
 	}
 
 	/**
 	 * @param receivedBytes the receivedBytes to set
 	 */
-	public void setReceivedBytes(AtomicLong receivedBytes) {
+	public void setReceivedBytes(LongAdder receivedBytes) {
 		this.receivedBytes = receivedBytes;
 	}
 
 	/**
 	 * @return the handledBytes
 	 */
-	public AtomicLong getHandledBytes() {
+	public LongAdder getHandledBytes() {
 		return handledBytes;
 	}
 
 	/**
 	 * @param handledBytes the handledBytes to set
 	 */
-	public void setHandledBytes(AtomicLong handledBytes) {
+	public void setHandledBytes(LongAdder handledBytes) {
 		this.handledBytes = handledBytes;
 	}
 
@@ -0,0 +1,131 @@
+package org.tio.core.stat;
+
+import org.tio.core.utils.SystemTimer;
+
+/**
+ * GroupStat某一时刻的值(只读)<br>
+ * 取快照时各计数器是逐个读取的，并发更新时相互之间可能有少量偏差，用于展示和计算速率足够了
+ */
+public class GroupStatSnapshot {
+
+	private final long time;
+
+	private final long closed;
+
+	private final long receivedPacket;
+
+	private final long receivedBytes;
+
+	private final long handledPacket;
+
+	private final long handledBytes;
+
+	private final long sentPacket;
+
+	private final long sentBytes;
+
+	private final long droppedPacket;
+
+	private final long writes;
+
+	/**
+	 *
+	 * @param groupStat
+	 */
+	public GroupStatSnapshot(GroupStat groupStat) {
+		this.time = SystemTimer.currentTimeMillis();
+		this.closed = groupStat.getClosed().sum();
+		this.receivedPacket = groupStat.getReceivedPacket().sum();
+		this.receivedBytes = groupStat.getReceivedBytes().sum();
+		this.handledPacket = groupStat.getHandledPacket().sum();
+		this.handledBytes = groupStat.getHandledBytes().sum();
+		this.sentPacket = groupStat.getSentPacket().sum();
+		this.sentBytes = groupStat.getSentBytes().sum();
+		this.droppedPacket = groupStat.getDroppedPacket().sum();
+		this.writes = groupStat.getWrites().sum();
+	}
+
+	/**
+	 * 合并写的效果：平均每次socket写发送了多少个packet
+	 * @return 还没写过时返回0
+	 */
+	public double getCoalescingRatio() {
+		return writes == 0 ? 0 : (double) sentPacket / writes;
+	}
+
+	/**
+	 * @return 取快照的时间
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return the closed
+	 */
+	public long getClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return the receivedPacket
+	 */
+	public long getReceivedPacket() {
+		return receivedPacket;
+	}
+
+	/**
+	 * @return the receivedBytes
+	 */
+	public long getReceivedBytes() {
+		return receivedBytes;
+	}
+
+	/**
+	 * @return the handledPacket
+	 */
+	public long getHandledPacket() {
+		return handledPacket;
+	}
+
+	/**
+	 * @return the handledBytes
+	 */
+	public long getHandledBytes() {
+		return handledBytes;
+	}
+
+	/**
+	 * @return the sentPacket
+	 */
+	public long getSentPacket() {
+		return sentPacket;
+	}
+
+	/**
+	 * @return the sentBytes
+	 */
+	public long getSentBytes() {
+		return sentBytes;
+	}
+
+	/**
+	 * @return the droppedPacket
+	 */
+	public long getDroppedPacket() {
+		return droppedPacket;
+	}
+
+	/**
+	 * @return the writes
+	 */
+	public long getWrites() {
+		return writes;
+	}
+
+	@Override
+	public String toString() {
+		return "GroupStat[closed:" + closed + ", received:" + receivedPacket + "/" + receivedBytes + "B, handled:" + handledPacket + "/" + handledBytes + "B, sent:" + sentPacket
+				+ "/" + sentBytes + "B, dropped:" + droppedPacket + ", writes:" + writes + "]";
+	}
+}
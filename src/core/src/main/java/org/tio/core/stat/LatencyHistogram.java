@@ -0,0 +1,111 @@
+package org.tio.core.stat;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图(单位: 纳秒)，思路同HdrHistogram：对数分段，每段再线性分成32格<br>
+ * 1、小于64纳秒的值每个值一格，之后每翻一倍分成32格，相对误差不超过1/32<br>
+ * 2、记录只是对一个格子做一次原子加，没有锁，也不分配对象<br>
+ * 3、snapshot()取从创建以来的累计分布，intervalSnapshot()取上一次intervalSnapshot()以来的分布
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * 最大记录2^40纳秒(约18分钟)，更大的值按最大值记录
+	 */
+	public static final long MAX_VALUE = (1L << 40) - 1;
+
+	static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * 上一次intervalSnapshot()时的累计值
+	 */
+	private long[] lastIntervalCounts = new long[BUCKET_COUNT];
+
+	static int indexOf(long value) {
+		if (value < 2 * SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+	}
+
+	/**
+	 * 格子index能表示的最小值
+	 */
+	static long lowestValueAt(int index) {
+		if (index < 2 * SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		return (long) (index - shift * SUB_BUCKET_COUNT) << shift;
+	}
+
+	/**
+	 * 格子index能表示的最大值
+	 */
+	static long highestValueAt(int index) {
+		if (index < 2 * SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		return lowestValueAt(index) + (1L << shift) - 1;
+	}
+
+	/**
+	 * 记录一个值
+	 * @param value 纳秒，小于0的按0记录
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		} else if (value > MAX_VALUE) {
+			value = MAX_VALUE;
+		}
+		counts.incrementAndGet(indexOf(value));
+	}
+
+	/**
+	 * 记录从startTime到现在的耗时
+	 * @param startTime LatencyStat.startSample()的返回值，为0表示这次没有采样，什么也不做
+	 */
+	public void recordSince(long startTime) {
+		if (startTime != 0) {
+			record(System.nanoTime() - startTime);
+		}
+	}
+
+	private long[] copyCounts() {
+		long[] ret = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			ret[i] = counts.get(i);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return 从创建以来的累计分布
+	 */
+	public LatencySnapshot snapshot() {
+		return new LatencySnapshot(copyCounts());
+	}
+
+	/**
+	 * @return 上一次调用本方法以来的分布(第一次调用时等同于snapshot())
+	 */
+	public synchronized LatencySnapshot intervalSnapshot() {
+		long[] current = copyCounts();
+		long[] interval = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			interval[i] = current[i] - lastIntervalCounts[i];
+		}
+		lastIntervalCounts = current;
+		return new LatencySnapshot(interval);
+	}
+}
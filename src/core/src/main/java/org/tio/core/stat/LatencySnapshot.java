@@ -0,0 +1,82 @@
+package org.tio.core.stat;
+
+/**
+ * LatencyHistogram某一时刻(或某一时间段)的分布(只读)，单位: 纳秒<br>
+ * 百分位数返回所在格子的最大值，和HdrHistogram的getValueAtPercentile()一致
+ */
+public class LatencySnapshot {
+
+	private final long[] counts;
+
+	private final long totalCount;
+
+	LatencySnapshot(long[] counts) {
+		this.counts = counts;
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		this.totalCount = total;
+	}
+
+	/**
+	 * @return 记录了多少个值
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 *
+	 * @param percentile 0到100，例如99.9
+	 * @return 没有记录时返回0
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+		long sum = 0;
+		for (int i = 0; i < counts.length; i++) {
+			sum += counts[i];
+			if (sum >= target) {
+				return LatencyHistogram.highestValueAt(i);
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * @return 最大值(所在格子的最大值)，没有记录时返回0
+	 */
+	public long getMax() {
+		for (int i = counts.length - 1; i >= 0; i--) {
+			if (counts[i] > 0) {
+				return LatencyHistogram.highestValueAt(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return 平均值(按格子的中间值计算)，没有记录时返回0
+	 */
+	public double getMean() {
+		if (totalCount == 0) {
+			return 0;
+		}
+		double sum = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				sum += counts[i] * ((LatencyHistogram.lowestValueAt(i) + LatencyHistogram.highestValueAt(i)) / 2.0);
+			}
+		}
+		return sum / totalCount;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count:%d, mean:%.1fus, p50:%.1fus, p90:%.1fus, p99:%.1fus, p99.9:%.1fus, max:%.1fus", totalCount, getMean() / 1000, getValueAtPercentile(50) / 1000.0,
+				getValueAtPercentile(90) / 1000.0, getValueAtPercentile(99) / 1000.0, getValueAtPercentile(99.9) / 1000.0, getMax() / 1000.0);
+	}
+}
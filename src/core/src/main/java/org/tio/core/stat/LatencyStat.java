@@ -0,0 +1,117 @@
+package org.tio.core.stat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 收发各环节的延迟分布，默认关闭，setSampleRate()打开<br>
+ * decode: AioHandler.decode()解出一个packet的耗时<br>
+ * handlerQueue: packet从加入HandlerRunnable队列到开始处理的等待时间(PacketHandlerMode.SINGLE_THREAD时没有队列，不记录)<br>
+ * handler: AioHandler.handler()的执行时间<br>
+ * send: 从调用发送(加入SendRunnable队列)到数据全部写到socket(WriteCompletionHandler.completed)的时间
+ */
+public class LatencyStat {
+
+	public static final String DECODE = "decode";
+
+	public static final String HANDLER_QUEUE = "handlerQueue";
+
+	public static final String HANDLER = "handler";
+
+	public static final String SEND = "send";
+
+	private final LatencyHistogram decode = new LatencyHistogram();
+
+	private final LatencyHistogram handlerQueue = new LatencyHistogram();
+
+	private final LatencyHistogram handler = new LatencyHistogram();
+
+	private final LatencyHistogram send = new LatencyHistogram();
+
+	/**
+	 * 0: 不采样; 1: 每个都记录; n: 平均每n个记录一个
+	 */
+	private volatile int sampleRate = 0;
+
+	/**
+	 * 决定这一次是否采样
+	 * @return 采样时返回System.nanoTime()，否则返回0(传给LatencyHistogram.recordSince()时什么也不做)
+	 */
+	public long startSample() {
+		int rate = sampleRate;
+		if (rate <= 0) {
+			return 0;
+		}
+		if (rate > 1 && ThreadLocalRandom.current().nextInt(rate) != 0) {
+			return 0;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * @return 各环节从创建以来的累计分布，key为DECODE、HANDLER_QUEUE、HANDLER、SEND
+	 */
+	public Map<String, LatencySnapshot> snapshot() {
+		Map<String, LatencySnapshot> ret = new LinkedHashMap<>();
+		ret.put(DECODE, decode.snapshot());
+		ret.put(HANDLER_QUEUE, handlerQueue.snapshot());
+		ret.put(HANDLER, handler.snapshot());
+		ret.put(SEND, send.snapshot());
+		return ret;
+	}
+
+	/**
+	 * @return 各环节上一次调用本方法以来的分布，key为DECODE、HANDLER_QUEUE、HANDLER、SEND
+	 */
+	public Map<String, LatencySnapshot> intervalSnapshot() {
+		Map<String, LatencySnapshot> ret = new LinkedHashMap<>();
+		ret.put(DECODE, decode.intervalSnapshot());
+		ret.put(HANDLER_QUEUE, handlerQueue.intervalSnapshot());
+		ret.put(HANDLER, handler.intervalSnapshot());
+		ret.put(SEND, send.intervalSnapshot());
+		return ret;
+	}
+
+	/**
+	 * @return the sampleRate
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @param sampleRate 0: 不采样; 1: 每个都记录; n: 平均每n个记录一个
+	 */
+	public void setSampleRate(int sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * @return the decode
+	 */
+	public LatencyHistogram getDecode() {
+		return decode;
+	}
+
+	/**
+	 * @return the handlerQueue
+	 */
+	public LatencyHistogram getHandlerQueue() {
+		return handlerQueue;
+	}
+
+	/**
+	 * @return the handler
+	 */
+	public LatencyHistogram getHandler() {
+		return handler;
+	}
+
+	/**
+	 * @return the send
+	 */
+	public LatencyHistogram getSend() {
+		return send;
+	}
+}
@@ -0,0 +1,19 @@
+package org.tio.core.stat.intf;
+
+import java.util.Map;
+
+import org.tio.core.GroupContext;
+import org.tio.core.stat.LatencySnapshot;
+
+/**
+ * GroupContext.startLatencyReport()定期回调，在时间轮的工作线程中执行，不要在里面做耗时操作
+ */
+public interface LatencyListener {
+
+	/**
+	 *
+	 * @param groupContext
+	 * @param interval 本周期内各环节的延迟分布，key见LatencyStat
+	 */
+	void onReport(GroupContext<?, ?, ?> groupContext, Map<String, LatencySnapshot> interval);
+}
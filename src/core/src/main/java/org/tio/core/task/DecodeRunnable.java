@@ -9,11 +9,14 @@ import org.tio.core.ChannelContext;
 import org.tio.core.ChannelAction;
 import org.tio.core.GroupContext;
 import org.tio.core.PacketHandlerMode;
+import org.tio.core.PacketRecycler;
+import org.tio.core.buffer.CumulationBuffer;
 import org.tio.core.exception.AioDecodeException;
 import org.tio.core.intf.AioListener;
 import org.tio.core.intf.Packet;
-import org.tio.core.utils.ByteBufferUtils;
+import org.tio.core.stat.LatencyStat;
 import org.tio.core.utils.SystemTimer;
+import org.tio.monitor.PacketRateLimiter;
 
 /**
  * 解码
@@ -25,30 +28,41 @@ import org.tio.core.utils.SystemTimer;
 public class DecodeRunnable<SessionContext, P extends Packet, R> implements Runnable {
 	private static final Logger log = LoggerFactory.getLogger(DecodeRunnable.class);
 
+	/**
+	 * 收包超过速度限制而丢包时，每个连接每丢多少个包打一条warn日志
+	 */
+	private static final long DROP_WARN_INTERVAL = 100;
+
 	private ChannelContext<SessionContext, P, R> channelContext = null;
 
 	/**
-	 * 上一次解码剩下的数据
+	 * 上一次解码剩下的数据(半包)
 	 */
-	private ByteBuffer lastByteBuffer = null;
+	private final CumulationBuffer cumulationBuffer;
 
 	/**
 	 * 新收到的数据
 	 */
 	private ByteBuffer newByteBuffer = null;
 
+	/**
+	 * 收包超过速度限制(RateLimitAction.DELAY_READ)时，下一次读要推迟多少纳秒，由ReadCompletionHandler取走
+	 */
+	private long readDelayNanos = 0;
+
 	/**
 	 * 
 	 */
 	public DecodeRunnable(ChannelContext<SessionContext, P, R> channelContext) {
 		this.channelContext = channelContext;
+		this.cumulationBuffer = new CumulationBuffer(channelContext.getGroupContext().getBufferAllocator());
 	}
 
 	/**
-	 * 清空处理的队列消息
+	 * 清空处理的队列消息，并归还半包占用的buffer
 	 */
-	public void clearMsgQueue() {
-		lastByteBuffer = null;
+	public synchronized void clearMsgQueue() {
+		cumulationBuffer.release();
 		newByteBuffer = null;
 	}
 
@@ -80,10 +94,10 @@ public class DecodeRunnable<SessionContext, P extends Packet, R> implements Runn
 		PacketHandlerMode packetHandlerMode = groupContext.getPacketHandlerMode();
 		
 		HandlerRunnable<SessionContext, P, R> handlerRunnable = channelContext.getHandlerRunnable();
-		if (packetHandlerMode == PacketHandlerMode.QUEUE) {
+		if (packetHandlerMode == PacketHandlerMode.QUEUE || packetHandlerMode == PacketHandlerMode.VIRTUAL_THREAD) {
 			
 			handlerRunnable.addMsg(packet);
-			groupContext.getTioExecutor().execute(handlerRunnable);
+			handlerRunnable.execute();
 		} else {
 			handlerRunnable.handler(packet);
 		}
@@ -102,62 +116,96 @@ public class DecodeRunnable<SessionContext, P extends Packet, R> implements Runn
 	 * 
 	 */
 	@Override
-	public void run() {
+	public synchronized void run() {
 		ByteBuffer byteBuffer = newByteBuffer;
-		if (byteBuffer != null) {
-			if (lastByteBuffer != null) {
-				byteBuffer = ByteBufferUtils.composite(lastByteBuffer, byteBuffer);
-				lastByteBuffer = null;
-			}
-		} else {
+		//newByteBuffer是从池里借来的，本方法返回后就会被归还，所以不能再持有它
+		newByteBuffer = null;
+		if (byteBuffer == null) {
 			return;
 		}
 
+		//没有半包时直接在新收到的数据上解码，有半包时把新数据追加到半包后面再解码
+		boolean isCumulated = !cumulationBuffer.isEmpty();
+		if (isCumulated) {
+			byteBuffer = cumulationBuffer.append(byteBuffer);
+		}
+
 		try {
 			label_2: while (true) {
 				int initPosition = byteBuffer.position();
+				LatencyStat latencyStat = channelContext.getGroupContext().getGroupStat().getLatencyStat();
+				long decodeStartTime = latencyStat.startSample();
 				P packet = channelContext.getGroupContext().getAioHandler().decode(byteBuffer, channelContext);
 
 				if (packet == null)// 数据不够，组不了包
 				{
-					//					if (log.isDebugEnabled())
-					//					{
-					//						log.debug("{},数据不够，组不了包", channelContext.toString());
-					//					}
-					lastByteBuffer = ByteBufferUtils.copy(byteBuffer, initPosition, byteBuffer.limit());
+					byteBuffer.position(initPosition);
+					if (!isCumulated) {
+						cumulationBuffer.append(byteBuffer);
+					}
 					return;
 				} else //组包成功
 				{
+					latencyStat.getDecode().recordSince(decodeStartTime);
 					channelContext.getStat().setLatestTimeOfReceivedPacket(SystemTimer.currentTimeMillis());
 
 					int afterDecodePosition = byteBuffer.position();
 					int len = afterDecodePosition - initPosition;
 
-					//					if (len == 0)
-					//					{
-					//						String logstr = channelContext + "解码成功, " + packet.logstr() + "," + byteBuffer + " 但是却只消耗了0字节, 这有可能会导致死循环. " + ThreadUtils.stackTrace();
-					//						log.error(logstr);
-					//					}
+					channelContext.getGroupContext().getGroupStat().getReceivedPacket().increment();
+					channelContext.getGroupContext().getGroupStat().getReceivedBytes().add(len);
 
-					channelContext.getGroupContext().getGroupStat().getReceivedPacket().incrementAndGet();
-					channelContext.getGroupContext().getGroupStat().getReceivedBytes().addAndGet(len);
-					
-					channelContext.getStat().getReceivedPackets().incrementAndGet();
-					channelContext.getStat().getReceivedBytes().addAndGet(len);
+					if (channelContext.getGroupContext().isChannelStatEnabled()) {
+						channelContext.getStat().getReceivedPackets().incrementAndGet();
+						channelContext.getStat().getReceivedBytes().addAndGet(len);
+					}
 
 					channelContext.traceClient(ChannelAction.RECEIVED, packet, null);
 
 					packet.setByteCount(len);
-					handler(channelContext, packet, len);
 
-					AioListener<SessionContext, P, R> aioListener = channelContext.getGroupContext().getAioListener();
-					try {
-						if (log.isInfoEnabled()) {
-							log.info("{} 收到消息 {}", channelContext, packet.logstr());
+					boolean isDropped = false;
+					PacketRateLimiter packetRateLimiter = channelContext.getGroupContext().getPacketRateLimiter();
+					if (packetRateLimiter != null && packetRateLimiter.isLimited(channelContext, packet)) {
+						long waitNanos = packetRateLimiter.acquire(channelContext, len);
+						if (waitNanos > 0) {
+							channelContext.getGroupContext().getGroupStat().getRateLimitedPacket().increment();
+							long rateLimitedCount = channelContext.getStat().getRateLimitedPackets().incrementAndGet();
+							switch (packetRateLimiter.getAction()) {
+							case CLOSE:
+								recycle(packet);
+								Aio.close(channelContext, null, "收包超过速度限制");
+								return;
+							case DELAY_READ:
+								readDelayNanos = Math.max(readDelayNanos, waitNanos);
+								break;
+							default:
+								//第一次和之后每DROP_WARN_INTERVAL次打一条warn，既能看到又不会在被刷包时刷屏
+								if (rateLimitedCount == 1 || rateLimitedCount % DROP_WARN_INTERVAL == 0) {
+									log.warn("{} 收包超过速度限制，已丢弃{}个包，本次丢弃 {}", channelContext, rateLimitedCount, packet.logstr());
+								} else if (log.isDebugEnabled()) {
+									log.debug("{} 收包超过速度限制，丢弃 {}", channelContext, packet.logstr());
+								}
+								recycle(packet);
+								isDropped = true;
+								break;
+							}
 						}
-						aioListener.onAfterReceived(channelContext, packet, len);
-					} catch (Exception e) {
-						log.error(e.toString(), e);
+					}
+
+					if (!isDropped) {
+						//开启PacketRecycler时，packet在handler()之后可能已经被回收(甚至被别的解码线程重新取走)，所以日志和监听要在交给handler()之前
+						AioListener<SessionContext, P, R> aioListener = channelContext.getGroupContext().getAioListener();
+						try {
+							if (log.isInfoEnabled()) {
+								log.info("{} 收到消息 {}", channelContext, packet.logstr());
+							}
+							aioListener.onAfterReceived(channelContext, packet, len);
+						} catch (Exception e) {
+							log.error(e.toString(), e);
+						}
+
+						handler(channelContext, packet, len);
 					}
 
 					int remainingLength = byteBuffer.limit() - byteBuffer.position();
@@ -169,7 +217,9 @@ public class DecodeRunnable<SessionContext, P extends Packet, R> implements Runn
 						continue label_2;
 					} else//组包后，数据刚好用完
 					{
-						lastByteBuffer = null;
+						if (isCumulated) {
+							cumulationBuffer.discardIfEmpty();
+						}
 						log.debug("{},组包后，数据刚好用完", channelContext);
 						return;
 					}
@@ -182,6 +232,26 @@ public class DecodeRunnable<SessionContext, P extends Packet, R> implements Runn
 		}
 	}
 
+	/**
+	 * 没有交给handler的packet直接回收
+	 */
+	private void recycle(P packet) {
+		PacketRecycler<P> packetRecycler = channelContext.getGroupContext().getPacketRecycler();
+		if (packetRecycler != null) {
+			packetRecycler.recycle(packet);
+		}
+	}
+
+	/**
+	 * 取走并清零下一次读要推迟的时间
+	 * @return 纳秒，0表示不用推迟
+	 */
+	public long takeReadDelayNanos() {
+		long ret = readDelayNanos;
+		readDelayNanos = 0;
+		return ret;
+	}
+
 	/**
 	 * @param newByteBuffer the newByteBuffer to set
 	 */
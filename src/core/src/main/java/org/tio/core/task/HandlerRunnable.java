@@ -11,8 +11,9 @@ import org.slf4j.LoggerFactory;
 import org.tio.core.ChannelContext;
 import org.tio.core.ChannelAction;
 import org.tio.core.GroupContext;
+import org.tio.core.PacketRecycler;
 import org.tio.core.intf.Packet;
-import org.tio.core.maintain.ChannelContextMapWithLock;
+import org.tio.core.stat.LatencyStat;
 import org.tio.core.threadpool.AbstractQueueRunnable;
 
 /**
@@ -47,21 +48,19 @@ public class HandlerRunnable<SessionContext, P extends Packet, R> extends Abstra
 		try {
 			
 
-			Integer synSeq = packet.getSynSeq();
-			if (synSeq != null && synSeq > 0) {
-				ChannelContextMapWithLock<SessionContext, P, R> syns = channelContext.getGroupContext().getWaitingResps();
-				P initPacket = syns.remove(synSeq);
-				if (initPacket != null) {
-					synchronized (initPacket) {
-						syns.put(synSeq, packet);
-						initPacket.notify();
-					}
-				} else {
+			int synSeq = packet.getSynSeq();
+			if (synSeq > 0) {
+				//交给等待响应的一方了，不能回收
+				packet.setRecyclable(false);
+				if (!channelContext.getPendingRequests().complete(synSeq, packet)) {
 					log.error("[{}]同步消息失败, synSeq is {}, 但是同步集合中没有对应key值", synFailCount.incrementAndGet(), synSeq);
 				}
 			} else {
 				channelContext.traceClient(ChannelAction.BEFORE_HANDLER, packet, null);
+				LatencyStat latencyStat = groupContext.getGroupStat().getLatencyStat();
+				long handlerStartTime = latencyStat.startSample();
 				groupContext.getAioHandler().handler(packet, channelContext);
+				latencyStat.getHandler().recordSince(handlerStartTime);
 				channelContext.traceClient(ChannelAction.AFTER_HANDLER, packet, null);
 			}
 //			ret++;
@@ -69,18 +68,32 @@ public class HandlerRunnable<SessionContext, P extends Packet, R> extends Abstra
 			log.error(e.toString(), e);
 //			return ret;
 		} finally {
-			channelContext.getStat().getHandledPackets().incrementAndGet();
-			channelContext.getStat().getHandledBytes().addAndGet(packet.getByteCount());
-			
-			groupContext.getGroupStat().getHandledPacket().incrementAndGet();
-			groupContext.getGroupStat().getHandledBytes().addAndGet(packet.getByteCount());
-			
-			
+			if (groupContext.isChannelStatEnabled()) {
+				channelContext.getStat().getHandledPackets().incrementAndGet();
+				channelContext.getStat().getHandledBytes().addAndGet(packet.getByteCount());
+			}
+
+			groupContext.getGroupStat().getHandledPacket().increment();
+			groupContext.getGroupStat().getHandledBytes().add(packet.getByteCount());
+
+			PacketRecycler<P> packetRecycler = groupContext.getPacketRecycler();
+			if (packetRecycler != null) {
+				packetRecycler.recycle(packet);
+			}
 		}
 
 //		return ret;
 	}
 
+	/**
+	 * 加入处理队列，延迟采样时记下加入的时间
+	 */
+	@Override
+	public boolean addMsg(P packet) {
+		packet.setEnqueueTime(channelContext.getGroupContext().getGroupStat().getLatencyStat().startSample());
+		return super.addMsg(packet);
+	}
+
 	@Override
 	public String toString() {
 		return this.getClass().getSimpleName() + ":" + channelContext.toString();
@@ -96,7 +109,9 @@ public class HandlerRunnable<SessionContext, P extends Packet, R> extends Abstra
 	@Override
 	public void runTask() {
 		P packet = null;
+		LatencyStat latencyStat = channelContext.getGroupContext().getGroupStat().getLatencyStat();
 		while ((packet = msgQueue.poll()) != null) {
+			latencyStat.getHandlerQueue().recordSince(packet.getEnqueueTime());
 			handler(packet);
 		}
 	}
@@ -0,0 +1,78 @@
+package org.tio.core.task;
+
+import java.util.concurrent.TimeUnit;
+
+import org.tio.core.ChannelContext;
+import org.tio.core.ChannelStat;
+import org.tio.core.intf.Packet;
+import org.tio.core.timer.HashedWheelTimer;
+import org.tio.core.timer.intf.Timeout;
+import org.tio.core.timer.intf.TimerTask;
+import org.tio.core.utils.SystemTimer;
+
+/**
+ * 连接空闲检测<br>
+ * 收发数据时只更新ChannelStat中的最近收发时间，不碰定时器；本任务到期时再根据最近收发时间判断：
+ * 真的空闲了就调用onIdle()，否则按剩余时间重新调度。这样每个连接每个空闲周期最多触发一次，不需要定时全量扫描
+ */
+public abstract class IdleTimerTask<SessionContext, P extends Packet, R> implements TimerTask {
+
+	protected final ChannelContext<SessionContext, P, R> channelContext;
+
+	/**
+	 * 空闲多久(毫秒)算空闲
+	 */
+	protected final long idleTime;
+
+	/**
+	 *
+	 * @param channelContext
+	 * @param idleTime 空闲多久(毫秒)算空闲
+	 */
+	public IdleTimerTask(ChannelContext<SessionContext, P, R> channelContext, long idleTime) {
+		this.channelContext = channelContext;
+		this.idleTime = idleTime;
+	}
+
+	@Override
+	public void run(Timeout timeout) throws Exception {
+		if (channelContext.isClosed() || channelContext.isRemoved() || channelContext.getIdleTimeout() != timeout) {
+			return;
+		}
+
+		ChannelStat stat = channelContext.getStat();
+		long compareTime = Math.max(stat.getLatestTimeOfReceivedPacket(), stat.getLatestTimeOfSentPacket());
+		long interval = SystemTimer.currentTimeMillis() - compareTime;
+		long nextDelay;
+		if (interval >= idleTime) {
+			if (!onIdle(interval)) {
+				return;
+			}
+			nextDelay = idleTime;
+		} else {
+			nextDelay = idleTime - interval;
+		}
+
+		if (channelContext.isClosed() || channelContext.isRemoved()) {
+			return;
+		}
+		HashedWheelTimer timer = channelContext.getGroupContext().getTimer();
+		if (!timer.isStopped()) {
+			channelContext.setIdleTimeout(timer.newTimeout(this, nextDelay, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	/**
+	 * 空闲时触发
+	 * @param interval 已经空闲了多久(毫秒)
+	 * @return true: 继续检测; false: 不再检测
+	 */
+	protected abstract boolean onIdle(long interval);
+
+	/**
+	 * @return the idleTime
+	 */
+	public long getIdleTime() {
+		return idleTime;
+	}
+}
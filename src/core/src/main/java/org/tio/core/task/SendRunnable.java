@@ -1,20 +1,22 @@
 package org.tio.core.task;
 
 import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousSocketChannel;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tio.core.Aio;
 import org.tio.core.ChannelContext;
 import org.tio.core.ChannelAction;
+import org.tio.core.ChannelOutboundBuffer;
 import org.tio.core.GroupContext;
-import org.tio.core.WriteCompletionHandler;
+import org.tio.core.OverflowPolicy;
+import org.tio.core.buffer.PooledByteBuffer;
 import org.tio.core.intf.AioHandler;
+import org.tio.core.intf.BufferEncoder;
 import org.tio.core.intf.Packet;
 import org.tio.core.intf.PacketWithMeta;
+import org.tio.core.threadpool.EventLoop;
 import org.tio.core.threadpool.AbstractQueueRunnable;
 import org.tio.core.utils.AioUtils;
 import org.tio.core.utils.SystemTimer;
@@ -53,85 +55,133 @@ public class SendRunnable<SessionContext, P extends Packet, R> extends AbstractQ
 				log.error(e.toString(), e);
 			}
 		}
+		channelContext.getOutboundBuffer().clear();
 	}
 
 	/**
-	 * 
+	 * 编码后加到发送链上
 	 * @param obj Packet or PacketWithMeta
-	 * @author: tanyaowu
+	 * @return true: 需要马上写(延迟敏感的消息或同步发送的消息)
 	 */
 	@SuppressWarnings("unchecked")
-	public void sendPacket(Object obj) {
+	private boolean addToOutboundBuffer(Object obj) {
 		P packet = null;
-		PacketWithMeta<P> packetWithMeta = null;
-
-		boolean isPacket = obj instanceof Packet;
-		if (isPacket) {
+		ByteBuffer byteBuffer = null;
+		boolean immediate = false;
+		if (obj instanceof Packet) {
 			packet = (P) obj;
 		} else {
-			packetWithMeta = (PacketWithMeta<P>) obj;
+			PacketWithMeta<P> packetWithMeta = (PacketWithMeta<P>) obj;
 			packet = packetWithMeta.getPacket();
+			immediate = packetWithMeta.getCountDownLatch() != null;
+			if (packetWithMeta.getPreEncodedByteBuffer() != null) {
+				byteBuffer = packetWithMeta.getPreEncodedByteBuffer().duplicate();
+			}
 		}
 
 		channelContext.traceClient(ChannelAction.BEFORE_SEND, packet, null);
-		GroupContext<SessionContext, P, R> groupContext = channelContext.getGroupContext();
-		ByteBuffer byteBuffer = getByteBuffer(packet, groupContext, groupContext.getAioHandler());
-		int packetCount = 1;
-
-		if (isPacket) {
-			sendByteBuffer(byteBuffer, packetCount, packet);
-		} else {
-			sendByteBuffer(byteBuffer, packetCount, packetWithMeta);
+		PooledByteBuffer pooledByteBuffer = null;
+		if (byteBuffer == null) {
+			GroupContext<SessionContext, P, R> groupContext = channelContext.getGroupContext();
+			AioHandler<SessionContext, P, R> aioHandler = groupContext.getAioHandler();
+			if (packet.getPreEncodedByteBuffer() == null && aioHandler instanceof BufferEncoder) {
+				//编码到从池中借来的buffer中，写完后由ChannelOutboundBuffer还给池
+				pooledByteBuffer = ((BufferEncoder<SessionContext, P, R>) aioHandler).encode(packet, groupContext.getBufferAllocator(), groupContext, channelContext);
+			}
+			if (pooledByteBuffer != null) {
+				byteBuffer = pooledByteBuffer.getByteBuffer();
+			} else {
+				byteBuffer = getByteBuffer(packet, groupContext, aioHandler);
+			}
 		}
+		byteBuffer.flip();
+		channelContext.getOutboundBuffer().addMessage(byteBuffer, obj, 1, pooledByteBuffer);
+		return immediate || packet.isFlushImmediately();
 	}
 
 	/**
 	 * 
 	 */
+	@SuppressWarnings("unchecked")
 	public boolean addMsg(Object obj) {
 		if (this.isCanceled()) {
 			log.error("{}, 任务已经取消，{}添加到发送队列失败", channelContext, obj);
 			return false;
 		}
 
-		return msgQueue.add(obj);
+		if (!channelContext.isWritable() && !handleOverflow(obj)) {
+			return false;
+		}
+
+		//延迟采样时，用PacketWithMeta带上调用发送的时间，写完后由WriteCompletionHandler记录
+		long sendStartTime = channelContext.getGroupContext().getGroupStat().getLatencyStat().startSample();
+		if (sendStartTime != 0) {
+			if (obj instanceof Packet) {
+				obj = new PacketWithMeta<P>((P) obj, null);
+			}
+			((PacketWithMeta<P>) obj).setSendStartTime(sendStartTime);
+		}
+
+		ChannelOutboundBuffer<SessionContext, P, R> outboundBuffer = channelContext.getOutboundBuffer();
+		outboundBuffer.incrementPendingPackets();
+		boolean ret = msgQueue.add(obj);
+		channelContext.updateWritability();
+		return ret;
 	}
 
 	/**
-	 * 
-	 * @param byteBuffer
-	 * @param packetCount
-	 * @param packets Packet or PacketWithMeta or List<PacketWithMeta> or List<Packet>
-	 * @author: tanyaowu
+	 * 发送队列超过高水位时，按OverflowPolicy处理新消息
+	 * @param obj Packet or PacketWithMeta
+	 * @return true: 新消息可以加入队列
 	 */
-	public void sendByteBuffer(ByteBuffer byteBuffer, Integer packetCount, Object packets) {
-		if (byteBuffer == null) {
-			log.error("{},byteBuffer is null", channelContext);
-			return;
+	private boolean handleOverflow(Object obj) {
+		OverflowPolicy overflowPolicy = channelContext.getOverflowPolicy();
+		switch (overflowPolicy) {
+		case DROP_OLDEST:
+			Object oldest = msgQueue.poll();
+			if (oldest != null) {
+				channelContext.getGroupContext().getGroupStat().getDroppedPacket().increment();
+				channelContext.processAfterSent(oldest, false);
+				return true;
+			}
+			if (channelContext.getOutboundBuffer().dropOldest()) {
+				channelContext.getGroupContext().getGroupStat().getDroppedPacket().increment();
+				return true;
+			}
+			//都已经在写了，没有可丢弃的，只能丢弃新消息
+			break;
+		case CLOSE:
+			Aio.close(channelContext, "发送队列超过高水位，对方消费太慢");
+			return false;
+		case BLOCK:
+			if (!canBlock()) {
+				//阻塞的正是要把发送队列写出去的线程，等到超时也不会可写，直接按DROP_NEWEST处理
+				log.warn("{}, 当前线程[{}]不能阻塞等待发送，按DROP_NEWEST处理", channelContext, Thread.currentThread().getName());
+				break;
+			}
+			if (channelContext.awaitWritable(channelContext.getOverflowBlockTimeout())) {
+				return true;
+			}
+			break;
+		default:
+			break;
 		}
 
-		if (!AioUtils.checkBeforeIO(channelContext)) {
-			return;
-		}
+		channelContext.getGroupContext().getGroupStat().getDroppedPacket().increment();
+		log.warn("{}, 发送队列超过高水位，丢弃消息，policy:{}", channelContext, overflowPolicy);
+		return false;
+	}
 
-		byteBuffer.flip();
-		AsynchronousSocketChannel asynchronousSocketChannel = channelContext.getAsynchronousSocketChannel();
-		WriteCompletionHandler<SessionContext, P, R> writeCompletionHandler = channelContext.getWriteCompletionHandler();
-		try {
-			//			long start = SystemTimer.currentTimeMillis();
-			writeCompletionHandler.getWriteSemaphore().acquire();
-			//			long end = SystemTimer.currentTimeMillis();
-			//			long iv = end - start;
-			//			if (iv > 100) {
-			//				//log.error("{} 等发送锁耗时:{} ms", channelContext, iv);
-			//			}
-
-		} catch (InterruptedException e) {
-			log.error(e.toString(), e);
+	/**
+	 * OverflowPolicy.BLOCK时当前线程能不能阻塞：本连接的EventLoop线程和AIO回调线程都不能
+	 * @return
+	 */
+	private boolean canBlock() {
+		Executor executor = getExecutor();
+		if (executor instanceof EventLoop && ((EventLoop) executor).inEventLoop()) {
+			return false;
 		}
-		asynchronousSocketChannel.write(byteBuffer, packets, writeCompletionHandler);
-
-		channelContext.getStat().setLatestTimeOfSentPacket(SystemTimer.currentTimeMillis());
+		return !GroupContext.isInGroupThread();
 	}
 
 	@Override
@@ -139,7 +189,6 @@ public class SendRunnable<SessionContext, P extends Packet, R> extends AbstractQ
 		return this.getClass().getSimpleName() + ":" + channelContext.toString();
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void runTask() {
 		int queueSize = msgQueue.size();
@@ -150,73 +199,29 @@ public class SendRunnable<SessionContext, P extends Packet, R> extends AbstractQ
 			queueSize = 1000;
 		}
 
+		if (!AioUtils.checkBeforeIO(channelContext)) {
+			return;
+		}
+
 		//Packet or PacketWithMeta
 		Object obj = null;
-		P p = null;
-		PacketWithMeta<P> packetWithMeta = null;
-		GroupContext<SessionContext, P, R> groupContext = this.channelContext.getGroupContext();
-		AioHandler<SessionContext, P, R> aioHandler = groupContext.getAioHandler();
-
-		if (queueSize > 1) {
-			ByteBuffer[] byteBuffers = new ByteBuffer[queueSize];
-			int allBytebufferCapacity = 0;
-
-			int packetCount = 0;
-			List<Object> packets = new ArrayList<>(queueSize);
-			for (int i = 0; i < queueSize; i++) {
-				if ((obj = msgQueue.poll()) != null) {
-					boolean isPacket = obj instanceof Packet;
-					if (isPacket) {
-						p = (P) obj;
-						packets.add(p);
-					} else {
-						packetWithMeta = (PacketWithMeta<P>) obj;
-						p = packetWithMeta.getPacket();
-						packets.add(packetWithMeta);
-					}
-
-					ByteBuffer byteBuffer = getByteBuffer(p, groupContext, aioHandler);
-
-					channelContext.traceClient(ChannelAction.BEFORE_SEND, p, null);
-
-					allBytebufferCapacity += byteBuffer.limit();
-					packetCount++;
-					byteBuffers[i] = byteBuffer;
-				} else {
-					break;
-				}
-			}
-
-			ByteBuffer allByteBuffer = ByteBuffer.allocate(allBytebufferCapacity);
-			byte[] dest = allByteBuffer.array();
-			for (ByteBuffer byteBuffer : byteBuffers) {
-				if (byteBuffer != null) {
-					int length = byteBuffer.limit();
-					int position = allByteBuffer.position();
-					System.arraycopy(byteBuffer.array(), 0, dest, position, length);
-					allByteBuffer.position(position + length);
-				}
-			}
-			sendByteBuffer(allByteBuffer, packetCount, packets);
-		} else {
+		boolean immediate = false;
+		for (int i = 0; i < queueSize; i++) {
 			if ((obj = msgQueue.poll()) != null) {
-				boolean isPacket = obj instanceof Packet;
-				if (isPacket) {
-					p = (P) obj;
-					sendPacket(p);
-				} else {
-					packetWithMeta = (PacketWithMeta<P>) obj;
-					p = packetWithMeta.getPacket();
-					sendPacket(packetWithMeta);
-				}
+				immediate |= addToOutboundBuffer(obj);
+			} else {
+				break;
 			}
 		}
+
+		channelContext.getOutboundBuffer().flushOrSchedule(immediate);
+		channelContext.getStat().setLatestTimeOfSentPacket(SystemTimer.currentTimeMillis());
 	}
 
 	private ByteBuffer getByteBuffer(P packet, GroupContext<SessionContext, P, R> groupContext, AioHandler<SessionContext, P, R> aioHandler) {
 		ByteBuffer byteBuffer = packet.getPreEncodedByteBuffer();
 		if (byteBuffer != null) {
-			byteBuffer = byteBuffer.duplicate();
+			byteBuffer = byteBuffer.asReadOnlyBuffer();
 		} else {
 			byteBuffer = aioHandler.encode(packet, groupContext, channelContext);
 		}
@@ -1,12 +1,14 @@
 package org.tio.core.threadpool;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tio.core.threadpool.intf.SerialExecutorIntf;
 import org.tio.core.threadpool.intf.SynRunnableIntf;
 
 /**
@@ -19,10 +21,18 @@ public abstract class AbstractSynRunnable implements SynRunnableIntf {
 	/** The log. */
 	private static Logger log = LoggerFactory.getLogger(AbstractSynRunnable.class);
 
-	private ReadWriteLock runningLock = new ReentrantReadWriteLock();
+	/**
+	 * 只有非SerialExecutorIntf的executor才会用到，第一次用到时创建
+	 */
+	private volatile ReadWriteLock runningLock = null;
 
 	private Executor executor;
 
+	/**
+	 * executor为SerialExecutorIntf时，本任务是否已经在排队或执行中，避免重复入队和并发执行
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
 	/**
 	 * Instantiates a new abstract syn runnable.
 	 */
@@ -40,11 +50,53 @@ public abstract class AbstractSynRunnable implements SynRunnableIntf {
 	 */
 	@Override
 	public ReadWriteLock runningLock() {
-		return runningLock;
+		ReadWriteLock ret = runningLock;
+		if (ret == null) {
+			synchronized (this) {
+				ret = runningLock;
+				if (ret == null) {
+					ret = new ReentrantReadWriteLock();
+					runningLock = ret;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * 提交到executor执行<br>
+	 * executor为SerialExecutorIntf(EventLoop、虚拟线程)时，用CAS标记保证同一时刻只有一个实例在排队或执行
+	 */
+	public void execute() {
+		Executor executor = getExecutor();
+		if (executor instanceof SerialExecutorIntf) {
+			if (scheduled.compareAndSet(false, true)) {
+				executor.execute(this);
+			}
+		} else {
+			executor.execute(this);
+		}
 	}
 
 	@Override
 	public final void run() {
+		if (getExecutor() instanceof SerialExecutorIntf) {
+			try {
+				if (!isCanceled()) {
+					runTask();
+				}
+			} catch (Exception e) {
+				log.error(e.toString(), e);
+			} finally {
+				//执行完再清标记，然后检查一次队列：执行期间新来的消息要么由生产者重新提交，要么在这里提交，不会丢
+				scheduled.set(false);
+				if (!isCanceled() && isNeededExecute()) {
+					execute();
+				}
+			}
+			return;
+		}
+
 		if (isCanceled()) //任务已经被取消
 		{
 			return;
@@ -0,0 +1,143 @@
+package org.tio.core.threadpool;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tio.core.threadpool.intf.SerialExecutorIntf;
+
+/**
+ * 单线程的事件循环<br>
+ * 一个ChannelContext固定绑定到一个EventLoop上，该连接的业务处理和发送都在这一个线程中按顺序执行，
+ * 所以不需要再用锁来防止同一个任务被多个线程同时执行<br>
+ * 任务队列是无锁的ConcurrentLinkedQueue，队列为空时线程park，有新任务时unpark
+ */
+public class EventLoop implements SerialExecutorIntf, Runnable {
+	private static Logger log = LoggerFactory.getLogger(EventLoop.class);
+
+	private final ConcurrentLinkedQueue<Runnable> taskQueue = new ConcurrentLinkedQueue<Runnable>();
+
+	private final Thread thread;
+
+	/**
+	 * 线程是否处于(或即将进入)park状态
+	 */
+	private volatile boolean waiting = false;
+
+	private volatile boolean isStopped = false;
+
+	private final AtomicLong completedTaskCount = new AtomicLong();
+
+	/**
+	 *
+	 * @param threadFactory
+	 */
+	public EventLoop(ThreadFactory threadFactory) {
+		this.thread = threadFactory.newThread(this);
+	}
+
+	/**
+	 * 启动线程
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (isStopped) {
+			log.error("{}已经停止，任务被丢弃:{}", thread.getName(), task);
+			return;
+		}
+		taskQueue.offer(task);
+		if (waiting && Thread.currentThread() != thread) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			Runnable task = taskQueue.poll();
+			if (task != null) {
+				try {
+					task.run();
+				} catch (Throwable e) {
+					log.error(e.toString(), e);
+				}
+				completedTaskCount.incrementAndGet();
+				continue;
+			}
+
+			if (isStopped) {
+				break;
+			}
+
+			//先声明要park，再检查一次队列，避免和execute()之间丢失唤醒
+			waiting = true;
+			if (taskQueue.isEmpty() && !isStopped) {
+				LockSupport.park(this);
+			}
+			waiting = false;
+		}
+	}
+
+	/**
+	 * 当前线程是否就是本EventLoop的线程
+	 * @return
+	 */
+	public boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * 停止接收新任务，已经在队列中的任务会执行完
+	 */
+	public void shutdown() {
+		isStopped = true;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		thread.join(unit.toMillis(timeout));
+		return !thread.isAlive();
+	}
+
+	/**
+	 * 等待执行的任务数
+	 * @return
+	 */
+	public int getPendingTaskCount() {
+		return taskQueue.size();
+	}
+
+	/**
+	 * @return the completedTaskCount
+	 */
+	public long getCompletedTaskCount() {
+		return completedTaskCount.get();
+	}
+
+	/**
+	 * @return the isStopped
+	 */
+	public boolean isStopped() {
+		return isStopped;
+	}
+
+	@Override
+	public String toString() {
+		return thread.getName();
+	}
+}
@@ -0,0 +1,84 @@
+package org.tio.core.threadpool;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一组EventLoop，新连接按轮询方式分配到其中一个EventLoop上
+ */
+public class EventLoopGroup {
+
+	private final EventLoop[] eventLoops;
+
+	private final AtomicInteger index = new AtomicInteger();
+
+	private final String name;
+
+	/**
+	 *
+	 * @param name 线程名前缀
+	 * @param count EventLoop的个数，<=0时取cpu核数
+	 */
+	public EventLoopGroup(String name, int count) {
+		if (count <= 0) {
+			count = Runtime.getRuntime().availableProcessors();
+		}
+		this.name = name;
+		ThreadFactory threadFactory = DefaultThreadFactory.getInstance(name, Thread.NORM_PRIORITY);
+		eventLoops = new EventLoop[count];
+		for (int i = 0; i < count; i++) {
+			eventLoops[i] = new EventLoop(threadFactory);
+			eventLoops[i].start();
+		}
+	}
+
+	/**
+	 * 轮询获取下一个EventLoop
+	 * @return
+	 */
+	public EventLoop next() {
+		return eventLoops[(index.getAndIncrement() & Integer.MAX_VALUE) % eventLoops.length];
+	}
+
+	/**
+	 *
+	 */
+	public void shutdown() {
+		for (EventLoop eventLoop : eventLoops) {
+			eventLoop.shutdown();
+		}
+	}
+
+	/**
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (EventLoop eventLoop : eventLoops) {
+			long left = deadline - System.nanoTime();
+			if (left <= 0 || !eventLoop.awaitTermination(left, TimeUnit.NANOSECONDS)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the eventLoops
+	 */
+	public EventLoop[] getEventLoops() {
+		return eventLoops;
+	}
+
+	/**
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,143 @@
+package org.tio.core.threadpool;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tio.core.threadpool.intf.SerialExecutorIntf;
+
+/**
+ * 每个任务起一个虚拟线程(JDK 21+)来执行<br>
+ * 业务handler里有阻塞的DB、RPC调用时，阻塞的只是虚拟线程，不会占住共用的tioExecutor<br>
+ * 单个连接内的顺序由AbstractSynRunnable保证(本类实现了SerialExecutorIntf)<br>
+ * 虚拟线程的API通过反射调用，源码仍可在老JDK上编译，运行时不支持的话isSupported()返回false
+ */
+public class VirtualThreadExecutor implements SerialExecutorIntf {
+	private static Logger log = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+	private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+
+	private static final Class<?> BUILDER_CLASS = findClass("java.lang.Thread$Builder");
+
+	private final ThreadFactory threadFactory;
+
+	/**
+	 * 正在执行任务的虚拟线程
+	 */
+	private final Set<Thread> liveThreads = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong startedCount = new AtomicLong();
+
+	private final AtomicLong completedCount = new AtomicLong();
+
+	/**
+	 * 当前JVM是否支持虚拟线程
+	 * @return
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null && BUILDER_CLASS != null;
+	}
+
+	/**
+	 *
+	 * @param namePrefix 虚拟线程名前缀
+	 */
+	public VirtualThreadExecutor(String namePrefix) {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("当前JDK不支持虚拟线程, java.version:" + System.getProperty("java.version"));
+		}
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			builder = BUILDER_CLASS.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+			this.threadFactory = (ThreadFactory) BUILDER_CLASS.getMethod("factory").invoke(builder);
+		} catch (Exception e) {
+			throw new UnsupportedOperationException("创建虚拟线程工厂失败", e);
+		}
+	}
+
+	@Override
+	public void execute(final Runnable task) {
+		Thread thread = threadFactory.newThread(new Runnable() {
+			@Override
+			public void run() {
+				Thread current = Thread.currentThread();
+				liveThreads.add(current);
+				try {
+					task.run();
+				} catch (Throwable e) {
+					log.error(e.toString(), e);
+				} finally {
+					liveThreads.remove(current);
+					completedCount.incrementAndGet();
+				}
+			}
+		});
+		startedCount.incrementAndGet();
+		thread.start();
+	}
+
+	/**
+	 * 正在执行任务的虚拟线程数(包括挂起的)
+	 * @return
+	 */
+	public int getLiveCount() {
+		return liveThreads.size();
+	}
+
+	/**
+	 * 因为阻塞IO、锁、sleep等而挂起的虚拟线程数(采样值)
+	 * @return
+	 */
+	public int getParkedCount() {
+		int count = 0;
+		for (Thread thread : liveThreads) {
+			Thread.State state = thread.getState();
+			if (state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING || state == Thread.State.BLOCKED) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 正在运行(未挂起)的虚拟线程数(采样值)
+	 * @return
+	 */
+	public int getRunningCount() {
+		return Math.max(0, getLiveCount() - getParkedCount());
+	}
+
+	/**
+	 * @return the startedCount
+	 */
+	public long getStartedCount() {
+		return startedCount.get();
+	}
+
+	/**
+	 * @return the completedCount
+	 */
+	public long getCompletedCount() {
+		return completedCount.get();
+	}
+
+	private static Method findMethod(Class<?> clazz, String name) {
+		try {
+			return clazz.getMethod(name);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static Class<?> findClass(String name) {
+		try {
+			return Class.forName(name);
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package org.tio.core.threadpool.intf;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 标记接口<br>
+ * AbstractSynRunnable的executor为此类型时，不再用runningLock防并发，
+ * 而是用CAS标记保证同一个任务同一时刻最多只有一个实例在排队或执行，从而保证单个连接内的处理顺序
+ */
+public interface SerialExecutorIntf extends Executor {
+
+}
@@ -0,0 +1,337 @@
+package org.tio.core.timer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tio.core.timer.intf.Timeout;
+import org.tio.core.timer.intf.TimerTask;
+
+/**
+ * 时间轮定时器<br>
+ * 1、wheel是一个环形数组，每个槽(bucket)是一个双向链表，工作线程每tickDuration前进一格，只处理当前格中到期的任务<br>
+ * 2、超过一圈的任务记录剩余圈数(remainingRounds)，每经过一次减1<br>
+ * 3、newTimeout()和cancel()只往无锁队列里放，真正的增删由工作线程完成，链表不需要加锁<br>
+ * 所以每一格的开销只和到期/新增/取消的任务数有关，和总任务数无关；代价是精度为一个tickDuration
+ */
+public class HashedWheelTimer {
+	private static Logger log = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+	/**
+	 * 默认每格100毫秒
+	 */
+	public static final long DEFAULT_TICK_DURATION = 100;
+
+	/**
+	 * 默认512格，一圈51.2秒
+	 */
+	public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+	/**
+	 * 每个tick最多从队列中转移这么多新任务到时间轮，防止工作线程被新任务拖住
+	 */
+	private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+	private final long tickDuration;
+
+	private final Bucket[] wheel;
+
+	private final int mask;
+
+	private final ConcurrentLinkedQueue<WheelTimeout> pendingTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+
+	private final ConcurrentLinkedQueue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+
+	/**
+	 * 已调度还未到期也未取消的任务数
+	 */
+	private final AtomicLong pendingCount = new AtomicLong();
+
+	private final long startTime;
+
+	private final Thread workerThread;
+
+	private volatile boolean isStopped = false;
+
+	/**
+	 * 只在工作线程中访问
+	 */
+	private long tick = 0;
+
+	/**
+	 *
+	 * @param name 工作线程名
+	 */
+	public HashedWheelTimer(String name) {
+		this(name, DEFAULT_TICK_DURATION, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL);
+	}
+
+	/**
+	 *
+	 * @param name 工作线程名
+	 * @param tickDuration 每格的时长
+	 * @param unit
+	 * @param ticksPerWheel 格数，会向上取整为2的幂
+	 */
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+		}
+		if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+			throw new IllegalArgumentException("ticksPerWheel must be in (0, 2^30]: " + ticksPerWheel);
+		}
+
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		wheel = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new Bucket();
+		}
+		mask = size - 1;
+		this.tickDuration = unit.toNanos(tickDuration);
+
+		startTime = System.nanoTime();
+		workerThread = new Thread(new Worker(), name);
+		workerThread.setDaemon(true);
+		workerThread.start();
+	}
+
+	/**
+	 * 调度一个任务，delay之后执行一次(精度为一个tickDuration)
+	 * @param task
+	 * @param delay
+	 * @param unit
+	 * @return
+	 */
+	public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+		if (task == null) {
+			throw new NullPointerException("task");
+		}
+		if (isStopped) {
+			throw new IllegalStateException("timer已经停止");
+		}
+		long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+		WheelTimeout timeout = new WheelTimeout(task, deadline);
+		pendingCount.incrementAndGet();
+		pendingTimeouts.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * 停止工作线程，未到期的任务不再执行
+	 */
+	public void stop() {
+		isStopped = true;
+		workerThread.interrupt();
+	}
+
+	/**
+	 * 已调度还未到期也未取消的任务数
+	 * @return
+	 */
+	public long getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * @return the isStopped
+	 */
+	public boolean isStopped() {
+		return isStopped;
+	}
+
+	private class Worker implements Runnable {
+		@Override
+		public void run() {
+			while (!isStopped) {
+				long deadline = waitForNextTick();
+				if (deadline < 0) {
+					break;
+				}
+				processCancelledTimeouts();
+				transferTimeoutsToBuckets();
+				wheel[(int) (tick & mask)].expireTimeouts(deadline);
+				tick++;
+			}
+		}
+
+		/**
+		 * @return 当前相对startTime的时间，被stop()中断时返回-1
+		 */
+		private long waitForNextTick() {
+			long deadline = tickDuration * (tick + 1);
+			while (true) {
+				long currentTime = System.nanoTime() - startTime;
+				long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+				if (sleepTimeMs <= 0) {
+					return currentTime;
+				}
+				try {
+					Thread.sleep(sleepTimeMs);
+				} catch (InterruptedException e) {
+					if (isStopped) {
+						return -1;
+					}
+				}
+			}
+		}
+
+		private void processCancelledTimeouts() {
+			while (true) {
+				WheelTimeout timeout = cancelledTimeouts.poll();
+				if (timeout == null) {
+					break;
+				}
+				if (timeout.bucket != null) {
+					timeout.bucket.remove(timeout);
+				}
+			}
+		}
+
+		private void transferTimeoutsToBuckets() {
+			for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+				WheelTimeout timeout = pendingTimeouts.poll();
+				if (timeout == null) {
+					break;
+				}
+				if (timeout.isCancelled()) {
+					continue;
+				}
+
+				long calculated = timeout.deadline / tickDuration;
+				timeout.remainingRounds = (calculated - tick) / wheel.length;
+
+				//已经过期的放到当前格，马上执行
+				long ticks = Math.max(calculated, tick);
+				wheel[(int) (ticks & mask)].add(timeout);
+			}
+		}
+	}
+
+	private static final int ST_INIT = 0;
+	private static final int ST_CANCELLED = 1;
+	private static final int ST_EXPIRED = 2;
+
+	private final class WheelTimeout implements Timeout {
+		private final TimerTask task;
+		private final long deadline;
+		private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+		/**
+		 * 以下字段只在工作线程中访问
+		 */
+		private long remainingRounds;
+		private WheelTimeout next;
+		private WheelTimeout prev;
+		private Bucket bucket;
+
+		private WheelTimeout(TimerTask task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public TimerTask task() {
+			return task;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return state.get() == ST_EXPIRED;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state.get() == ST_CANCELLED;
+		}
+
+		@Override
+		public boolean cancel() {
+			if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+				return false;
+			}
+			pendingCount.decrementAndGet();
+			cancelledTimeouts.add(this);
+			return true;
+		}
+
+		private void expire() {
+			if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+				return;
+			}
+			pendingCount.decrementAndGet();
+			try {
+				task.run(this);
+			} catch (Throwable e) {
+				log.error(e.toString(), e);
+			}
+		}
+	}
+
+	/**
+	 * 时间轮中的一格，只在工作线程中访问
+	 */
+	private final class Bucket {
+		private WheelTimeout head;
+		private WheelTimeout tail;
+
+		private void add(WheelTimeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		private void expireTimeouts(long deadline) {
+			WheelTimeout timeout = head;
+			while (timeout != null) {
+				WheelTimeout next = timeout.next;
+				if (timeout.remainingRounds <= 0) {
+					remove(timeout);
+					if (timeout.deadline <= deadline) {
+						timeout.expire();
+					} else {
+						//放错格了，不应该出现
+						log.error("timeout.deadline({}) > deadline({})", timeout.deadline, deadline);
+					}
+				} else if (timeout.isCancelled()) {
+					remove(timeout);
+				} else {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+		}
+
+		private void remove(WheelTimeout timeout) {
+			if (timeout.bucket != this) {
+				return;
+			}
+			WheelTimeout next = timeout.next;
+			if (timeout.prev != null) {
+				timeout.prev.next = next;
+			}
+			if (next != null) {
+				next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+}
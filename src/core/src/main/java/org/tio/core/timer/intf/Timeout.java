@@ -0,0 +1,27 @@
+package org.tio.core.timer.intf;
+
+/**
+ * HashedWheelTimer.newTimeout()返回的句柄
+ */
+public interface Timeout {
+	/**
+	 * @return 对应的任务
+	 */
+	TimerTask task();
+
+	/**
+	 * @return 是否已经到期(任务已经执行或正在执行)
+	 */
+	boolean isExpired();
+
+	/**
+	 * @return 是否已经取消
+	 */
+	boolean isCancelled();
+
+	/**
+	 * 取消任务，已经到期的任务取消不了
+	 * @return true: 取消成功
+	 */
+	boolean cancel();
+}
@@ -0,0 +1,13 @@
+package org.tio.core.timer.intf;
+
+/**
+ * 定时任务，在HashedWheelTimer的工作线程中执行，不要在里面做耗时操作
+ */
+public interface TimerTask {
+	/**
+	 *
+	 * @param timeout 本次调度对应的Timeout
+	 * @throws Exception
+	 */
+	void run(Timeout timeout) throws Exception;
+}
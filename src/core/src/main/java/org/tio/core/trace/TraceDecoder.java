@@ -0,0 +1,137 @@
+package org.tio.core.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.tio.core.ChannelAction;
+import org.tio.core.SynPacketAction;
+import org.tio.core.maintain.ClientNodes;
+import org.tio.core.utils.IdGenerator;
+
+/**
+ * 离线解析TraceRecorder写的跟踪文件，每条记录输出一行<br>
+ * 文件格式(大端)：<br>
+ * 文件头：magic(long) version(int) 开始时间(long，毫秒)<br>
+ * 记录：time(long，相对开始时间的纳秒) channelId(long) clientNode(long) packetId(long) extra(long) packed(long)<br>
+ * packed：byteCount(高32位) kind(8位) action(8位) threadId(低16位)<br>
+ * 运行：java -cp tio-core.jar org.tio.core.trace.TraceDecoder trace.bin [channelId]
+ */
+public class TraceDecoder {
+
+	private final PrintStream out;
+
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+	/**
+	 *
+	 * @param out
+	 */
+	public TraceDecoder(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * 解析一个跟踪文件
+	 * @param file
+	 * @param channelId 只输出这个连接的记录，为null时全部输出
+	 * @return 输出了多少条记录
+	 * @throws IOException
+	 */
+	public long decode(File file, String channelId) throws IOException {
+		long filterId = channelId == null ? 0 : IdGenerator.parse(channelId);
+		long count = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+			if (in.readLong() != TraceRecorder.MAGIC) {
+				throw new IOException(file + "不是跟踪文件");
+			}
+			int version = in.readInt();
+			if (version != TraceRecorder.VERSION) {
+				throw new IOException("不支持的版本: " + version);
+			}
+			long startMillis = in.readLong();
+
+			while (true) {
+				long time;
+				try {
+					time = in.readLong();
+				} catch (EOFException e) {
+					break;
+				}
+				long id = in.readLong();
+				long clientNode = in.readLong();
+				long packetId = in.readLong();
+				long extra = in.readLong();
+				long packed = in.readLong();
+				if (filterId != 0 && filterId != id) {
+					continue;
+				}
+				out.println(format(startMillis, time, id, clientNode, packetId, extra, packed));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private String format(long startMillis, long time, long channelId, long clientNode, long packetId, long extra, long packed) {
+		int byteCount = (int) (packed >>> 32);
+		int kind = (int) (packed >>> 24) & 0xFF;
+		int action = (int) (packed >>> 16) & 0xFF;
+		int threadId = (int) packed & 0xFFFF;
+
+		StringBuilder sb = new StringBuilder(128);
+		sb.append(dateFormat.format(new Date(startMillis + time / 1000000)));
+		sb.append(String.format("%03d", (time / 1000) % 1000));
+		sb.append(" [t").append(threadId).append("] ");
+		sb.append(IdGenerator.toString(channelId)).append(' ');
+		if (clientNode == ClientNodes.NOT_IPV4) {
+			sb.append('-');
+		} else {
+			long ip = clientNode >>> 16;
+			sb.append((ip >>> 24) & 0xFF).append('.').append((ip >>> 16) & 0xFF).append('.').append((ip >>> 8) & 0xFF).append('.').append(ip & 0xFF);
+			sb.append(':').append(clientNode & 0xFFFF);
+		}
+		sb.append(' ');
+
+		if (kind == TraceRecorder.KIND_SYN) {
+			SynPacketAction synPacketAction = SynPacketAction.forNumber(action);
+			sb.append("SYN_").append(synPacketAction == null ? String.valueOf(action) : synPacketAction.name());
+			appendPacket(sb, packetId, byteCount);
+			sb.append(" latchCount:").append(extra);
+		} else {
+			ChannelAction channelAction = ChannelAction.forNumber(action);
+			sb.append(channelAction == null ? String.valueOf(action) : channelAction.name());
+			appendPacket(sb, packetId, byteCount);
+			if (extra != 0) {
+				sb.append(" respId:").append(extra);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void appendPacket(StringBuilder sb, long packetId, int byteCount) {
+		if (packetId != 0) {
+			sb.append(" packet:").append(packetId).append(" bytes:").append(byteCount);
+		}
+	}
+
+	/**
+	 * @param args 跟踪文件 [只看某个连接的id]
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("usage: TraceDecoder <trace file> [channelId]");
+			System.exit(1);
+		}
+		TraceDecoder decoder = new TraceDecoder(System.out);
+		long count = decoder.decode(new File(args[0]), args.length > 1 ? args[1] : null);
+		System.err.println(count + " records");
+	}
+}
@@ -0,0 +1,264 @@
+package org.tio.core.trace;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 二进制的跟踪记录器<br>
+ * 1、事件是定长的记录，写到一个环形缓冲中：先用一次getAndIncrement()占一个序号，再把字段写到序号对应的槽里，不加锁也不分配对象<br>
+ * 2、后台线程定期把环形缓冲中的记录按顺序写到文件中，文件格式见TraceDecoder<br>
+ * 3、后台线程跟不上时，最老的记录会被覆盖，丢了多少条见getDropped()；跟踪永远不会阻塞IO线程
+ */
+public class TraceRecorder {
+	private static Logger log = LoggerFactory.getLogger(TraceRecorder.class);
+
+	/**
+	 * 文件头的魔数，"TIOTRACE"
+	 */
+	public static final long MAGIC = 0x54494F5452414345L;
+
+	public static final int VERSION = 1;
+
+	/**
+	 * 文件头：magic(8) + version(4) + 开始时间(8，毫秒)
+	 */
+	public static final int HEADER_BYTES = 20;
+
+	/**
+	 * 每条记录：time(8，相对开始时间的纳秒) + channelId(8) + clientNode(8) + packetId(8) + extra(8) + packed(8)
+	 */
+	public static final int RECORD_BYTES = 48;
+
+	/**
+	 * 事件类型：ChannelAction
+	 */
+	public static final int KIND_CHANNEL = 1;
+
+	/**
+	 * 事件类型：SynPacketAction
+	 */
+	public static final int KIND_SYN = 2;
+
+	/**
+	 * 每个槽：发布标记 + 6个字段
+	 */
+	private static final int SLOT_LONGS = 7;
+
+	private final AtomicLongArray slots;
+
+	private final int capacity;
+
+	private final int mask;
+
+	private final AtomicLong writeSequence = new AtomicLong();
+
+	/**
+	 * 下一条要写到文件的序号，只在后台线程中访问
+	 */
+	private long readSequence = 0;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final long startNanos = System.nanoTime();
+
+	private final long startMillis = System.currentTimeMillis();
+
+	private final FileOutputStream fileOutputStream;
+
+	private final FileChannel fileChannel;
+
+	/**
+	 * 只在后台线程中访问
+	 */
+	private final ByteBuffer writeBuffer = ByteBuffer.allocate(RECORD_BYTES * 1024);
+
+	private final long drainIntervalMillis;
+
+	private final Thread drainThread;
+
+	private volatile boolean isStopped = false;
+
+	/**
+	 *
+	 * @param file 跟踪文件，已存在时会被覆盖
+	 * @param capacity 环形缓冲能放多少条记录，向上取整为2的幂，例如65536(约3.5MB)
+	 * @param drainIntervalMillis 后台线程每隔多久写一次文件
+	 * @throws IOException
+	 */
+	public TraceRecorder(File file, int capacity, long drainIntervalMillis) throws IOException {
+		if (capacity <= 0 || capacity > (1 << 24)) {
+			throw new IllegalArgumentException("capacity must be in (0, 2^24]: " + capacity);
+		}
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.capacity = size;
+		this.mask = size - 1;
+		this.slots = new AtomicLongArray(size * SLOT_LONGS);
+		this.drainIntervalMillis = drainIntervalMillis;
+
+		this.fileOutputStream = new FileOutputStream(file);
+		this.fileChannel = fileOutputStream.getChannel();
+		writeBuffer.putLong(MAGIC).putInt(VERSION).putLong(startMillis);
+		flushWriteBuffer();
+
+		drainThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drainLoop();
+			}
+		}, "tio-trace-" + file.getName());
+		drainThread.setDaemon(true);
+		drainThread.start();
+	}
+
+	/**
+	 * 记录一个事件，可以在任意线程中调用
+	 * @param kind KIND_CHANNEL or KIND_SYN
+	 * @param action ChannelAction.getValue() or SynPacketAction.getValue()
+	 * @param channelId ChannelContext.getLongId()
+	 * @param clientNode ClientNodes.packKey(ip, port)
+	 * @param packetId 没有packet时为0
+	 * @param extra KIND_CHANNEL时为packet的respId，KIND_SYN时为countDownLatch的count
+	 * @param byteCount packet的字节数
+	 */
+	public void record(int kind, int action, long channelId, long clientNode, long packetId, long extra, int byteCount) {
+		if (isStopped) {
+			return;
+		}
+		long sequence = writeSequence.getAndIncrement();
+		int base = (int) (sequence & mask) * SLOT_LONGS;
+		long packed = ((long) byteCount << 32) | ((kind & 0xFFL) << 24) | ((action & 0xFFL) << 16) | (Thread.currentThread().getId() & 0xFFFFL);
+
+		//先把标记改成0(正在写)，后台线程看到0或者标记前后不一致就不会读到写了一半的记录
+		slots.set(base, 0);
+		slots.lazySet(base + 1, System.nanoTime() - startNanos);
+		slots.lazySet(base + 2, channelId);
+		slots.lazySet(base + 3, clientNode);
+		slots.lazySet(base + 4, packetId);
+		slots.lazySet(base + 5, extra);
+		slots.lazySet(base + 6, packed);
+		slots.set(base, sequence + 1);
+	}
+
+	private void drainLoop() {
+		while (!isStopped) {
+			try {
+				drain();
+				Thread.sleep(drainIntervalMillis);
+			} catch (InterruptedException e) {
+				//stop()
+			} catch (Throwable e) {
+				log.error(e.toString(), e);
+			}
+		}
+
+		try {
+			drain();
+		} catch (Throwable e) {
+			log.error(e.toString(), e);
+		}
+		try {
+			fileChannel.force(false);
+			fileOutputStream.close();
+		} catch (IOException e) {
+			log.error(e.toString(), e);
+		}
+		if (dropped.get() > 0) {
+			log.warn("跟踪记录写文件跟不上，丢弃了{}条", dropped.get());
+		}
+	}
+
+	/**
+	 * 把已经发布的记录按序号写到文件中
+	 * @throws IOException
+	 */
+	private void drain() throws IOException {
+		long writeSeq = writeSequence.get();
+		if (writeSeq - readSequence > capacity) {
+			dropped.addAndGet(writeSeq - capacity - readSequence);
+			readSequence = writeSeq - capacity;
+		}
+
+		while (readSequence < writeSeq) {
+			int base = (int) (readSequence & mask) * SLOT_LONGS;
+			long expected = readSequence + 1;
+			long marker = slots.get(base);
+			if (marker != expected) {
+				if (marker > expected) {
+					//已经被后面的记录覆盖了
+					dropped.incrementAndGet();
+					readSequence++;
+					continue;
+				}
+				//还没写完，下次再来
+				break;
+			}
+
+			long time = slots.get(base + 1);
+			long channelId = slots.get(base + 2);
+			long clientNode = slots.get(base + 3);
+			long packetId = slots.get(base + 4);
+			long extra = slots.get(base + 5);
+			long packed = slots.get(base + 6);
+			if (slots.get(base) != expected) {
+				//读的过程中被覆盖了
+				dropped.incrementAndGet();
+				readSequence++;
+				continue;
+			}
+
+			if (writeBuffer.remaining() < RECORD_BYTES) {
+				flushWriteBuffer();
+			}
+			writeBuffer.putLong(time).putLong(channelId).putLong(clientNode).putLong(packetId).putLong(extra).putLong(packed);
+			readSequence++;
+		}
+		flushWriteBuffer();
+	}
+
+	private void flushWriteBuffer() throws IOException {
+		writeBuffer.flip();
+		while (writeBuffer.hasRemaining()) {
+			fileChannel.write(writeBuffer);
+		}
+		writeBuffer.clear();
+	}
+
+	/**
+	 * 停止记录，把剩下的记录写到文件后关闭文件
+	 * @param timeoutMillis 最多等多久
+	 */
+	public void stop(long timeoutMillis) {
+		isStopped = true;
+		drainThread.interrupt();
+		try {
+			drainThread.join(timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return 因为后台线程跟不上而被覆盖的记录数
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return 一共记录了多少条(包括被覆盖的)
+	 */
+	public long getRecorded() {
+		return writeSequence.get();
+	}
+}
@@ -35,13 +35,31 @@ public class ByteBufferUtils {
 	public static ByteBuffer copy(ByteBuffer src, int startindex, int endindex) {
 		int size = endindex - startindex;
 		byte[] dest = new byte[size];
-		System.arraycopy(src.array(), startindex, dest, 0, dest.length);
+		if (src.hasArray()) {
+			System.arraycopy(src.array(), src.arrayOffset() + startindex, dest, 0, dest.length);
+		} else {
+			//堆外内存没有array()，用duplicate()读，不影响src的position和limit
+			ByteBuffer duplicate = src.duplicate();
+			duplicate.limit(endindex);
+			duplicate.position(startindex);
+			duplicate.get(dest);
+		}
 		ByteBuffer newByteBuffer = ByteBuffer.wrap(dest);
 		return newByteBuffer;
 	}
 
 	public static void copy(ByteBuffer src, int srcStartindex, ByteBuffer dest, int destStartIndex, int length) {
-		System.arraycopy(src.array(), srcStartindex, dest.array(), destStartIndex, length);
+		if (src.hasArray() && dest.hasArray()) {
+			System.arraycopy(src.array(), src.arrayOffset() + srcStartindex, dest.array(), dest.arrayOffset() + destStartIndex, length);
+		} else {
+			ByteBuffer srcDuplicate = src.duplicate();
+			srcDuplicate.limit(srcStartindex + length);
+			srcDuplicate.position(srcStartindex);
+			ByteBuffer destDuplicate = dest.duplicate();
+			destDuplicate.limit(destStartIndex + length);
+			destDuplicate.position(destStartIndex);
+			destDuplicate.put(srcDuplicate);
+		}
 	}
 
 	public static int readUB2(ByteBuffer buffer) {
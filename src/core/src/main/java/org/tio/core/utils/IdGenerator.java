@@ -0,0 +1,123 @@
+package org.tio.core.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 紧凑的id生成器：节点id(15位) + 单调递增序列(48位)，拼成一个正的long<br>
+ * 生成时只有一次CAS，不走SecureRandom；需要字符串时再用toString()转成36进制(不超过13个字符)<br>
+ * 节点id取系统属性tio.node.id，没有配置时随机生成；同一进程内的id不会重复，多个进程之间靠节点id区分
+ */
+public class IdGenerator {
+	private static Logger log = LoggerFactory.getLogger(IdGenerator.class);
+
+	/**
+	 * 配置节点id的系统属性
+	 */
+	public static final String NODE_ID_PROPERTY = "tio.node.id";
+
+	public static final int NODE_BITS = 15;
+
+	public static final int SEQ_BITS = 48;
+
+	public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+	private static final long SEQ_MASK = (1L << SEQ_BITS) - 1;
+
+	private static final int RADIX = 36;
+
+	/**
+	 * ChannelContext等使用的默认生成器
+	 */
+	public static final IdGenerator DEFAULT = new IdGenerator(defaultNodeId());
+
+	private final long nodeBits;
+
+	private final AtomicLong seq = new AtomicLong();
+
+	/**
+	 *
+	 * @param nodeId [0, MAX_NODE_ID]
+	 */
+	public IdGenerator(int nodeId) {
+		if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+			throw new IllegalArgumentException("nodeId must be in [0, " + MAX_NODE_ID + "]: " + nodeId);
+		}
+		this.nodeBits = (long) nodeId << SEQ_BITS;
+	}
+
+	private static int defaultNodeId() {
+		String nodeId = System.getProperty(NODE_ID_PROPERTY);
+		if (StringUtils.isNotBlank(nodeId)) {
+			try {
+				int ret = Integer.parseInt(nodeId.trim());
+				if (ret >= 0 && ret <= MAX_NODE_ID) {
+					return ret;
+				}
+			} catch (NumberFormatException e) {
+				//走下面的日志
+			}
+			log.error("{}={} 不合法，应该是[0, {}]之间的整数，将随机生成节点id", NODE_ID_PROPERTY, nodeId, MAX_NODE_ID);
+		}
+		return ThreadLocalRandom.current().nextInt(MAX_NODE_ID + 1);
+	}
+
+	/**
+	 * 生成下一个id，始终大于0
+	 * @return
+	 */
+	public long next() {
+		long s;
+		do {
+			s = seq.incrementAndGet() & SEQ_MASK;
+		} while (s == 0);
+		return nodeBits | s;
+	}
+
+	/**
+	 * @return 节点id
+	 */
+	public int getNodeId() {
+		return (int) (nodeBits >>> SEQ_BITS);
+	}
+
+	/**
+	 * id的字符串形式(36进制)
+	 * @param id
+	 * @return
+	 */
+	public static String toString(long id) {
+		return Long.toString(id, RADIX);
+	}
+
+	/**
+	 * toString()的逆运算，不抛异常也不产生对象
+	 * @param str
+	 * @return 不是合法的id时返回-1
+	 */
+	public static long parse(String str) {
+		if (str == null) {
+			return -1;
+		}
+		int len = str.length();
+		if (len == 0 || len > 13) {
+			return -1;
+		}
+		long ret = 0;
+		for (int i = 0; i < len; i++) {
+			int digit = Character.digit(str.charAt(i), RADIX);
+			if (digit < 0) {
+				return -1;
+			}
+			if (ret > (Long.MAX_VALUE - digit) / RADIX) {
+				return -1;
+			}
+			ret = ret * RADIX + digit;
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,298 @@
+package org.tio.core.utils;
+
+/**
+ * ip地址解析，不产生任何对象<br>
+ * IPv4和IPv6统一成128位(两个long，高位在前)：IPv4地址按IPv4-mapped格式存放(::ffff:a.b.c.d)，所以a.b.c.d/24相当于::ffff:a.b.c.d/120
+ */
+public class IpUtils {
+
+	/**
+	 * IPv4-mapped地址的低64位中，IPv4地址前面的固定部分
+	 */
+	public static final long IPV4_MAPPED_PREFIX = 0xFFFF00000000L;
+
+	/**
+	 * IPv4地址在128位中的前缀长度
+	 */
+	public static final int IPV4_PREFIX_BITS = 96;
+
+	/**
+	 * 解析ip地址
+	 * @param ip IPv4(192.168.1.1)或IPv6(2001:db8::1、::ffff:1.2.3.4、[fe80::1%eth0])
+	 * @param out out[0]: 高64位，out[1]: 低64位
+	 * @return false: 不是合法的ip地址，out的内容不确定
+	 */
+	public static boolean parse(String ip, long[] out) {
+		if (ip == null) {
+			return false;
+		}
+		int start = 0;
+		int end = ip.length();
+		if (end > 0 && ip.charAt(0) == '[') {
+			start = 1;
+			end = ip.indexOf(']');
+			if (end < 0) {
+				return false;
+			}
+		}
+		int zone = ip.indexOf('%', start);
+		if (zone >= 0 && zone < end) {
+			end = zone;
+		}
+
+		int colon = ip.indexOf(':', start);
+		if (colon < 0 || colon >= end) {
+			long v4 = parseIpv4(ip, start, end);
+			if (v4 < 0) {
+				return false;
+			}
+			out[0] = 0;
+			out[1] = IPV4_MAPPED_PREFIX | v4;
+			return true;
+		}
+		return parseIpv6(ip, start, end, out);
+	}
+
+	/**
+	 * 解析IPv4地址
+	 * @param ip
+	 * @param start
+	 * @param end 不含
+	 * @return 32位地址，不合法时返回-1
+	 */
+	public static long parseIpv4(String ip, int start, int end) {
+		int len = end - start;
+		if (len < 7 || len > 15) {
+			return -1;
+		}
+		long addr = 0;
+		int octet = 0;
+		int digits = 0;
+		int dots = 0;
+		for (int i = start; i < end; i++) {
+			char c = ip.charAt(i);
+			if (c >= '0' && c <= '9') {
+				octet = octet * 10 + (c - '0');
+				digits++;
+				if (digits > 3 || octet > 255) {
+					return -1;
+				}
+			} else if (c == '.') {
+				if (digits == 0 || ++dots > 3) {
+					return -1;
+				}
+				addr = (addr << 8) | octet;
+				octet = 0;
+				digits = 0;
+			} else {
+				return -1;
+			}
+		}
+		if (digits == 0 || dots != 3) {
+			return -1;
+		}
+		return (addr << 8) | octet;
+	}
+
+	/**
+	 * 按顺序把每组16位拼到out中，遇到"::"时记下前面有几组，最后再把"::"后面的几组挪到最低位
+	 */
+	private static boolean parseIpv6(String ip, int start, int end, long[] out) {
+		out[0] = 0;
+		out[1] = 0;
+		int groups = 0;
+		int groupsBeforeDoubleColon = -1;
+		int i = start;
+		if (end - start >= 2 && ip.charAt(start) == ':' && ip.charAt(start + 1) == ':') {
+			groupsBeforeDoubleColon = 0;
+			i = start + 2;
+		}
+
+		while (i < end) {
+			int j = i;
+			int value = 0;
+			int digits = 0;
+			while (j < end) {
+				int digit = Character.digit(ip.charAt(j), 16);
+				if (digit < 0) {
+					break;
+				}
+				if (++digits > 4) {
+					return false;
+				}
+				value = (value << 4) | digit;
+				j++;
+			}
+
+			if (j < end && ip.charAt(j) == '.') {
+				//最后32位是IPv4的写法
+				long v4 = parseIpv4(ip, i, end);
+				if (v4 < 0 || groups > 6) {
+					return false;
+				}
+				shiftIn(out, (int) (v4 >>> 16));
+				shiftIn(out, (int) (v4 & 0xFFFF));
+				groups += 2;
+				break;
+			}
+
+			if (digits == 0 || ++groups > 8) {
+				return false;
+			}
+			shiftIn(out, value);
+			if (j == end) {
+				break;
+			}
+			if (ip.charAt(j) != ':') {
+				return false;
+			}
+			j++;
+			if (j < end && ip.charAt(j) == ':') {
+				if (groupsBeforeDoubleColon >= 0) {
+					return false;
+				}
+				groupsBeforeDoubleColon = groups;
+				j++;
+			} else if (j == end) {
+				return false;
+			}
+			i = j;
+		}
+
+		if (groupsBeforeDoubleColon < 0) {
+			return groups == 8;
+		}
+		if (groups > 7) {
+			return false;
+		}
+
+		//out = (前半部分 << 后半部分的位数) | 后半部分，要把前半部分挪到最高位
+		int afterBits = (groups - groupsBeforeDoubleColon) * 16;
+		long afterHi = afterBits > 64 ? out[0] & ((1L << (afterBits - 64)) - 1) : 0;
+		long afterLo = afterBits >= 64 ? out[1] : out[1] & ((1L << afterBits) - 1);
+		shiftRight(out, afterBits);
+		shiftLeft(out, 128 - groupsBeforeDoubleColon * 16);
+		out[0] |= afterHi;
+		out[1] |= afterLo;
+		return true;
+	}
+
+	private static void shiftIn(long[] out, int group) {
+		out[0] = (out[0] << 16) | (out[1] >>> 48);
+		out[1] = (out[1] << 16) | group;
+	}
+
+	private static void shiftLeft(long[] out, int bits) {
+		if (bits >= 128) {
+			out[0] = 0;
+			out[1] = 0;
+		} else if (bits >= 64) {
+			out[0] = out[1] << (bits - 64);
+			out[1] = 0;
+		} else if (bits > 0) {
+			out[0] = (out[0] << bits) | (out[1] >>> (64 - bits));
+			out[1] = out[1] << bits;
+		}
+	}
+
+	private static void shiftRight(long[] out, int bits) {
+		if (bits >= 128) {
+			out[0] = 0;
+			out[1] = 0;
+		} else if (bits >= 64) {
+			out[1] = out[0] >>> (bits - 64);
+			out[0] = 0;
+		} else if (bits > 0) {
+			out[1] = (out[1] >>> bits) | (out[0] << (64 - bits));
+			out[0] = out[0] >>> bits;
+		}
+	}
+
+	/**
+	 * 解析CIDR，例如192.168.1.0/24、2001:db8::/32；不带"/"时表示单个地址
+	 * @param cidr
+	 * @param out out[0]: 高64位，out[1]: 低64位，已经去掉了前缀以外的位
+	 * @return 128位中的前缀长度，不合法时返回-1
+	 */
+	public static int parseCidr(String cidr, long[] out) {
+		if (cidr == null) {
+			return -1;
+		}
+		cidr = cidr.trim();
+		int slash = cidr.indexOf('/');
+		String ip = slash < 0 ? cidr : cidr.substring(0, slash);
+		if (!parse(ip, out)) {
+			return -1;
+		}
+		boolean isIpv4 = ip.indexOf(':') < 0;
+		int prefixBits = 128;
+		if (slash >= 0) {
+			try {
+				prefixBits = Integer.parseInt(cidr.substring(slash + 1));
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+			int max = isIpv4 ? 32 : 128;
+			if (prefixBits < 0 || prefixBits > max) {
+				return -1;
+			}
+			if (isIpv4) {
+				prefixBits += IPV4_PREFIX_BITS;
+			}
+		}
+		out[0] &= highMask(prefixBits);
+		out[1] &= lowMask(prefixBits);
+		return prefixBits;
+	}
+
+	/**
+	 * @param prefixBits
+	 * @return 前缀长度为prefixBits时高64位的掩码
+	 */
+	public static long highMask(int prefixBits) {
+		if (prefixBits <= 0) {
+			return 0;
+		}
+		if (prefixBits >= 64) {
+			return -1L;
+		}
+		return -1L << (64 - prefixBits);
+	}
+
+	/**
+	 * @param prefixBits
+	 * @return 前缀长度为prefixBits时低64位的掩码
+	 */
+	public static long lowMask(int prefixBits) {
+		if (prefixBits <= 64) {
+			return 0;
+		}
+		if (prefixBits >= 128) {
+			return -1L;
+		}
+		return -1L << (128 - prefixBits);
+	}
+
+	/**
+	 * 转成字符串，IPv4-mapped地址输出成IPv4的写法，IPv6不做"::"压缩
+	 * @param hi
+	 * @param lo
+	 * @return
+	 */
+	public static String toString(long hi, long lo) {
+		StringBuilder sb = new StringBuilder(39);
+		if (hi == 0 && (lo >>> 32) == 0xFFFF) {
+			sb.append((lo >>> 24) & 0xFF).append('.').append((lo >>> 16) & 0xFF).append('.').append((lo >>> 8) & 0xFF).append('.').append(lo & 0xFF);
+			return sb.toString();
+		}
+		for (int i = 0; i < 8; i++) {
+			long word = i < 4 ? hi : lo;
+			int shift = (3 - (i & 3)) * 16;
+			if (i > 0) {
+				sb.append(':');
+			}
+			sb.append(Long.toHexString((word >>> shift) & 0xFFFF));
+		}
+		return sb.toString();
+	}
+}
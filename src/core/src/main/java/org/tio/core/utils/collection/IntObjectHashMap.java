@@ -0,0 +1,179 @@
+package org.tio.core.utils.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * key为int的开放寻址hash表(线性探测，删除时后移，不留墓碑)<br>
+ * key不装箱，也没有Entry对象；非线程安全，由调用者加锁，见StripedIntObjectMap
+ *
+ * @param <V>
+ */
+public class IntObjectHashMap<V> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] keys;
+
+	private Object[] values;
+
+	private int size = 0;
+
+	private int mask;
+
+	/**
+	 *
+	 */
+	public IntObjectHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 *
+	 * @param initialCapacity
+	 */
+	public IntObjectHashMap(int initialCapacity) {
+		int capacity = 2;
+		while (capacity < initialCapacity * 2) {
+			capacity <<= 1;
+		}
+		keys = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param value 不能为null
+	 * @return 原来的值
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+		int idx = hash(key) & mask;
+		while (values[idx] != null) {
+			if (keys[idx] == key) {
+				V old = (V) values[idx];
+				values[idx] = value;
+				return old;
+			}
+			idx = (idx + 1) & mask;
+		}
+		keys[idx] = key;
+		values[idx] = value;
+		size++;
+		if (size > (mask + 1) >> 1) {
+			rehash((mask + 1) << 1);
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int idx = indexOf(key);
+		return idx < 0 ? null : (V) values[idx];
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return 被删除的值
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int idx = indexOf(key);
+		if (idx < 0) {
+			return null;
+		}
+		V old = (V) values[idx];
+		removeAt(idx);
+		return old;
+	}
+
+	/**
+	 * 清空，并返回原来的所有值
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> clear() {
+		List<V> ret = new ArrayList<V>(size);
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				ret.add((V) values[i]);
+				values[i] = null;
+			}
+		}
+		size = 0;
+		return ret;
+	}
+
+	/**
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int indexOf(int key) {
+		int idx = hash(key) & mask;
+		while (values[idx] != null) {
+			if (keys[idx] == key) {
+				return idx;
+			}
+			idx = (idx + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * 删除后把后面同一探测链上的元素往前挪，保证查找时不会因为空位而提前结束
+	 * @param idx
+	 */
+	private void removeAt(int idx) {
+		values[idx] = null;
+		size--;
+		int free = idx;
+		int i = (idx + 1) & mask;
+		while (values[i] != null) {
+			int ideal = hash(keys[i]) & mask;
+			if (((i - ideal) & mask) >= ((i - free) & mask)) {
+				keys[free] = keys[i];
+				values[free] = values[i];
+				values[i] = null;
+				free = i;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	private void rehash(int newCapacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[newCapacity];
+		values = new Object[newCapacity];
+		mask = newCapacity - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int idx = hash(oldKeys[i]) & mask;
+				while (values[idx] != null) {
+					idx = (idx + 1) & mask;
+				}
+				keys[idx] = oldKeys[i];
+				values[idx] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package org.tio.core.utils.collection;
+
+import java.util.Arrays;
+
+import org.tio.core.utils.IpUtils;
+
+/**
+ * 128位ip前缀的二叉字典树(IPv4按IPv4-mapped地址处理，见IpUtils)，用于判断一个ip是否落在某个网段中<br>
+ * 构建后不可变，并且做了路径压缩：只有一个子节点、本身又不是前缀的节点都被合并掉，每个节点记录自己的深度和从根到它的路径，
+ * 所以查找的步数只和分叉的个数有关，和前缀长度无关(IPv4的前96位是固定的，不压缩的话每次都要走一遍)<br>
+ * 节点放在几个数组里，contains()只读数组，不加锁也不产生任何对象，修改时由调用方重新构建一棵新树再替换引用(copy-on-write)
+ */
+public class IpPrefixTrie {
+
+	/**
+	 * 空树
+	 */
+	public static final IpPrefixTrie EMPTY = new Builder().build();
+
+	/**
+	 * 节点的深度，即从根到这个节点的路径的位数
+	 */
+	private final int[] depths;
+
+	/**
+	 * 从根到节点的路径(高64位)，depth以后的位都是0
+	 */
+	private final long[] pathHis;
+
+	/**
+	 * 从根到节点的路径(低64位)，depth以后的位都是0
+	 */
+	private final long[] pathLos;
+
+	/**
+	 * children[node * 2 + bit]: 第depth位是bit的子节点下标，0表示没有(根节点是0，不会是别的节点的子节点)
+	 */
+	private final int[] children;
+
+	/**
+	 * 从根节点到这个节点的路径是不是一个完整前缀
+	 */
+	private final boolean[] terminal;
+
+	private final int prefixCount;
+
+	private IpPrefixTrie(int[] depths, long[] pathHis, long[] pathLos, int[] children, boolean[] terminal, int prefixCount) {
+		this.depths = depths;
+		this.pathHis = pathHis;
+		this.pathLos = pathLos;
+		this.children = children;
+		this.terminal = terminal;
+		this.prefixCount = prefixCount;
+	}
+
+	/**
+	 * 地址是否落在某个前缀中
+	 * @param hi 高64位
+	 * @param lo 低64位
+	 * @return
+	 */
+	public boolean contains(long hi, long lo) {
+		int node = 0;
+		while (true) {
+			int depth = depths[node];
+			if (((hi ^ pathHis[node]) & IpUtils.highMask(depth)) != 0 || ((lo ^ pathLos[node]) & IpUtils.lowMask(depth)) != 0) {
+				return false;
+			}
+			if (terminal[node]) {
+				return true;
+			}
+			if (depth == 128) {
+				return false;
+			}
+			node = children[(node << 1) | bitAt(hi, lo, depth)];
+			if (node == 0) {
+				return false;
+			}
+		}
+	}
+
+	private static int bitAt(long hi, long lo, int i) {
+		return (int) (i < 64 ? (hi >>> (63 - i)) & 1 : (lo >>> (127 - i)) & 1);
+	}
+
+	/**
+	 * @return 前缀个数
+	 */
+	public int size() {
+		return prefixCount;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return prefixCount == 0;
+	}
+
+	/**
+	 * @return 节点个数
+	 */
+	public int nodeCount() {
+		return terminal.length;
+	}
+
+	/**
+	 * 构建IpPrefixTrie，非线程安全<br>
+	 * 先按位建一棵不压缩的树，build()时再压缩
+	 */
+	public static class Builder {
+
+		private int[] children = new int[32];
+
+		private boolean[] terminal = new boolean[16];
+
+		private int nodeCount = 1;
+
+		private int prefixCount = 0;
+
+		/**
+		 * 添加一个前缀
+		 * @param hi 高64位
+		 * @param lo 低64位
+		 * @param prefixBits [0, 128]
+		 * @return this
+		 */
+		public Builder add(long hi, long lo, int prefixBits) {
+			if (prefixBits < 0 || prefixBits > 128) {
+				throw new IllegalArgumentException("prefixBits must be in [0, 128]: " + prefixBits);
+			}
+			int node = 0;
+			for (int i = 0; i < prefixBits; i++) {
+				int index = (node << 1) | bitAt(hi, lo, i);
+				int child = children[index];
+				if (child == 0) {
+					child = newNode();
+					children[index] = child;
+				}
+				node = child;
+			}
+			if (!terminal[node]) {
+				terminal[node] = true;
+				prefixCount++;
+			}
+			return this;
+		}
+
+		/**
+		 * 添加一个CIDR，例如192.168.1.0/24、2001:db8::/32
+		 * @param cidr
+		 * @return this
+		 */
+		public Builder add(String cidr) {
+			long[] addr = new long[2];
+			int prefixBits = IpUtils.parseCidr(cidr, addr);
+			if (prefixBits < 0) {
+				throw new IllegalArgumentException("invalid ip or cidr: " + cidr);
+			}
+			return add(addr[0], addr[1], prefixBits);
+		}
+
+		private int newNode() {
+			if (nodeCount == terminal.length) {
+				terminal = Arrays.copyOf(terminal, nodeCount << 1);
+				children = Arrays.copyOf(children, nodeCount << 2);
+			}
+			return nodeCount++;
+		}
+
+		/**
+		 *
+		 * @return
+		 */
+		public IpPrefixTrie build() {
+			Compressor c = new Compressor(nodeCount);
+			c.compress(0, 0, 0, 0);
+			return new IpPrefixTrie(Arrays.copyOf(c.depths, c.count), Arrays.copyOf(c.pathHis, c.count), Arrays.copyOf(c.pathLos, c.count),
+					Arrays.copyOf(c.children, c.count << 1), Arrays.copyOf(c.terminal, c.count), prefixCount);
+		}
+
+		/**
+		 * 把不压缩的树复制成压缩后的数组，压缩后的节点数不会超过原来的节点数
+		 */
+		private class Compressor {
+			private final int[] depths;
+			private final long[] pathHis;
+			private final long[] pathLos;
+			private final int[] children;
+			private final boolean[] terminal;
+			private int count = 0;
+
+			private Compressor(int capacity) {
+				depths = new int[capacity];
+				pathHis = new long[capacity];
+				pathLos = new long[capacity];
+				children = new int[capacity << 1];
+				terminal = new boolean[capacity];
+			}
+
+			/**
+			 * @return 压缩后的节点下标
+			 */
+			private int compress(int node, int depth, long hi, long lo) {
+				//跳过只有一个子节点的非前缀节点
+				while (!Builder.this.terminal[node]) {
+					int zero = Builder.this.children[node << 1];
+					int one = Builder.this.children[(node << 1) | 1];
+					if ((zero == 0) == (one == 0)) {
+						break;
+					}
+					if (one != 0) {
+						if (depth < 64) {
+							hi |= 1L << (63 - depth);
+						} else {
+							lo |= 1L << (127 - depth);
+						}
+						node = one;
+					} else {
+						node = zero;
+					}
+					depth++;
+				}
+
+				int index = count++;
+				depths[index] = depth;
+				pathHis[index] = hi;
+				pathLos[index] = lo;
+				terminal[index] = Builder.this.terminal[node];
+				if (depth < 128) {
+					int zero = Builder.this.children[node << 1];
+					int one = Builder.this.children[(node << 1) | 1];
+					if (zero != 0) {
+						children[index << 1] = compress(zero, depth + 1, hi, lo);
+					}
+					if (one != 0) {
+						long childHi = depth < 64 ? hi | (1L << (63 - depth)) : hi;
+						long childLo = depth < 64 ? lo : lo | (1L << (127 - depth));
+						children[(index << 1) | 1] = compress(one, depth + 1, childHi, childLo);
+					}
+				}
+				return index;
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package org.tio.core.utils.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分段加锁的IntObjectHashMap，key按hash分到不同的段，不同段之间互不阻塞
+ *
+ * @param <V>
+ */
+public class StripedIntObjectMap<V> {
+
+	private final IntObjectHashMap<V>[] stripes;
+
+	private final int mask;
+
+	/**
+	 *
+	 * @param stripeCount 段数，会向上取整为2的幂
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public StripedIntObjectMap(int stripeCount) {
+		int count = 1;
+		while (count < stripeCount) {
+			count <<= 1;
+		}
+		stripes = new IntObjectHashMap[count];
+		for (int i = 0; i < count; i++) {
+			stripes[i] = new IntObjectHashMap<V>();
+		}
+		mask = count - 1;
+	}
+
+	private IntObjectHashMap<V> stripe(int key) {
+		int h = key * 0x9E3779B9;
+		return stripes[(h >>> 24) & mask];
+	}
+
+	/**
+	 * key不存在时才放入
+	 * @param key
+	 * @param value
+	 * @return 已经存在的值，null表示放入成功
+	 */
+	public V putIfAbsent(int key, V value) {
+		IntObjectHashMap<V> stripe = stripe(key);
+		synchronized (stripe) {
+			V old = stripe.get(key);
+			if (old == null) {
+				stripe.put(key, value);
+			}
+			return old;
+		}
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return
+	 */
+	public V get(int key) {
+		IntObjectHashMap<V> stripe = stripe(key);
+		synchronized (stripe) {
+			return stripe.get(key);
+		}
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return
+	 */
+	public V remove(int key) {
+		IntObjectHashMap<V> stripe = stripe(key);
+		synchronized (stripe) {
+			return stripe.remove(key);
+		}
+	}
+
+	/**
+	 * 当前值是value时才删除
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	public boolean remove(int key, V value) {
+		IntObjectHashMap<V> stripe = stripe(key);
+		synchronized (stripe) {
+			if (stripe.get(key) == value) {
+				stripe.remove(key);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 清空，并返回原来的所有值
+	 * @return
+	 */
+	public List<V> clear() {
+		List<V> ret = new ArrayList<V>();
+		for (IntObjectHashMap<V> stripe : stripes) {
+			synchronized (stripe) {
+				ret.addAll(stripe.clear());
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * 各段之和，并发修改时只是近似值
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (IntObjectHashMap<V> stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,137 @@
+package org.tio.core.utils.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分段加锁的LongObjectHashMap，key按hash分到不同的段，不同段之间互不阻塞
+ *
+ * @param <V>
+ */
+public class StripedLongObjectMap<V> {
+
+	private final LongObjectHashMap<V>[] stripes;
+
+	private final int mask;
+
+	/**
+	 *
+	 * @param stripeCount 段数，会向上取整为2的幂
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public StripedLongObjectMap(int stripeCount) {
+		int count = 1;
+		while (count < stripeCount) {
+			count <<= 1;
+		}
+		stripes = new LongObjectHashMap[count];
+		for (int i = 0; i < count; i++) {
+			stripes[i] = new LongObjectHashMap<V>();
+		}
+		mask = count - 1;
+	}
+
+	private LongObjectHashMap<V> stripe(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return stripes[(int) (h >>> 56) & mask];
+	}
+
+	/**
+	 * key不存在时才放入
+	 * @param key
+	 * @param value
+	 * @return 已经存在的值，null表示放入成功
+	 */
+	public V putIfAbsent(long key, V value) {
+		LongObjectHashMap<V> stripe = stripe(key);
+		synchronized (stripe) {
+			V old = stripe.get(key);
+			if (old == null) {
+				stripe.put(key, value);
+			}
+			return old;
+		}
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param value
+	 * @return 原来的值
+	 */
+	public V put(long key, V value) {
+		LongObjectHashMap<V> stripe = stripe(key);
+		synchronized (stripe) {
+			return stripe.put(key, value);
+		}
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return
+	 */
+	public V get(long key) {
+		LongObjectHashMap<V> stripe = stripe(key);
+		synchronized (stripe) {
+			return stripe.get(key);
+		}
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return
+	 */
+	public V remove(long key) {
+		LongObjectHashMap<V> stripe = stripe(key);
+		synchronized (stripe) {
+			return stripe.remove(key);
+		}
+	}
+
+	/**
+	 * 当前值是value时才删除
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	public boolean remove(long key, V value) {
+		LongObjectHashMap<V> stripe = stripe(key);
+		synchronized (stripe) {
+			if (stripe.get(key) == value) {
+				stripe.remove(key);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 清空，并返回原来的所有值
+	 * @return
+	 */
+	public List<V> clear() {
+		List<V> ret = new ArrayList<V>();
+		for (LongObjectHashMap<V> stripe : stripes) {
+			synchronized (stripe) {
+				ret.addAll(stripe.clear());
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * 各段之和，并发修改时只是近似值
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (LongObjectHashMap<V> stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+}
@@ -8,6 +8,7 @@ import java.util.concurrent.locks.Lock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tio.core.ObjWithLock;
+import org.tio.core.SnapshotSet;
 
 /**
  * @author tanyaowu 
@@ -92,6 +93,10 @@ public abstract class PageUtils {
 		if (setWithLock == null) {
 			return null;
 		}
+		if (setWithLock instanceof SnapshotSet) {
+			//快照是list，直接按下标取，不用遍历set
+			return fromList(((SnapshotSet<T>) setWithLock).snapshot(), pageIndex, pageSize);
+		}
 		Lock lock = setWithLock.getLock().readLock();
 		try {
 			lock.lock();
@@ -0,0 +1,207 @@
+package org.tio.monitor;
+
+import org.tio.core.ChannelContext;
+import org.tio.core.intf.Packet;
+
+/**
+ * 收包限流，DecodeRunnable每解码出一个包调用一次acquire()，见GroupContext.setPacketRateLimiter()<br>
+ * 可以同时限制每个连接和每个ip的收包数、字节数(都是令牌桶，见TokenBucket)：<br>
+ * 1、每个连接的桶直接挂在ChannelContext上，不用查表；只有解码线程访问<br>
+ * 2、每个ip的桶放在TokenBucketTable中(ConcurrentHashMap，读不加锁)，同一个ip的多个连接共用<br>
+ * 超过限制时怎么处理见RateLimitAction；握手包、心跳包等不能丢的包可以覆盖isLimited()排除掉；各项默认都不限制，全部不限制时不要设置PacketRateLimiter，这样解码时只多一次判空<br>
+ * 依次检查各个桶，前面的桶取到了令牌而后面的桶不够时，前面的令牌不退回<br>
+ * RateLimitAction.DELAY_READ时超限的包照常处理，所以令牌不够也要取走(透支)，推迟读的时间就是还清透支的时间，这样才能真正把速度压下来
+ */
+public class PacketRateLimiter {
+
+	/**
+	 * 超过限制时的处理方式
+	 */
+	private volatile RateLimitAction action = RateLimitAction.DROP;
+
+	/**
+	 * 每个连接每秒最多收多少个包，为null时不限
+	 */
+	private volatile Rate channelPacketRate = null;
+
+	/**
+	 * 每个连接每秒最多收多少字节，为null时不限
+	 */
+	private volatile Rate channelByteRate = null;
+
+	/**
+	 * 每个ip每秒最多收多少个包，为null时不限
+	 */
+	private volatile TokenBucketTable<String> ipPacketTable = null;
+
+	/**
+	 * 每个ip每秒最多收多少字节，为null时不限
+	 */
+	private volatile TokenBucketTable<String> ipByteTable = null;
+
+	/**
+	 * 是否对这个包限流，默认所有包都限流，返回false的包不取令牌
+	 * @param channelContext
+	 * @param packet 刚解码出来的包
+	 * @return
+	 */
+	public boolean isLimited(ChannelContext<?, ?, ?> channelContext, Packet packet) {
+		return true;
+	}
+
+	/**
+	 * 为收到的一个包取令牌
+	 * @param channelContext
+	 * @param byteCount 包的字节数
+	 * @return 0: 没有超过限制；大于0: 超过了限制，还要等多少纳秒令牌才够
+	 */
+	public long acquire(ChannelContext<?, ?, ?> channelContext, int byteCount) {
+		long now = System.nanoTime();
+		boolean reserve = action == RateLimitAction.DELAY_READ;
+		long wait = 0;
+
+		Rate packetRate = channelPacketRate;
+		Rate byteRate = channelByteRate;
+		if (packetRate != null || byteRate != null) {
+			ChannelBuckets buckets = channelContext.getRateLimitBuckets();
+			if (buckets == null || buckets.packetRate != packetRate || buckets.byteRate != byteRate) {
+				//第一次用或者限制改了
+				buckets = new ChannelBuckets(packetRate, byteRate);
+				channelContext.setRateLimitBuckets(buckets);
+			}
+			if (buckets.packets != null && (wait = acquire(buckets.packets, 1, now, reserve)) > 0 && !reserve) {
+				return wait;
+			}
+			if (buckets.bytes != null && (wait = Math.max(wait, acquire(buckets.bytes, Math.min(byteCount, byteRate.burst), now, reserve))) > 0 && !reserve) {
+				return wait;
+			}
+		}
+
+		TokenBucketTable<String> ipPacketTable = this.ipPacketTable;
+		TokenBucketTable<String> ipByteTable = this.ipByteTable;
+		if (ipPacketTable != null || ipByteTable != null) {
+			String ip = channelContext.getClientNode().getIp();
+			if (ipPacketTable != null && (wait = Math.max(wait, acquire(ipPacketTable.getBucket(ip, now), 1, now, reserve))) > 0 && !reserve) {
+				return wait;
+			}
+			if (ipByteTable != null) {
+				wait = Math.max(wait, acquire(ipByteTable.getBucket(ip, now), Math.min(byteCount, ipByteTable.getBurst()), now, reserve));
+			}
+		}
+		return wait;
+	}
+
+	/**
+	 * 超过桶容量的大包按桶容量取令牌，否则永远取不到
+	 * @param reserve true: 令牌不够时透支
+	 * @return 0: 取到了；大于0: 还要等多少纳秒
+	 */
+	private static long acquire(TokenBucket bucket, long permits, long now, boolean reserve) {
+		if (reserve) {
+			return bucket.reserve(permits, now);
+		}
+		if (bucket.tryAcquire(permits, now)) {
+			return 0;
+		}
+		//线程在取时间之后被挂起时，now比别的线程写进桶里的时间还早，用当前时间再试一次
+		now = System.nanoTime();
+		if (bucket.tryAcquire(permits, now)) {
+			return 0;
+		}
+		return Math.max(bucket.nanosUntilAvailable(permits, now), 1);
+	}
+
+	/**
+	 * 限制每个连接的收包数，已有连接下次收包时生效
+	 * @param packetsPerSecond 每秒最多多少个包，<=0表示不限
+	 * @param burst 短时间内最多连续收多少个包
+	 */
+	public void setChannelPacketRate(double packetsPerSecond, long burst) {
+		this.channelPacketRate = packetsPerSecond <= 0 ? null : new Rate(packetsPerSecond, Math.max(burst, 1));
+	}
+
+	/**
+	 * 限制每个连接的收包字节数，已有连接下次收包时生效
+	 * @param bytesPerSecond 每秒最多多少字节，<=0表示不限
+	 * @param burst 短时间内最多连续收多少字节，比这个大的包按burst计算
+	 */
+	public void setChannelByteRate(double bytesPerSecond, long burst) {
+		this.channelByteRate = bytesPerSecond <= 0 ? null : new Rate(bytesPerSecond, Math.max(burst, 1));
+	}
+
+	/**
+	 * 限制每个ip的收包数，重新设置后各ip的令牌重新计算
+	 * @param packetsPerSecond 每秒最多多少个包，<=0表示不限
+	 * @param burst 短时间内最多连续收多少个包
+	 */
+	public void setIpPacketRate(double packetsPerSecond, long burst) {
+		this.ipPacketTable = packetsPerSecond <= 0 ? null : new TokenBucketTable<String>(packetsPerSecond, Math.max(burst, 1));
+	}
+
+	/**
+	 * 限制每个ip的收包字节数，重新设置后各ip的令牌重新计算
+	 * @param bytesPerSecond 每秒最多多少字节，<=0表示不限
+	 * @param burst 短时间内最多连续收多少字节，比这个大的包按burst计算
+	 */
+	public void setIpByteRate(double bytesPerSecond, long burst) {
+		this.ipByteTable = bytesPerSecond <= 0 ? null : new TokenBucketTable<String>(bytesPerSecond, Math.max(burst, 1));
+	}
+
+	/**
+	 * @return the action
+	 */
+	public RateLimitAction getAction() {
+		return action;
+	}
+
+	/**
+	 * @param action 超过限制时的处理方式
+	 */
+	public void setAction(RateLimitAction action) {
+		if (action == null) {
+			throw new IllegalArgumentException("action is null");
+		}
+		this.action = action;
+	}
+
+	/**
+	 * @return 每个ip的收包数令牌桶，为null表示不限
+	 */
+	public TokenBucketTable<String> getIpPacketTable() {
+		return ipPacketTable;
+	}
+
+	/**
+	 * @return 每个ip的收包字节数令牌桶，为null表示不限
+	 */
+	public TokenBucketTable<String> getIpByteTable() {
+		return ipByteTable;
+	}
+
+	private static final class Rate {
+		private final double permitsPerSecond;
+		private final long burst;
+
+		private Rate(double permitsPerSecond, long burst) {
+			this.permitsPerSecond = permitsPerSecond;
+			this.burst = burst;
+		}
+	}
+
+	/**
+	 * 挂在ChannelContext上的令牌桶
+	 */
+	public static final class ChannelBuckets {
+		private final Rate packetRate;
+		private final Rate byteRate;
+		private final TokenBucket packets;
+		private final TokenBucket bytes;
+
+		private ChannelBuckets(Rate packetRate, Rate byteRate) {
+			this.packetRate = packetRate;
+			this.byteRate = byteRate;
+			this.packets = packetRate == null ? null : new TokenBucket(packetRate.permitsPerSecond, packetRate.burst);
+			this.bytes = byteRate == null ? null : new TokenBucket(byteRate.permitsPerSecond, byteRate.burst);
+		}
+	}
+}
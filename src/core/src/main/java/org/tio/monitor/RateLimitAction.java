@@ -0,0 +1,47 @@
+package org.tio.monitor;
+
+/**
+ * 收包超过速度限制时怎么处理，见PacketRateLimiter
+ */
+public enum RateLimitAction {
+	/**
+	 * 丢掉这个包，不交给AioHandler.handler()处理，连接保持；每个连接第一次丢包和之后每丢100个包打一条warn日志
+	 */
+	DROP(1),
+
+	/**
+	 * 照常处理这个包，但推迟下一次读，直到令牌恢复；对方的发送会被TCP窗口挡住
+	 */
+	DELAY_READ(2),
+
+	/**
+	 * 关闭连接
+	 */
+	CLOSE(3);
+
+	private final int value;
+
+	public static RateLimitAction forNumber(int value) {
+		switch (value) {
+		case 1:
+			return DROP;
+		case 2:
+			return DELAY_READ;
+		case 3:
+			return CLOSE;
+		default:
+			return null;
+		}
+	}
+
+	private RateLimitAction(int value) {
+		this.value = value;
+	}
+
+	/**
+	 * @return the value
+	 */
+	public int getValue() {
+		return value;
+	}
+}
@@ -6,19 +6,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tio.core.utils.SystemTimer;
 
-import com.google.common.util.concurrent.RateLimiter;
-
 /**
+ * 频率控制，超过频率时记警告次数<br>
+ * 取令牌用的是无锁的TokenBucket，超过频率时也不加锁
  * @author tanyaowu 
  * 2017年5月23日 下午1:09:55
  */
 public class RateLimiterWrap {
 		private static Logger log = LoggerFactory.getLogger(RateLimiterWrap.class);
 
+	private static final boolean[] ACQUIRED = new boolean[] { true, true };
+
+	private static final boolean[] WARNED = new boolean[] { false, true };
+
+	private static final boolean[] REJECTED = new boolean[] { false, false };
+
 	/**
 	 * 频率控制
 	 */
-	private RateLimiter rateLimiter = null;//RateLimiter.create(3);
+	private TokenBucket tokenBucket = null;
 
 	/**
 	 * 本阶段已经收到多少次警告
@@ -43,7 +49,7 @@ public class RateLimiterWrap {
 	/**
 	 * 上一次警告时间
 	 */
-	private long lastWarnTime = SystemTimer.currentTimeMillis();
+	private volatile long lastWarnTime = SystemTimer.currentTimeMillis();
 
 	/**
 	 * 警告清零时间间隔，即如果有这么长时间没有收到警告，则把前面的警告次数清零
@@ -59,7 +65,7 @@ public class RateLimiterWrap {
 	 * @author: tanyaowu
 	 */
 	public RateLimiterWrap(int permitsPerSecond, int warnClearInterval, int maxWarnCount, int maxAllWarnCount) {
-		this.rateLimiter = RateLimiter.create(permitsPerSecond);
+		this.tokenBucket = new TokenBucket(permitsPerSecond, Math.max(permitsPerSecond, 1));
 		this.warnClearInterval = warnClearInterval;
 		this.maxWarnCount = maxWarnCount;
 		this.maxAllWarnCount = maxAllWarnCount;
@@ -70,29 +76,28 @@ public class RateLimiterWrap {
 	 * @return 
 	 * 0位置：根据QPS获取执行锁, false: 没拿到锁<br>
 	 * 1位置：根据警告次数获取执行锁, false: 没拿到锁<br>
+	 * 返回的是共享的常量数组，不要修改
 	 * @author: tanyaowu
 	 */
 	public boolean[] tryAcquire() {
-		boolean ret = rateLimiter.tryAcquire();
-		if (!ret) {
-			synchronized (this) {
-				long nowTime = SystemTimer.currentTimeMillis();
-				if ((nowTime - lastWarnTime) > warnClearInterval) {
-					warnCount.set(0);
-				}
-				lastWarnTime = SystemTimer.currentTimeMillis();
-				int wc = warnCount.incrementAndGet();
-				int awc = allWarnCount.incrementAndGet();
-
-				if (wc > maxWarnCount || awc > maxAllWarnCount) {
-					return new boolean[]{false, false};
-				}
-				return new boolean[]{false, true};
-			}
-		} else {
-			return new boolean[]{true, true};
+		if (tokenBucket.tryAcquire()) {
+			return ACQUIRED;
 		}
 
+		//并发时清零和计数之间可能交错，多算或少算一两次警告不影响结果
+		long nowTime = SystemTimer.currentTimeMillis();
+		long last = lastWarnTime;
+		lastWarnTime = nowTime;
+		if ((nowTime - last) > warnClearInterval) {
+			warnCount.set(0);
+		}
+		int wc = warnCount.incrementAndGet();
+		int awc = allWarnCount.incrementAndGet();
+
+		if (wc > maxWarnCount || awc > maxAllWarnCount) {
+			return REJECTED;
+		}
+		return WARNED;
 	}
 
 	/**
@@ -104,17 +109,17 @@ public class RateLimiterWrap {
 	}
 
 	/**
-	 * @return the rateLimiter
+	 * @return the tokenBucket
 	 */
-	public RateLimiter getRateLimiter() {
-		return rateLimiter;
+	public TokenBucket getTokenBucket() {
+		return tokenBucket;
 	}
 
 	/**
-	 * @param rateLimiter the rateLimiter to set
+	 * @param tokenBucket the tokenBucket to set
 	 */
-	public void setRateLimiter(RateLimiter rateLimiter) {
-		this.rateLimiter = rateLimiter;
+	public void setTokenBucket(TokenBucket tokenBucket) {
+		this.tokenBucket = tokenBucket;
 	}
 
 	/**
@@ -0,0 +1,121 @@
+package org.tio.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁的令牌桶<br>
+ * 只用一个AtomicLong记录"理论上下一个令牌可用的时间"(GCRA算法)，取令牌是一次CAS，不加锁、不分配对象，也不需要定时补充令牌<br>
+ * 桶满时最多可以一次取走burst个令牌，之后按permitsPerSecond的速度恢复
+ */
+public class TokenBucket {
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	/**
+	 * 每个令牌对应的纳秒数
+	 */
+	private final double nanosPerPermit;
+
+	/**
+	 * 桶的容量对应的纳秒数
+	 */
+	private final long burstNanos;
+
+	/**
+	 * 理论上桶中令牌全部用完的时间(System.nanoTime())，小于当前时间说明桶是满的
+	 */
+	private final AtomicLong tat;
+
+	/**
+	 *
+	 * @param permitsPerSecond 每秒恢复多少个令牌，必须大于0
+	 * @param burst 桶的容量，必须大于0
+	 */
+	public TokenBucket(double permitsPerSecond, long burst) {
+		if (permitsPerSecond <= 0 || burst <= 0) {
+			throw new IllegalArgumentException("permitsPerSecond and burst must be > 0: " + permitsPerSecond + ", " + burst);
+		}
+		this.nanosPerPermit = NANOS_PER_SECOND / permitsPerSecond;
+		this.burstNanos = (long) Math.min(burst * nanosPerPermit, Long.MAX_VALUE / 4);
+		this.tat = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * 取一个令牌
+	 * @return false: 令牌不够
+	 */
+	public boolean tryAcquire() {
+		return tryAcquire(1, System.nanoTime());
+	}
+
+	/**
+	 * 取permits个令牌，令牌不够时一个也不取
+	 * @param permits
+	 * @return false: 令牌不够
+	 */
+	public boolean tryAcquire(long permits) {
+		return tryAcquire(permits, System.nanoTime());
+	}
+
+	/**
+	 *
+	 * @param permits
+	 * @param now System.nanoTime()，一次处理多个桶时可以共用
+	 * @return false: 令牌不够
+	 */
+	public boolean tryAcquire(long permits, long now) {
+		long increment = (long) (permits * nanosPerPermit);
+		while (true) {
+			long current = tat.get();
+			long base = current - now < 0 ? now : current;
+			long next = base + increment;
+			if (next - now > burstNanos) {
+				return false;
+			}
+			if (tat.compareAndSet(current, next)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 不管令牌够不够都取走permits个，不够时透支，透支的部分按恢复速度慢慢还
+	 * @param permits
+	 * @param now System.nanoTime()
+	 * @return 纳秒，要等这么久透支才还清(桶里的令牌不再是负数)，0表示没有透支
+	 */
+	public long reserve(long permits, long now) {
+		long increment = (long) (permits * nanosPerPermit);
+		while (true) {
+			long current = tat.get();
+			long base = current - now < 0 ? now : current;
+			long next = base + increment;
+			if (tat.compareAndSet(current, next)) {
+				long wait = next - now - burstNanos;
+				return wait > 0 ? wait : 0;
+			}
+		}
+	}
+
+	/**
+	 * 令牌不够时，要等多久才够permits个
+	 * @param permits
+	 * @param now System.nanoTime()
+	 * @return 纳秒，0表示现在就够
+	 */
+	public long nanosUntilAvailable(long permits, long now) {
+		long current = tat.get();
+		long base = current - now < 0 ? now : current;
+		long wait = base + (long) (permits * nanosPerPermit) - now - burstNanos;
+		return wait > 0 ? wait : 0;
+	}
+
+	/**
+	 * 桶是否是满的(一段时间没有取令牌)，满的桶可以丢掉，下次用时重新创建，效果一样
+	 * @param now System.nanoTime()
+	 * @return
+	 */
+	public boolean isFull(long now) {
+		return tat.get() - now <= 0;
+	}
+}
@@ -0,0 +1,100 @@
+package org.tio.monitor;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按key(例如ip)区分的一组令牌桶，桶用到时才创建<br>
+ * 命中时只有一次ConcurrentHashMap.get()和一次CAS；满的桶(一段时间没用)在新建桶时顺便清理，不需要额外的定时任务
+ * @param <K>
+ */
+public class TokenBucketTable<K> {
+
+	/**
+	 * 两次清理之间至少间隔多久
+	 */
+	private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	private final ConcurrentHashMap<K, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+	private final double permitsPerSecond;
+
+	private final long burst;
+
+	private final AtomicLong lastSweepTime = new AtomicLong(System.nanoTime());
+
+	/**
+	 *
+	 * @param permitsPerSecond 每个桶每秒恢复多少个令牌
+	 * @param burst 每个桶的容量
+	 */
+	public TokenBucketTable(double permitsPerSecond, long burst) {
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+	}
+
+	/**
+	 * 从key对应的桶中取permits个令牌
+	 * @param key
+	 * @param permits
+	 * @return false: 令牌不够
+	 */
+	public boolean tryAcquire(K key, long permits) {
+		long now = System.nanoTime();
+		return getBucket(key, now).tryAcquire(permits, now);
+	}
+
+	/**
+	 * 取key对应的桶，没有则创建
+	 * @param key
+	 * @param now System.nanoTime()
+	 * @return
+	 */
+	public TokenBucket getBucket(K key, long now) {
+		TokenBucket bucket = buckets.get(key);
+		if (bucket != null) {
+			return bucket;
+		}
+
+		sweepIfNeeded(now);
+		bucket = new TokenBucket(permitsPerSecond, burst);
+		TokenBucket old = buckets.putIfAbsent(key, bucket);
+		return old != null ? old : bucket;
+	}
+
+	private void sweepIfNeeded(long now) {
+		long last = lastSweepTime.get();
+		if (now - last < SWEEP_INTERVAL_NANOS || !lastSweepTime.compareAndSet(last, now)) {
+			return;
+		}
+		Iterator<TokenBucket> it = buckets.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().isFull(now)) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return 当前有多少个桶
+	 */
+	public int size() {
+		return buckets.size();
+	}
+
+	/**
+	 * @return the permitsPerSecond
+	 */
+	public double getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+
+	/**
+	 * @return the burst
+	 */
+	public long getBurst() {
+		return burst;
+	}
+}
@@ -1,9 +1,6 @@
 package org.tio.server;
 
 import java.net.InetSocketAddress;
-import java.net.StandardSocketOptions;
-import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousServerSocketChannel;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.CompletionHandler;
 
@@ -16,11 +13,13 @@ import org.tio.core.utils.SystemTimer;
 import org.tio.server.intf.ServerAioListener;
 
 /**
- * 
+ * accept完成后先重新发起accept，再初始化这个连接，初始化期间到来的连接可以由group中的其它线程接着accept<br>
+ * 初始化之前先经过ConnectionAdmission准入检查，被拒绝的socket直接关闭
+ *
  * @author tanyaowu 
  * 2017年4月4日 上午9:27:45
  */
-public class AcceptCompletionHandler<SessionContext, P extends Packet, R> implements CompletionHandler<AsynchronousSocketChannel, AioServer<SessionContext, P, R>> {
+public class AcceptCompletionHandler<SessionContext, P extends Packet, R> implements CompletionHandler<AsynchronousSocketChannel, Acceptor<SessionContext, P, R>> {
 
 	private static Logger log = LoggerFactory.getLogger(AioServer.class);
 
@@ -30,26 +29,40 @@ public class AcceptCompletionHandler<SessionContext, P extends Packet, R> implem
 	/**
 	 * 
 	 * @param asynchronousSocketChannel
-	 * @param aioServer
+	 * @param acceptor
 	 * @author: tanyaowu
 	 */
 	@Override
-	public void completed(AsynchronousSocketChannel asynchronousSocketChannel, AioServer<SessionContext, P, R> aioServer) {
-		try {
+	public void completed(AsynchronousSocketChannel asynchronousSocketChannel, Acceptor<SessionContext, P, R> acceptor) {
+		AioServer<SessionContext, P, R> aioServer = acceptor.getAioServer();
+		rearm(acceptor);
 
+		try {
 			ServerGroupContext<SessionContext, P, R> serverGroupContext = aioServer.getServerGroupContext();
 			InetSocketAddress inetSocketAddress = (InetSocketAddress) asynchronousSocketChannel.getRemoteAddress();
 			String clientIp = inetSocketAddress.getHostString();
 
 			ServerGroupStat serverGroupStat = serverGroupContext.getServerGroupStat();
-			serverGroupStat.getAccepted().incrementAndGet();
+			serverGroupStat.getAccepted().increment();
 
-			asynchronousSocketChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-			asynchronousSocketChannel.setOption(StandardSocketOptions.SO_RCVBUF, 32 * 1024);
-			asynchronousSocketChannel.setOption(StandardSocketOptions.SO_SNDBUF, 32 * 1024);
-			asynchronousSocketChannel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+			RejectReason rejectReason = serverGroupContext.getConnectionAdmission().admit(serverGroupContext, clientIp);
+			if (rejectReason != null) {
+				serverGroupStat.getRejected(rejectReason).increment();
+				log.debug("拒绝连接{}:{}, {}", clientIp, inetSocketAddress.getPort(), rejectReason);
+				closeQuietly(asynchronousSocketChannel);
+				return;
+			}
 
-			ServerChannelContext<SessionContext, P, R> channelContext = new ServerChannelContext<>(serverGroupContext, asynchronousSocketChannel);
+			ServerChannelContext<SessionContext, P, R> channelContext = null;
+			try {
+				serverGroupContext.getSocketOptionProfile().applyTo(asynchronousSocketChannel);
+				channelContext = new ServerChannelContext<>(serverGroupContext, asynchronousSocketChannel);
+			} catch (Exception e) {
+				//ServerChannelContext没建起来就不会走到removeFromMaintain，在这里退回准入的计数(构造函数中已经登记的部分由构造函数自己撤掉)
+				serverGroupContext.getConnectionAdmission().release(serverGroupContext.clientIps, clientIp);
+				closeQuietly(asynchronousSocketChannel);
+				throw e;
+			}
 			channelContext.setClosed(false);
 			channelContext.setServerNode(aioServer.getServerNode());
 			ServerAioListener<SessionContext, P, R> serverAioListener = serverGroupContext.getServerAioListener();
@@ -62,36 +75,51 @@ public class AcceptCompletionHandler<SessionContext, P extends Packet, R> implem
 			}
 
 			if (!aioServer.isWaitingStop()) {
+				serverGroupContext.startIdleCheck(channelContext);
 				ReadCompletionHandler<SessionContext, P, R> readCompletionHandler = channelContext.getReadCompletionHandler();
-				ByteBuffer readByteBuffer = readCompletionHandler.getReadByteBuffer();//ByteBuffer.allocateDirect(channelContext.getGroupContext().getReadBufferSize());
-				readByteBuffer.position(0);
-				readByteBuffer.limit(readByteBuffer.capacity());
-				asynchronousSocketChannel.read(readByteBuffer, readByteBuffer, readCompletionHandler);
+				readCompletionHandler.read();
 			}
 		} catch (Exception e) {
 			log.error("", e);
-		} finally {
-			if (aioServer.isWaitingStop()) {
-				log.info("{}即将关闭服务器，不再接受新请求", aioServer.getServerNode());
-			} else {
-				AsynchronousServerSocketChannel serverSocketChannel = aioServer.getServerSocketChannel();
-				serverSocketChannel.accept(aioServer, this);
-			}
+		}
+	}
+
+	private static void closeQuietly(AsynchronousSocketChannel asynchronousSocketChannel) {
+		try {
+			asynchronousSocketChannel.close();
+		} catch (Exception e) {
+			log.error(e.toString(), e);
+		}
+	}
+
+	/**
+	 * 重新发起accept
+	 * @param acceptor
+	 */
+	private void rearm(Acceptor<SessionContext, P, R> acceptor) {
+		AioServer<SessionContext, P, R> aioServer = acceptor.getAioServer();
+		if (aioServer.isWaitingStop()) {
+			log.info("{}即将关闭服务器，不再接受新请求", aioServer.getServerNode());
+			return;
+		}
+		try {
+			acceptor.accept();
+		} catch (Exception e) {
+			log.error("[" + aioServer.getServerNode() + "]第" + acceptor.getIndex() + "个监听socket重新accept失败", e);
 		}
 	}
 
 	/**
 	 * 
 	 * @param exc
-	 * @param aioServer
+	 * @param acceptor
 	 * @author: tanyaowu
 	 */
 	@Override
-	public void failed(Throwable exc, AioServer<SessionContext, P, R> aioServer) {
-		AsynchronousServerSocketChannel serverSocketChannel = aioServer.getServerSocketChannel();
-		serverSocketChannel.accept(aioServer, this);
+	public void failed(Throwable exc, Acceptor<SessionContext, P, R> acceptor) {
+		rearm(acceptor);
 
-		log.error("[" + aioServer.getServerNode() + "]监听出现异常", exc);
+		log.error("[" + acceptor.getAioServer().getServerNode() + "]监听出现异常", exc);
 
 	}
 
@@ -0,0 +1,58 @@
+package org.tio.server;
+
+import java.nio.channels.AsynchronousServerSocketChannel;
+
+import org.tio.core.intf.Packet;
+
+/**
+ * 一个监听socket及其accept循环<br>
+ * 每个AsynchronousServerSocketChannel同一时刻只能有一个未完成的accept，所以并行accept靠多个监听socket(SO_REUSEPORT)实现，每个一个Acceptor
+ */
+public class Acceptor<SessionContext, P extends Packet, R> {
+
+	private final AioServer<SessionContext, P, R> aioServer;
+
+	private final AsynchronousServerSocketChannel serverSocketChannel;
+
+	private final int index;
+
+	/**
+	 *
+	 * @param aioServer
+	 * @param serverSocketChannel
+	 * @param index 第几个监听socket，从0开始
+	 */
+	public Acceptor(AioServer<SessionContext, P, R> aioServer, AsynchronousServerSocketChannel serverSocketChannel, int index) {
+		this.aioServer = aioServer;
+		this.serverSocketChannel = serverSocketChannel;
+		this.index = index;
+	}
+
+	/**
+	 * 发起(或重新发起)一次accept
+	 */
+	public void accept() {
+		serverSocketChannel.accept(this, aioServer.getServerGroupContext().getAcceptCompletionHandler());
+	}
+
+	/**
+	 * @return the aioServer
+	 */
+	public AioServer<SessionContext, P, R> getAioServer() {
+		return aioServer;
+	}
+
+	/**
+	 * @return the serverSocketChannel
+	 */
+	public AsynchronousServerSocketChannel getServerSocketChannel() {
+		return serverSocketChannel;
+	}
+
+	/**
+	 * @return the index
+	 */
+	public int getIndex() {
+		return index;
+	}
+}
@@ -2,9 +2,13 @@ package org.tio.server;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketOption;
 import java.net.StandardSocketOptions;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -12,7 +16,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tio.core.Node;
+import org.tio.core.TaskExecutorMode;
 import org.tio.core.intf.Packet;
+import org.tio.core.threadpool.EventLoopGroup;
 
 /**
  * 
@@ -22,10 +28,20 @@ import org.tio.core.intf.Packet;
 public class AioServer<SessionContext, P extends Packet, R> {
 	private static Logger log = LoggerFactory.getLogger(AioServer.class);
 
+	/**
+	 * StandardSocketOptions.SO_REUSEPORT是JDK9才有的，这里用反射取，取不到就是null
+	 */
+	private static final SocketOption<Boolean> SO_REUSEPORT = findReuseportOption();
+
 	private ServerGroupContext<SessionContext, P, R> serverGroupContext;
 
+	/**
+	 * 第一个监听socket
+	 */
 	private AsynchronousServerSocketChannel serverSocketChannel;
 
+	private List<Acceptor<SessionContext, P, R>> acceptors = Collections.emptyList();
+
 	private Node serverNode;
 
 	private boolean isWaitingStop = false;
@@ -51,12 +67,28 @@ public class AioServer<SessionContext, P extends Packet, R> {
 	}
 
 	/**
-	 * @return the serverSocketChannel
+	 * @return 第一个监听socket
 	 */
 	public AsynchronousServerSocketChannel getServerSocketChannel() {
 		return serverSocketChannel;
 	}
 
+	/**
+	 * @return 所有的监听socket及其accept循环
+	 */
+	public List<Acceptor<SessionContext, P, R>> getAcceptors() {
+		return acceptors;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static SocketOption<Boolean> findReuseportOption() {
+		try {
+			return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
 	/**
 	 * @param serverGroupContext the serverGroupContext to set
 	 */
@@ -69,10 +101,6 @@ public class AioServer<SessionContext, P extends Packet, R> {
 		//		ExecutorService groupExecutor = serverGroupContext.getGroupExecutor();
 
 		AsynchronousChannelGroup channelGroup = AsynchronousChannelGroup.withThreadPool(serverGroupContext.getGroupExecutor());
-		serverSocketChannel = AsynchronousServerSocketChannel.open(channelGroup);
-
-		serverSocketChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-		serverSocketChannel.setOption(StandardSocketOptions.SO_RCVBUF, 64 * 1024);
 
 		InetSocketAddress listenAddress = null;
 
@@ -82,12 +110,53 @@ public class AioServer<SessionContext, P extends Packet, R> {
 			listenAddress = new InetSocketAddress(serverIp, serverPort);
 		}
 
-		serverSocketChannel.bind(listenAddress, 0);
+		int acceptorCount = Math.max(1, serverGroupContext.getAcceptorCount());
+		if (acceptorCount > 1 && serverPort == 0) {
+			log.warn("端口为0时每个监听socket会分到不同的端口，只监听一个");
+			acceptorCount = 1;
+		}
+
+		List<AsynchronousServerSocketChannel> serverSocketChannels = new ArrayList<>(acceptorCount);
+		try {
+			for (int i = 0; i < acceptorCount; i++) {
+				AsynchronousServerSocketChannel channel = AsynchronousServerSocketChannel.open(channelGroup);
+				serverSocketChannels.add(channel);
+
+				serverGroupContext.getListenerSocketOptionProfile().applyTo(channel);
+				if (acceptorCount > 1) {
+					if (SO_REUSEPORT == null || !channel.supportedOptions().contains(SO_REUSEPORT)) {
+						log.warn("当前环境不支持SO_REUSEPORT，只监听一个socket，acceptorCount:{}", acceptorCount);
+						acceptorCount = 1;
+					} else {
+						channel.setOption(SO_REUSEPORT, true);
+					}
+				}
+
+				channel.bind(listenAddress, Math.max(serverGroupContext.getBacklog(), 0));
+			}
+		} catch (IOException e) {
+			for (AsynchronousServerSocketChannel channel : serverSocketChannels) {
+				try {
+					channel.close();
+				} catch (IOException e1) {
+					log.error(e1.toString(), e1);
+				}
+			}
+			throw e;
+		}
+
+		serverSocketChannel = serverSocketChannels.get(0);
+		List<Acceptor<SessionContext, P, R>> acceptors = new ArrayList<>(serverSocketChannels.size());
+		for (int i = 0; i < serverSocketChannels.size(); i++) {
+			acceptors.add(new Acceptor<>(this, serverSocketChannels.get(i), i));
+		}
+		this.acceptors = Collections.unmodifiableList(acceptors);
 
-		AcceptCompletionHandler<SessionContext, P, R> acceptCompletionHandler = serverGroupContext.getAcceptCompletionHandler();
-		serverSocketChannel.accept(this, acceptCompletionHandler);
+		for (Acceptor<SessionContext, P, R> acceptor : acceptors) {
+			acceptor.accept();
+		}
 
-		log.warn("t-io server started, listen on {}", this.serverNode);
+		log.warn("t-io server started, listen on {}, acceptor count:{}, backlog:{}", this.serverNode, acceptors.size(), serverGroupContext.getBacklog());
 	}
 
 	/**
@@ -102,10 +171,12 @@ public class AioServer<SessionContext, P extends Packet, R> {
 		isWaitingStop = true;
 		boolean ret = true;
 
-		try {
-			serverSocketChannel.close();
-		} catch (IOException e1) {
-			log.error(e1.toString(), e1);
+		for (Acceptor<SessionContext, P, R> acceptor : acceptors) {
+			try {
+				acceptor.getServerSocketChannel().close();
+			} catch (IOException e1) {
+				log.error(e1.toString(), e1);
+			}
 		}
 
 		ExecutorService groupExecutor = serverGroupContext.getGroupExecutor();
@@ -113,11 +184,21 @@ public class AioServer<SessionContext, P extends Packet, R> {
 
 		groupExecutor.shutdown();
 		tioExecutor.shutdown();
+		EventLoopGroup eventLoopGroup = null;
+		if (serverGroupContext.getTaskExecutorMode() == TaskExecutorMode.EVENT_LOOP) {
+			eventLoopGroup = serverGroupContext.getEventLoopGroup();
+			eventLoopGroup.shutdown();
+		}
 
 		serverGroupContext.setStopped(true);
+		serverGroupContext.stopTimer();
+		serverGroupContext.stopFlushScheduler();
 		try {
 			ret = ret && groupExecutor.awaitTermination(6000, TimeUnit.SECONDS);
 			ret = ret && tioExecutor.awaitTermination(6000, TimeUnit.SECONDS);
+			if (eventLoopGroup != null) {
+				ret = ret && eventLoopGroup.awaitTermination(6000, TimeUnit.SECONDS);
+			}
 		} catch (InterruptedException e) {
 			log.error(e.getLocalizedMessage(), e);
 		}
@@ -0,0 +1,133 @@
+package org.tio.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.tio.core.maintain.ClientIps;
+import org.tio.monitor.TokenBucketTable;
+
+/**
+ * 新连接的准入控制，在accept之后、创建ServerChannelContext之前执行<br>
+ * 依次检查：黑名单、连接总数上限、每个ip新建连接的速度(令牌桶)、每个ip的连接数上限；被拒绝的socket直接关闭，不创建任何连接相关的对象<br>
+ * 默认都不限制，但仍然会统计连接总数和每个ip的连接数
+ */
+public class ConnectionAdmission {
+
+	/**
+	 * 连接总数上限，<=0表示不限
+	 */
+	private int maxConnections = 0;
+
+	/**
+	 * 每个ip的连接数上限，<=0表示不限
+	 */
+	private int maxConnectionsPerIp = 0;
+
+	/**
+	 * 每个ip新建连接的令牌桶，为null时不限
+	 */
+	private volatile TokenBucketTable<String> acceptRateTable = null;
+
+	/**
+	 * 当前被准入且还没删除的连接数
+	 */
+	private final AtomicInteger connectionCount = new AtomicInteger();
+
+	/**
+	 * 准入检查，通过时连接数已经加1，连接删除时须调用release()
+	 * @param serverGroupContext
+	 * @param clientIp
+	 * @return null: 通过
+	 */
+	public RejectReason admit(ServerGroupContext<?, ?, ?> serverGroupContext, String clientIp) {
+		if (serverGroupContext.ipBlacklist.isInBlacklist(clientIp)) {
+			return RejectReason.BLACKLIST;
+		}
+
+		int max = maxConnections;
+		if (max > 0 && connectionCount.get() >= max) {
+			return RejectReason.MAX_CONNECTIONS;
+		}
+
+		TokenBucketTable<String> acceptRateTable = this.acceptRateTable;
+		if (acceptRateTable != null && !acceptRateTable.tryAcquire(clientIp, 1)) {
+			return RejectReason.ACCEPT_RATE;
+		}
+
+		if (!serverGroupContext.clientIps.tryAdd(clientIp, maxConnectionsPerIp)) {
+			return RejectReason.MAX_CONNECTIONS_PER_IP;
+		}
+
+		//上面的检查和这里的加1不是原子的，并发accept时连接总数可能略微超过上限，超过的马上退回
+		if (connectionCount.incrementAndGet() > max && max > 0) {
+			connectionCount.decrementAndGet();
+			serverGroupContext.clientIps.remove(clientIp);
+			return RejectReason.MAX_CONNECTIONS;
+		}
+		return null;
+	}
+
+	/**
+	 * 被准入的连接删除时调用
+	 * @param clientIps
+	 * @param clientIp
+	 */
+	public void release(ClientIps<?, ?, ?> clientIps, String clientIp) {
+		connectionCount.decrementAndGet();
+		clientIps.remove(clientIp);
+	}
+
+	/**
+	 * @return 当前被准入且还没删除的连接数
+	 */
+	public int getConnectionCount() {
+		return connectionCount.get();
+	}
+
+	/**
+	 * @return the maxConnections
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * @param maxConnections 连接总数上限，<=0表示不限
+	 */
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * @return the maxConnectionsPerIp
+	 */
+	public int getMaxConnectionsPerIp() {
+		return maxConnectionsPerIp;
+	}
+
+	/**
+	 * @param maxConnectionsPerIp 每个ip的连接数上限，<=0表示不限
+	 */
+	public void setMaxConnectionsPerIp(int maxConnectionsPerIp) {
+		this.maxConnectionsPerIp = maxConnectionsPerIp;
+	}
+
+	/**
+	 * 限制每个ip新建连接的速度
+	 * @param permitsPerSecond 每秒最多新建多少个连接，<=0表示不限
+	 * @param burst 短时间内最多连续新建多少个连接
+	 */
+	public void setAcceptRatePerIp(double permitsPerSecond, int burst) {
+		if (permitsPerSecond <= 0) {
+			this.acceptRateTable = null;
+		} else {
+			this.acceptRateTable = new TokenBucketTable<String>(permitsPerSecond, Math.max(burst, 1));
+		}
+	}
+
+	/**
+	 * @return 每个ip新建连接的令牌桶，为null表示不限
+	 */
+	public TokenBucketTable<String> getAcceptRateTable() {
+		return acceptRateTable;
+	}
+}
@@ -0,0 +1,54 @@
+package org.tio.server;
+
+/**
+ * 新连接在accept时被拒绝的原因，见ConnectionAdmission
+ */
+public enum RejectReason {
+	/**
+	 * ip在黑名单中
+	 */
+	BLACKLIST(1),
+
+	/**
+	 * 连接总数达到上限
+	 */
+	MAX_CONNECTIONS(2),
+
+	/**
+	 * 这个ip的连接数达到上限
+	 */
+	MAX_CONNECTIONS_PER_IP(3),
+
+	/**
+	 * 这个ip新建连接太快
+	 */
+	ACCEPT_RATE(4);
+
+	private final int value;
+
+	public static RejectReason forNumber(int value) {
+		switch (value) {
+		case 1:
+			return BLACKLIST;
+		case 2:
+			return MAX_CONNECTIONS;
+		case 3:
+			return MAX_CONNECTIONS_PER_IP;
+		case 4:
+			return ACCEPT_RATE;
+		default:
+			return null;
+		}
+	}
+
+	private RejectReason(int value) {
+		this.value = value;
+	}
+
+	/**
+	 * @return the value
+	 */
+	public int getValue() {
+		return value;
+	}
+}
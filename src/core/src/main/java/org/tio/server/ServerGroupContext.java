@@ -1,20 +1,16 @@
 package org.tio.server;
 
-import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tio.core.Aio;
 import org.tio.core.ChannelContext;
-import org.tio.core.ChannelStat;
 import org.tio.core.GroupContext;
-import org.tio.core.ObjWithLock;
+import org.tio.core.SocketOptionProfile;
 import org.tio.core.intf.AioHandler;
 import org.tio.core.intf.AioListener;
 import org.tio.core.intf.Packet;
 import org.tio.core.stat.GroupStat;
-import org.tio.core.utils.SystemTimer;
+import org.tio.core.task.IdleTimerTask;
 import org.tio.server.intf.ServerAioHandler;
 import org.tio.server.intf.ServerAioListener;
 
@@ -34,11 +30,31 @@ public class ServerGroupContext<SessionContext, P extends Packet, R> extends Gro
 
 	protected ServerGroupStat serverGroupStat = new ServerGroupStat();
 
+	/**
+	 * 监听socket的backlog，<=0时使用系统默认值(Linux上还受net.core.somaxconn限制)
+	 */
+	private int backlog = 1024;
+
+	/**
+	 * 监听socket的数量<br>
+	 * 大于1时每个socket都设置SO_REUSEPORT并绑定同一个端口，由内核把新连接分给它们，每个socket各自一个accept循环；
+	 * 不支持SO_REUSEPORT时(JDK8、Windows等)只监听一个
+	 */
+	private int acceptorCount = 1;
+
+	/**
+	 * 监听socket的参数，SO_REUSEPORT由AioServer根据acceptorCount自己设置
+	 */
+	private SocketOptionProfile listenerSocketOptionProfile = SocketOptionProfile.listener();
+
+	/**
+	 * 新连接的准入控制：连接总数、每个ip的连接数和新建连接速度、黑名单
+	 */
+	private final ConnectionAdmission connectionAdmission = new ConnectionAdmission();
+
 	/** The accept executor. */
 	//private ThreadPoolExecutor acceptExecutor = null;
 
-	private Thread checkHeartbeatThread = null;
-
 	/**
 	 * 
 	 * @param serverAioHandler
@@ -51,105 +67,83 @@ public class ServerGroupContext<SessionContext, P extends Packet, R> extends Gro
 	 */
 	public ServerGroupContext(ServerAioHandler<SessionContext, P, R> serverAioHandler, ServerAioListener<SessionContext, P, R> serverAioListener) {
 		super();
+		this.socketOptionProfile = SocketOptionProfile.server();
 		this.acceptCompletionHandler = new AcceptCompletionHandler<>();
 		this.serverAioHandler = serverAioHandler;
 		this.serverAioListener = serverAioListener == null ? new DefaultServerAioListener<SessionContext, P, R>() : serverAioListener;
+	}
 
-		checkHeartbeatThread = new Thread(new Runnable() {
-			@SuppressWarnings("unused")
+	/**
+	 * 空闲超过heartbeatTimeout的连接会被删除
+	 * @see org.tio.core.GroupContext#createIdleTimerTask(org.tio.core.ChannelContext)
+	 */
+	@Override
+	protected IdleTimerTask<SessionContext, P, R> createIdleTimerTask(ChannelContext<SessionContext, P, R> channelContext) {
+		return new IdleTimerTask<SessionContext, P, R>(channelContext, heartbeatTimeout) {
 			@Override
-			public void run() {
-
-				while (!isStopped()) {
-					//					long sleeptime = heartbeatTimeout;
-					if (heartbeatTimeout <= 0) {
-						log.warn("用户取消了框架层面的心跳检测，请用户自己去完成心跳机制");
-						break;
-					}
-					long start = SystemTimer.currentTimeMillis();
-					ObjWithLock<Set<ChannelContext<SessionContext, P, R>>> objWithLock = ServerGroupContext.this.connections.getSetWithLock();
-					Set<ChannelContext<SessionContext, P, R>> set = null;
-					ReadLock readLock = objWithLock.getLock().readLock();
-					long start1 = 0;
-					int count = 0;
-					try {
-						readLock.lock();
-						start1 = SystemTimer.currentTimeMillis();
-						set = objWithLock.getObj();
-
-						for (ChannelContext<SessionContext, P, R> entry : set) {
-							count++;
-							ChannelContext<SessionContext, P, R> channelContext = entry;
-							ChannelStat stat = channelContext.getStat();
-							long timeLatestReceivedMsg = stat.getLatestTimeOfReceivedPacket();
-							long timeLatestSentMsg = stat.getLatestTimeOfSentPacket();
-							long compareTime = Math.max(timeLatestReceivedMsg, timeLatestSentMsg);
-							long currtime = SystemTimer.currentTimeMillis();
-							long interval = (currtime - compareTime);
-							if (interval > heartbeatTimeout) {
-								log.warn("{}, {} ms没有收发消息", channelContext, interval);
-								Aio.remove(channelContext, interval + " ms没有收发消息");
-							}
-						}
-					} catch (Throwable e) {
-						log.error("", e);
-					} finally {
-						try {
-							readLock.unlock();
-
-							//							if (log.isWarnEnabled())
-							//							{
-							//								int groups = 0;
-							//								ObjWithLock<Set<ChannelContext<SessionContext, P, R>>> objwithlock = ServerGroupContext.this.getGroups().clients("g");
-							//								if (objwithlock != null)
-							//								{
-							//									groups = objwithlock.getObj().size();
-							//								}
-							//								
-							//								log.warn("[{}]:[{}]: 当前连接个数:{}, 群组(g):{}, 共接受连接:{}, 一共关闭过的连接个数:{}, 已接收消息:({}p)({}b), 已处理消息:{}p, 已发送消息:({}p)({}b)", SystemTimer.currentTimeMillis(), id,
-							//										set.size(), groups, serverGroupStat.getAccepted().get(), serverGroupStat.getClosed().get(), serverGroupStat.getReceivedPacket().get(),
-							//										serverGroupStat.getReceivedBytes().get(), serverGroupStat.getHandledPacket().get(), serverGroupStat.getSentPacket().get(),
-							//										serverGroupStat.getSentBytes().get());
-							//							}
-							//							
-							//							//打印各集合信息
-							//							if (log.isWarnEnabled())
-							//							{							
-							//								log.warn("clientNodes:{},connections:{},connecteds:{},closeds:{},groups:[channelmap:{}, groupmap:{}],users:{},syns:{}", 
-							//										ServerGroupContext.this.clientNodes.getMap().getObj().size(),
-							//										ServerGroupContext.this.connections.getSetWithLock().getObj().size(),
-							//										ServerGroupContext.this.connecteds.getSetWithLock().getObj().size(),
-							//										ServerGroupContext.this.closeds.getSetWithLock().getObj().size(),
-							//										ServerGroupContext.this.groups.getChannelmap().getObj().size(), ServerGroupContext.this.groups.getGroupmap().getObj().size(),
-							//										ServerGroupContext.this.users.getMap().getObj().size(),
-							//										ServerGroupContext.this.waitingResps.getMap().getObj().size()
-							//										);
-							//							}
-							//							
-							//							if (log.isInfoEnabled())
-							//							{
-							//								long end = SystemTimer.currentTimeMillis();
-							//								long iv1 = start1 - start;
-							//								long iv = end - start1;
-							//								log.info("检查心跳, 共{}个连接, 取锁耗时{}ms, 循环耗时{}ms, 心跳超时时间:{}ms", count, iv1, iv, heartbeatTimeout);
-							//							}
-							Thread.sleep(heartbeatTimeout);
-						} catch (Exception e) {
-							log.error("", e);
-						}
-					}
-				}
+			protected boolean onIdle(long interval) {
+				log.warn("{}, {} ms没有收发消息", this.channelContext, interval);
+				Aio.remove(this.channelContext, interval + " ms没有收发消息");
+				return false;
 			}
-		}, "tio-timer-checkheartbeat-" + id);
-		checkHeartbeatThread.setDaemon(true);
-		checkHeartbeatThread.setPriority(Thread.MIN_PRIORITY);
-		checkHeartbeatThread.start();
+		};
 	}
 
 	public ServerGroupStat getServerGroupStat() {
 		return serverGroupStat;
 	}
 
+	/**
+	 * @return the backlog
+	 */
+	public int getBacklog() {
+		return backlog;
+	}
+
+	/**
+	 * @param backlog <=0时使用系统默认值
+	 */
+	public void setBacklog(int backlog) {
+		this.backlog = backlog;
+	}
+
+	/**
+	 * @return the acceptorCount
+	 */
+	public int getAcceptorCount() {
+		return acceptorCount;
+	}
+
+	/**
+	 * 在AioServer.start()之前设置
+	 * @param acceptorCount 监听socket的数量，大于1时需要SO_REUSEPORT支持
+	 */
+	public void setAcceptorCount(int acceptorCount) {
+		this.acceptorCount = acceptorCount;
+	}
+
+	/**
+	 * @return 监听socket的参数
+	 */
+	public SocketOptionProfile getListenerSocketOptionProfile() {
+		return listenerSocketOptionProfile;
+	}
+
+	/**
+	 * 在AioServer.start()之前设置
+	 * @param listenerSocketOptionProfile 监听socket的参数
+	 */
+	public void setListenerSocketOptionProfile(SocketOptionProfile listenerSocketOptionProfile) {
+		this.listenerSocketOptionProfile = listenerSocketOptionProfile == null ? new SocketOptionProfile() : listenerSocketOptionProfile;
+	}
+
+	/**
+	 * @return 新连接的准入控制，在上面设置各种上限
+	 */
+	public ConnectionAdmission getConnectionAdmission() {
+		return connectionAdmission;
+	}
+
 	/**
 	 * @return the acceptCompletionHandler
 	 */
@@ -1,6 +1,6 @@
 package org.tio.server;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.tio.core.stat.GroupStat;
 
@@ -24,19 +24,64 @@ public class ServerGroupStat extends GroupStat {
 	/**
 	 * 接受了多少连接
 	 */
-	private AtomicLong accepted = new AtomicLong();
+	private LongAdder accepted = new LongAdder();
+
+	/**
+	 * 因为ip在黑名单中而拒绝的连接数
+	 */
+	private final LongAdder rejectedByBlacklist = new LongAdder();
+
+	/**
+	 * 因为连接总数达到上限而拒绝的连接数
+	 */
+	private final LongAdder rejectedByMaxConnections = new LongAdder();
+
+	/**
+	 * 因为ip的连接数达到上限而拒绝的连接数
+	 */
+	private final LongAdder rejectedByMaxConnectionsPerIp = new LongAdder();
+
+	/**
+	 * 因为ip新建连接太快而拒绝的连接数
+	 */
+	private final LongAdder rejectedByAcceptRate = new LongAdder();
+
+	/**
+	 * 
+	 * @param rejectReason
+	 * @return 因为rejectReason而拒绝的连接数
+	 */
+	public LongAdder getRejected(RejectReason rejectReason) {
+		switch (rejectReason) {
+		case BLACKLIST:
+			return rejectedByBlacklist;
+		case MAX_CONNECTIONS:
+			return rejectedByMaxConnections;
+		case MAX_CONNECTIONS_PER_IP:
+			return rejectedByMaxConnectionsPerIp;
+		default:
+			return rejectedByAcceptRate;
+		}
+	}
+
+	/**
+	 * @return 一共拒绝了多少连接
+	 */
+	public long getRejectedTotal() {
+		return rejectedByBlacklist.sum() + rejectedByMaxConnections.sum() + rejectedByMaxConnectionsPerIp.sum() + rejectedByAcceptRate.sum();
+	}
 
 	/**
 	 * @return the accepted
 	 */
-	public AtomicLong getAccepted() {
+	public LongAdder getAccepted() {
 		return accepted;
 	}
 
 	/**
 	 * @param accepted the accepted to set
 	 */
-	public void setAccepted(AtomicLong accepted) {
+	public void setAccepted(LongAdder accepted) {
 		this.accepted = accepted;
 	}
 
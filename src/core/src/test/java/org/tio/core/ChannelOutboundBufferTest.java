@@ -0,0 +1,310 @@
+package org.tio.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tio.core.intf.Packet;
+import org.tio.core.intf.PacketListener;
+import org.tio.server.ServerChannelContext;
+import org.tio.server.ServerGroupContext;
+
+/**
+ * ChannelOutboundBuffer和WriteCompletionHandler：一次write只写出一部分时，接着写剩下的，packet的数据全部写出去了才算发送成功
+ */
+public class ChannelOutboundBufferTest {
+
+	private ServerGroupContext<Object, Packet, Object> groupContext;
+
+	private PartialWriteChannel socketChannel;
+
+	private ChannelContext<Object, Packet, Object> channelContext;
+
+	/**
+	 * 按完成顺序记录发送结果，"下标:是否成功"
+	 */
+	private final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+
+	@Before
+	public void setUp() {
+		groupContext = new ServerGroupContext<Object, Packet, Object>(null, null);
+		socketChannel = new PartialWriteChannel(4);
+		channelContext = new ServerChannelContext<Object, Packet, Object>(groupContext, socketChannel);
+		channelContext.setClosed(false);
+	}
+
+	@After
+	public void tearDown() {
+		groupContext.getTioExecutor().shutdownNow();
+		groupContext.getGroupExecutor().shutdownNow();
+	}
+
+	private void add(final int index, String data) {
+		Packet packet = new Packet();
+		packet.setPacketListener(new PacketListener() {
+			@Override
+			public void onAfterSent(ChannelContext<?, ?, ?> channelContext, Packet packet, boolean isSentSuccess) throws Exception {
+				sent.add(index + ":" + isSentSuccess);
+			}
+		});
+		ChannelOutboundBuffer<Object, Packet, Object> outboundBuffer = channelContext.getOutboundBuffer();
+		outboundBuffer.incrementPendingPackets();
+		outboundBuffer.addMessage(ByteBuffer.wrap(data.getBytes()), packet, 1);
+	}
+
+	@Test
+	public void partialWritesSpanGatheredBuffers() {
+		ChannelOutboundBuffer<Object, Packet, Object> outboundBuffer = channelContext.getOutboundBuffer();
+		add(0, "aaaaa");
+		add(1, "bbbbbbb");
+		add(2, "ccc");
+		assertEquals(15, outboundBuffer.getPendingBytes());
+
+		outboundBuffer.flush();
+		assertTrue(outboundBuffer.isWriting());
+		assertEquals("一批中的3个buffer一次聚集写", 3, socketChannel.pending.length);
+
+		//aaaa
+		socketChannel.completePending();
+		assertTrue(sent.isEmpty());
+		assertEquals(11, outboundBuffer.getPendingBytes());
+
+		//a + bbb，第一个packet写完了
+		socketChannel.completePending();
+		assertEquals(Collections.singletonList("0:true"), sent);
+		assertEquals("从没写完的buffer接着写", 2, socketChannel.pending.length);
+
+		//bbbb
+		socketChannel.completePending();
+		assertEquals(2, sent.size());
+
+		//ccc，整批写完后写状态改回IDLE
+		socketChannel.completePending();
+		assertEquals(3, sent.size());
+		assertEquals("0:true", sent.get(0));
+		assertEquals("1:true", sent.get(1));
+		assertEquals("2:true", sent.get(2));
+		assertNull(socketChannel.pending);
+		assertFalse(outboundBuffer.isWriting());
+		assertEquals(0, outboundBuffer.getPendingBytes());
+		assertEquals(0, outboundBuffer.getPendingPackets());
+		assertEquals(4, socketChannel.writeCount);
+		assertArrayEquals("aaaaabbbbbbbccc".getBytes(), socketChannel.written.toByteArray());
+	}
+
+	@Test
+	public void messagesAddedWhileWritingGoToNextBatch() {
+		ChannelOutboundBuffer<Object, Packet, Object> outboundBuffer = channelContext.getOutboundBuffer();
+		add(0, "aaaaaa");
+		outboundBuffer.flush();
+		assertEquals(1, socketChannel.writeCount);
+
+		//正在写，flush()不会发起第二个写操作
+		add(1, "bb");
+		outboundBuffer.flush();
+		assertEquals(1, socketChannel.writeCount);
+
+		socketChannel.completePending();
+		socketChannel.completePending();
+		assertEquals(Collections.singletonList("0:true"), sent);
+
+		//上一批写完后由写回调直接取下一批
+		assertEquals(1, socketChannel.pending.length);
+		socketChannel.completePending();
+		assertEquals(2, sent.size());
+		assertFalse(outboundBuffer.isWriting());
+		assertArrayEquals("aaaaaabb".getBytes(), socketChannel.written.toByteArray());
+	}
+
+	@Test
+	public void withoutGatheringWriteBatchIsMerged() {
+		groupContext.setGatheringWrite(false);
+		ChannelOutboundBuffer<Object, Packet, Object> outboundBuffer = channelContext.getOutboundBuffer();
+		add(0, "aaa");
+		add(1, "bbbbb");
+		outboundBuffer.flush();
+		assertEquals(1, socketChannel.pending.length);
+
+		//aaab：合并后的buffer没写完，两个packet都不算发送成功
+		socketChannel.completePending();
+		assertTrue(sent.isEmpty());
+
+		socketChannel.completePending();
+		assertEquals(2, sent.size());
+		assertFalse(outboundBuffer.isWriting());
+		assertEquals(0, outboundBuffer.getPendingPackets());
+		assertArrayEquals("aaabbbbb".getBytes(), socketChannel.written.toByteArray());
+	}
+
+	@Test
+	public void clearFailsMessagesNotYetWritten() {
+		ChannelOutboundBuffer<Object, Packet, Object> outboundBuffer = channelContext.getOutboundBuffer();
+		add(0, "aa");
+		add(1, "bb");
+		outboundBuffer.clear();
+		assertEquals(2, sent.size());
+		assertEquals("0:false", sent.get(0));
+		assertEquals("1:false", sent.get(1));
+		assertEquals(0, outboundBuffer.getPendingBytes());
+		assertEquals(0, outboundBuffer.getPendingPackets());
+		assertEquals(0, socketChannel.writeCount);
+	}
+
+	/**
+	 * 每次write最多写出maxBytesPerWrite个字节，写操作挂起，由completePending()完成
+	 */
+	private static class PartialWriteChannel extends AsynchronousSocketChannel {
+		private final int maxBytesPerWrite;
+
+		private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+		private int writeCount = 0;
+
+		/**
+		 * 挂起的写操作中还没写完的buffer
+		 */
+		private ByteBuffer[] pending;
+
+		private Runnable completion;
+
+		private PartialWriteChannel(int maxBytesPerWrite) {
+			super(null);
+			this.maxBytesPerWrite = maxBytesPerWrite;
+		}
+
+		private void completePending() {
+			assertTrue("没有挂起的写操作", completion != null);
+			Runnable completion = this.completion;
+			this.completion = null;
+			this.pending = null;
+			completion.run();
+		}
+
+		@Override
+		public <A> void write(final ByteBuffer[] srcs, final int offset, final int length, long timeout, TimeUnit unit, final A attachment,
+				final CompletionHandler<Long, ? super A> handler) {
+			assertNull("同一时刻只能有一个写操作", completion);
+			writeCount++;
+			pending = new ByteBuffer[length];
+			System.arraycopy(srcs, offset, pending, 0, length);
+			completion = new Runnable() {
+				@Override
+				public void run() {
+					long bytes = 0;
+					for (int i = offset; i < offset + length && bytes < maxBytesPerWrite; i++) {
+						ByteBuffer src = srcs[i];
+						while (src.hasRemaining() && bytes < maxBytesPerWrite) {
+							written.write(src.get());
+							bytes++;
+						}
+					}
+					handler.completed(bytes, attachment);
+				}
+			};
+		}
+
+		@Override
+		public <A> void write(ByteBuffer src, long timeout, TimeUnit unit, A attachment, CompletionHandler<Integer, ? super A> handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Future<Integer> write(ByteBuffer src) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <A> void read(ByteBuffer dst, long timeout, TimeUnit unit, A attachment, CompletionHandler<Integer, ? super A> handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Future<Integer> read(ByteBuffer dst) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <A> void read(ByteBuffer[] dsts, int offset, int length, long timeout, TimeUnit unit, A attachment, CompletionHandler<Long, ? super A> handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <A> void connect(SocketAddress remote, A attachment, CompletionHandler<Void, ? super A> handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Future<Void> connect(SocketAddress remote) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public AsynchronousSocketChannel bind(SocketAddress local) throws IOException {
+			return this;
+		}
+
+		@Override
+		public <T> AsynchronousSocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+			return this;
+		}
+
+		@Override
+		public <T> T getOption(SocketOption<T> name) throws IOException {
+			return null;
+		}
+
+		@Override
+		public Set<SocketOption<?>> supportedOptions() {
+			return Collections.emptySet();
+		}
+
+		@Override
+		public AsynchronousSocketChannel shutdownInput() throws IOException {
+			return this;
+		}
+
+		@Override
+		public AsynchronousSocketChannel shutdownOutput() throws IOException {
+			return this;
+		}
+
+		@Override
+		public SocketAddress getRemoteAddress() throws IOException {
+			return new InetSocketAddress("127.0.0.1", 10001);
+		}
+
+		@Override
+		public SocketAddress getLocalAddress() throws IOException {
+			return new InetSocketAddress("127.0.0.1", 10000);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package org.tio.core.benchmark;
+
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import org.tio.core.ChannelContext;
+import org.tio.core.GroupContext;
+import org.tio.core.intf.Packet;
+import org.tio.core.maintain.MaintainUtils;
+import org.tio.server.ServerChannelContext;
+import org.tio.server.ServerGroupContext;
+
+/**
+ * 连接风暴：多个线程同时大量创建ChannelContext(相当于accept之后的那一步)，再从GroupContext中删除<br>
+ * eager: 模拟以前的构造过程，UUID.randomUUID() + 立即创建decode/handler/send任务、closeLock和trace文件名<br>
+ * lazy: 现在的构造过程，id用IdGenerator，上述对象第一次用到时才创建<br>
+ * 放在测试代码中，不会打进tio-core.jar；运行：mvn test-compile -Dmaven.test.skip=false，再java -cp target/classes:target/test-classes:<依赖> org.tio.core.benchmark.ConnectStormBenchmark [threads] [connectionsPerThread] [rounds]
+ */
+public class ConnectStormBenchmark {
+
+	private static volatile long blackhole = 0;
+
+	private static class Result {
+		private long elapsedNanos;
+		private long[] latencies;
+	}
+
+	private static ChannelContext<Object, Packet, Object> connect(GroupContext<Object, Packet, Object> groupContext, boolean eager) {
+		ChannelContext<Object, Packet, Object> channelContext = new ServerChannelContext<Object, Packet, Object>(groupContext, (AsynchronousSocketChannel) null);
+		if (eager) {
+			blackhole += UUID.randomUUID().toString().length();
+			blackhole += channelContext.getDecodeRunnable().hashCode();
+			blackhole += channelContext.getHandlerRunnable().runningLock().hashCode();
+			blackhole += channelContext.getSendRunnable().runningLock().hashCode();
+			blackhole += channelContext.getCloseLock().hashCode();
+			blackhole += channelContext.getClientNodeTraceFilename().length();
+		}
+		return channelContext;
+	}
+
+	private static Result run(final GroupContext<Object, Packet, Object> groupContext, final int threads, final int connectionsPerThread, final boolean eager)
+			throws InterruptedException {
+		final long[][] latencies = new long[threads][connectionsPerThread];
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final CountDownLatch endLatch = new CountDownLatch(threads);
+
+		for (int t = 0; t < threads; t++) {
+			final int index = t;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					List<ChannelContext<Object, Packet, Object>> channels = new ArrayList<ChannelContext<Object, Packet, Object>>(connectionsPerThread);
+					long[] mine = latencies[index];
+					try {
+						startLatch.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < connectionsPerThread; i++) {
+						long t0 = System.nanoTime();
+						channels.add(connect(groupContext, eager));
+						mine[i] = System.nanoTime() - t0;
+					}
+					for (ChannelContext<Object, Packet, Object> channelContext : channels) {
+						MaintainUtils.removeFromMaintain(channelContext);
+					}
+					endLatch.countDown();
+				}
+			}, "storm-" + t);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		long start = System.nanoTime();
+		startLatch.countDown();
+		endLatch.await();
+		Result result = new Result();
+		result.elapsedNanos = System.nanoTime() - start;
+
+		result.latencies = new long[threads * connectionsPerThread];
+		for (int t = 0; t < threads; t++) {
+			System.arraycopy(latencies[t], 0, result.latencies, t * connectionsPerThread, connectionsPerThread);
+		}
+		Arrays.sort(result.latencies);
+		return result;
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		int idx = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+		return sorted[Math.max(idx, 0)];
+	}
+
+	private static void print(String name, Result result) {
+		long[] l = result.latencies;
+		System.out.printf("%-6s %10.0f conn/s(含删除), 构造耗时 p50:%7.2fus, p99:%8.2fus, p99.9:%8.2fus, max:%9.2fus%n", name, l.length * 1e9 / result.elapsedNanos,
+				percentile(l, 0.5) / 1000.0, percentile(l, 0.99) / 1000.0, percentile(l, 0.999) / 1000.0, l[l.length - 1] / 1000.0);
+	}
+
+	/**
+	 * @param args [threads] [connectionsPerThread] [rounds]
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int connectionsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 25000;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		GroupContext<Object, Packet, Object> groupContext = new ServerGroupContext<Object, Packet, Object>(null, null);
+		System.out.println("threads:" + threads + ", connectionsPerThread:" + connectionsPerThread + ", rounds:" + rounds);
+
+		//预热
+		run(groupContext, threads, connectionsPerThread, true);
+		run(groupContext, threads, connectionsPerThread, false);
+
+		for (int r = 0; r < rounds; r++) {
+			print("eager", run(groupContext, threads, connectionsPerThread, true));
+			print("lazy", run(groupContext, threads, connectionsPerThread, false));
+		}
+
+		System.out.println("blackhole:" + blackhole);
+		System.exit(0);
+	}
+}
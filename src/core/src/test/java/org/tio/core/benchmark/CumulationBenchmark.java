@@ -0,0 +1,155 @@
+package org.tio.core.benchmark;
+
+import java.nio.ByteBuffer;
+
+import org.tio.core.buffer.CumulationBuffer;
+import org.tio.core.buffer.PooledBufferAllocator;
+import org.tio.core.utils.ByteBufferUtils;
+
+/**
+ * 半包累积的性能对比：64KB的包被拆成1KB的分片到达<br>
+ * old: 以前DecodeRunnable的做法，每来一个分片就composite + copy<br>
+ * new: CumulationBuffer<br>
+ * 构建中没有JMH，这里只是手写的预热 + 计时，数字只用来比较old和new，不要当绝对值看<br>
+ * 放在测试代码中，不会打进tio-core.jar；运行：mvn test-compile -Dmaven.test.skip=false，再java -cp target/classes:target/test-classes:<依赖> org.tio.core.benchmark.CumulationBenchmark [frameSize] [segmentSize] [frames]
+ */
+public class CumulationBenchmark {
+
+	private static final int HEADER_LENGTH = 4;
+
+	private static volatile long blackhole = 0;
+
+	/**
+	 * 简单的 4字节长度 + 包体 解码，数据不够时返回-1
+	 * @param buffer
+	 * @return
+	 */
+	private static int decode(ByteBuffer buffer) {
+		if (buffer.remaining() < HEADER_LENGTH) {
+			return -1;
+		}
+		int bodyLength = buffer.getInt(buffer.position());
+		if (buffer.remaining() < HEADER_LENGTH + bodyLength) {
+			return -1;
+		}
+		buffer.position(buffer.position() + HEADER_LENGTH);
+		int sum = 0;
+		for (int i = 0; i < bodyLength; i += 64) {
+			sum += buffer.get(buffer.position() + i);
+		}
+		buffer.position(buffer.position() + bodyLength);
+		return sum;
+	}
+
+	private static ByteBuffer[] segments(int frameSize, int segmentSize) {
+		ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + frameSize);
+		frame.putInt(frameSize);
+		for (int i = 0; i < frameSize; i++) {
+			frame.put((byte) i);
+		}
+		frame.flip();
+
+		int count = (frame.remaining() + segmentSize - 1) / segmentSize;
+		ByteBuffer[] ret = new ByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			int len = Math.min(segmentSize, frame.remaining());
+			byte[] bs = new byte[len];
+			frame.get(bs);
+			ret[i] = ByteBuffer.wrap(bs);
+		}
+		return ret;
+	}
+
+	private static long runOld(ByteBuffer[] segments, int frames) {
+		ByteBuffer lastByteBuffer = null;
+		long decoded = 0;
+		for (int f = 0; f < frames; f++) {
+			for (ByteBuffer segment : segments) {
+				ByteBuffer byteBuffer = segment.duplicate();
+				if (lastByteBuffer != null) {
+					byteBuffer = ByteBufferUtils.composite(lastByteBuffer, byteBuffer);
+					lastByteBuffer = null;
+				}
+				while (true) {
+					int initPosition = byteBuffer.position();
+					int r = decode(byteBuffer);
+					if (r == -1) {
+						lastByteBuffer = ByteBufferUtils.copy(byteBuffer, initPosition, byteBuffer.limit());
+						break;
+					}
+					blackhole += r;
+					decoded++;
+					if (!byteBuffer.hasRemaining()) {
+						break;
+					}
+				}
+			}
+		}
+		return decoded;
+	}
+
+	private static long runNew(ByteBuffer[] segments, int frames, CumulationBuffer cumulationBuffer) {
+		long decoded = 0;
+		for (int f = 0; f < frames; f++) {
+			for (ByteBuffer segment : segments) {
+				ByteBuffer byteBuffer = segment.duplicate();
+				boolean isCumulated = !cumulationBuffer.isEmpty();
+				if (isCumulated) {
+					byteBuffer = cumulationBuffer.append(byteBuffer);
+				}
+				while (true) {
+					int initPosition = byteBuffer.position();
+					int r = decode(byteBuffer);
+					if (r == -1) {
+						byteBuffer.position(initPosition);
+						if (!isCumulated) {
+							cumulationBuffer.append(byteBuffer);
+						}
+						break;
+					}
+					blackhole += r;
+					decoded++;
+					if (!byteBuffer.hasRemaining()) {
+						if (isCumulated) {
+							cumulationBuffer.discardIfEmpty();
+						}
+						break;
+					}
+				}
+			}
+		}
+		return decoded;
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int frameSize = args.length > 0 ? Integer.parseInt(args[0]) : 64 * 1024;
+		int segmentSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		int frames = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+		ByteBuffer[] segments = segments(frameSize, segmentSize);
+		CumulationBuffer cumulationBuffer = new CumulationBuffer(new PooledBufferAllocator(false));
+
+		//预热
+		for (int i = 0; i < 5; i++) {
+			runOld(segments, frames / 10);
+			runNew(segments, frames / 10, cumulationBuffer);
+		}
+
+		for (int round = 1; round <= 5; round++) {
+			long start = System.nanoTime();
+			long oldDecoded = runOld(segments, frames);
+			long oldCost = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			long newDecoded = runNew(segments, frames, cumulationBuffer);
+			long newCost = System.nanoTime() - start;
+
+			System.out.println(String.format("round %d, frameSize:%d, segmentSize:%d, old: %d frames %.1f us/frame, new: %d frames %.1f us/frame", round, frameSize, segmentSize,
+					oldDecoded, oldCost / 1000.0 / frames, newDecoded, newCost / 1000.0 / frames));
+		}
+		System.out.println("blackhole:" + blackhole);
+	}
+}
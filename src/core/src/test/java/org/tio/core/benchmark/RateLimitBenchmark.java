@@ -0,0 +1,181 @@
+package org.tio.core.benchmark;
+
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.concurrent.CountDownLatch;
+
+import org.tio.core.ChannelContext;
+import org.tio.core.GroupContext;
+import org.tio.core.Node;
+import org.tio.core.intf.Packet;
+import org.tio.monitor.PacketRateLimiter;
+import org.tio.server.ServerGroupContext;
+
+/**
+ * 收包限流(PacketRateLimiter.acquire())给每个解码出来的包增加的开销<br>
+ * 多个线程模拟解码线程，每个线程轮流处理自己的一批连接，所有连接分布在少量ip上(同一个ip的桶被多个线程同时访问)<br>
+ * none: 不设置PacketRateLimiter，只有一次判空<br>
+ * channel: 每个连接的包数、字节数限制<br>
+ * all: 再加上每个ip的包数、字节数限制，速度足够大，不会超限<br>
+ * limited: 同all，但速度很小，绝大部分包超限<br>
+ * ns/packet按实际用到的CPU核数折算(线程数多于核数时，各线程的时间是分时共用的)<br>
+ * 放在测试代码中，不会打进tio-core.jar；运行：mvn test-compile -Dmaven.test.skip=false，再java -cp target/classes:target/test-classes:<依赖> org.tio.core.benchmark.RateLimitBenchmark [threads] [seconds]
+ */
+public class RateLimitBenchmark {
+
+	private static final int CHANNELS_PER_THREAD = 256;
+
+	private static final int IPS = 64;
+
+	private static final int PACKET_BYTES = 100;
+
+	private static volatile long blackhole = 0;
+
+	/**
+	 * 不需要真实socket的ChannelContext，clientNode由构造参数指定
+	 */
+	private static class BenchmarkChannelContext extends ChannelContext<Object, Packet, Object> {
+		private final Node node;
+
+		private BenchmarkChannelContext(GroupContext<Object, Packet, Object> groupContext, Node node) {
+			super(groupContext, (AsynchronousSocketChannel) null);
+			this.node = node;
+		}
+
+		@Override
+		public Node createClientNode(AsynchronousSocketChannel asynchronousSocketChannel) {
+			return node;
+		}
+
+		@Override
+		public Node getClientNode() {
+			return node;
+		}
+
+		@Override
+		public String toString() {
+			return node.toString();
+		}
+	}
+
+	/**
+	 *
+	 * @param limiter 为null表示不限流
+	 * @param channels 每个线程一组
+	 * @param seconds
+	 * @return 每个包的平均耗时(纳秒，按CPU核数折算)、每秒处理的包数和超限的包数
+	 * @throws InterruptedException
+	 */
+	private static double[] run(final PacketRateLimiter limiter, final BenchmarkChannelContext[][] channels, final int seconds)
+			throws InterruptedException {
+		final int threads = channels.length;
+		final long[] counts = new long[threads];
+		final long[] limiteds = new long[threads];
+		final long[] elapseds = new long[threads];
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final CountDownLatch endLatch = new CountDownLatch(threads);
+
+		for (int t = 0; t < threads; t++) {
+			final int index = t;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					BenchmarkChannelContext[] mine = channels[index];
+					try {
+						startLatch.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					long start = System.nanoTime();
+					long end = start + seconds * 1000000000L;
+					long count = 0;
+					long limited = 0;
+					while (true) {
+						//每批1024个包看一次时间
+						for (int i = 0; i < 1024; i++) {
+							ChannelContext<Object, Packet, Object> channelContext = mine[(int) (count++ & (CHANNELS_PER_THREAD - 1))];
+							if (limiter != null && limiter.acquire(channelContext, PACKET_BYTES) > 0) {
+								limited++;
+							}
+						}
+						long now = System.nanoTime();
+						if (now >= end) {
+							elapseds[index] = now - start;
+							break;
+						}
+					}
+					counts[index] = count;
+					limiteds[index] = limited;
+					endLatch.countDown();
+				}
+			}, "rate-limit-benchmark-" + t);
+			thread.start();
+		}
+
+		startLatch.countDown();
+		endLatch.await();
+
+		long elapsed = 0;
+		long count = 0;
+		long limited = 0;
+		for (int t = 0; t < threads; t++) {
+			elapsed += elapseds[t];
+			count += counts[t];
+			limited += limiteds[t];
+		}
+		blackhole += count;
+		double avgElapsed = (double) elapsed / threads;
+		int cpus = Math.min(threads, Runtime.getRuntime().availableProcessors());
+		return new double[] { avgElapsed * cpus / count, count * 1e9 / avgElapsed, limited };
+	}
+
+	private static void report(String name, PacketRateLimiter limiter, BenchmarkChannelContext[][] channels, int seconds) throws InterruptedException {
+		//先预热一轮
+		run(limiter, channels, 1);
+		double[] result = run(limiter, channels, seconds);
+		System.out.printf("%-8s %8.2f ns/packet, %8.2f M packets/s, limited:%d%n", name, result[0], result[1] / 1e6, (long) result[2]);
+	}
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		GroupContext<Object, Packet, Object> groupContext = new ServerGroupContext<Object, Packet, Object>(null, null);
+		BenchmarkChannelContext[][] channels = new BenchmarkChannelContext[threads][CHANNELS_PER_THREAD];
+		int port = 10000;
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < CHANNELS_PER_THREAD; i++) {
+				String ip = "10.0." + (i % IPS) + ".1";
+				channels[t][i] = new BenchmarkChannelContext(groupContext, new Node(ip, port++));
+			}
+		}
+		System.out.println("threads:" + threads + ", channels:" + threads * CHANNELS_PER_THREAD + ", ips:" + IPS + ", packet bytes:" + PACKET_BYTES);
+
+		report("none", null, channels, seconds);
+
+		PacketRateLimiter channelOnly = new PacketRateLimiter();
+		channelOnly.setChannelPacketRate(1e6, 10000);
+		channelOnly.setChannelByteRate(1e8, 1000000);
+		report("channel", channelOnly, channels, seconds);
+
+		PacketRateLimiter all = new PacketRateLimiter();
+		all.setChannelPacketRate(1e6, 10000);
+		all.setChannelByteRate(1e8, 1000000);
+		all.setIpPacketRate(1e7, 100000);
+		all.setIpByteRate(1e9, 10000000);
+		report("all", all, channels, seconds);
+
+		PacketRateLimiter limited = new PacketRateLimiter();
+		limited.setChannelPacketRate(1000, 100);
+		limited.setChannelByteRate(100000, 10000);
+		limited.setIpPacketRate(10000, 1000);
+		limited.setIpByteRate(1000000, 100000);
+		report("limited", limited, channels, seconds);
+
+		System.out.println("blackhole:" + blackhole);
+		System.exit(0);
+	}
+}
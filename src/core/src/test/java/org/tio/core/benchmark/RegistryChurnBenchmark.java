@@ -0,0 +1,323 @@
+package org.tio.core.benchmark;
+
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.collections4.bidimap.DualHashBidiMap;
+import org.tio.core.ChannelContext;
+import org.tio.core.GroupContext;
+import org.tio.core.Node;
+import org.tio.core.intf.Packet;
+import org.tio.core.maintain.ClientNodes;
+import org.tio.core.maintain.Ids;
+import org.tio.core.maintain.Users;
+import org.tio.server.ServerGroupContext;
+
+/**
+ * 连接建立/关闭时ids、clientNodes、users三张表的维护开销<br>
+ * 每个op = 一次建立(3次bind) + 一次按ip:port查找 + 一次关闭(3次unbind)<br>
+ * old: 以前的实现，HashMap/DualHashBidiMap + 全局读写锁，key为"ip:port"字符串<br>
+ * new: ConcurrentHashMap / 按long key分段加锁<br>
+ * 先按固定速率(默认50000 ops/s)跑，统计每个op的耗时分布；再不限速跑，看最大吞吐<br>
+ * 放在测试代码中，不会打进tio-core.jar；运行：mvn test-compile -Dmaven.test.skip=false，再java -cp target/classes:target/test-classes:<依赖> org.tio.core.benchmark.RegistryChurnBenchmark [threads] [opsPerSecond] [seconds]
+ */
+public class RegistryChurnBenchmark {
+
+	private static final int CHANNELS_PER_THREAD = 4096;
+
+	private static final int USERS = 10000;
+
+	private static volatile long blackhole = 0;
+
+	private static interface Registry {
+		void connect(ChannelContext<Object, Packet, Object> channelContext, String userid);
+
+		ChannelContext<Object, Packet, Object> find(String ip, int port);
+
+		void close(ChannelContext<Object, Packet, Object> channelContext);
+	}
+
+	/**
+	 * 以前的实现
+	 */
+	private static class OldRegistry implements Registry {
+		private final ReentrantReadWriteLock idsLock = new ReentrantReadWriteLock();
+		private final HashMap<String, ChannelContext<Object, Packet, Object>> ids = new HashMap<>();
+		private final ReentrantReadWriteLock clientNodesLock = new ReentrantReadWriteLock();
+		private final DualHashBidiMap<String, ChannelContext<Object, Packet, Object>> clientNodes = new DualHashBidiMap<>();
+		private final ReentrantReadWriteLock usersLock = new ReentrantReadWriteLock();
+		private final DualHashBidiMap<String, ChannelContext<Object, Packet, Object>> users = new DualHashBidiMap<>();
+
+		@Override
+		public void connect(ChannelContext<Object, Packet, Object> channelContext, String userid) {
+			idsLock.writeLock().lock();
+			try {
+				ids.put(channelContext.getId(), channelContext);
+			} finally {
+				idsLock.writeLock().unlock();
+			}
+			Node node = channelContext.getClientNode();
+			String key = node.getIp() + ":" + node.getPort();
+			clientNodesLock.writeLock().lock();
+			try {
+				clientNodes.put(key, channelContext);
+			} finally {
+				clientNodesLock.writeLock().unlock();
+			}
+			usersLock.writeLock().lock();
+			try {
+				users.put(userid, channelContext);
+			} finally {
+				usersLock.writeLock().unlock();
+			}
+		}
+
+		@Override
+		public ChannelContext<Object, Packet, Object> find(String ip, int port) {
+			String key = ip + ":" + port;
+			clientNodesLock.readLock().lock();
+			try {
+				return clientNodes.get(key);
+			} finally {
+				clientNodesLock.readLock().unlock();
+			}
+		}
+
+		@Override
+		public void close(ChannelContext<Object, Packet, Object> channelContext) {
+			idsLock.writeLock().lock();
+			try {
+				ids.remove(channelContext.getId());
+			} finally {
+				idsLock.writeLock().unlock();
+			}
+			clientNodesLock.writeLock().lock();
+			try {
+				clientNodes.removeValue(channelContext);
+			} finally {
+				clientNodesLock.writeLock().unlock();
+			}
+			usersLock.writeLock().lock();
+			try {
+				users.removeValue(channelContext);
+			} finally {
+				usersLock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * 现在的实现
+	 */
+	private static class NewRegistry implements Registry {
+		private final Ids<Object, Packet, Object> ids = new Ids<>();
+		private final ClientNodes<Object, Packet, Object> clientNodes = new ClientNodes<>();
+		private final Users<Object, Packet, Object> users = new Users<>();
+
+		@Override
+		public void connect(ChannelContext<Object, Packet, Object> channelContext, String userid) {
+			ids.bind(channelContext);
+			clientNodes.put(channelContext);
+			users.bind(userid, channelContext);
+		}
+
+		@Override
+		public ChannelContext<Object, Packet, Object> find(String ip, int port) {
+			return clientNodes.find(ip, port);
+		}
+
+		@Override
+		public void close(ChannelContext<Object, Packet, Object> channelContext) {
+			ids.unbind(channelContext);
+			clientNodes.remove(channelContext);
+			users.unbind(channelContext);
+		}
+	}
+
+	/**
+	 * 不需要真实socket的ChannelContext，clientNode由构造参数指定
+	 */
+	private static class BenchmarkChannelContext extends ChannelContext<Object, Packet, Object> {
+		private final Node node;
+
+		private BenchmarkChannelContext(GroupContext<Object, Packet, Object> groupContext, Node node) {
+			super(groupContext, (AsynchronousSocketChannel) null);
+			this.node = node;
+		}
+
+		@Override
+		public Node createClientNode(AsynchronousSocketChannel asynchronousSocketChannel) {
+			return node;
+		}
+
+		@Override
+		public Node getClientNode() {
+			return node;
+		}
+
+		@Override
+		public String toString() {
+			return node.toString();
+		}
+	}
+
+	private static class Result {
+		private long ops;
+		private long elapsedNanos;
+		private long[] latencies;
+	}
+
+	/**
+	 *
+	 * @param registry
+	 * @param channels 每个线程一组
+	 * @param userids
+	 * @param opsPerSecond 总速率，<=0表示不限速
+	 * @param seconds
+	 * @return
+	 * @throws InterruptedException
+	 */
+	private static Result run(final Registry registry, final BenchmarkChannelContext[][] channels, final String[] userids, long opsPerSecond,
+			final int seconds) throws InterruptedException {
+		final int threads = channels.length;
+		final long intervalNanos = opsPerSecond <= 0 ? 0 : 1000000000L * threads / opsPerSecond;
+		final long maxOpsPerThread = opsPerSecond <= 0 ? 100000000L : opsPerSecond * seconds / threads;
+		final long[][] latencies = new long[threads][];
+		final long[] counts = new long[threads];
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final CountDownLatch endLatch = new CountDownLatch(threads);
+
+		for (int t = 0; t < threads; t++) {
+			final int index = t;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					BenchmarkChannelContext[] mine = channels[index];
+					long[] samples = new long[(int) Math.min(maxOpsPerThread, 1 << 22)];
+					try {
+						startLatch.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					long start = System.nanoTime();
+					long end = start + seconds * 1000000000L;
+					long i = 0;
+					long sum = 0;
+					while (i < maxOpsPerThread) {
+						long now = System.nanoTime();
+						if (intervalNanos > 0) {
+							long scheduled = start + i * intervalNanos;
+							while (now < scheduled) {
+								LockSupport.parkNanos(scheduled - now);
+								now = System.nanoTime();
+							}
+						} else if (now >= end) {
+							break;
+						}
+
+						ChannelContext<Object, Packet, Object> channelContext = mine[(int) (i % mine.length)];
+						Node node = channelContext.getClientNode();
+						long t0 = System.nanoTime();
+						registry.connect(channelContext, userids[(int) ((i * 31 + index) % userids.length)]);
+						ChannelContext<Object, Packet, Object> found = registry.find(node.getIp(), node.getPort());
+						registry.close(channelContext);
+						long t1 = System.nanoTime();
+						if (found != null) {
+							sum++;
+						}
+						if (i < samples.length) {
+							samples[(int) i] = t1 - t0;
+						}
+						i++;
+					}
+					latencies[index] = Arrays.copyOf(samples, (int) Math.min(i, samples.length));
+					counts[index] = i;
+					blackhole += sum;
+					endLatch.countDown();
+				}
+			}, "churn-" + t);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		long start = System.nanoTime();
+		startLatch.countDown();
+		endLatch.await();
+		Result result = new Result();
+		result.elapsedNanos = System.nanoTime() - start;
+
+		int total = 0;
+		for (int t = 0; t < threads; t++) {
+			result.ops += counts[t];
+			total += latencies[t].length;
+		}
+		result.latencies = new long[total];
+		int pos = 0;
+		for (int t = 0; t < threads; t++) {
+			System.arraycopy(latencies[t], 0, result.latencies, pos, latencies[t].length);
+			pos += latencies[t].length;
+		}
+		Arrays.sort(result.latencies);
+		return result;
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int idx = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+		return sorted[Math.max(idx, 0)];
+	}
+
+	private static void print(String name, Result result) {
+		long[] l = result.latencies;
+		System.out.printf("%-4s %10.0f ops/s, p50:%7.2fus, p99:%8.2fus, p99.9:%8.2fus, max:%9.2fus%n", name, result.ops * 1e9 / result.elapsedNanos,
+				percentile(l, 0.5) / 1000.0, percentile(l, 0.99) / 1000.0, percentile(l, 0.999) / 1000.0, (l.length == 0 ? 0 : l[l.length - 1]) / 1000.0);
+	}
+
+	/**
+	 * @param args [threads] [opsPerSecond] [seconds]
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		long opsPerSecond = args.length > 1 ? Long.parseLong(args[1]) : 50000;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		GroupContext<Object, Packet, Object> groupContext = new ServerGroupContext<Object, Packet, Object>(null, null);
+		BenchmarkChannelContext[][] channels = new BenchmarkChannelContext[threads][CHANNELS_PER_THREAD];
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < CHANNELS_PER_THREAD; i++) {
+				int n = t * CHANNELS_PER_THREAD + i;
+				Node node = new Node("10." + (n >>> 16 & 0xFF) + "." + (n >>> 8 & 0xFF) + "." + (n & 0xFF), 1024 + (n % 50000));
+				channels[t][i] = new BenchmarkChannelContext(groupContext, node);
+				groupContext.ids.unbind(channels[t][i]);
+			}
+		}
+		String[] userids = new String[USERS];
+		for (int i = 0; i < USERS; i++) {
+			userids[i] = "user" + i;
+		}
+
+		System.out.println("threads:" + threads + ", channels:" + threads * CHANNELS_PER_THREAD + ", users:" + USERS);
+
+		//预热
+		run(new OldRegistry(), channels, userids, 0, 2);
+		run(new NewRegistry(), channels, userids, 0, 2);
+
+		System.out.println("-- 固定速率 " + opsPerSecond + " ops/s, " + seconds + "s");
+		print("old", run(new OldRegistry(), channels, userids, opsPerSecond, seconds));
+		print("new", run(new NewRegistry(), channels, userids, opsPerSecond, seconds));
+
+		System.out.println("-- 不限速, " + seconds + "s");
+		print("old", run(new OldRegistry(), channels, userids, 0, seconds));
+		print("new", run(new NewRegistry(), channels, userids, 0, seconds));
+
+		System.out.println("blackhole:" + blackhole);
+		System.exit(0);
+	}
+}
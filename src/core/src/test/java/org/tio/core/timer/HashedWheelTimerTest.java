@@ -0,0 +1,138 @@
+package org.tio.core.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tio.core.timer.intf.Timeout;
+import org.tio.core.timer.intf.TimerTask;
+
+/**
+ * HashedWheelTimer的单元测试<br>
+ * 时间轮用10毫秒一格、8格(一圈80毫秒)，这样几百毫秒的延时就要转好几圈
+ */
+public class HashedWheelTimerTest {
+
+	private static final long TICK_MS = 10;
+
+	private static final int TICKS_PER_WHEEL = 8;
+
+	private HashedWheelTimer timer;
+
+	@Before
+	public void setUp() {
+		timer = new HashedWheelTimer("test-wheel-timer", TICK_MS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+	}
+
+	@After
+	public void tearDown() {
+		timer.stop();
+	}
+
+	/**
+	 * 记录从调度到执行经过的纳秒数
+	 */
+	private static class ElapsedTask implements TimerTask {
+		private final long scheduledAt = System.nanoTime();
+		private final AtomicLong elapsed = new AtomicLong(-1);
+		private final CountDownLatch latch;
+
+		private ElapsedTask(CountDownLatch latch) {
+			this.latch = latch;
+		}
+
+		@Override
+		public void run(Timeout timeout) throws Exception {
+			elapsed.set(System.nanoTime() - scheduledAt);
+			latch.countDown();
+		}
+	}
+
+	@Test
+	public void multiRoundDelaysNeverFireEarly() throws Exception {
+		long[] delays = { 0, 5, 30, 79, 80, 81, 170, 250, 400 };
+		CountDownLatch latch = new CountDownLatch(delays.length);
+		ElapsedTask[] tasks = new ElapsedTask[delays.length];
+		for (int i = 0; i < delays.length; i++) {
+			tasks[i] = new ElapsedTask(latch);
+			timer.newTimeout(tasks[i], delays[i], TimeUnit.MILLISECONDS);
+		}
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < delays.length; i++) {
+			long elapsed = tasks[i].elapsed.get();
+			assertTrue("delay " + delays[i] + "ms fired after " + elapsed + "ns", elapsed >= TimeUnit.MILLISECONDS.toNanos(delays[i]));
+		}
+		assertEquals(0, timer.getPendingCount());
+	}
+
+	/**
+	 * 30ms和110ms落在同一格，后者要多转一圈
+	 */
+	@Test
+	public void sameSlotDifferentRounds() throws Exception {
+		final CountDownLatch firstLatch = new CountDownLatch(1);
+		final CountDownLatch secondLatch = new CountDownLatch(1);
+		final AtomicBoolean secondExpiredWithFirst = new AtomicBoolean(true);
+		final Timeout second = timer.newTimeout(new ElapsedTask(secondLatch), 30 + TICK_MS * TICKS_PER_WHEEL, TimeUnit.MILLISECONDS);
+		timer.newTimeout(new TimerTask() {
+			@Override
+			public void run(Timeout timeout) throws Exception {
+				secondExpiredWithFirst.set(second.isExpired());
+				firstLatch.countDown();
+			}
+		}, 30, TimeUnit.MILLISECONDS);
+
+		assertTrue(firstLatch.await(5, TimeUnit.SECONDS));
+		assertFalse(secondExpiredWithFirst.get());
+		assertTrue(secondLatch.await(5, TimeUnit.SECONDS));
+		assertTrue(second.isExpired());
+	}
+
+	@Test
+	public void cancelledTaskNeverRuns() throws Exception {
+		CountDownLatch cancelledLatch = new CountDownLatch(1);
+		Timeout cancelled = timer.newTimeout(new ElapsedTask(cancelledLatch), 100, TimeUnit.MILLISECONDS);
+		assertEquals(1, timer.getPendingCount());
+
+		assertTrue(cancelled.cancel());
+		assertFalse(cancelled.cancel());
+		assertTrue(cancelled.isCancelled());
+		assertFalse(cancelled.isExpired());
+		assertEquals(0, timer.getPendingCount());
+
+		//比被取消的任务晚的任务执行了，被取消的任务肯定已经错过
+		CountDownLatch laterLatch = new CountDownLatch(1);
+		timer.newTimeout(new ElapsedTask(laterLatch), 200, TimeUnit.MILLISECONDS);
+		assertTrue(laterLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(1, cancelledLatch.getCount());
+		assertFalse(cancelled.isExpired());
+	}
+
+	@Test
+	public void cancelAfterExpiryFails() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		Timeout timeout = timer.newTimeout(new ElapsedTask(latch), 0, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+		assertTrue(timeout.isExpired());
+		assertFalse(timeout.cancel());
+		assertFalse(timeout.isCancelled());
+		assertEquals(0, timer.getPendingCount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void newTimeoutAfterStopFails() {
+		timer.stop();
+		assertTrue(timer.isStopped());
+		timer.newTimeout(new ElapsedTask(new CountDownLatch(1)), 10, TimeUnit.MILLISECONDS);
+	}
+}
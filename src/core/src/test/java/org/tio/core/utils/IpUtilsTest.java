@@ -0,0 +1,199 @@
+package org.tio.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+import org.junit.Test;
+
+/**
+ * IpUtils的单元测试，重点是IPv6的"::"展开和CIDR掩码
+ */
+public class IpUtilsTest {
+
+	private static long[] parse(String ip) {
+		long[] out = new long[2];
+		assertTrue(ip, IpUtils.parse(ip, out));
+		return out;
+	}
+
+	private static void assertAddr(String ip, long hi, long lo) {
+		long[] out = parse(ip);
+		assertEquals(ip + " hi", hi, out[0]);
+		assertEquals(ip + " lo", lo, out[1]);
+	}
+
+	private static void assertInvalid(String ip) {
+		assertFalse(ip, IpUtils.parse(ip, new long[2]));
+	}
+
+	/**
+	 * 用jdk的解析结果做对照，4字节的结果按IPv4-mapped地址处理
+	 */
+	private static long[] jdk(String ip) throws Exception {
+		InetAddress addr = InetAddress.getByName(ip);
+		byte[] bytes = addr.getAddress();
+		long[] out = new long[2];
+		if (addr instanceof Inet4Address) {
+			out[1] = IpUtils.IPV4_MAPPED_PREFIX;
+			for (byte b : bytes) {
+				out[1] = (out[1] & ~0xFFFFFFFFL) | (((out[1] << 8) | (b & 0xFF)) & 0xFFFFFFFFL);
+			}
+			return out;
+		}
+		for (int i = 0; i < 16; i++) {
+			out[i >> 3] = (out[i >> 3] << 8) | (bytes[i] & 0xFF);
+		}
+		return out;
+	}
+
+	@Test
+	public void ipv4IsMapped() {
+		assertAddr("192.168.1.1", 0, 0xFFFFC0A80101L);
+		assertAddr("0.0.0.0", 0, 0xFFFF00000000L);
+		assertAddr("255.255.255.255", 0, 0xFFFFFFFFFFFFL);
+		assertEquals("10.0.0.1", IpUtils.toString(0, 0xFFFF0A000001L));
+	}
+
+	@Test
+	public void invalidIpv4() {
+		assertInvalid(null);
+		assertInvalid("");
+		assertInvalid("1.2.3");
+		assertInvalid("1.2.3.4.5");
+		assertInvalid("256.0.0.1");
+		assertInvalid("1..2.3");
+		assertInvalid("1.2.3.");
+		assertInvalid(".1.2.3");
+		assertInvalid("0001.2.3.4");
+		assertInvalid("1.2.3.a");
+		assertEquals(-1, IpUtils.parseIpv4("1.2.3.4", 0, 6));
+		assertEquals(0x01020304L, IpUtils.parseIpv4("[1.2.3.4]", 1, 8));
+	}
+
+	@Test
+	public void doubleColonExpansion() {
+		assertAddr("::", 0, 0);
+		assertAddr("::1", 0, 1);
+		assertAddr("1::", 0x0001000000000000L, 0);
+		assertAddr("2001:db8::1", 0x20010DB800000000L, 1);
+		assertAddr("2001:db8::", 0x20010DB800000000L, 0);
+		assertAddr("::2:3:4:5:6:7:8", 0x0000000200030004L, 0x0005000600070008L);
+		assertAddr("1:2:3:4:5:6:7::", 0x0001000200030004L, 0x0005000600070000L);
+		assertAddr("1::8", 0x0001000000000000L, 0x0000000000000008L);
+		assertAddr("1:2:3:4::5:6", 0x0001000200030004L, 0x0000000000050006L);
+		assertAddr("1:2:3::4:5:6:7", 0x0001000200030000L, 0x0004000500060007L);
+		assertAddr("1:2:3:4:5::6:7", 0x0001000200030004L, 0x0005000000060007L);
+		assertAddr("fe80::1:2", 0xFE80000000000000L, 0x0000000000010002L);
+		assertAddr("1:2:3:4:5:6:7:8", 0x0001000200030004L, 0x0005000600070008L);
+		assertAddr("ABCD:EF01::", 0xABCDEF0100000000L, 0);
+	}
+
+	@Test
+	public void embeddedIpv4BracketsAndZone() {
+		assertAddr("::ffff:1.2.3.4", 0, 0xFFFF01020304L);
+		assertAddr("::1.2.3.4", 0, 0x01020304L);
+		assertAddr("64:ff9b::192.0.2.33", 0x0064FF9B00000000L, 0xC0000221L);
+		assertAddr("1:2:3:4:5:6:1.2.3.4", 0x0001000200030004L, 0x0005000601020304L);
+		assertAddr("[2001:db8::1]", 0x20010DB800000000L, 1);
+		assertAddr("fe80::1%eth0", 0xFE80000000000000L, 1);
+		assertAddr("[fe80::1%eth0]", 0xFE80000000000000L, 1);
+	}
+
+	@Test
+	public void invalidIpv6() {
+		assertInvalid(":");
+		assertInvalid(":::");
+		assertInvalid("1::2::3");
+		assertInvalid("1:2:3:4:5:6:7");
+		assertInvalid("1:2:3:4:5:6:7:8:9");
+		assertInvalid("1:2:3:4:5:6:7:8::");
+		assertInvalid("::1:2:3:4:5:6:7:8");
+		assertInvalid("12345::");
+		assertInvalid("1:");
+		assertInvalid(":1");
+		assertInvalid("1:2:3:4:5:6:7:1.2.3.4");
+		assertInvalid("::1.2.3");
+		assertInvalid("g::1");
+		assertInvalid("[::1");
+	}
+
+	@Test
+	public void sameAsJdk() throws Exception {
+		String[] ips = { "::", "::1", "1::", "::ffff:1.2.3.4", "::1.2.3.4", "2001:db8::ff00:42:8329", "2001:db8:0:0:0:ff00:42:8329", "fe80::", "ff02::1:ff00:0",
+				"1:0:0:2::3", "1::2:0:0:3", "0:0:0:0:0:0:0:0", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", "8.8.8.8", "172.16.254.1" };
+		for (String ip : ips) {
+			long[] expected = jdk(ip);
+			long[] actual = parse(ip);
+			assertEquals(ip + " hi", expected[0], actual[0]);
+			assertEquals(ip + " lo", expected[1], actual[1]);
+		}
+	}
+
+	@Test
+	public void cidrMasksHostBits() {
+		long[] out = new long[2];
+		assertEquals(120, IpUtils.parseCidr("192.168.1.77/24", out));
+		assertEquals(0, out[0]);
+		assertEquals(0xFFFFC0A80100L, out[1]);
+
+		assertEquals(96, IpUtils.parseCidr("10.1.2.3/0", out));
+		assertEquals(0, out[0]);
+		assertEquals(0xFFFF00000000L, out[1]);
+
+		assertEquals(128, IpUtils.parseCidr("10.1.2.3", out));
+		assertEquals(0xFFFF0A010203L, out[1]);
+
+		assertEquals(32, IpUtils.parseCidr("2001:db8:1234::1/32", out));
+		assertEquals(0x20010DB800000000L, out[0]);
+		assertEquals(0, out[1]);
+
+		assertEquals(68, IpUtils.parseCidr("1:2:3:4:ffff::/68", out));
+		assertEquals(0x0001000200030004L, out[0]);
+		assertEquals(0xF000000000000000L, out[1]);
+
+		assertEquals(0, IpUtils.parseCidr(" ::1/0 ", out));
+		assertEquals(0, out[0]);
+		assertEquals(0, out[1]);
+	}
+
+	@Test
+	public void invalidCidr() {
+		long[] out = new long[2];
+		assertEquals(-1, IpUtils.parseCidr(null, out));
+		assertEquals(-1, IpUtils.parseCidr("1.2.3.4/33", out));
+		assertEquals(-1, IpUtils.parseCidr("1.2.3.4/-1", out));
+		assertEquals(-1, IpUtils.parseCidr("1.2.3.4/", out));
+		assertEquals(-1, IpUtils.parseCidr("::/129", out));
+		assertEquals(-1, IpUtils.parseCidr("::/x", out));
+		assertEquals(-1, IpUtils.parseCidr("1.2.3/8", out));
+	}
+
+	@Test
+	public void masksAtBoundaries() {
+		assertEquals(0, IpUtils.highMask(0));
+		assertEquals(0x8000000000000000L, IpUtils.highMask(1));
+		assertEquals(0xFFFFFFFFFFFFFFFEL, IpUtils.highMask(63));
+		assertEquals(-1L, IpUtils.highMask(64));
+		assertEquals(-1L, IpUtils.highMask(128));
+
+		assertEquals(0, IpUtils.lowMask(0));
+		assertEquals(0, IpUtils.lowMask(64));
+		assertEquals(0x8000000000000000L, IpUtils.lowMask(65));
+		assertEquals(0xFFFFFFFF00000000L, IpUtils.lowMask(96));
+		assertEquals(0xFFFFFFFFFFFFFFFEL, IpUtils.lowMask(127));
+		assertEquals(-1L, IpUtils.lowMask(128));
+	}
+
+	@Test
+	public void toStringRoundTrip() {
+		String[] ips = { "2001:db8:0:0:0:0:0:1", "0:0:0:0:0:0:0:0", "1.2.3.4", "ffff:0:0:0:0:0:0:ffff" };
+		for (String ip : ips) {
+			long[] out = parse(ip);
+			assertEquals(ip, IpUtils.toString(out[0], out[1]));
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package org.tio.core.utils.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.tio.core.utils.IpUtils;
+
+/**
+ * IpPrefixTrie的单元测试
+ */
+public class IpPrefixTrieTest {
+
+	private static boolean contains(IpPrefixTrie trie, String ip) {
+		long[] out = new long[2];
+		assertTrue(ip, IpUtils.parse(ip, out));
+		return trie.contains(out[0], out[1]);
+	}
+
+	@Test
+	public void empty() {
+		assertTrue(IpPrefixTrie.EMPTY.isEmpty());
+		assertEquals(0, IpPrefixTrie.EMPTY.size());
+		assertFalse(contains(IpPrefixTrie.EMPTY, "0.0.0.0"));
+		assertFalse(contains(IpPrefixTrie.EMPTY, "::"));
+	}
+
+	@Test
+	public void ipv4CidrEdges() {
+		IpPrefixTrie trie = new IpPrefixTrie.Builder().add("192.168.1.0/24").build();
+		assertEquals(1, trie.size());
+		assertTrue(contains(trie, "192.168.1.0"));
+		assertTrue(contains(trie, "192.168.1.255"));
+		assertTrue(contains(trie, "::ffff:192.168.1.9"));
+		assertFalse(contains(trie, "192.168.0.255"));
+		assertFalse(contains(trie, "192.168.2.0"));
+		//不是IPv4-mapped地址，低32位一样也不算
+		assertFalse(contains(trie, "::c0a8:109"));
+	}
+
+	@Test
+	public void ipv4AnyDoesNotMatchIpv6() {
+		IpPrefixTrie trie = new IpPrefixTrie.Builder().add("0.0.0.0/0").build();
+		assertTrue(contains(trie, "0.0.0.0"));
+		assertTrue(contains(trie, "255.255.255.255"));
+		assertFalse(contains(trie, "::1"));
+		assertFalse(contains(trie, "2001:db8::1"));
+
+		IpPrefixTrie all = new IpPrefixTrie.Builder().add("::/0").build();
+		assertTrue(contains(all, "1.2.3.4"));
+		assertTrue(contains(all, "2001:db8::1"));
+		assertTrue(contains(all, "::"));
+	}
+
+	@Test
+	public void singleAddressIsOneNode() {
+		IpPrefixTrie trie = new IpPrefixTrie.Builder().add("2001:db8::1").build();
+		assertEquals(1, trie.nodeCount());
+		assertTrue(contains(trie, "2001:db8::1"));
+		assertFalse(contains(trie, "2001:db8::2"));
+		assertFalse(contains(trie, "2001:db9::1"));
+	}
+
+	@Test
+	public void nestedAndDuplicatePrefixes() {
+		IpPrefixTrie trie = new IpPrefixTrie.Builder().add("10.0.0.0/8").add("10.1.0.0/16").add("10.0.0.0/8").add("2001:db8::/32").build();
+		assertEquals(3, trie.size());
+		assertTrue(contains(trie, "10.200.0.1"));
+		assertTrue(contains(trie, "10.1.2.3"));
+		assertFalse(contains(trie, "11.0.0.0"));
+		assertTrue(contains(trie, "2001:db8:ffff::"));
+		assertFalse(contains(trie, "2001:db7::"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidCidrThrows() {
+		new IpPrefixTrie.Builder().add("10.0.0.0/33");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidPrefixBitsThrows() {
+		new IpPrefixTrie.Builder().add(0, 0, 129);
+	}
+
+	/**
+	 * 随机前缀和随机地址，跟逐个比较掩码的结果对照
+	 */
+	@Test
+	public void sameAsLinearScan() {
+		Random random = new Random(20261018L);
+		for (int round = 0; round < 50; round++) {
+			int n = 1 + random.nextInt(40);
+			long[] his = new long[n];
+			long[] los = new long[n];
+			int[] bits = new int[n];
+			IpPrefixTrie.Builder builder = new IpPrefixTrie.Builder();
+			for (int i = 0; i < n; i++) {
+				bits[i] = random.nextInt(129);
+				//前缀集中在少数几个高位上，才会有足够多的地址命中
+				his[i] = ((long) random.nextInt(4) << 62 | random.nextLong() >>> 2) & IpUtils.highMask(bits[i]);
+				los[i] = random.nextLong() & IpUtils.lowMask(bits[i]);
+				builder.add(his[i], los[i], bits[i]);
+			}
+			IpPrefixTrie trie = builder.build();
+			assertTrue(trie.nodeCount() <= 1 + 128 * n);
+
+			for (int k = 0; k < 200; k++) {
+				long hi;
+				long lo;
+				if (k % 2 == 0) {
+					//从某个前缀派生，命中的概率大
+					int i = random.nextInt(n);
+					int flip = random.nextInt(129);
+					hi = his[i] | (random.nextLong() & ~IpUtils.highMask(bits[i]));
+					lo = los[i] | (random.nextLong() & ~IpUtils.lowMask(bits[i]));
+					if (flip < 64) {
+						hi ^= 1L << (63 - flip);
+					} else if (flip < 128) {
+						lo ^= 1L << (127 - flip);
+					}
+				} else {
+					hi = (long) random.nextInt(4) << 62 | random.nextLong() >>> 2;
+					lo = random.nextLong();
+				}
+				boolean expected = false;
+				for (int i = 0; i < n && !expected; i++) {
+					expected = ((hi & IpUtils.highMask(bits[i])) == his[i]) && ((lo & IpUtils.lowMask(bits[i])) == los[i]);
+				}
+				assertEquals(IpUtils.toString(hi, lo), expected, trie.contains(hi, lo));
+			}
+		}
+	}
+}
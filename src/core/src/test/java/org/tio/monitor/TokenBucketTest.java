@@ -0,0 +1,130 @@
+package org.tio.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TokenBucket的单元测试<br>
+ * 每秒10个令牌(每个令牌100毫秒)，容量5个；时间都显式传入，结果是确定的
+ */
+public class TokenBucketTest {
+
+	private static final long PERMIT_NANOS = 100000000L;
+
+	private TokenBucket bucket;
+
+	/**
+	 * 比创建桶晚1秒，桶肯定是满的
+	 */
+	private long now;
+
+	@Before
+	public void setUp() {
+		bucket = new TokenBucket(10, 5);
+		now = System.nanoTime() + 10 * PERMIT_NANOS;
+	}
+
+	@Test
+	public void burstThenRefill() {
+		assertTrue(bucket.isFull(now));
+		for (int i = 0; i < 5; i++) {
+			assertTrue("permit " + i, bucket.tryAcquire(1, now));
+		}
+		assertFalse(bucket.tryAcquire(1, now));
+		assertEquals(PERMIT_NANOS, bucket.nanosUntilAvailable(1, now));
+		assertEquals(3 * PERMIT_NANOS, bucket.nanosUntilAvailable(3, now));
+
+		assertFalse(bucket.tryAcquire(1, now + PERMIT_NANOS - 1));
+		assertTrue(bucket.tryAcquire(1, now + PERMIT_NANOS));
+		assertFalse(bucket.tryAcquire(1, now + PERMIT_NANOS));
+
+		//空闲再久也只能攒满burst个
+		long later = now + 100 * PERMIT_NANOS;
+		assertTrue(bucket.isFull(later));
+		assertEquals(0, bucket.nanosUntilAvailable(5, later));
+		assertFalse(bucket.tryAcquire(6, later));
+		assertTrue(bucket.tryAcquire(5, later));
+	}
+
+	@Test
+	public void tryAcquireIsAllOrNothing() {
+		assertFalse(bucket.tryAcquire(6, now));
+		assertTrue(bucket.isFull(now));
+
+		assertTrue(bucket.tryAcquire(3, now));
+		assertFalse(bucket.tryAcquire(3, now));
+		assertTrue(bucket.tryAcquire(2, now));
+		assertFalse(bucket.tryAcquire(1, now));
+	}
+
+	@Test
+	public void reserveOverdraftsAndRepays() {
+		assertEquals(0, bucket.reserve(4, now));
+		assertEquals(0, bucket.reserve(1, now));
+		assertEquals(3 * PERMIT_NANOS, bucket.reserve(3, now));
+		assertFalse(bucket.isFull(now));
+
+		//透支了3个，要再等1个令牌的时间才能取到下一个
+		assertEquals(4 * PERMIT_NANOS, bucket.nanosUntilAvailable(1, now));
+		assertFalse(bucket.tryAcquire(1, now + 3 * PERMIT_NANOS));
+		assertTrue(bucket.tryAcquire(1, now + 4 * PERMIT_NANOS));
+
+		assertFalse(bucket.isFull(now + 8 * PERMIT_NANOS));
+		assertTrue(bucket.isFull(now + 9 * PERMIT_NANOS));
+	}
+
+	@Test
+	public void reserveFromFullBucket() {
+		assertEquals(3 * PERMIT_NANOS, bucket.reserve(8, now));
+		assertFalse(bucket.tryAcquire(1, now + 3 * PERMIT_NANOS));
+		assertTrue(bucket.tryAcquire(1, now + 4 * PERMIT_NANOS));
+	}
+
+	@Test
+	public void concurrentAcquireNeverExceedsBurst() throws Exception {
+		final int threads = 8;
+		final AtomicInteger acquired = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < 1000; j++) {
+						if (bucket.tryAcquire(1, now)) {
+							acquired.incrementAndGet();
+						}
+					}
+				}
+			});
+			workers[i].start();
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		assertEquals(5, acquired.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsZeroRate() {
+		new TokenBucket(0, 5);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsZeroBurst() {
+		new TokenBucket(10, 0);
+	}
+}
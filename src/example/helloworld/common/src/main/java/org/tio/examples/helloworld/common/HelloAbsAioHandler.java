@@ -4,15 +4,19 @@ import java.nio.ByteBuffer;
 
 import org.tio.core.ChannelContext;
 import org.tio.core.GroupContext;
+import org.tio.core.PacketRecycler;
+import org.tio.core.buffer.PooledByteBuffer;
+import org.tio.core.buffer.intf.BufferAllocator;
 import org.tio.core.exception.AioDecodeException;
 import org.tio.core.intf.AioHandler;
+import org.tio.core.intf.BufferEncoder;
 
 /**
  * hello world版中服务器端和客户端的编码解码算法是一样的，所以抽象一个公共的父类出来
  * @author tanyaowu 
  *
  */
-public abstract class HelloAbsAioHandler implements AioHandler<Object, HelloPacket, Object>
+public abstract class HelloAbsAioHandler implements AioHandler<Object, HelloPacket, Object>, BufferEncoder<Object, HelloPacket, Object>
 {
 	/**
 	 * 编码：把业务消息包编码为可以发送的ByteBuffer
@@ -22,6 +26,35 @@ public abstract class HelloAbsAioHandler implements AioHandler<Object, HelloPack
 	 */
 	@Override
 	public ByteBuffer encode(HelloPacket packet, GroupContext<Object, HelloPacket, Object> groupContext, ChannelContext<Object, HelloPacket, Object> channelContext)
+	{
+		//创建一个新的bytebuffer
+		ByteBuffer buffer = ByteBuffer.allocate(encodedLength(packet));
+		write(packet, buffer, groupContext);
+		return buffer;
+	}
+
+	/**
+	 * 编码到从框架的池中借来的buffer中，单发时框架优先走这个方法，写完后buffer由框架还给池
+	 */
+	@Override
+	public PooledByteBuffer encode(HelloPacket packet, BufferAllocator allocator, GroupContext<Object, HelloPacket, Object> groupContext,
+			ChannelContext<Object, HelloPacket, Object> channelContext)
+	{
+		PooledByteBuffer pooledByteBuffer = allocator.allocate(encodedLength(packet));
+		write(packet, pooledByteBuffer.getByteBuffer(), groupContext);
+		return pooledByteBuffer;
+	}
+
+	/**
+	 * bytebuffer的总长度是 = 消息头的长度 + 消息体的长度
+	 */
+	private static int encodedLength(HelloPacket packet)
+	{
+		byte[] body = packet.getBody();
+		return HelloPacket.HEADER_LENGHT + (body == null ? 0 : body.length);
+	}
+
+	private static void write(HelloPacket packet, ByteBuffer buffer, GroupContext<Object, HelloPacket, Object> groupContext)
 	{
 		byte[] body = packet.getBody();
 		int bodyLen = 0;
@@ -30,10 +63,6 @@ public abstract class HelloAbsAioHandler implements AioHandler<Object, HelloPack
 			bodyLen = body.length;
 		}
 
-		//bytebuffer的总长度是 = 消息头的长度 + 消息体的长度
-		int allLen = HelloPacket.HEADER_LENGHT + bodyLen;
-		//创建一个新的bytebuffer
-		ByteBuffer buffer = ByteBuffer.allocate(allLen);
 		//设置字节序
 		buffer.order(groupContext.getByteOrder());
 
@@ -45,7 +74,6 @@ public abstract class HelloAbsAioHandler implements AioHandler<Object, HelloPack
 		{
 			buffer.put(body);
 		}
-		return buffer;
 	}
 
 	/**
@@ -83,7 +111,9 @@ public abstract class HelloAbsAioHandler implements AioHandler<Object, HelloPack
 			return null;
 		} else  //组包成功
 		{
-			HelloPacket imPacket = new HelloPacket();
+			//配置了PacketRecycler时从池中取，处理完后框架会回收
+			PacketRecycler<HelloPacket> packetRecycler = channelContext.getGroupContext().getPacketRecycler();
+			HelloPacket imPacket = packetRecycler != null ? packetRecycler.get() : new HelloPacket();
 			if (bodyLength > 0)
 			{
 				byte[] dst = new byte[bodyLength];
@@ -28,4 +28,14 @@ public class HelloPacket extends Packet
 	{
 		this.body = body;
 	}
+
+	/**
+	 * 被PacketRecycler回收时调用
+	 */
+	@Override
+	public void reset()
+	{
+		super.reset();
+		body = null;
+	}
 }
@@ -2,6 +2,7 @@ package org.tio.examples.helloworld.server;
 
 import java.io.IOException;
 
+import org.tio.core.PacketRecycler;
 import org.tio.examples.helloworld.common.Const;
 import org.tio.examples.helloworld.common.HelloPacket;
 import org.tio.server.AioServer;
@@ -39,6 +40,15 @@ public class HelloServerStarter
 	 */
 	public static void main(String[] args) throws IOException
 	{
+		//HelloServerAioHandler处理完收到的packet后不再持有它，所以可以回收复用
+		serverGroupContext.setPacketRecycler(new PacketRecycler<HelloPacket>()
+		{
+			@Override
+			protected HelloPacket newPacket()
+			{
+				return new HelloPacket();
+			}
+		});
 		aioServer.start(serverIp, serverPort);
 	}
 }
\ No newline at end of file
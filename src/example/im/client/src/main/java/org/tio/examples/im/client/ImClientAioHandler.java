@@ -10,7 +10,10 @@ import org.slf4j.LoggerFactory;
 import org.tio.client.intf.ClientAioHandler;
 import org.tio.core.ChannelContext;
 import org.tio.core.GroupContext;
+import org.tio.core.buffer.PooledByteBuffer;
+import org.tio.core.buffer.intf.BufferAllocator;
 import org.tio.core.exception.AioDecodeException;
+import org.tio.core.intf.BufferEncoder;
 import org.tio.examples.im.client.handler.AuthRespHandler;
 import org.tio.examples.im.client.handler.ChatRespHandler;
 import org.tio.examples.im.client.handler.ExitGroupNotifyRespHandler;
@@ -30,7 +33,7 @@ import org.tio.examples.im.common.utils.GzipUtils;
  * @author tanyaowu 
  *
  */
-public class ImClientAioHandler implements ClientAioHandler<ImSessionContext, ImPacket, Object>
+public class ImClientAioHandler implements ClientAioHandler<ImSessionContext, ImPacket, Object>, BufferEncoder<ImSessionContext, ImPacket, Object>
 {
 	private static Logger log = LoggerFactory.getLogger(ImClientAioHandler.class);
 
@@ -123,41 +126,77 @@ public class ImClientAioHandler implements ClientAioHandler<ImSessionContext, Im
 			return buffer;
 		}
 
-		byte[] body = packet.getBody();
-		int bodyLen = 0;
-		boolean isCompress = false;
-		boolean is4ByteLength = false;
-		if (body != null)
+		byte[] body = compressBody(packet.getBody());
+		ByteBuffer buffer = ByteBuffer.allocate(encodedLength(packet, body));
+		write(packet, body, body != packet.getBody(), buffer, groupContext);
+		return buffer;
+	}
+
+	/**
+	 * 编码到从框架的池中借来的buffer中，写完后buffer由框架还给池
+	 */
+	@Override
+	public PooledByteBuffer encode(ImPacket packet, BufferAllocator allocator, GroupContext<ImSessionContext, ImPacket, Object> groupContext,
+			ChannelContext<ImSessionContext, ImPacket, Object> channelContext)
+	{
+		if (packet.getCommand() == Command.COMMAND_HEARTBEAT_REQ || packet.getCommand() == Command.COMMAND_HANDSHAKE_REQ)
 		{
-			bodyLen = body.length;
+			PooledByteBuffer pooledByteBuffer = allocator.allocate(1);
+			pooledByteBuffer.getByteBuffer().put(packet.getCommand() == Command.COMMAND_HEARTBEAT_REQ ? ImPacket.HEARTBEAT_BYTE : ImPacket.HANDSHAKE_BYTE);
+			return pooledByteBuffer;
+		}
+
+		//压缩要在分配buffer前做，这样才知道要借多大的buffer
+		byte[] body = compressBody(packet.getBody());
+		PooledByteBuffer pooledByteBuffer = allocator.allocate(encodedLength(packet, body));
+		write(packet, body, body != packet.getBody(), pooledByteBuffer.getByteBuffer(), groupContext);
+		return pooledByteBuffer;
+	}
 
-			if (bodyLen > 200)
+	/**
+	 * 消息体超过200字节时尝试gzip压缩
+	 * @param body
+	 * @return 压缩后更小时返回压缩后的消息体，否则返回原来的
+	 */
+	private static byte[] compressBody(byte[] body)
+	{
+		if (body != null && body.length > 200)
+		{
+			try
 			{
-				try
+				byte[] gzipedbody = GzipUtils.gZip(body);
+				if (gzipedbody.length < body.length)
 				{
-					byte[] gzipedbody = GzipUtils.gZip(body);
-					if (gzipedbody.length < body.length)
-					{
-						log.error("压缩前:{}, 压缩后:{}", body.length, gzipedbody.length);
-						body = gzipedbody;
-						bodyLen = gzipedbody.length;
-						isCompress = true;
-					}
-				} catch (IOException e)
-				{
-					log.error(e.getMessage(), e);
+					log.error("压缩前:{}, 压缩后:{}", body.length, gzipedbody.length);
+					return gzipedbody;
 				}
-			}
-
-			if (bodyLen > Short.MAX_VALUE)
+			} catch (IOException e)
 			{
-				is4ByteLength = true;
+				log.error(e.getMessage(), e);
 			}
 		}
+		return body;
+	}
 
-		int allLen = packet.calcHeaderLength(is4ByteLength) + bodyLen;
+	private static int encodedLength(ImPacket packet, byte[] body)
+	{
+		int bodyLen = body == null ? 0 : body.length;
+		return packet.calcHeaderLength(bodyLen > Short.MAX_VALUE) + bodyLen;
+	}
+
+	/**
+	 * 
+	 * @param packet
+	 * @param body 要发送的消息体(可能是压缩过的)
+	 * @param isCompress
+	 * @param buffer
+	 * @param groupContext
+	 */
+	private static void write(ImPacket packet, byte[] body, boolean isCompress, ByteBuffer buffer, GroupContext<ImSessionContext, ImPacket, Object> groupContext)
+	{
+		int bodyLen = body == null ? 0 : body.length;
+		boolean is4ByteLength = bodyLen > Short.MAX_VALUE;
 
-		ByteBuffer buffer = ByteBuffer.allocate(allLen);
 		buffer.order(groupContext.getByteOrder());
 
 		byte firstbyte = ImPacket.encodeCompress(ImPacket.VERSION, isCompress);
@@ -179,7 +218,7 @@ public class ImClientAioHandler implements ClientAioHandler<ImSessionContext, Im
 			buffer.putShort((short) bodyLen);
 		}
 
-		if (packet.getSynSeq() != null && packet.getSynSeq() > 0)
+		if (packet.getSynSeq() > 0)
 		{
 			buffer.putInt(packet.getSynSeq());
 		}
@@ -194,7 +233,6 @@ public class ImClientAioHandler implements ClientAioHandler<ImSessionContext, Im
 		{
 			buffer.put(body);
 		}
-		return buffer;
 	}
 
 	private static ImPacket handshakeRespPacket = new ImPacket(Command.COMMAND_HANDSHAKE_RESP);
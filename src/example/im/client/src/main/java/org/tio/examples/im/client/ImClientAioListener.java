@@ -174,8 +174,8 @@ public class ImClientAioListener implements ClientAioListener<ImSessionContext,
 			long initReceivedBytes = frameMain.getStartRecievedBytes();
 			long initSentBytes = frameMain.getStartSentBytes();
 
-			long nowReceivedBytes = channelContext.getGroupContext().getGroupStat().getReceivedBytes().get();
-			long nowSentBytes = channelContext.getGroupContext().getGroupStat().getSentBytes().get();
+			long nowReceivedBytes = channelContext.getGroupContext().getGroupStat().getReceivedBytes().sum();
+			long nowSentBytes = channelContext.getGroupContext().getGroupStat().getSentBytes().sum();
 
 			long receivedBytes = nowReceivedBytes - initReceivedBytes;
 			long sentBytes = nowSentBytes - initSentBytes;
@@ -134,7 +134,7 @@ public class JFrameMain extends javax.swing.JFrame
 			NumberFormat numberFormat = NumberFormat.getInstance();
 			ClientGroupContext<ImSessionContext, ImPacket, Object> clientGroupContext = imClientStarter.getClientGroupContext();
 			GroupStat groupStat = clientGroupContext.getGroupStat();
-			instance.receivedLabel.setText(numberFormat.format(groupStat.getReceivedPacket().get()) + "条共" + numberFormat.format(groupStat.getReceivedBytes().get()) + "B");
+			instance.receivedLabel.setText(numberFormat.format(groupStat.getReceivedPacket().sum()) + "条共" + numberFormat.format(groupStat.getReceivedBytes().sum()) + "B");
 		}
 	}
 
@@ -146,7 +146,7 @@ public class JFrameMain extends javax.swing.JFrame
 			NumberFormat numberFormat = NumberFormat.getInstance();
 			ClientGroupContext<ImSessionContext, ImPacket, Object> clientGroupContext = imClientStarter.getClientGroupContext();
 			GroupStat groupStat = clientGroupContext.getGroupStat();
-			instance.sentLabel.setText(numberFormat.format(groupStat.getSentPacket().get()) + "条共" + numberFormat.format(groupStat.getSentBytes().get()) + "B");
+			instance.sentLabel.setText(numberFormat.format(groupStat.getSentPacket().sum()) + "条共" + numberFormat.format(groupStat.getSentBytes().sum()) + "B");
 
 		}
 	}
@@ -604,8 +604,8 @@ public class JFrameMain extends javax.swing.JFrame
 		sendBtn.setEnabled(false);
 		
 		ClientGroupContext<ImSessionContext, ImPacket, Object> clientGroupContext = imClientStarter.getAioClient().getClientGroupContext();
-		setStartRecievedBytes(clientGroupContext.getGroupStat().getReceivedBytes().get());
-		setStartSentBytes(clientGroupContext.getGroupStat().getSentBytes().get());
+		setStartRecievedBytes(clientGroupContext.getGroupStat().getReceivedBytes().sum());
+		setStartSentBytes(clientGroupContext.getGroupStat().getSentBytes().sum());
 
 		JFrameMain.getInstance().getMsgTextArea().setText("");
 		receivedPackets.set(0);
@@ -700,9 +700,9 @@ public class JFrameMain extends javax.swing.JFrame
 
 		ClientGroupStat clientGroupStat = clientGroupContext.getClientGroupStat();
 		log.error("<<--------------------\r\n当前时间:{}\r\n当前总连接数:{} = {}  + {} (连上的 + 关闭的)\r\n已经接受{}条消息共{}KB\r\n已经处理{}条消息\r\n已经发送{}条消息共{}KB\r\n-------------------->>",
-				SystemTimer.currentTimeMillis(), connectionsSet.size(), connectedsSet.size(), closedsSet.size(), clientGroupStat.getReceivedPacket().get(),
-				clientGroupStat.getReceivedBytes().get() / 1000, clientGroupStat.getHandledPacket().get(), clientGroupStat.getSentPacket().get(),
-				clientGroupStat.getSentBytes().get() / 1000);
+				SystemTimer.currentTimeMillis(), connectionsSet.size(), connectedsSet.size(), closedsSet.size(), clientGroupStat.getReceivedPacket().sum(),
+				clientGroupStat.getReceivedBytes().sum() / 1000, clientGroupStat.getHandledPacket().sum(), clientGroupStat.getSentPacket().sum(),
+				clientGroupStat.getSentBytes().sum() / 1000);
 	}//GEN-LAST:event_cleanBtn1ActionPerformed
 
     private void delBtnActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_delBtnActionPerformed
@@ -5,7 +5,6 @@ import java.util.List;
 import org.lionsoul.ip2region.DataBlock;
 import org.tio.examples.im.common.http.HttpRequestPacket;
 import org.tio.examples.im.common.packets.Client;
-import org.tio.monitor.RateLimiterWrap;
 
 /**
  * 
@@ -14,11 +13,6 @@ import org.tio.monitor.RateLimiterWrap;
  */
 public class ImSessionContext
 {
-	/**
-	 * 消息请求频率控制器
-	 */
-	private RateLimiterWrap requestRateLimiter = null;
-	
 	/**
 	 * 是否已经握过手
 	 */
@@ -182,20 +176,5 @@ public class ImSessionContext
 		this.dataBlock = dataBlock;
 	}
 
-	/**
-	 * @return the requestRateLimiter
-	 */
-	public RateLimiterWrap getRequestRateLimiter() {
-		return requestRateLimiter;
-	}
-
-	/**
-	 * @param requestRateLimiter the requestRateLimiter to set
-	 */
-	public void setRequestRateLimiter(RateLimiterWrap requestRateLimiter) {
-		this.requestRateLimiter = requestRateLimiter;
-	}
-
-
 	
 }
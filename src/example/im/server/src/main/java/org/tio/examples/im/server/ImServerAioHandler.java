@@ -9,7 +9,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tio.core.ChannelContext;
 import org.tio.core.GroupContext;
+import org.tio.core.buffer.PooledByteBuffer;
+import org.tio.core.buffer.intf.BufferAllocator;
 import org.tio.core.exception.AioDecodeException;
+import org.tio.core.intf.BufferEncoder;
+import org.tio.core.intf.EncodeVariantAware;
 import org.tio.examples.im.common.CommandStat;
 import org.tio.examples.im.common.ImPacket;
 import org.tio.examples.im.common.ImSessionContext;
@@ -39,7 +43,8 @@ import org.tio.server.intf.ServerAioHandler;
  * @author tanyaowu 
  *
  */
-public class ImServerAioHandler implements ServerAioHandler<ImSessionContext, ImPacket, Object> {
+public class ImServerAioHandler implements ServerAioHandler<ImSessionContext, ImPacket, Object>, EncodeVariantAware<ImSessionContext, ImPacket, Object>,
+		BufferEncoder<ImSessionContext, ImPacket, Object> {
 	private static Logger log = LoggerFactory.getLogger(ImServerAioHandler.class);
 
 	private static Map<Command, ImBsHandlerIntf> handlerMap = new HashMap<>();
@@ -103,6 +108,20 @@ public class ImServerAioHandler implements ServerAioHandler<ImSessionContext, Im
 
 	}
 
+	/**
+	 * 编码结果只和是不是websocket有关，群发时每种只编码一次
+	 * @param channelContext
+	 * @return
+	 */
+	@Override
+	public Object getEncodeVariantKey(ChannelContext<ImSessionContext, ImPacket, Object> channelContext) {
+		ImSessionContext imSessionContext = channelContext.getSessionContext();
+		if (imSessionContext == null) {
+			return null;
+		}
+		return imSessionContext.isWebsocket() ? "ws" : "tcp";
+	}
+
 	/** 
 	 * @see org.tio.core.intf.AioHandler#encode(org.tio.core.intf.Packet)
 	 * 
@@ -131,34 +150,67 @@ public class ImServerAioHandler implements ServerAioHandler<ImSessionContext, Im
 			return WebsocketEncoder.encode(packet, groupContext, channelContext);
 		}
 
-		byte[] body = packet.getBody();
-		int bodyLen = 0;
-		boolean isCompress = false;
-		boolean is4ByteLength = false;
-		if (body != null) {
-			bodyLen = body.length;
-			if (bodyLen > 300) {
-				try {
-					byte[] gzipedbody = GzipUtils.gZip(body);
-					if (gzipedbody.length < body.length) {
-						log.info("压缩前:{}, 压缩后:{}", body.length, gzipedbody.length);
-						body = gzipedbody;
-						bodyLen = gzipedbody.length;
-						isCompress = true;
-					}
-				} catch (IOException e) {
-					log.error(e.getMessage(), e);
-				}
-			}
+		byte[] body = compressBody(packet.getBody());
+		ByteBuffer buffer = ByteBuffer.allocate(encodedLength(packet, body));
+		write(packet, body, body != packet.getBody(), buffer, groupContext);
+		return buffer;
+	}
+
+	/**
+	 * tcp消息编码到从框架的池中借来的buffer中；握手响应和websocket消息返回null，由框架改用encode(packet, groupContext, channelContext)
+	 */
+	@Override
+	public PooledByteBuffer encode(ImPacket packet, BufferAllocator allocator, GroupContext<ImSessionContext, ImPacket, Object> groupContext,
+			ChannelContext<ImSessionContext, ImPacket, Object> channelContext) {
+		ImSessionContext imSessionContext = channelContext.getSessionContext();
+		if (packet.getCommand() == Command.COMMAND_HANDSHAKE_RESP || imSessionContext.isWebsocket()) {
+			return null;
+		}
 
-			if (bodyLen > Short.MAX_VALUE) {
-				is4ByteLength = true;
+		//压缩要在分配buffer前做，这样才知道要借多大的buffer
+		byte[] body = compressBody(packet.getBody());
+		PooledByteBuffer pooledByteBuffer = allocator.allocate(encodedLength(packet, body));
+		write(packet, body, body != packet.getBody(), pooledByteBuffer.getByteBuffer(), groupContext);
+		return pooledByteBuffer;
+	}
+
+	/**
+	 * 消息体超过300字节时尝试gzip压缩
+	 * @param body
+	 * @return 压缩后更小时返回压缩后的消息体，否则返回原来的
+	 */
+	private static byte[] compressBody(byte[] body) {
+		if (body != null && body.length > 300) {
+			try {
+				byte[] gzipedbody = GzipUtils.gZip(body);
+				if (gzipedbody.length < body.length) {
+					log.info("压缩前:{}, 压缩后:{}", body.length, gzipedbody.length);
+					return gzipedbody;
+				}
+			} catch (IOException e) {
+				log.error(e.getMessage(), e);
 			}
 		}
+		return body;
+	}
 
-		int allLen = packet.calcHeaderLength(is4ByteLength) + bodyLen;
+	private static int encodedLength(ImPacket packet, byte[] body) {
+		int bodyLen = body == null ? 0 : body.length;
+		return packet.calcHeaderLength(bodyLen > Short.MAX_VALUE) + bodyLen;
+	}
+
+	/**
+	 * 
+	 * @param packet
+	 * @param body 要发送的消息体(可能是压缩过的)
+	 * @param isCompress
+	 * @param buffer
+	 * @param groupContext
+	 */
+	private static void write(ImPacket packet, byte[] body, boolean isCompress, ByteBuffer buffer, GroupContext<ImSessionContext, ImPacket, Object> groupContext) {
+		int bodyLen = body == null ? 0 : body.length;
+		boolean is4ByteLength = bodyLen > Short.MAX_VALUE;
 
-		ByteBuffer buffer = ByteBuffer.allocate(allLen);
 		buffer.order(groupContext.getByteOrder());
 
 		byte firstbyte = ImPacket.encodeCompress(ImPacket.VERSION, isCompress);
@@ -178,7 +230,7 @@ public class ImServerAioHandler implements ServerAioHandler<ImSessionContext, Im
 			buffer.putShort((short) bodyLen);
 		}
 
-		if (packet.getSynSeq() != null && packet.getSynSeq() > 0) {
+		if (packet.getSynSeq() > 0) {
 			buffer.putInt(packet.getSynSeq());
 		}
 		//		else
@@ -191,7 +243,6 @@ public class ImServerAioHandler implements ServerAioHandler<ImSessionContext, Im
 		if (body != null) {
 			buffer.put(body);
 		}
-		return buffer;
 	}
 
 	/**
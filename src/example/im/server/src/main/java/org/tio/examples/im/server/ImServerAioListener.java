@@ -15,7 +15,6 @@ import org.tio.examples.im.common.CommandStat;
 import org.tio.examples.im.common.ImPacket;
 import org.tio.examples.im.common.ImSessionContext;
 import org.tio.examples.im.common.utils.ImUtils;
-import org.tio.monitor.RateLimiterWrap;
 import org.tio.server.intf.ServerAioListener;
 
 /**
@@ -74,14 +73,6 @@ public class ImServerAioListener implements ServerAioListener<ImSessionContext,
 
 		GroupContext<ImSessionContext, ImPacket, Object> groupContext = channelContext.getGroupContext();
 
-		int permitsPerSecond = ImServerStarter.conf.getInt("request.permitsPerSecond");
-		int warnClearInterval = 1000 * ImServerStarter.conf.getInt("request.warnClearInterval");
-		int maxWarnCount = ImServerStarter.conf.getInt("request.maxWarnCount");
-		int maxAllWarnCount = ImServerStarter.conf.getInt("request.maxAllWarnCount");
-		RateLimiterWrap rateLimiterWrap = new RateLimiterWrap(permitsPerSecond, warnClearInterval, maxWarnCount, maxAllWarnCount);
-
-		imSessionContext.setRequestRateLimiter(rateLimiterWrap);
-
 		if (isConnected) {
 			String ip = channelContext.getClientNode().getIp();
 
@@ -4,14 +4,20 @@ import java.io.IOException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tio.core.ChannelContext;
+import org.tio.core.SocketOptionProfile;
+import org.tio.core.intf.Packet;
 import org.tio.examples.im.common.Const;
 import org.tio.examples.im.common.ImPacket;
 import org.tio.examples.im.common.ImSessionContext;
+import org.tio.examples.im.common.packets.Command;
 import org.tio.examples.im.common.utils.UserAgentAnalyzerFactory;
 import org.tio.examples.im.service.BadWordService;
 import org.tio.examples.im.service.ImgFjService;
 import org.tio.examples.im.service.ImgMnService;
 import org.tio.examples.im.service.ImgTxService;
+import org.tio.monitor.PacketRateLimiter;
+import org.tio.monitor.RateLimitAction;
 import org.tio.server.AioServer;
 import org.tio.server.ServerGroupContext;
 import org.tio.server.intf.ServerAioHandler;
@@ -79,6 +85,22 @@ public class ImServerStarter {
 		BadWordService.initBadWord();
 
 		serverGroupContext.setGroupListener(imGroupListener);
+		//聊天消息都是小包，打开TCP_NODELAY
+		serverGroupContext.setSocketOptionProfile(SocketOptionProfile.lowLatency());
+
+		//每个连接的收包频率控制，在解码后检查，超过的包丢弃(丢包时会打warn日志，并计入GroupStat.rateLimitedPacket)，业务代码不用再管
+		//握手、心跳、关闭这几种包丢了会导致连接出问题，不限流
+		PacketRateLimiter packetRateLimiter = new PacketRateLimiter() {
+			@Override
+			public boolean isLimited(ChannelContext<?, ?, ?> channelContext, Packet packet) {
+				Command command = ((ImPacket) packet).getCommand();
+				return command != Command.COMMAND_HANDSHAKE_REQ && command != Command.COMMAND_HEARTBEAT_REQ && command != Command.COMMAND_CLOSE_REQ;
+			}
+		};
+		packetRateLimiter.setChannelPacketRate(conf.getInt("request.permitsPerSecond"), conf.getInt("request.burst"));
+		packetRateLimiter.setAction(RateLimitAction.DROP);
+		serverGroupContext.setPacketRateLimiter(packetRateLimiter);
+
 		aioServer.start(bindIp, Const.SERVER_PORT);
 	}
 
@@ -4,15 +4,19 @@ import java.nio.ByteBuffer;
 
 import org.tio.core.ChannelContext;
 import org.tio.core.GroupContext;
+import org.tio.core.buffer.PooledByteBuffer;
+import org.tio.core.buffer.intf.BufferAllocator;
 import org.tio.core.exception.AioDecodeException;
 import org.tio.core.intf.AioHandler;
+import org.tio.core.intf.BufferEncoder;
 
 /**
  * 
  * @author tanyaowu 
  * 2017年3月27日 上午12:14:12
  */
-public abstract class ShowcaseAbsAioHandler implements AioHandler<ShowcaseSessionContext, ShowcasePacket, Object>
+public abstract class ShowcaseAbsAioHandler
+		implements AioHandler<ShowcaseSessionContext, ShowcasePacket, Object>, BufferEncoder<ShowcaseSessionContext, ShowcasePacket, Object>
 {
 	/**
 	 * 编码：把业务消息包编码为可以发送的ByteBuffer
@@ -21,6 +25,34 @@ public abstract class ShowcaseAbsAioHandler implements AioHandler<ShowcaseSessio
 	 */
 	@Override
 	public ByteBuffer encode(ShowcasePacket packet, GroupContext<ShowcaseSessionContext, ShowcasePacket, Object> groupContext, ChannelContext<ShowcaseSessionContext, ShowcasePacket, Object> channelContext)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(encodedLength(packet));
+		write(packet, buffer, groupContext);
+		return buffer;
+	}
+
+	/**
+	 * 编码到从框架的池中借来的buffer中
+	 */
+	@Override
+	public PooledByteBuffer encode(ShowcasePacket packet, BufferAllocator allocator, GroupContext<ShowcaseSessionContext, ShowcasePacket, Object> groupContext,
+			ChannelContext<ShowcaseSessionContext, ShowcasePacket, Object> channelContext)
+	{
+		PooledByteBuffer pooledByteBuffer = allocator.allocate(encodedLength(packet));
+		write(packet, pooledByteBuffer.getByteBuffer(), groupContext);
+		return pooledByteBuffer;
+	}
+
+	/**
+	 * 总长度是消息头的长度+消息体的长度
+	 */
+	private static int encodedLength(ShowcasePacket packet)
+	{
+		byte[] body = packet.getBody();
+		return ShowcasePacket.HEADER_LENGHT + (body == null ? 0 : body.length);
+	}
+
+	private static void write(ShowcasePacket packet, ByteBuffer buffer, GroupContext<ShowcaseSessionContext, ShowcasePacket, Object> groupContext)
 	{
 		byte[] body = packet.getBody();
 		int bodyLen = 0;
@@ -29,10 +61,6 @@ public abstract class ShowcaseAbsAioHandler implements AioHandler<ShowcaseSessio
 			bodyLen = body.length;
 		}
 
-		//总长度是消息头的长度+消息体的长度
-		int allLen = ShowcasePacket.HEADER_LENGHT + bodyLen;
-		
-		ByteBuffer buffer = ByteBuffer.allocate(allLen);
 		buffer.order(groupContext.getByteOrder());
 
 		//写入消息类型
@@ -45,7 +73,6 @@ public abstract class ShowcaseAbsAioHandler implements AioHandler<ShowcaseSessio
 		{
 			buffer.put(body);
 		}
-		return buffer;
 	}
 
 	/**